@@ -15,6 +15,7 @@ import java.util.List;
 
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.data.DataService;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.message.KuraPayload;
 import org.osgi.annotation.versioning.ProviderType;
 
@@ -323,6 +324,61 @@ public interface CloudClient {
     public int publish(String deviceId, String appTopic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraException;
 
+    /**
+     * Publishes a message to the remote server without waiting for the message to be stored.
+     * The topic and the payload are processed as in {@link #publish(String, KuraPayload, int, boolean, int)}
+     * before the message is passed to {@link DataService#publishAsync}.
+     * The returned {@link PublishResult} reports when the message is stored and when it is confirmed.
+     * Errors occurring while storing the message, like the store capacity being reached,
+     * complete the futures of the result exceptionally.
+     *
+     * @param appTopic
+     *            A String specifying the application portion of the topic the message is published on.
+     * @param payload
+     *            An KuraPayload representing the message to be published
+     * @param qos
+     *            An integer specifying the quality of service the message was published on.
+     * @param retain
+     *            Whether or not the broker should retain the message
+     * @param priority
+     *            Relative ordering of this message with other messages that may be currently queued for publishing.
+     * @return The {@link PublishResult} tracking the message.
+     * @throws KuraException
+     *             if the message composition fails.
+     * @since 1.3
+     */
+    public PublishResult publishAsync(String appTopic, KuraPayload payload, int qos, boolean retain, int priority)
+            throws KuraException;
+
+    /**
+     * Publishes a message to the remote server on behalf of the given device without waiting for the
+     * message to be stored.
+     * The topic and the payload are processed as in {@link #publish(String, String, KuraPayload, int, boolean, int)}
+     * before the message is passed to {@link DataService#publishAsync}.
+     * The returned {@link PublishResult} reports when the message is stored and when it is confirmed.
+     * Errors occurring while storing the message, like the store capacity being reached,
+     * complete the futures of the result exceptionally.
+     *
+     * @param deviceId
+     *            A String specifying the device ID.
+     * @param appTopic
+     *            A String specifying the application portion of the topic the message is published on.
+     * @param payload
+     *            An KuraPayload representing the message to be published
+     * @param qos
+     *            An integer specifying the quality of service the message was published on.
+     * @param retain
+     *            Whether or not the broker should retain the message
+     * @param priority
+     *            Relative ordering of this message with other messages that may be currently queued for publishing.
+     * @return The {@link PublishResult} tracking the message.
+     * @throws KuraException
+     *             if the message composition fails.
+     * @since 1.3
+     */
+    public PublishResult publishAsync(String deviceId, String appTopic, KuraPayload payload, int qos, boolean retain,
+            int priority) throws KuraException;
+
     /**
      * Publishes a control message to the remote server. Control messages are qualified with an
      * additional prefix appended at the beginning of the target topic. The
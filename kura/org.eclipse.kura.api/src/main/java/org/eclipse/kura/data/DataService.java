@@ -153,6 +153,28 @@ public interface DataService {
      */
     public int publish(String topic, byte[] payload, int qos, boolean retain, int priority) throws KuraStoreException;
 
+    /**
+     * Publishes a message to the broker without waiting for the message to be stored.
+     * The semantics of the priority, QoS and of the store capacity are the same as for
+     * {@link #publish(String, byte[], int, boolean, int)}, but the outcome is reported through the
+     * returned {@link PublishResult}: its stored future completes with the message identifier once the
+     * message has been stored, while its confirmed future completes when the message is confirmed.
+     * Store failures, including the KuraStoreCapacityReachedException, complete both futures exceptionally.
+     * <br>
+     * The {@link DataServiceListener#onMessageConfirmed} callback is still invoked for messages
+     * published with this method.
+     *
+     * @param topic
+     * @param payload
+     * @param qos
+     * @param retain
+     * @param priority
+     * @return the {@link PublishResult} tracking the message
+     *
+     * @since 1.3
+     */
+    public PublishResult publishAsync(String topic, byte[] payload, int qos, boolean retain, int priority);
+
     /**
      * Finds the list of identifiers of messages that have not been published yet.
      * Given the service has no means of knowing who
@@ -180,6 +202,18 @@ public interface DataService {
      */
     List<Integer> getInFlightMessageIds(String topicRegex) throws KuraStoreException;
 
+    /**
+     * Returns the number of messages currently in-flight on the connection with the broker,
+     * that is published with QoS &gt; 0 and waiting for the confirmation of the broker.
+     * Unlike {@link #getInFlightMessageIds(String)} the value is not read from the persistent store
+     * and it can be sampled frequently to monitor the in-flight window.
+     *
+     * @return the number of in-flight messages
+     *
+     * @since 1.3
+     */
+    public int getInFlightMessageCount();
+
     /**
      * Finds the list of identifiers of in-flight messages that have been dropped.
      * This only applies to messages published with QoS &gt; 0.
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.data;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * PublishResult is returned by the asynchronous publish methods of the {@link DataService} and of the
+ * {@link org.eclipse.kura.cloud.CloudClient}. It allows to track a message through its life-cycle without
+ * blocking the publishing thread.
+ * <ul>
+ * <li>The stored future completes with the message identifier once the message has been accepted by the
+ * DataService for deferred publication. It completes exceptionally, for example with a
+ * {@link org.eclipse.kura.KuraStoreCapacityReachedException}, if the message cannot be stored.
+ * <li>The confirmed future completes with the message identifier when the message is confirmed, with the same
+ * semantics of {@link org.eclipse.kura.data.listener.DataServiceListener#onMessageConfirmed}: for messages
+ * published at QoS = 0 this happens as soon as the message is handed to the transport. The identifier may differ
+ * from the one of the stored future if the message has been moved between the DataService buffers before being
+ * published. It completes exceptionally if the message cannot be stored or if it is dropped while in-flight.
+ * </ul>
+ * The futures are completed by the threads of the service and dependent actions should not block.
+ *
+ * @noextend This class is not intended to be subclassed by clients.
+ * @since 1.3
+ */
+@ProviderType
+public class PublishResult {
+
+    private final CompletableFuture<Integer> stored;
+    private final CompletableFuture<Integer> confirmed;
+
+    public PublishResult(CompletableFuture<Integer> stored, CompletableFuture<Integer> confirmed) {
+        this.stored = stored;
+        this.confirmed = confirmed;
+    }
+
+    /**
+     * @return a future completed with the message identifier once the message has been stored
+     */
+    public CompletableFuture<Integer> getStored() {
+        return this.stored;
+    }
+
+    /**
+     * @return a future completed with the message identifier once the message has been confirmed
+     */
+    public CompletableFuture<Integer> getConfirmed() {
+        return this.confirmed;
+    }
+}
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.kura.message;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -123,4 +124,16 @@ public class KuraPayload {
     public void setBody(byte[] body) {
         this.body = body;
     }
+
+    /**
+     * Returns a read-only view of the body. Unlike {@link #getBody()}, implementations backed by the
+     * received message bytes do not need to copy the body in order to return it.
+     *
+     * @return a read-only {@link ByteBuffer} positioned at the start of the body, or null if the payload has no body
+     *
+     * @since 1.3
+     */
+    public ByteBuffer getBodyBuffer() {
+        return this.body != null ? ByteBuffer.wrap(this.body).asReadOnlyBuffer() : null;
+    }
 }
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire;
+
+import java.util.Map;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * A snapshot of the metrics recorded by the {@link WireSupport} of a Wire Component since its creation: the
+ * envelopes and records received and emitted, the time spent processing the received envelopes and the metrics
+ * specific to the Wire Component.
+ *
+ * @noimplement This interface is not intended to be implemented by clients.
+ * @since 1.3
+ */
+@ProviderType
+public interface WireComponentMetrics {
+
+    /**
+     * The number of buckets of the processing time histogram.
+     */
+    public static final int PROCESSING_TIME_BUCKETS = 26;
+
+    /**
+     * Gets the Wire Component PID (kura.service.pid).
+     *
+     * @return the Wire Component PID
+     */
+    public String getWireComponentPid();
+
+    /**
+     * Gets the number of envelopes received by the Wire Component.
+     *
+     * @return the number of received envelopes
+     */
+    public long getReceivedEnvelopes();
+
+    /**
+     * Gets the number of records contained in the envelopes received by the Wire Component.
+     *
+     * @return the number of received records
+     */
+    public long getReceivedRecords();
+
+    /**
+     * Gets the number of envelopes emitted by the Wire Component.
+     *
+     * @return the number of emitted envelopes
+     */
+    public long getEmittedEnvelopes();
+
+    /**
+     * Gets the number of records emitted by the Wire Component.
+     *
+     * @return the number of emitted records
+     */
+    public long getEmittedRecords();
+
+    /**
+     * Gets the distribution of the time spent by the Wire Component processing the received envelopes. The time
+     * spent delivering the envelopes emitted synchronously while processing is not included, since it is accounted
+     * to the receivers.
+     * <br/>
+     * The histogram has {@link #PROCESSING_TIME_BUCKETS} buckets: the bucket 0 counts the processing times below one
+     * microsecond, the bucket {@code i} counts the processing times from 2<sup>i-1</sup> included to 2<sup>i</sup>
+     * excluded microseconds, the last bucket also counts all the longer processing times.
+     *
+     * @return the number of received envelopes per bucket
+     */
+    public long[] getProcessingTimeHistogram();
+
+    /**
+     * Gets the total time spent processing the received envelopes.
+     *
+     * @return the total processing time in nanoseconds
+     */
+    public long getTotalProcessingTime();
+
+    /**
+     * Gets the longest time spent processing a received envelope.
+     *
+     * @return the maximum processing time in nanoseconds
+     */
+    public long getMaxProcessingTime();
+
+    /**
+     * Gets the metrics specific to the Wire Component, registered through
+     * {@link WireSupport#registerMetric(String, java.util.function.LongSupplier)}, for instance the length of a
+     * queue.
+     *
+     * @return an unmodifiable map of the metric values by name
+     */
+    public Map<String, Long> getComponentMetrics();
+}
@@ -13,6 +13,8 @@
  *******************************************************************************/
 package org.eclipse.kura.wire;
 
+import java.util.Map;
+
 import org.osgi.annotation.versioning.ProviderType;
 
 /**
@@ -100,4 +102,12 @@ public interface WireHelperService {
      */
     public WireSupport newWireSupport(WireComponent wireComponent);
 
+    /**
+     * Returns the metrics recorded by the Wire Support instances of the Wire Components
+     *
+     * @return the metrics, by Wire Component PID (kura.service.pid)
+     * @since 1.3
+     */
+    public Map<String, WireComponentMetrics> getWireComponentMetrics();
+
 }
@@ -13,6 +13,7 @@
  *******************************************************************************/
 package org.eclipse.kura.wire;
 
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.kura.KuraException;
@@ -72,4 +73,13 @@ public interface WireService {
      */
     public Set<WireConfiguration> getWireConfigurations();
 
+    /**
+     * Retrieves the metrics recorded for the Wire Components, which can be used to find the bottlenecks of a
+     * Wire Graph.
+     *
+     * @return the metrics, by Wire Component PID (kura.service.pid)
+     * @since 1.3
+     */
+    public Map<String, WireComponentMetrics> getWireComponentMetrics();
+
 }
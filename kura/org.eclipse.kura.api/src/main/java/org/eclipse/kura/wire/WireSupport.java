@@ -14,6 +14,7 @@
 package org.eclipse.kura.wire;
 
 import java.util.List;
+import java.util.function.LongSupplier;
 
 import org.osgi.annotation.versioning.ProviderType;
 import org.osgi.service.wireadmin.Consumer;
@@ -44,4 +45,19 @@ public interface WireSupport extends Producer, Consumer {
      *             if the argument is null
      */
     public void emit(List<WireRecord> wireRecords);
+
+    /**
+     * Registers a metric specific to the contained Wire Component, reported together with the
+     * {@link WireComponentMetrics} recorded by this Wire Support. The value is only read when the metrics are
+     * retrieved. A metric registered with the same name replaces the previous one.
+     *
+     * @param name
+     *            the name of the metric
+     * @param value
+     *            supplies the current value of the metric
+     * @throws NullPointerException
+     *             if any of the arguments is null
+     * @since 1.3
+     */
+    public void registerMetric(String name, LongSupplier value);
 }
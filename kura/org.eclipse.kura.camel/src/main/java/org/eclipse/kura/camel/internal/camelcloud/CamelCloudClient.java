@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.function.IntSupplier;
@@ -44,6 +45,7 @@ import org.eclipse.kura.KuraException;
 import org.eclipse.kura.camel.camelcloud.CamelCloudService;
 import org.eclipse.kura.cloud.CloudClient;
 import org.eclipse.kura.cloud.CloudClientListener;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.message.KuraPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -144,6 +146,25 @@ public class CamelCloudClient implements CloudClient {
         return publish(deviceId, appTopic, kuraPayload, qos, retain, priority);
     }
 
+    @Override
+    public PublishResult publishAsync(String appTopic, KuraPayload payload, int qos, boolean retain, int priority)
+            throws KuraException {
+        return publishAsync(null, appTopic, payload, qos, retain, priority);
+    }
+
+    @Override
+    public PublishResult publishAsync(String deviceId, String appTopic, KuraPayload payload, int qos, boolean retain,
+            int priority) throws KuraException {
+        // messages are handed over to the route synchronously, there is no store to wait for
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        try {
+            result.complete(doPublish(false, deviceId, appTopic, payload, qos, retain, priority));
+        } catch (KuraException e) {
+            result.completeExceptionally(e);
+        }
+        return new PublishResult(result, result);
+    }
+
     @Override
     public int controlPublish(String topic, KuraPayload payload, int qos, boolean retain, int priority)
             throws KuraException {
@@ -19,6 +19,7 @@ import org.eclipse.kura.KuraException;
 import org.eclipse.kura.cloud.CloudClient;
 import org.eclipse.kura.cloud.CloudClientListener;
 import org.eclipse.kura.data.DataService;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.message.KuraPayload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -139,6 +140,28 @@ public class CloudClientImpl implements CloudClient, CloudClientListener {
         return this.dataService.publish(fullTopic, payload, qos, retain, priority);
     }
 
+    @Override
+    public PublishResult publishAsync(String appTopic, KuraPayload payload, int qos, boolean retain, int priority)
+            throws KuraException {
+        CloudServiceOptions options = this.cloudServiceImpl.getCloudServiceOptions();
+        return publishAsync(options.getTopicClientIdToken(), appTopic, payload, qos, retain, priority);
+    }
+
+    @Override
+    public PublishResult publishAsync(String deviceId, String appTopic, KuraPayload payload, int qos, boolean retain,
+            int priority) throws KuraException {
+        boolean isControl = false;
+        String fullTopic = encodeTopic(deviceId, appTopic, isControl);
+
+        CloudPayloadCoalescer coalescer = this.cloudServiceImpl.getPayloadCoalescer();
+        if (coalescer != null && payload != null) {
+            return coalescer.publish(fullTopic, payload, qos, retain, priority);
+        }
+
+        byte[] appPayload = this.cloudServiceImpl.encodePayload(payload);
+        return this.dataService.publishAsync(fullTopic, appPayload, qos, retain, priority);
+    }
+
     @Override
     public int controlPublish(String appTopic, KuraPayload payload, int qos, boolean retain, int priority)
             throws KuraException {
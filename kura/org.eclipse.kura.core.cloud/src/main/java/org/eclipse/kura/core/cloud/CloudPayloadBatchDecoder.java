@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.eclipse.kura.core.cloud.CloudPayloadBatchEncoder.BATCH_COUNT_METRIC;
+import static org.eclipse.kura.core.cloud.CloudPayloadBatchEncoder.BATCH_FORMAT;
+import static org.eclipse.kura.core.cloud.CloudPayloadBatchEncoder.BATCH_FORMAT_METRIC;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.kura.KuraInvalidMessageException;
+import org.eclipse.kura.message.KuraPayload;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonValue;
+import com.google.protobuf.CodedInputStream;
+
+/**
+ * This class contains the methods that can be used to split a message produced by the
+ * {@link CloudPayloadBatchEncoder} into its payloads.
+ */
+public class CloudPayloadBatchDecoder {
+
+    private static final Set<String> BATCH_METRICS = new HashSet<>(
+            Arrays.asList(BATCH_FORMAT_METRIC, BATCH_COUNT_METRIC));
+
+    private CloudPayloadBatchDecoder() {
+    }
+
+    /**
+     * Checks if a decoded Kura Protobuf payload is a batch envelope: a payload with a body and no position,
+     * carrying only the batch format metric, with the expected format, and a positive batch count metric.
+     *
+     * @param payload
+     *            the decoded payload
+     * @return true if the payload carries a batch of payloads
+     */
+    public static boolean isProtoBufBatch(KuraPayload payload) {
+        if (payload == null || !CloudPayloadProtoBufLazyDecoderImpl.mayBeBatch(payload)
+                || payload.getBodyBuffer() == null || payload.getPosition() != null
+                || !BATCH_METRICS.equals(payload.metricNames())) {
+            return false;
+        }
+        Object count = payload.getMetric(BATCH_COUNT_METRIC);
+        return BATCH_FORMAT.equals(payload.getMetric(BATCH_FORMAT_METRIC)) && count instanceof Integer
+                && (Integer) count > 0;
+    }
+
+    /**
+     * Splits a Kura Protobuf batch envelope into its payloads.
+     *
+     * @param envelope
+     *            a payload for which {@link #isProtoBufBatch(KuraPayload)} returns true
+     * @return the payloads in the batch, in publishing order
+     * @throws KuraInvalidMessageException
+     *             if the envelope or one of its payloads cannot be decoded
+     */
+    public static List<KuraPayload> splitProtoBufBatch(KuraPayload envelope) throws KuraInvalidMessageException {
+        int count = (Integer) envelope.getMetric(BATCH_COUNT_METRIC);
+        List<KuraPayload> payloads = new ArrayList<>(count);
+
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(envelope.getBodyBuffer());
+            while (!input.isAtEnd()) {
+                int length = input.readRawVarint32();
+                byte[] entry = input.readRawBytes(length);
+                payloads.add(new CloudPayloadProtoBufLazyDecoderImpl(entry).buildFromByteArray());
+            }
+        } catch (IOException e) {
+            throw new KuraInvalidMessageException(e);
+        }
+
+        if (payloads.size() != count) {
+            throw new KuraInvalidMessageException(
+                    String.format("Expected %d payloads in batch, found %d", count, payloads.size()));
+        }
+        return payloads;
+    }
+
+    /**
+     * Checks if a Json message may be a batch, that is a Json array. A single payload is always a Json object.
+     * The elements of the array are checked by {@link #splitJsonBatch(byte[])}.
+     *
+     * @param array
+     *            a Json encoded as a byte array
+     * @return true if the message carries a batch of payloads
+     */
+    public static boolean isJsonBatch(byte[] array) {
+        for (byte b : array) {
+            if (!Character.isWhitespace(b)) {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits a Json batch into its payloads. Each element of the array is decoded with the
+     * {@link CloudPayloadJsonDecoder}.
+     *
+     * @param array
+     *            a Json batch encoded as a byte array
+     * @return the payloads in the batch, in publishing order
+     * @throws KuraInvalidMessageException
+     *             if the message is not a Json array of Json objects
+     */
+    public static List<KuraPayload> splitJsonBatch(byte[] array) throws KuraInvalidMessageException {
+        JsonArray json;
+        try {
+            json = Json.parse(new String(array, StandardCharsets.UTF_8)).asArray();
+        } catch (RuntimeException e) {
+            throw new KuraInvalidMessageException(e);
+        }
+
+        List<KuraPayload> payloads = new ArrayList<>(json.size());
+        for (JsonValue value : json) {
+            if (!value.isObject()) {
+                throw new KuraInvalidMessageException("Batch entry is not a Json object: " + value);
+            }
+            payloads.add(CloudPayloadJsonDecoder.buildFromByteArray(value.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.eclipse.kura.cloud.CloudPayloadEncoding.SIMPLE_JSON;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.kura.cloud.CloudPayloadEncoding;
+import org.eclipse.kura.message.KuraPayload;
+
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Encodes a batch of payloads, already encoded with {@link #encodeEntry(CloudPayloadEncoding, KuraPayload)},
+ * into a single message.
+ * <ul>
+ * <li>With the {@link CloudPayloadEncoding#KURA_PROTOBUF} encoding the batch is a Kura payload envelope carrying
+ * only the {@link #BATCH_FORMAT_METRIC} and {@link #BATCH_COUNT_METRIC} metrics and, in the body, the
+ * length-delimited payloads of the batch. The metrics in the {@value #BATCH_METRIC_NAMESPACE} namespace are
+ * reserved to the batch envelope.
+ * <li>With the {@link CloudPayloadEncoding#SIMPLE_JSON} encoding the batch is a Json array of payloads. A single
+ * payload is always encoded as a Json object.
+ * </ul>
+ * The message can be split back into its payloads by the {@link CloudPayloadBatchDecoder}.
+ */
+public class CloudPayloadBatchEncoder implements CloudPayloadEncoder {
+
+    public static final String BATCH_METRIC_NAMESPACE = "kura.batch.";
+    public static final String BATCH_FORMAT_METRIC = BATCH_METRIC_NAMESPACE + "format";
+    public static final String BATCH_COUNT_METRIC = BATCH_METRIC_NAMESPACE + "count";
+
+    /**
+     * The value of the {@link #BATCH_FORMAT_METRIC} metric identifying the format of the envelope body.
+     */
+    public static final String BATCH_FORMAT = "length-delimited-kura-payloads/1";
+
+    private final CloudPayloadEncoding encoding;
+    private final List<byte[]> entries;
+
+    public CloudPayloadBatchEncoder(CloudPayloadEncoding encoding, List<byte[]> entries) {
+        this.encoding = encoding;
+        this.entries = entries;
+    }
+
+    /**
+     * Encodes a single payload for inclusion in a batch. The payload is not compressed, compression is applied
+     * to the batch as a whole.
+     *
+     * @param encoding
+     *            the encoding of the batch
+     * @param payload
+     *            the payload to be encoded
+     * @return the encoded payload
+     * @throws IOException
+     */
+    public static byte[] encodeEntry(CloudPayloadEncoding encoding, KuraPayload payload) throws IOException {
+        if (encoding == SIMPLE_JSON) {
+            return CloudPayloadJsonEncoder.getBytes(payload);
+        }
+        return new CloudPayloadProtoBufStreamingEncoderImpl(payload).getBytes();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        if (this.encoding == SIMPLE_JSON) {
+            return getJsonBytes();
+        }
+        return getProtoBufBytes();
+    }
+
+    private byte[] getJsonBytes() {
+        int size = 2 + this.entries.size();
+        for (byte[] entry : this.entries) {
+            size += entry.length;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < this.entries.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            byte[] entry = this.entries.get(i);
+            out.write(entry, 0, entry.length);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private byte[] getProtoBufBytes() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(body);
+        for (byte[] entry : this.entries) {
+            output.writeRawVarint32(entry.length);
+            output.writeRawBytes(entry);
+        }
+        output.flush();
+
+        KuraPayload envelope = new KuraPayload();
+        envelope.setTimestamp(new Date());
+        envelope.addMetric(BATCH_FORMAT_METRIC, BATCH_FORMAT);
+        envelope.addMetric(BATCH_COUNT_METRIC, this.entries.size());
+        envelope.setBody(body.toByteArray());
+
+        return new CloudPayloadProtoBufStreamingEncoderImpl(envelope).getBytes();
+    }
+}
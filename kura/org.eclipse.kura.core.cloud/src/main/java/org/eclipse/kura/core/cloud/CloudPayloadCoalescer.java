@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraErrorCode;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.cloud.CloudPayloadEncoding;
+import org.eclipse.kura.data.DataService;
+import org.eclipse.kura.data.PublishResult;
+import org.eclipse.kura.message.KuraPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the payloads published on the same topic, with the same QoS, retain flag and priority, into a single
+ * message encoded by the {@link CloudPayloadBatchEncoder}.
+ * A batch is published to the {@link DataService} when the coalescing window elapses since its first payload, or as
+ * soon as it reaches the maximum number of payloads or the maximum size.
+ * All the payloads of a batch share the identifier of the published message.
+ * The batches are encoded and handed to the {@link DataService} on a single thread, in the order they are completed,
+ * so that the publishing order on each topic is preserved without holding the lock of the pending batches.
+ */
+class CloudPayloadCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudPayloadCoalescer.class);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final DataService dataService;
+    private final CloudPayloadEncoding encoding;
+    private final CloudPayloadCompressionCodec compressionCodec;
+    private final long window;
+    private final int maxCount;
+    private final int maxSize;
+
+    private final Map<BatchKey, Batch> batches = new HashMap<>();
+    private final ScheduledExecutorService executor;
+    private boolean closed;
+
+    CloudPayloadCoalescer(DataService dataService, CloudServiceOptions options, CloudPayloadCompression compression) {
+        this.dataService = dataService;
+        this.encoding = options.getPayloadEncoding();
+        this.compressionCodec = options.getEncodeGzip() ? compression.getCodec() : null;
+        this.window = options.getPayloadCoalescingWindow();
+        this.maxCount = options.getPayloadCoalescingMaxCount();
+        this.maxSize = options.getPayloadCoalescingMaxSize();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "CloudPayloadCoalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PublishResult publish(String topic, KuraPayload payload, int qos, boolean retain, int priority)
+            throws KuraException {
+        byte[] entry;
+        try {
+            entry = CloudPayloadBatchEncoder.encodeEntry(this.encoding, payload);
+        } catch (IOException e) {
+            throw new KuraException(KuraErrorCode.ENCODE_ERROR, e);
+        }
+
+        BatchKey key = new BatchKey(topic, qos, retain, priority);
+        Batch uncoalesced = null;
+        PublishResult result;
+        synchronized (this.batches) {
+            if (this.closed) {
+                // the publishing thread is stopped, the payload is published on its own by the caller
+                uncoalesced = new Batch(key);
+                uncoalesced.entries.add(entry);
+                result = uncoalesced.result;
+            } else {
+                result = add(key, entry);
+            }
+        }
+        if (uncoalesced != null) {
+            publish(uncoalesced);
+        }
+
+        // keep the futures of the batch private, so that a caller cannot complete or cancel them for the others
+        return new PublishResult(result.getStored().thenApply(id -> id), result.getConfirmed().thenApply(id -> id));
+    }
+
+    /**
+     * Publishes all the pending batches.
+     */
+    public void flush() {
+        synchronized (this.batches) {
+            for (Batch batch : this.batches.values()) {
+                dispatch(batch);
+            }
+            this.batches.clear();
+        }
+    }
+
+    /**
+     * Publishes all the pending batches and releases the resources of the coalescer.
+     * Payloads published afterwards are no longer coalesced.
+     */
+    public void close() {
+        synchronized (this.batches) {
+            for (Batch batch : this.batches.values()) {
+                dispatch(batch);
+            }
+            this.batches.clear();
+            this.closed = true;
+        }
+
+        // the timers of the dispatched batches are cancelled, only the pending publications are run
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Timeout while publishing the coalesced payloads");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // must be called while holding the lock of the pending batches
+    private PublishResult add(BatchKey key, byte[] entry) {
+        Batch batch = this.batches.get(key);
+        if (batch != null && batch.size + entry.length > this.maxSize) {
+            // the payload does not fit, publish the pending batch and start a new one
+            this.batches.remove(key);
+            dispatch(batch);
+            batch = null;
+        }
+        if (batch == null) {
+            batch = new Batch(key);
+            this.batches.put(key, batch);
+            final Batch scheduled = batch;
+            batch.timer = this.executor.schedule(() -> flush(scheduled), this.window, TimeUnit.MILLISECONDS);
+        }
+        batch.entries.add(entry);
+        batch.size += entry.length;
+        if (batch.entries.size() >= this.maxCount || batch.size >= this.maxSize) {
+            this.batches.remove(key);
+            dispatch(batch);
+        }
+        return batch.result;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this.batches) {
+            if (this.batches.get(batch.key) == batch) {
+                this.batches.remove(batch.key);
+                dispatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Hands a batch removed from the pending ones to the publishing thread. Called while holding the lock of the
+     * pending batches, so that the batches of a topic are queued in the order they are completed.
+     */
+    private void dispatch(Batch batch) {
+        if (batch.timer != null) {
+            batch.timer.cancel(false);
+        }
+        this.executor.execute(() -> publish(batch));
+    }
+
+    private void publish(Batch batch) {
+        CloudPayloadEncoder encoder = new CloudPayloadBatchEncoder(this.encoding, batch.entries);
+        if (this.compressionCodec != null && this.encoding == CloudPayloadEncoding.KURA_PROTOBUF) {
+            encoder = new CloudPayloadCompressedEncoder(encoder, this.compressionCodec);
+        }
+
+        CompletableFuture<Integer> stored = batch.result.getStored();
+        CompletableFuture<Integer> confirmed = batch.result.getConfirmed();
+        try {
+            byte[] bytes = encoder.getBytes();
+            logger.debug("Publishing {} coalesced payloads on topic {}", batch.entries.size(), batch.key.topic);
+
+            PublishResult result = this.dataService.publishAsync(batch.key.topic, bytes, batch.key.qos,
+                    batch.key.retain, batch.key.priority);
+            result.getStored().whenComplete((id, e) -> complete(stored, id, e));
+            result.getConfirmed().whenComplete((id, e) -> complete(confirmed, id, e));
+        } catch (Exception e) {
+            logger.warn("Failed to publish coalesced payloads on topic {}", batch.key.topic, e);
+            stored.completeExceptionally(e);
+            confirmed.completeExceptionally(e);
+        }
+    }
+
+    private static void complete(CompletableFuture<Integer> future, Integer id, Throwable e) {
+        if (e != null) {
+            future.completeExceptionally(e);
+        } else {
+            future.complete(id);
+        }
+    }
+
+    private static final class BatchKey {
+
+        private final String topic;
+        private final int qos;
+        private final boolean retain;
+        private final int priority;
+
+        BatchKey(String topic, int qos, boolean retain, int priority) {
+            this.topic = topic;
+            this.qos = qos;
+            this.retain = retain;
+            this.priority = priority;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.topic, this.qos, this.retain, this.priority);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return this.topic.equals(other.topic) && this.qos == other.qos && this.retain == other.retain
+                    && this.priority == other.priority;
+        }
+    }
+
+    private static final class Batch {
+
+        private final BatchKey key;
+        private final List<byte[]> entries = new ArrayList<>();
+        private final PublishResult result = new PublishResult(new CompletableFuture<>(), new CompletableFuture<>());
+        private int size;
+        private ScheduledFuture<?> timer;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
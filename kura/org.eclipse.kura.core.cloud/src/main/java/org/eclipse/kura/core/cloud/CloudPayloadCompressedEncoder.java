@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+
+/**
+ * Compresses the bytes produced by another encoder with a {@link CloudPayloadCompressionCodec}.
+ */
+public class CloudPayloadCompressedEncoder implements CloudPayloadEncoder {
+
+    private final CloudPayloadEncoder decorated;
+    private final CloudPayloadCompressionCodec codec;
+
+    public CloudPayloadCompressedEncoder(CloudPayloadEncoder decorated, CloudPayloadCompressionCodec codec) {
+        this.decorated = decorated;
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        byte[] source = this.decorated.getBytes();
+        byte[] compressed = this.codec.compress(source);
+
+        // Return compressed data only if shorter than uncompressed one
+        return compressed.length < source.length ? compressed : source;
+    }
+}
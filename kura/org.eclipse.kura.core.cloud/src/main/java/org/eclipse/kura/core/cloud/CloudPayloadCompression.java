@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the codec used to compress the outgoing payloads and the codecs recognized when decompressing the received
+ * ones.
+ */
+public class CloudPayloadCompression {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudPayloadCompression.class);
+
+    private static final CloudPayloadCompression DEFAULT = new CloudPayloadCompression(new CloudPayloadGZipCodec(),
+            new CloudPayloadDeflateCodec(null));
+
+    private final CloudPayloadCompressionCodec codec;
+    private final List<CloudPayloadCompressionCodec> codecs;
+
+    /**
+     * @param codec
+     *            the codec used to compress the payloads
+     * @param others
+     *            the other codecs recognized when decompressing
+     */
+    public CloudPayloadCompression(CloudPayloadCompressionCodec codec, CloudPayloadCompressionCodec... others) {
+        List<CloudPayloadCompressionCodec> list = new ArrayList<>(others.length + 1);
+        list.add(codec);
+        list.addAll(Arrays.asList(others));
+
+        this.codec = codec;
+        this.codecs = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the compression that uses GZip to compress the payloads and recognizes GZip and Deflate without
+     * a dictionary when decompressing.
+     *
+     * @return the default compression
+     */
+    public static CloudPayloadCompression getDefault() {
+        return DEFAULT;
+    }
+
+    static CloudPayloadCompression fromOptions(CloudServiceOptions options) {
+        CloudPayloadCompressionCodec gzip = new CloudPayloadGZipCodec();
+        CloudPayloadCompressionCodec deflate = new CloudPayloadDeflateCodec(options.getPayloadCompressionDictionary());
+
+        if (CloudPayloadDeflateCodec.NAME.equals(options.getPayloadCompressionCodec())) {
+            return new CloudPayloadCompression(deflate, gzip);
+        }
+        return new CloudPayloadCompression(gzip, deflate);
+    }
+
+    public CloudPayloadCompressionCodec getCodec() {
+        return this.codec;
+    }
+
+    public List<CloudPayloadCompressionCodec> getCodecs() {
+        return this.codecs;
+    }
+
+    /**
+     * Decompresses the data with the codec that recognizes it.
+     *
+     * @param bytes
+     *            the received data
+     * @return the decompressed data, or the received data if it is not compressed or cannot be decompressed
+     */
+    public byte[] decompress(byte[] bytes) {
+        for (CloudPayloadCompressionCodec candidate : this.codecs) {
+            if (candidate.isCompressed(bytes)) {
+                try {
+                    return candidate.decompress(bytes);
+                } catch (IOException e) {
+                    logger.info("Decompression failed");
+                    // do not rethrow the exception here as isCompressed may return some false positives
+                    return bytes;
+                }
+            }
+        }
+        return bytes;
+    }
+}
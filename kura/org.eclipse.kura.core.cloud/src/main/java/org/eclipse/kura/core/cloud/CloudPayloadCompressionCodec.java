@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+
+/**
+ * A compression codec for the encoded message payloads.
+ * Each codec must be able to recognize the data it compressed, so that a received message can be decompressed
+ * without knowing in advance which codec, if any, was used by the sender.
+ */
+public interface CloudPayloadCompressionCodec {
+
+    /**
+     * Returns the name of the codec, as used in the CloudService configuration.
+     *
+     * @return the codec name
+     */
+    public String getName();
+
+    /**
+     * Checks if the data has been compressed by this codec. The check is based on the first bytes of the data and
+     * may return some false positives.
+     *
+     * @param bytes
+     *            the received data
+     * @return true if the data looks like compressed by this codec
+     */
+    public boolean isCompressed(byte[] bytes);
+
+    /**
+     * Compresses the data. The implementations must be thread safe.
+     *
+     * @param source
+     *            the data to be compressed
+     * @return the compressed data
+     * @throws IOException
+     *             if the data cannot be compressed
+     */
+    public byte[] compress(byte[] source) throws IOException;
+
+    /**
+     * Decompresses data for which {@link #isCompressed(byte[])} returns true. The implementations must be thread
+     * safe.
+     *
+     * @param source
+     *            the compressed data
+     * @return the decompressed data
+     * @throws IOException
+     *             if the data cannot be decompressed
+     */
+    public byte[] decompress(byte[] source) throws IOException;
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A codec that compresses the payloads in the raw Deflate format, optionally with a preset dictionary.
+ * Small payloads do not carry enough data for Deflate to find repetitions, a dictionary built from
+ * payloads similar to the ones being sent provides them and also avoids the GZip header and trailer.
+ * <p>
+ * The compressed data starts with a six bytes header made of the {@code 'K' 'D'} magic and the Adler-32 checksum
+ * of the dictionary, or zero if no dictionary has been used. The receiver must know the dictionary to decompress the
+ * data. The codec remembers the last dictionaries it has been configured with, so that the messages compressed with
+ * them can still be decompressed after a dictionary change.
+ * <p>
+ * The {@link Deflater} and {@link Inflater} instances are kept per thread and reused across calls.
+ */
+public class CloudPayloadDeflateCodec implements CloudPayloadCompressionCodec {
+
+    public static final String NAME = "deflate";
+
+    /**
+     * The maximum useful size of a dictionary, that is the size of the Deflate window.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] MAGIC = { 'K', 'D' };
+    private static final int HEADER_LENGTH = MAGIC.length + 4;
+    private static final int NO_DICTIONARY = 0;
+    private static final int KNOWN_DICTIONARIES = 4;
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal
+            .withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private volatile Dictionary dictionary;
+    private final Map<Integer, byte[]> dictionaries = new LinkedHashMap<Integer, byte[]>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > KNOWN_DICTIONARIES;
+        }
+    };
+
+    /**
+     * Creates a codec.
+     *
+     * @param dictionary
+     *            the preset dictionary, or null to compress without a dictionary
+     */
+    public CloudPayloadDeflateCodec(byte[] dictionary) {
+        setDictionary(dictionary);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Returns the dictionary currently used to compress the payloads.
+     *
+     * @return a copy of the dictionary, or null if no dictionary is used
+     */
+    public byte[] getDictionary() {
+        Dictionary current = this.dictionary;
+        return current != null ? current.bytes.clone() : null;
+    }
+
+    /**
+     * Sets the dictionary used to compress the payloads. The previous dictionary can still be used to decompress
+     * data.
+     *
+     * @param dictionary
+     *            the new dictionary, or null to compress without a dictionary. Only the last
+     *            {@link #MAX_DICTIONARY_SIZE} bytes are used.
+     */
+    public void setDictionary(byte[] dictionary) {
+        if (dictionary == null || dictionary.length == 0) {
+            this.dictionary = null;
+            return;
+        }
+
+        byte[] bytes = Arrays.copyOfRange(dictionary, Math.max(0, dictionary.length - MAX_DICTIONARY_SIZE),
+                dictionary.length);
+        Dictionary current = new Dictionary(bytes);
+        synchronized (this.dictionaries) {
+            this.dictionaries.put(current.id, bytes);
+        }
+        this.dictionary = current;
+    }
+
+    @Override
+    public boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length > HEADER_LENGTH && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1];
+    }
+
+    @Override
+    public byte[] compress(byte[] source) throws IOException {
+        Dictionary current = this.dictionary;
+        byte[] compressed = deflate(deflaters.get(), source, current != null ? current.bytes : null, HEADER_LENGTH,
+                0);
+        compressed[0] = MAGIC[0];
+        compressed[1] = MAGIC[1];
+        writeInt(compressed, MAGIC.length, current != null ? current.id : NO_DICTIONARY);
+        return compressed;
+    }
+
+    @Override
+    public byte[] decompress(byte[] source) throws IOException {
+        if (!isCompressed(source)) {
+            throw new IOException("Not a Deflate compressed payload");
+        }
+
+        byte[] dictionaryBytes = null;
+        int dictionaryId = readInt(source, MAGIC.length);
+        if (dictionaryId != NO_DICTIONARY) {
+            synchronized (this.dictionaries) {
+                dictionaryBytes = this.dictionaries.get(dictionaryId);
+            }
+            if (dictionaryBytes == null) {
+                throw new IOException("Unknown compression dictionary " + Integer.toHexString(dictionaryId));
+            }
+        }
+
+        Inflater inflater = inflaters.get();
+        try {
+            if (dictionaryBytes != null) {
+                inflater.setDictionary(dictionaryBytes);
+            }
+            inflater.setInput(source, HEADER_LENGTH, source.length - HEADER_LENGTH);
+
+            byte[] buffer = buffers.get();
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = grow(buffer);
+                }
+                int count = inflater.inflate(buffer, length, buffer.length - length);
+                if (count == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated Deflate data");
+                }
+                length += count;
+            }
+            return Arrays.copyOf(buffer, length);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Deflates the data with a per thread {@link Deflater}.
+     *
+     * @return the compressed data, preceded and followed by the requested number of zeroed bytes
+     */
+    static byte[] deflate(Deflater deflater, byte[] source, byte[] dictionary, int headerLength, int trailerLength) {
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(source);
+            deflater.finish();
+
+            byte[] buffer = buffers.get();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = grow(buffer);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+
+            byte[] result = new byte[headerLength + length + trailerLength];
+            System.arraycopy(buffer, 0, result, headerLength, length);
+            return result;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | bytes[offset + 3] & 0xFF;
+    }
+
+    private static byte[] grow(byte[] buffer) {
+        byte[] grown = Arrays.copyOf(buffer, buffer.length * 2);
+        // do not keep large buffers around
+        if (grown.length <= MAX_RETAINED_BUFFER_SIZE) {
+            buffers.set(grown);
+        }
+        return grown;
+    }
+
+    private static final class Dictionary {
+
+        private final byte[] bytes;
+        private final int id;
+
+        private Dictionary(byte[] bytes) {
+            Adler32 checksum = new Adler32();
+            checksum.update(bytes, 0, bytes.length);
+            int value = (int) checksum.getValue();
+
+            this.bytes = bytes;
+            this.id = value != NO_DICTIONARY ? value : 1;
+        }
+    }
+}
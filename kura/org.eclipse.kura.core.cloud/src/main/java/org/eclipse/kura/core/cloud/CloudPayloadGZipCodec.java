@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.kura.core.util.GZipUtil;
+
+/**
+ * A codec that compresses the payloads in the GZip format, like {@link GZipUtil#compress(byte[])}, but keeping the
+ * {@link Deflater} instances per thread and reusing them across calls.
+ */
+public class CloudPayloadGZipCodec implements CloudPayloadCompressionCodec {
+
+    public static final String NAME = "gzip";
+
+    // same header written by the GZIPOutputStream
+    private static final byte[] HEADER = { (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal
+            .withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isCompressed(byte[] bytes) {
+        try {
+            return GZipUtil.isCompressed(bytes);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public byte[] compress(byte[] source) throws IOException {
+        byte[] compressed = CloudPayloadDeflateCodec.deflate(deflaters.get(), source, null, HEADER.length,
+                TRAILER_LENGTH);
+        System.arraycopy(HEADER, 0, compressed, 0, HEADER.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(source, 0, source.length);
+        int trailer = compressed.length - TRAILER_LENGTH;
+        writeIntLE(compressed, trailer, (int) crc.getValue());
+        writeIntLE(compressed, trailer + 4, source.length);
+        return compressed;
+    }
+
+    @Override
+    public byte[] decompress(byte[] source) throws IOException {
+        return GZipUtil.decompress(source);
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2016 Eurotech and/or its affiliates
+ * Copyright (c) 2011, 2017 Eurotech and/or its affiliates
  *
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
@@ -11,24 +11,9 @@
  *******************************************************************************/
 package org.eclipse.kura.core.cloud;
 
-import java.io.IOException;
-
-import org.eclipse.kura.core.util.GZipUtil;
-
-public class CloudPayloadGZipEncoder implements CloudPayloadEncoder {
-
-    private final CloudPayloadEncoder m_decorated;
+public class CloudPayloadGZipEncoder extends CloudPayloadCompressedEncoder {
 
     public CloudPayloadGZipEncoder(CloudPayloadEncoder decorated) {
-        this.m_decorated = decorated;
-    }
-
-    @Override
-    public byte[] getBytes() throws IOException {
-        byte[] source = this.m_decorated.getBytes();
-        byte[] compressed = GZipUtil.compress(source);
-
-        // Return gzip compressed data only if shorter than uncompressed one
-        return compressed.length < source.length ? compressed : source;
+        super(decorated, new CloudPayloadGZipCodec());
     }
 }
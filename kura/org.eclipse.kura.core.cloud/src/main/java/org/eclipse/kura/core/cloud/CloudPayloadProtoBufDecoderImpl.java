@@ -17,7 +17,6 @@ import java.util.Date;
 import org.eclipse.kura.KuraInvalidMessageException;
 import org.eclipse.kura.KuraInvalidMetricTypeException;
 import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
-import org.eclipse.kura.core.util.GZipUtil;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.message.KuraPosition;
 import org.slf4j.Logger;
@@ -31,9 +30,15 @@ public class CloudPayloadProtoBufDecoderImpl {
     private static final Logger s_logger = LoggerFactory.getLogger(CloudPayloadProtoBufDecoderImpl.class);
 
     private byte[] m_bytes;
+    private final CloudPayloadCompression m_compression;
 
     public CloudPayloadProtoBufDecoderImpl(byte[] bytes) {
+        this(bytes, CloudPayloadCompression.getDefault());
+    }
+
+    public CloudPayloadProtoBufDecoderImpl(byte[] bytes, CloudPayloadCompression compression) {
         this.m_bytes = bytes;
+        this.m_compression = compression;
     }
 
     /**
@@ -46,14 +51,7 @@ public class CloudPayloadProtoBufDecoderImpl {
      */
     public KuraPayload buildFromByteArray() throws KuraInvalidMessageException, IOException {
         // Check if a compressed payload and try to decompress it
-        if (GZipUtil.isCompressed(this.m_bytes)) {
-            try {
-                this.m_bytes = GZipUtil.decompress(this.m_bytes);
-            } catch (IOException e) {
-                s_logger.info("Decompression failed");
-                // do not rethrow the exception here as isCompressed may return some false positives
-            }
-        }
+        this.m_bytes = this.m_compression.decompress(this.m_bytes);
 
         // build the KuraPayloadProto.KuraPayload
         KuraPayloadProto.KuraPayload protoMsg = null;
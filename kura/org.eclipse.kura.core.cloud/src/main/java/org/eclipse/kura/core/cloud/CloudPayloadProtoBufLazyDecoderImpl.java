@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static com.google.protobuf.WireFormat.WIRETYPE_FIXED32;
+import static com.google.protobuf.WireFormat.WIRETYPE_FIXED64;
+import static com.google.protobuf.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+import static com.google.protobuf.WireFormat.WIRETYPE_VARINT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.kura.KuraInvalidMessageException;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.CodedInputStream;
+
+/**
+ * Decodes a Kura Protobuf message into a {@link KuraPayload} backed by the received bytes.
+ * The message is validated and scanned once, decoding only the timestamp and the position. The metrics are decoded
+ * from the received bytes on the first access to them and the body is copied only if requested
+ * through {@link KuraPayload#getBody()}: {@link KuraPayload#getBodyBuffer()} returns a read-only view of
+ * the received bytes.
+ * The decoded payload is equivalent to the one returned by the {@link CloudPayloadProtoBufDecoderImpl}.
+ */
+public class CloudPayloadProtoBufLazyDecoderImpl {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudPayloadProtoBufLazyDecoderImpl.class);
+
+    // field tags and metric types, see kurapayload.proto
+    private static final int PAYLOAD_TIMESTAMP_TAG = tag(1, WIRETYPE_VARINT);
+    private static final int PAYLOAD_POSITION_TAG = tag(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int PAYLOAD_METRIC_TAG = tag(5000, WIRETYPE_LENGTH_DELIMITED);
+    private static final int PAYLOAD_BODY_TAG = tag(5001, WIRETYPE_LENGTH_DELIMITED);
+
+    private static final int METRIC_NAME_TAG = tag(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_TYPE_TAG = tag(2, WIRETYPE_VARINT);
+    private static final int METRIC_DOUBLE_VALUE_TAG = tag(3, WIRETYPE_FIXED64);
+    private static final int METRIC_FLOAT_VALUE_TAG = tag(4, WIRETYPE_FIXED32);
+    private static final int METRIC_LONG_VALUE_TAG = tag(5, WIRETYPE_VARINT);
+    private static final int METRIC_INT_VALUE_TAG = tag(6, WIRETYPE_VARINT);
+    private static final int METRIC_BOOL_VALUE_TAG = tag(7, WIRETYPE_VARINT);
+    private static final int METRIC_STRING_VALUE_TAG = tag(8, WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_BYTES_VALUE_TAG = tag(9, WIRETYPE_LENGTH_DELIMITED);
+
+    private static final int TYPE_DOUBLE = 0;
+    private static final int TYPE_FLOAT = 1;
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_INT32 = 3;
+    private static final int TYPE_BOOL = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_BYTES = 6;
+
+    private static final int POSITION_LATITUDE_TAG = tag(1, WIRETYPE_FIXED64);
+    private static final int POSITION_LONGITUDE_TAG = tag(2, WIRETYPE_FIXED64);
+    private static final int POSITION_ALTITUDE_TAG = tag(3, WIRETYPE_FIXED64);
+    private static final int POSITION_PRECISION_TAG = tag(4, WIRETYPE_FIXED64);
+    private static final int POSITION_HEADING_TAG = tag(5, WIRETYPE_FIXED64);
+    private static final int POSITION_SPEED_TAG = tag(6, WIRETYPE_FIXED64);
+    private static final int POSITION_TIMESTAMP_TAG = tag(7, WIRETYPE_VARINT);
+    private static final int POSITION_SATELLITES_TAG = tag(8, WIRETYPE_VARINT);
+    private static final int POSITION_STATUS_TAG = tag(9, WIRETYPE_VARINT);
+
+    private static final byte[] BATCH_COUNT_METRIC_NAME = CloudPayloadBatchEncoder.BATCH_COUNT_METRIC
+            .getBytes(StandardCharsets.UTF_8);
+
+    private byte[] bytes;
+    private final CloudPayloadCompression compression;
+
+    public CloudPayloadProtoBufLazyDecoderImpl(byte[] bytes) {
+        this(bytes, CloudPayloadCompression.getDefault());
+    }
+
+    public CloudPayloadProtoBufLazyDecoderImpl(byte[] bytes, CloudPayloadCompression compression) {
+        this.bytes = bytes;
+        this.compression = compression;
+    }
+
+    /**
+     * Builds a {@link KuraPayload} backed by the byte array. The array must not be modified afterwards.
+     *
+     * @return the decoded payload
+     * @throws KuraInvalidMessageException
+     *             if the array is not a valid Kura Protobuf message
+     */
+    public KuraPayload buildFromByteArray() throws KuraInvalidMessageException {
+        try {
+            // Check if a compressed payload and try to decompress it
+            this.bytes = this.compression.decompress(this.bytes);
+
+            LazyKuraPayload payload = new LazyKuraPayload(this.bytes);
+            scan(payload);
+            return payload;
+        } catch (IOException e) {
+            throw new KuraInvalidMessageException(e);
+        }
+    }
+
+    private void scan(LazyKuraPayload payload) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(this.bytes);
+        int[] metrics = new int[16];
+        int metricCount = 0;
+        boolean batchCount = false;
+
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == PAYLOAD_TIMESTAMP_TAG) {
+                payload.setTimestamp(new Date(input.readInt64()));
+            } else if (tag == PAYLOAD_POSITION_TAG) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                payload.setPosition(readPosition(input));
+                input.popLimit(limit);
+            } else if (tag == PAYLOAD_METRIC_TAG) {
+                int length = input.readRawVarint32();
+                int offset = input.getTotalBytesRead();
+                int limit = input.pushLimit(length);
+                if (scanMetric(input)) {
+                    batchCount = true;
+                }
+                input.popLimit(limit);
+
+                if (metricCount * 2 == metrics.length) {
+                    metrics = Arrays.copyOf(metrics, metrics.length * 2);
+                }
+                metrics[metricCount * 2] = offset;
+                metrics[metricCount * 2 + 1] = length;
+                metricCount++;
+            } else if (tag == PAYLOAD_BODY_TAG) {
+                payload.bodyLength = input.readRawVarint32();
+                payload.bodyOffset = input.getTotalBytesRead();
+                input.skipRawBytes(payload.bodyLength);
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+
+        payload.metricRegions = metrics;
+        payload.metricCount = metricCount;
+        // a batch envelope carries only the batch format and count metrics and a body
+        payload.batch = batchCount && metricCount == 2 && payload.bodyOffset >= 0;
+    }
+
+    private static KuraPosition readPosition(CodedInputStream input) throws IOException {
+        KuraPosition position = new KuraPosition();
+
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == POSITION_LATITUDE_TAG) {
+                position.setLatitude(input.readDouble());
+            } else if (tag == POSITION_LONGITUDE_TAG) {
+                position.setLongitude(input.readDouble());
+            } else if (tag == POSITION_ALTITUDE_TAG) {
+                position.setAltitude(input.readDouble());
+            } else if (tag == POSITION_PRECISION_TAG) {
+                position.setPrecision(input.readDouble());
+            } else if (tag == POSITION_HEADING_TAG) {
+                position.setHeading(input.readDouble());
+            } else if (tag == POSITION_SPEED_TAG) {
+                position.setSpeed(input.readDouble());
+            } else if (tag == POSITION_TIMESTAMP_TAG) {
+                position.setTimestamp(new Date(input.readInt64()));
+            } else if (tag == POSITION_SATELLITES_TAG) {
+                position.setSatellites(input.readInt32());
+            } else if (tag == POSITION_STATUS_TAG) {
+                position.setStatus(input.readInt32());
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+
+        if (position.getLatitude() == null || position.getLongitude() == null) {
+            throw new IOException("Position latitude and longitude are required");
+        }
+        return position;
+    }
+
+    /**
+     * Checks the structure of a metric and the presence of the required fields without decoding its values.
+     *
+     * @return true if the metric is the {@link CloudPayloadBatchEncoder#BATCH_COUNT_METRIC}
+     */
+    private boolean scanMetric(CodedInputStream input) throws IOException {
+        boolean hasName = false;
+        boolean hasType = false;
+        boolean batchCount = false;
+
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == METRIC_NAME_TAG) {
+                hasName = true;
+                int length = input.readRawVarint32();
+                int offset = input.getTotalBytesRead();
+                input.skipRawBytes(length);
+                batchCount = isBatchCountMetric(offset, length);
+            } else {
+                if (tag == METRIC_TYPE_TAG) {
+                    hasType = true;
+                }
+                if (!input.skipField(tag)) {
+                    break;
+                }
+            }
+        }
+
+        if (!hasName || !hasType) {
+            throw new IOException("Metric name and type are required");
+        }
+        return batchCount;
+    }
+
+    private boolean isBatchCountMetric(int offset, int length) {
+        if (length != BATCH_COUNT_METRIC_NAME.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.bytes[offset + i] != BATCH_COUNT_METRIC_NAME[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a payload decoded by this decoder may be a batch envelope, that is if it carries a body and two
+     * metrics, one of them the {@link CloudPayloadBatchEncoder#BATCH_COUNT_METRIC}, without decoding its metrics.
+     *
+     * @param payload
+     *            a decoded payload
+     * @return false if the payload has been decoded by this decoder and it is not a batch envelope, true otherwise
+     */
+    static boolean mayBeBatch(KuraPayload payload) {
+        return !(payload instanceof LazyKuraPayload) || ((LazyKuraPayload) payload).batch;
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return fieldNumber << 3 | wireType;
+    }
+
+    /**
+     * A {@link KuraPayload} which decodes its metrics and copies its body from the received bytes on demand.
+     */
+    private static final class LazyKuraPayload extends KuraPayload {
+
+        private final byte[] bytes;
+
+        private int[] metricRegions;
+        private int metricCount;
+        private boolean metricsDecoded;
+
+        private boolean batch;
+
+        private int bodyOffset = -1;
+        private int bodyLength;
+        private boolean bodyCopied;
+
+        LazyKuraPayload(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public Object getMetric(String name) {
+            decodeMetrics();
+            return super.getMetric(name);
+        }
+
+        @Override
+        public void addMetric(String name, Object value) {
+            decodeMetrics();
+            super.addMetric(name, value);
+        }
+
+        @Override
+        public void removeMetric(String name) {
+            decodeMetrics();
+            super.removeMetric(name);
+        }
+
+        @Override
+        public void removeAllMetrics() {
+            decodeMetrics();
+            super.removeAllMetrics();
+        }
+
+        @Override
+        public Set<String> metricNames() {
+            decodeMetrics();
+            return super.metricNames();
+        }
+
+        @Override
+        public Iterator<String> metricsIterator() {
+            decodeMetrics();
+            return super.metricsIterator();
+        }
+
+        @Override
+        public Map<String, Object> metrics() {
+            decodeMetrics();
+            return super.metrics();
+        }
+
+        @Override
+        public synchronized byte[] getBody() {
+            if (!this.bodyCopied) {
+                this.bodyCopied = true;
+                if (this.bodyOffset >= 0) {
+                    super.setBody(Arrays.copyOfRange(this.bytes, this.bodyOffset, this.bodyOffset + this.bodyLength));
+                }
+            }
+            return super.getBody();
+        }
+
+        @Override
+        public synchronized void setBody(byte[] body) {
+            this.bodyCopied = true;
+            super.setBody(body);
+        }
+
+        @Override
+        public synchronized ByteBuffer getBodyBuffer() {
+            if (this.bodyCopied) {
+                return super.getBodyBuffer();
+            }
+            if (this.bodyOffset < 0) {
+                return null;
+            }
+            return ByteBuffer.wrap(this.bytes, this.bodyOffset, this.bodyLength).slice().asReadOnlyBuffer();
+        }
+
+        private synchronized void decodeMetrics() {
+            if (this.metricsDecoded) {
+                return;
+            }
+            this.metricsDecoded = true;
+
+            for (int i = 0; i < this.metricCount; i++) {
+                try {
+                    decodeMetric(this.metricRegions[i * 2], this.metricRegions[i * 2 + 1]);
+                } catch (IOException e) {
+                    // the structure of the metrics has been validated while scanning the message
+                    logger.warn("During deserialization, ignoring invalid metric", e);
+                }
+            }
+            this.metricRegions = null;
+        }
+
+        private void decodeMetric(int offset, int length) throws IOException {
+            CodedInputStream input = CodedInputStream.newInstance(this.bytes, offset, length);
+
+            String name = null;
+            int type = -1;
+            double doubleValue = 0;
+            float floatValue = 0;
+            long longValue = 0;
+            int intValue = 0;
+            boolean boolValue = false;
+            String stringValue = "";
+            byte[] bytesValue = new byte[0];
+
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (tag == METRIC_NAME_TAG) {
+                    name = input.readString();
+                } else if (tag == METRIC_TYPE_TAG) {
+                    type = input.readEnum();
+                } else if (tag == METRIC_DOUBLE_VALUE_TAG) {
+                    doubleValue = input.readDouble();
+                } else if (tag == METRIC_FLOAT_VALUE_TAG) {
+                    floatValue = input.readFloat();
+                } else if (tag == METRIC_LONG_VALUE_TAG) {
+                    longValue = input.readInt64();
+                } else if (tag == METRIC_INT_VALUE_TAG) {
+                    intValue = input.readInt32();
+                } else if (tag == METRIC_BOOL_VALUE_TAG) {
+                    boolValue = input.readBool();
+                } else if (tag == METRIC_STRING_VALUE_TAG) {
+                    stringValue = input.readString();
+                } else if (tag == METRIC_BYTES_VALUE_TAG) {
+                    bytesValue = input.readByteArray();
+                } else if (!input.skipField(tag)) {
+                    break;
+                }
+            }
+
+            switch (type) {
+            case TYPE_DOUBLE:
+                super.addMetric(name, doubleValue);
+                break;
+            case TYPE_FLOAT:
+                super.addMetric(name, floatValue);
+                break;
+            case TYPE_INT64:
+                super.addMetric(name, longValue);
+                break;
+            case TYPE_INT32:
+                super.addMetric(name, intValue);
+                break;
+            case TYPE_BOOL:
+                super.addMetric(name, boolValue);
+                break;
+            case TYPE_STRING:
+                super.addMetric(name, stringValue);
+                break;
+            case TYPE_BYTES:
+                super.addMetric(name, bytesValue);
+                break;
+            default:
+                logger.warn("During deserialization, ignoring metric named: {}. Unrecognized value type: {}", name,
+                        type);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static com.google.protobuf.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.kura.KuraInvalidMetricTypeException;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Encodes a {@link KuraPayload} with the Kura Protobuf schema writing the fields directly to a
+ * {@link CodedOutputStream}, without building the generated message.
+ * The sizes of the nested messages are computed in a first pass, so that the message is written
+ * in a single exactly sized array. The output is the same as the one of the {@link CloudPayloadProtoBufEncoderImpl}.
+ */
+public class CloudPayloadProtoBufStreamingEncoderImpl implements CloudPayloadEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudPayloadProtoBufStreamingEncoderImpl.class);
+
+    // field numbers and metric types, see kurapayload.proto
+    private static final int PAYLOAD_TIMESTAMP = 1;
+    private static final int PAYLOAD_POSITION = 2;
+    private static final int PAYLOAD_METRIC = 5000;
+    private static final int PAYLOAD_BODY = 5001;
+
+    private static final int METRIC_NAME = 1;
+    private static final int METRIC_TYPE = 2;
+    private static final int METRIC_DOUBLE_VALUE = 3;
+    private static final int METRIC_FLOAT_VALUE = 4;
+    private static final int METRIC_LONG_VALUE = 5;
+    private static final int METRIC_INT_VALUE = 6;
+    private static final int METRIC_BOOL_VALUE = 7;
+    private static final int METRIC_STRING_VALUE = 8;
+    private static final int METRIC_BYTES_VALUE = 9;
+
+    private static final int TYPE_DOUBLE = 0;
+    private static final int TYPE_FLOAT = 1;
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_INT32 = 3;
+    private static final int TYPE_BOOL = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_BYTES = 6;
+
+    private static final int POSITION_LATITUDE = 1;
+    private static final int POSITION_LONGITUDE = 2;
+    private static final int POSITION_ALTITUDE = 3;
+    private static final int POSITION_PRECISION = 4;
+    private static final int POSITION_HEADING = 5;
+    private static final int POSITION_SPEED = 6;
+    private static final int POSITION_TIMESTAMP = 7;
+    private static final int POSITION_SATELLITES = 8;
+    private static final int POSITION_STATUS = 9;
+
+    private static final ThreadLocal<MetricBuffer> metricBuffers = ThreadLocal.withInitial(MetricBuffer::new);
+
+    private final KuraPayload kuraPayload;
+
+    public CloudPayloadProtoBufStreamingEncoderImpl(KuraPayload kuraPayload) {
+        this.kuraPayload = kuraPayload;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        MetricBuffer metrics = metricBuffers.get();
+        try {
+            return encode(metrics);
+        } finally {
+            metrics.clear();
+        }
+    }
+
+    private byte[] encode(MetricBuffer metrics) throws IOException {
+        int size = 0;
+
+        if (this.kuraPayload.getTimestamp() != null) {
+            size += CodedOutputStream.computeInt64Size(PAYLOAD_TIMESTAMP, this.kuraPayload.getTimestamp().getTime());
+        }
+
+        KuraPosition position = this.kuraPayload.getPosition();
+        int positionSize = 0;
+        if (position != null) {
+            positionSize = computePositionSize(position);
+            size += computeLengthDelimitedSize(PAYLOAD_POSITION, positionSize);
+        }
+
+        for (final Map.Entry<String, Object> entry : this.kuraPayload.metrics().entrySet()) {
+            if (metrics.add(entry.getKey(), entry.getValue())) {
+                size += computeLengthDelimitedSize(PAYLOAD_METRIC, metrics.sizes[metrics.count - 1]);
+            }
+        }
+
+        byte[] body = this.kuraPayload.getBody();
+        if (body != null) {
+            size += CodedOutputStream.computeByteArraySize(PAYLOAD_BODY, body);
+        }
+
+        byte[] result = new byte[size];
+        CodedOutputStream output = CodedOutputStream.newInstance(result);
+
+        if (this.kuraPayload.getTimestamp() != null) {
+            output.writeInt64(PAYLOAD_TIMESTAMP, this.kuraPayload.getTimestamp().getTime());
+        }
+        if (position != null) {
+            output.writeTag(PAYLOAD_POSITION, WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(positionSize);
+            writePosition(output, position);
+        }
+        for (int i = 0; i < metrics.count; i++) {
+            output.writeTag(PAYLOAD_METRIC, WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(metrics.sizes[i]);
+            writeMetric(output, metrics, i);
+        }
+        if (body != null) {
+            output.writeByteArray(PAYLOAD_BODY, body);
+        }
+
+        output.checkNoSpaceLeft();
+        return result;
+    }
+
+    private static int computeLengthDelimitedSize(int fieldNumber, int size) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeRawVarint32Size(size) + size;
+    }
+
+    //
+    // Helper methods to encode the KuraMetrics
+    //
+    private static void writeMetric(CodedOutputStream output, MetricBuffer metrics, int i) throws IOException {
+        output.writeByteArray(METRIC_NAME, metrics.names[i]);
+        output.writeEnum(METRIC_TYPE, metrics.types[i]);
+
+        Object value = metrics.values[i];
+        switch (metrics.types[i]) {
+        case TYPE_STRING:
+            output.writeByteArray(METRIC_STRING_VALUE, metrics.strings[i]);
+            break;
+        case TYPE_DOUBLE:
+            output.writeDouble(METRIC_DOUBLE_VALUE, (Double) value);
+            break;
+        case TYPE_INT32:
+            output.writeInt32(METRIC_INT_VALUE, (Integer) value);
+            break;
+        case TYPE_FLOAT:
+            output.writeFloat(METRIC_FLOAT_VALUE, (Float) value);
+            break;
+        case TYPE_INT64:
+            output.writeInt64(METRIC_LONG_VALUE, (Long) value);
+            break;
+        case TYPE_BOOL:
+            output.writeBool(METRIC_BOOL_VALUE, (Boolean) value);
+            break;
+        default:
+            output.writeByteArray(METRIC_BYTES_VALUE, (byte[]) value);
+            break;
+        }
+    }
+
+    //
+    // Helper methods to encode the KuraPosition
+    //
+    private static int computePositionSize(KuraPosition position) throws IOException {
+        if (position.getLatitude() == null || position.getLongitude() == null) {
+            throw new IOException("Position latitude and longitude are required");
+        }
+
+        int size = CodedOutputStream.computeDoubleSize(POSITION_LATITUDE, position.getLatitude())
+                + CodedOutputStream.computeDoubleSize(POSITION_LONGITUDE, position.getLongitude());
+        if (position.getAltitude() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_ALTITUDE, position.getAltitude());
+        }
+        if (position.getPrecision() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_PRECISION, position.getPrecision());
+        }
+        if (position.getHeading() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_HEADING, position.getHeading());
+        }
+        if (position.getSpeed() != null) {
+            size += CodedOutputStream.computeDoubleSize(POSITION_SPEED, position.getSpeed());
+        }
+        if (position.getTimestamp() != null) {
+            size += CodedOutputStream.computeInt64Size(POSITION_TIMESTAMP, position.getTimestamp().getTime());
+        }
+        if (position.getSatellites() != null) {
+            size += CodedOutputStream.computeInt32Size(POSITION_SATELLITES, position.getSatellites());
+        }
+        if (position.getStatus() != null) {
+            size += CodedOutputStream.computeInt32Size(POSITION_STATUS, position.getStatus());
+        }
+        return size;
+    }
+
+    private static void writePosition(CodedOutputStream output, KuraPosition position) throws IOException {
+        output.writeDouble(POSITION_LATITUDE, position.getLatitude());
+        output.writeDouble(POSITION_LONGITUDE, position.getLongitude());
+        if (position.getAltitude() != null) {
+            output.writeDouble(POSITION_ALTITUDE, position.getAltitude());
+        }
+        if (position.getPrecision() != null) {
+            output.writeDouble(POSITION_PRECISION, position.getPrecision());
+        }
+        if (position.getHeading() != null) {
+            output.writeDouble(POSITION_HEADING, position.getHeading());
+        }
+        if (position.getSpeed() != null) {
+            output.writeDouble(POSITION_SPEED, position.getSpeed());
+        }
+        if (position.getTimestamp() != null) {
+            output.writeInt64(POSITION_TIMESTAMP, position.getTimestamp().getTime());
+        }
+        if (position.getSatellites() != null) {
+            output.writeInt32(POSITION_SATELLITES, position.getSatellites());
+        }
+        if (position.getStatus() != null) {
+            output.writeInt32(POSITION_STATUS, position.getStatus());
+        }
+    }
+
+    /**
+     * Per-thread buffer holding the metrics to be written along with their encoded names and sizes,
+     * reused across the encoded payloads.
+     */
+    private static final class MetricBuffer {
+
+        private byte[][] names = new byte[16][];
+        private byte[][] strings = new byte[16][];
+        private Object[] values = new Object[16];
+        private int[] types = new int[16];
+        private int[] sizes = new int[16];
+        private int count;
+
+        boolean add(String name, Object value) {
+            int type;
+            int valueSize;
+            byte[] string = null;
+            if (value instanceof String) {
+                type = TYPE_STRING;
+                string = ((String) value).getBytes(StandardCharsets.UTF_8);
+                valueSize = CodedOutputStream.computeByteArraySize(METRIC_STRING_VALUE, string);
+            } else if (value instanceof Double) {
+                type = TYPE_DOUBLE;
+                valueSize = CodedOutputStream.computeDoubleSize(METRIC_DOUBLE_VALUE, (Double) value);
+            } else if (value instanceof Integer) {
+                type = TYPE_INT32;
+                valueSize = CodedOutputStream.computeInt32Size(METRIC_INT_VALUE, (Integer) value);
+            } else if (value instanceof Float) {
+                type = TYPE_FLOAT;
+                valueSize = CodedOutputStream.computeFloatSize(METRIC_FLOAT_VALUE, (Float) value);
+            } else if (value instanceof Long) {
+                type = TYPE_INT64;
+                valueSize = CodedOutputStream.computeInt64Size(METRIC_LONG_VALUE, (Long) value);
+            } else if (value instanceof Boolean) {
+                type = TYPE_BOOL;
+                valueSize = CodedOutputStream.computeBoolSize(METRIC_BOOL_VALUE, (Boolean) value);
+            } else if (value instanceof byte[]) {
+                type = TYPE_BYTES;
+                valueSize = CodedOutputStream.computeByteArraySize(METRIC_BYTES_VALUE, (byte[]) value);
+            } else if (value == null) {
+                logger.warn("Received a metric with a null value!");
+                return false;
+            } else {
+                logger.error("During serialization, ignoring metric named: {}. Unrecognized value type: {}.", name,
+                        value.getClass().getName());
+                throw new RuntimeException(new KuraInvalidMetricTypeException(value.getClass().getName()));
+            }
+
+            if (this.count == this.names.length) {
+                grow();
+            }
+
+            byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+            this.names[this.count] = encodedName;
+            this.strings[this.count] = string;
+            this.values[this.count] = value;
+            this.types[this.count] = type;
+            this.sizes[this.count] = CodedOutputStream.computeByteArraySize(METRIC_NAME, encodedName)
+                    + CodedOutputStream.computeEnumSize(METRIC_TYPE, type) + valueSize;
+            this.count++;
+            return true;
+        }
+
+        void clear() {
+            // do not retain the payload data
+            Arrays.fill(this.names, 0, this.count, null);
+            Arrays.fill(this.strings, 0, this.count, null);
+            Arrays.fill(this.values, 0, this.count, null);
+            this.count = 0;
+        }
+
+        private void grow() {
+            int length = this.names.length * 2;
+            this.names = Arrays.copyOf(this.names, length);
+            this.strings = Arrays.copyOf(this.strings, length);
+            this.values = Arrays.copyOf(this.values, length);
+            this.types = Arrays.copyOf(this.types, length);
+            this.sizes = Arrays.copyOf(this.sizes, length);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import static org.eclipse.kura.cloud.CloudPayloadEncoding.KURA_PROTOBUF;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -67,6 +68,8 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
     private ComponentContext ctx;
 
     private CloudServiceOptions options;
+    private volatile CloudPayloadCompression compression = CloudPayloadCompression.getDefault();
+    private volatile CloudPayloadCoalescer payloadCoalescer;
 
     private DataService dataService;
     private SystemService systemService;
@@ -182,6 +185,8 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
         // save the bundle context and the properties
         this.ctx = componentContext;
         this.options = new CloudServiceOptions(properties, this.systemService);
+        this.compression = CloudPayloadCompression.fromOptions(this.options);
+        updatePayloadCoalescer();
 
         //
         // install event listener for GPS locked event
@@ -214,6 +219,8 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
 
         // Update properties and re-publish Birth certificate
         this.options = new CloudServiceOptions(properties, this.systemService);
+        this.compression = CloudPayloadCompression.fromOptions(this.options);
+        updatePayloadCoalescer();
         if (isConnected()) {
             try {
                 setupCloudConnection(false);
@@ -236,6 +243,11 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
 
         this.dataService.removeDataServiceListener(this);
 
+        if (this.payloadCoalescer != null) {
+            this.payloadCoalescer.close();
+            this.payloadCoalescer = null;
+        }
+
         // no need to release the cloud clients as the updated app
         // certificate is already published due the missing dependency
         // we only need to empty our CloudClient list
@@ -336,6 +348,15 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
         return this.options;
     }
 
+    /**
+     * Returns the coalescer of the payloads published asynchronously, if enabled in the configuration.
+     *
+     * @return the {@link CloudPayloadCoalescer} or null if coalescing is disabled.
+     */
+    CloudPayloadCoalescer getPayloadCoalescer() {
+        return this.payloadCoalescer;
+    }
+
     public void removeCloudClient(CloudClientImpl cloudClient) {
         // remove the client
         this.cloudClients.remove(cloudClient);
@@ -440,47 +461,53 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
         if (TOPIC_MQTT_APP.equals(kuraTopic.getApplicationId()) || TOPIC_BA_APP.equals(kuraTopic.getApplicationId())) {
             logger.info("Ignoring feedback message from {}", topic);
         } else {
-            KuraPayload kuraPayload = null;
+            List<KuraPayload> kuraPayloads = Collections.emptyList();
 
             if (this.options.getPayloadEncoding() == SIMPLE_JSON) {
-                kuraPayload = createKuraPayloadFromJson(payload);
+                kuraPayloads = createKuraPayloadsFromJson(topic, payload);
             } else if (this.options.getPayloadEncoding() == KURA_PROTOBUF) {
-                kuraPayload = createKuraPayloadFromProtoBuf(topic, payload);
+                kuraPayloads = createKuraPayloadsFromProtoBuf(topic, payload);
             }
 
-            for (CloudClientImpl cloudClient : this.cloudClients) {
-                if (cloudClient.getApplicationId().equals(kuraTopic.getApplicationId())) {
-                    try {
-                        if (this.options.getTopicControlPrefix().equals(kuraTopic.getPrefix())) {
-                            if (this.certificatesService == null) {
-                                ServiceReference<CertificatesService> sr = this.ctx.getBundleContext()
-                                        .getServiceReference(CertificatesService.class);
-                                if (sr != null) {
-                                    this.certificatesService = this.ctx.getBundleContext().getService(sr);
-                                }
-                            }
-                            boolean validMessage = false;
-                            if (this.certificatesService == null) {
-                                validMessage = true;
-                            } else if (this.certificatesService.verifySignature(kuraTopic, kuraPayload)) {
-                                validMessage = true;
-                            }
+            // coalesced messages are dispatched as separate payloads
+            for (KuraPayload kuraPayload : kuraPayloads) {
+                dispatchMessage(kuraTopic, kuraPayload, qos, retained);
+            }
+        }
+    }
 
-                            if (validMessage) {
-                                cloudClient.onControlMessageArrived(kuraTopic.getDeviceId(),
-                                        kuraTopic.getApplicationTopic(), kuraPayload, qos, retained);
-                            } else {
-                                logger.warn("Message verification failed! Not valid signature or message not signed.");
+    private void dispatchMessage(KuraTopic kuraTopic, KuraPayload kuraPayload, int qos, boolean retained) {
+        for (CloudClientImpl cloudClient : this.cloudClients) {
+            if (cloudClient.getApplicationId().equals(kuraTopic.getApplicationId())) {
+                try {
+                    if (this.options.getTopicControlPrefix().equals(kuraTopic.getPrefix())) {
+                        if (this.certificatesService == null) {
+                            ServiceReference<CertificatesService> sr = this.ctx.getBundleContext()
+                                    .getServiceReference(CertificatesService.class);
+                            if (sr != null) {
+                                this.certificatesService = this.ctx.getBundleContext().getService(sr);
                             }
+                        }
+                        boolean validMessage = false;
+                        if (this.certificatesService == null) {
+                            validMessage = true;
+                        } else if (this.certificatesService.verifySignature(kuraTopic, kuraPayload)) {
+                            validMessage = true;
+                        }
+
+                        if (validMessage) {
+                            cloudClient.onControlMessageArrived(kuraTopic.getDeviceId(),
+                                    kuraTopic.getApplicationTopic(), kuraPayload, qos, retained);
                         } else {
-                            cloudClient.onMessageArrived(kuraTopic.getDeviceId(), kuraTopic.getApplicationTopic(),
-                                    kuraPayload, qos, retained);
+                            logger.warn("Message verification failed! Not valid signature or message not signed.");
                         }
-                    } catch (Exception e) {
-                        logger.error("Error during CloudClientListener notification.", e);
+                    } else {
+                        cloudClient.onMessageArrived(kuraTopic.getDeviceId(), kuraTopic.getApplicationTopic(),
+                                kuraPayload, qos, retained);
                     }
+                } catch (Exception e) {
+                    logger.error("Error during CloudClientListener notification.", e);
                 }
-
             }
         }
     }
@@ -533,7 +560,7 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
 
     @Override
     public byte[] getBytes(KuraPayload kuraPayload, boolean gzipped) throws KuraException {
-        CloudPayloadEncoder encoder = new CloudPayloadProtoBufEncoderImpl(kuraPayload);
+        CloudPayloadEncoder encoder = new CloudPayloadProtoBufStreamingEncoderImpl(kuraPayload);
         if (gzipped) {
             encoder = new CloudPayloadGZipEncoder(encoder);
         }
@@ -555,7 +582,8 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
 
     @Override
     public KuraPayload buildFromByteArray(byte[] payload) throws KuraException {
-        CloudPayloadProtoBufDecoderImpl encoder = new CloudPayloadProtoBufDecoderImpl(payload);
+        CloudPayloadProtoBufLazyDecoderImpl encoder = new CloudPayloadProtoBufLazyDecoderImpl(payload,
+                this.compression);
         KuraPayload kuraPayload;
 
         try {
@@ -563,8 +591,6 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
             return kuraPayload;
         } catch (KuraInvalidMessageException e) {
             throw new KuraException(KuraErrorCode.DECODER_ERROR, e);
-        } catch (IOException e) {
-            throw new KuraException(KuraErrorCode.DECODER_ERROR, e);
         }
     }
 
@@ -657,6 +683,17 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
         publishLifeCycleMessage(topic, payload);
     }
 
+    private void updatePayloadCoalescer() {
+        // publish the pending batches with the previous configuration
+        if (this.payloadCoalescer != null) {
+            this.payloadCoalescer.close();
+            this.payloadCoalescer = null;
+        }
+        if (this.options.getPayloadCoalescingWindow() > 0) {
+            this.payloadCoalescer = new CloudPayloadCoalescer(this.dataService, this.options, this.compression);
+        }
+    }
+
     private KuraPayload createBirthPayload() {
         LifeCyclePayloadBuilder payloadBuilder = new LifeCyclePayloadBuilder(this);
         return payloadBuilder.buildBirthPayload();
@@ -690,9 +727,9 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
             return bytes;
         }
 
-        CloudPayloadEncoder encoder = new CloudPayloadProtoBufEncoderImpl(payload);
+        CloudPayloadEncoder encoder = new CloudPayloadProtoBufStreamingEncoderImpl(payload);
         if (this.options.getEncodeGzip()) {
-            encoder = new CloudPayloadGZipEncoder(encoder);
+            encoder = new CloudPayloadCompressedEncoder(encoder, this.compression.getCodec());
         }
 
         try {
@@ -711,11 +748,37 @@ public class CloudServiceImpl implements CloudService, DataServiceListener, Conf
         return CloudPayloadJsonDecoder.buildFromByteArray(payload);
     }
 
+    private List<KuraPayload> createKuraPayloadsFromJson(String topic, byte[] payload) {
+        if (CloudPayloadBatchDecoder.isJsonBatch(payload)) {
+            try {
+                return CloudPayloadBatchDecoder.splitJsonBatch(payload);
+            } catch (KuraInvalidMessageException e) {
+                logger.warn("Received coalesced message on topic {} that could not be split.", topic, e);
+                KuraPayload kuraPayload = new KuraPayload();
+                kuraPayload.setBody(payload);
+                return Collections.singletonList(kuraPayload);
+            }
+        }
+        return Collections.singletonList(createKuraPayloadFromJson(payload));
+    }
+
+    private List<KuraPayload> createKuraPayloadsFromProtoBuf(String topic, byte[] payload) {
+        KuraPayload kuraPayload = createKuraPayloadFromProtoBuf(topic, payload);
+        if (CloudPayloadBatchDecoder.isProtoBufBatch(kuraPayload)) {
+            try {
+                return CloudPayloadBatchDecoder.splitProtoBufBatch(kuraPayload);
+            } catch (KuraInvalidMessageException e) {
+                logger.warn("Received coalesced message on topic {} that could not be split.", topic, e);
+            }
+        }
+        return Collections.singletonList(kuraPayload);
+    }
+
     private KuraPayload createKuraPayloadFromProtoBuf(String topic, byte[] payload) {
         KuraPayload kuraPayload;
         try {
             // try to decode the message into an KuraPayload
-            kuraPayload = new CloudPayloadProtoBufDecoderImpl(payload).buildFromByteArray();
+            kuraPayload = new CloudPayloadProtoBufLazyDecoderImpl(payload, this.compression).buildFromByteArray();
         } catch (Exception e) {
             // Wrap the received bytes payload into an KuraPayload
             logger.debug("Received message on topic {} that could not be decoded. Wrapping it into an KuraPayload.",
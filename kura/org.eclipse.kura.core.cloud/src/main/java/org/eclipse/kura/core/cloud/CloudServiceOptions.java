@@ -17,6 +17,7 @@ import static org.eclipse.kura.core.cloud.CloudServiceLifecycleCertsPolicy.PUBLI
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Base64;
 import java.util.Map;
 
 import org.eclipse.kura.cloud.CloudPayloadEncoding;
@@ -48,6 +49,14 @@ public class CloudServiceOptions {
     private static final String ENABLE_DFLT_SUBSCRIPTIONS = "enable.default.subscriptions";
     private static final String BIRTH_CERT_POLICY = "birth.cert.policy";
     private static final String PAYLOAD_ENCODING = "payload.encoding";
+    private static final String PAYLOAD_COALESCING_WINDOW = "payload.coalescing.window";
+    private static final String PAYLOAD_COALESCING_MAX_COUNT = "payload.coalescing.max.count";
+    private static final String PAYLOAD_COALESCING_MAX_SIZE = "payload.coalescing.max.size";
+    private static final String PAYLOAD_COMPRESSION_CODEC = "payload.compression.codec";
+    private static final String PAYLOAD_COMPRESSION_DICTIONARY = "payload.compression.dictionary";
+
+    private static final int PAYLOAD_COALESCING_MAX_COUNT_DEFAULT = 100;
+    private static final int PAYLOAD_COALESCING_MAX_SIZE_DEFAULT = 65536;
 
     private static final int LIFECYCLE_QOS = 0;
     private static final int LIFECYCLE_PRIORITY = 0;
@@ -249,6 +258,86 @@ public class CloudServiceOptions {
         return result;
     }
 
+    /**
+     * Returns the time window, in milliseconds, within which the payloads published asynchronously on the same
+     * topic are coalesced into a single message. A value of zero, the default, disables the coalescing.
+     *
+     * @return an int value.
+     */
+    public int getPayloadCoalescingWindow() {
+        int window = 0;
+        if (this.properties != null && this.properties.get(PAYLOAD_COALESCING_WINDOW) != null
+                && this.properties.get(PAYLOAD_COALESCING_WINDOW) instanceof Integer) {
+            window = (Integer) this.properties.get(PAYLOAD_COALESCING_WINDOW);
+        }
+        return Math.max(window, 0);
+    }
+
+    /**
+     * Returns the maximum number of payloads coalesced into a single message.
+     *
+     * @return an int value.
+     */
+    public int getPayloadCoalescingMaxCount() {
+        int maxCount = PAYLOAD_COALESCING_MAX_COUNT_DEFAULT;
+        if (this.properties != null && this.properties.get(PAYLOAD_COALESCING_MAX_COUNT) != null
+                && this.properties.get(PAYLOAD_COALESCING_MAX_COUNT) instanceof Integer) {
+            maxCount = (Integer) this.properties.get(PAYLOAD_COALESCING_MAX_COUNT);
+        }
+        return maxCount;
+    }
+
+    /**
+     * Returns the maximum size, in bytes, of the uncompressed payloads coalesced into a single message.
+     *
+     * @return an int value.
+     */
+    public int getPayloadCoalescingMaxSize() {
+        int maxSize = PAYLOAD_COALESCING_MAX_SIZE_DEFAULT;
+        if (this.properties != null && this.properties.get(PAYLOAD_COALESCING_MAX_SIZE) != null
+                && this.properties.get(PAYLOAD_COALESCING_MAX_SIZE) instanceof Integer) {
+            maxSize = (Integer) this.properties.get(PAYLOAD_COALESCING_MAX_SIZE);
+        }
+        return maxSize;
+    }
+
+    /**
+     * Returns the name of the codec used to compress the outgoing payloads when the compression is enabled.
+     *
+     * @return the name of a {@link CloudPayloadCompressionCodec}.
+     */
+    public String getPayloadCompressionCodec() {
+        String codec = CloudPayloadGZipCodec.NAME;
+        if (this.properties != null && this.properties.get(PAYLOAD_COMPRESSION_CODEC) != null
+                && this.properties.get(PAYLOAD_COMPRESSION_CODEC) instanceof String) {
+            codec = (String) this.properties.get(PAYLOAD_COMPRESSION_CODEC);
+        }
+        if (!CloudPayloadGZipCodec.NAME.equals(codec) && !CloudPayloadDeflateCodec.NAME.equals(codec)) {
+            logger.warn("Unsupported payload compression codec {}, using {}", codec, CloudPayloadGZipCodec.NAME);
+            codec = CloudPayloadGZipCodec.NAME;
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the preset dictionary for the Deflate compression codec.
+     *
+     * @return the dictionary, or null if not configured or not valid Base64.
+     */
+    public byte[] getPayloadCompressionDictionary() {
+        byte[] dictionary = null;
+        if (this.properties != null && this.properties.get(PAYLOAD_COMPRESSION_DICTIONARY) != null
+                && this.properties.get(PAYLOAD_COMPRESSION_DICTIONARY) instanceof String) {
+            String value = ((String) this.properties.get(PAYLOAD_COMPRESSION_DICTIONARY)).trim();
+            try {
+                dictionary = value.isEmpty() ? null : Base64.getDecoder().decode(value);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Cannot parse the provided payload compression dictionary.", e);
+            }
+        }
+        return dictionary;
+    }
+
     public String getTopicSeparator() {
         return TOPIC_SEPARATOR;
     }
@@ -22,7 +22,7 @@ import org.eclipse.kura.KuraTimeoutException;
 import org.eclipse.kura.cloud.CloudCallService;
 import org.eclipse.kura.cloud.app.RequestIdGenerator;
 import org.eclipse.kura.core.cloud.CloudPayloadProtoBufDecoderImpl;
-import org.eclipse.kura.core.cloud.CloudPayloadProtoBufEncoderImpl;
+import org.eclipse.kura.core.cloud.CloudPayloadProtoBufStreamingEncoderImpl;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.listener.DataServiceListener;
 import org.eclipse.kura.message.KuraPayload;
@@ -116,7 +116,7 @@ public class CloudCallServiceImpl implements CloudCallService, DataServiceListen
         req.setRequestId(requestId);
         req.setRequesterClientId(CLIENT_ID_VAR_NAME);
 
-        CloudPayloadProtoBufEncoderImpl encoder = new CloudPayloadProtoBufEncoderImpl(req);
+        CloudPayloadProtoBufStreamingEncoderImpl encoder = new CloudPayloadProtoBufStreamingEncoderImpl(req);
         byte[] rawPayload;
         try {
             rawPayload = encoder.getBytes();
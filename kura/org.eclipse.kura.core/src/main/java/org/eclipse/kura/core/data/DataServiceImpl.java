@@ -12,12 +12,19 @@
 package org.eclipse.kura.core.data;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -36,11 +43,13 @@ import org.eclipse.kura.KuraTimeoutException;
 import org.eclipse.kura.KuraTooManyInflightMessagesException;
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.configuration.ConfigurationService;
+import org.eclipse.kura.core.data.store.ConcurrentDbDataStore;
 import org.eclipse.kura.core.data.store.DbDataStore;
 import org.eclipse.kura.core.internal.data.TokenBucket;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.DataTransportService;
 import org.eclipse.kura.data.DataTransportToken;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.data.listener.DataServiceListener;
 import org.eclipse.kura.data.transport.listener.DataTransportListener;
 import org.eclipse.kura.db.H2DbService;
@@ -80,10 +89,24 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     // A dedicated executor for the publishing task
     private ExecutorService publisherExecutor;
 
-    private DataStore store;
+    private volatile DataStore store;
+    private String storeTable;
 
     private Map<DataTransportToken, Integer> inFlightMsgIds;
 
+    // Futures of the messages published with publishAsync waiting for confirmation, by message ID
+    private final Map<Integer, CompletableFuture<Integer>> confirmFutures = new ConcurrentHashMap<>();
+
+    // Completes the confirmation futures, so that the callbacks of the callers never run while holding the
+    // DataService monitor or the memory buffer lock. It also periodically fails the futures of the messages
+    // that are no longer in the store.
+    private final ScheduledExecutorService confirmationExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> confirmationCheckFuture;
+
+    // Bounded in-memory buffer for low priority QoS 0 messages, null if disabled
+    private volatile BlockingQueue<DataMessage> memoryBuffer;
+    private final AtomicInteger memoryBufferMsgId = new AtomicInteger();
+
     private ScheduledExecutorService congestionExecutor;
     private ScheduledFuture<?> congestionFuture;
 
@@ -95,6 +118,10 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     private final Lock lock = new ReentrantLock();
     private boolean notifyPending;
     private final Condition lockCondition = this.lock.newCondition();
+    // Signaled when the in-flight window may have room again or a QoS 0 message is published, used by the flow
+    // control
+    private final Condition inFlightWindowCondition = this.lock.newCondition();
+    private boolean qos0Pending;
 
     private volatile AtomicBoolean publisherEnabled = new AtomicBoolean();
 
@@ -124,6 +151,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.congestionExecutor = Executors.newSingleThreadScheduledExecutor();
 
         createThrottle();
+        createMemoryBuffer();
         submitPublishingWork();
 
         String[] parts = pid.split("-");
@@ -131,7 +159,8 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         if (parts.length > 1) {
             table += "_" + parts[1];
         }
-        this.store = new DbDataStore(table);
+        this.storeTable = table;
+        this.store = createDataStore();
 
         restartDbServiceTracker(this.dataServiceOptions.getDbServiceInstancePid());
 
@@ -218,6 +247,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         } catch (KuraStoreException e) {
             logger.error("Failed to start store", e);
         }
+
+        // The store may have been replaced or may have lost messages while it was stopped
+        scheduleConfirmationCheck();
     }
 
     public synchronized void updated(Map<String, Object> properties) {
@@ -226,17 +258,32 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         stopConnectionMonitorTask();
 
         final String oldDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
+        final boolean oldConcurrentWrites = this.dataServiceOptions.isStoreConcurrentWrites();
 
         this.dataServiceOptions = new DataServiceOptions(properties);
 
         createThrottle();
+        createMemoryBuffer();
+        signalInFlightWindow();
 
         final String currentDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
 
-        if (oldDbServicePid.equals(currentDbServicePid)) {
+        final boolean storeChanged = oldConcurrentWrites != this.dataServiceOptions.isStoreConcurrentWrites();
+        if (storeChanged) {
+            logger.info("Store write mode changed, recreating the store...");
             if (this.dbService != null) {
+                this.store.stop();
+            }
+            this.store = createDataStore();
+        }
+
+        if (oldDbServicePid.equals(currentDbServicePid)) {
+            if (this.dbService != null && storeChanged) {
+                startDbStore();
+            } else if (this.dbService != null) {
                 this.store.update(this.dataServiceOptions.getStoreHousekeeperInterval(),
                         this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
+                scheduleConfirmationCheck();
             }
         } else {
             restartDbServiceTracker(currentDbServicePid);
@@ -265,6 +312,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             // Clean publisher thread shutdown
             this.publisherEnabled.set(false);
             signalPublisher();
+            signalInFlightWindow();
         } catch (InterruptedException e) {
             logger.info("Interrupted", e);
         }
@@ -272,8 +320,20 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         this.dataTransportService.removeDataTransportListener(this);
 
+        spillMemoryBuffer();
         this.store.stop();
 
+        // Confirmations can no longer be tracked, let the pending completions run before failing the others
+        this.confirmationExecutor.shutdown();
+        try {
+            this.confirmationExecutor.awaitTermination(TRANSPORT_TASK_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Integer messageId : new ArrayList<>(this.confirmFutures.keySet())) {
+            failConfirmation(messageId, new KuraStoreException("DataService deactivated"));
+        }
+
         stopDbServiceTracker();
     }
 
@@ -300,6 +360,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     public synchronized void unsetH2DbService(H2DbService dbService) {
         this.dbService = null;
         disconnect();
+        spillMemoryBuffer();
         this.store.stop();
     }
 
@@ -371,6 +432,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                 logger.info("New session established. Dropping all in-flight messages.");
                 try {
                     this.store.dropAllInFlightMessages();
+                    for (Integer messageId : this.inFlightMsgIds.values()) {
+                        failConfirmation(messageId, new KuraNotConnectedException("In-flight message dropped"));
+                    }
                     this.inFlightMsgIds.clear();
                 } catch (KuraStoreException e) {
                     logger.error("Failed to drop in-flight messages", e);
@@ -381,6 +445,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         // Notify the listeners
         this.dataServiceListeners.onConnectionEstablished();
 
+        signalInFlightWindow();
         signalPublisher();
     }
 
@@ -397,6 +462,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         logger.info("Notified disconnected");
         this.cloudConnectionStatusService.updateStatus(this, CloudConnectionStatusEnum.OFF);
 
+        spillMemoryBuffer();
+        signalInFlightWindow();
+
         // Notify the listeners
         this.dataServiceListeners.onDisconnected();
     }
@@ -428,6 +496,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         stopConnectionMonitorTask(); // Just in case...
         startConnectionMonitorTask();
 
+        spillMemoryBuffer();
+        signalInFlightWindow();
+
         // Notify the listeners
         this.dataServiceListeners.onConnectionLost(cause);
     }
@@ -466,6 +537,8 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                 logger.error("Cannot confirm message to store", e);
             }
 
+            completeConfirmation(messageId);
+
             // Notify the listeners
             if (confirmedMessage != null) {
                 String topic = confirmedMessage.getTopic();
@@ -477,6 +550,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         if (this.inFlightMsgIds.size() < this.dataServiceOptions.getMaxInFlightMessages()) {
             handleInFlightDecongestion();
+            signalInFlightWindow();
         }
 
         signalPublisher();
@@ -528,19 +602,75 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     @Override
     public int publish(String topic, byte[] payload, int qos, boolean retain, int priority) throws KuraStoreException {
 
+        BlockingQueue<DataMessage> buffer = this.memoryBuffer;
+        if (buffer != null && isMemoryBuffered(qos, priority)) {
+            DataMessage dataMsg = buildBufferedMessage(topic, payload, qos, retain, priority);
+            if (offerBufferedMessage(buffer, dataMsg)) {
+                logger.debug("Buffered message on topic :{}, priority: {}", topic, priority);
+                signalNewMessage(qos);
+                return dataMsg.getId();
+            }
+        }
+
         logger.info("Storing message on topic :{}, priority: {}", topic, priority);
 
         DataMessage dataMsg = this.store.store(topic, payload, qos, retain, priority);
         logger.info("Stored message on topic :{}, priority: {}", topic, priority);
 
-        signalPublisher();
+        signalNewMessage(qos);
 
         return dataMsg.getId();
     }
 
+    @Override
+    public PublishResult publishAsync(String topic, byte[] payload, int qos, boolean retain, int priority) {
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+
+        final CompletableFuture<Integer> stored = new CompletableFuture<>();
+        final CompletableFuture<Integer> confirmed = new CompletableFuture<>();
+
+        BlockingQueue<DataMessage> buffer = this.memoryBuffer;
+        if (buffer != null && isMemoryBuffered(qos, priority)) {
+            DataMessage dataMsg = buildBufferedMessage(topic, payload, qos, retain, priority);
+            // Track the message before the publisher can see it
+            this.confirmFutures.put(dataMsg.getId(), confirmed);
+            if (offerBufferedMessage(buffer, dataMsg)) {
+                logger.debug("Buffered message on topic :{}, priority: {}", topic, priority);
+                signalNewMessage(qos);
+                stored.complete(dataMsg.getId());
+                return new PublishResult(stored, confirmed);
+            }
+            this.confirmFutures.remove(dataMsg.getId());
+        }
+
+        logger.debug("Storing message on topic :{}, priority: {}", topic, priority);
+
+        this.store.storeAsync(topic, payload, qos, retain, priority,
+                message -> this.confirmFutures.put(message.getId(), confirmed)).whenComplete((message, e) -> {
+                    if (e != null) {
+                        logger.warn("Cannot store message on topic :{}", topic, e);
+                        stored.completeExceptionally(e);
+                        confirmed.completeExceptionally(e);
+                        return;
+                    }
+                    logger.debug("Stored message on topic :{}, priority: {}", topic, priority);
+                    signalNewMessage(qos);
+                    stored.complete(message.getId());
+                });
+
+        return new PublishResult(stored, confirmed);
+    }
+
     @Override
     public List<Integer> getUnpublishedMessageIds(String topicRegex) throws KuraStoreException {
         List<DataMessage> messages = this.store.allUnpublishedMessagesNoPayload();
+        BlockingQueue<DataMessage> buffer = this.memoryBuffer;
+        if (buffer != null) {
+            messages = new ArrayList<>(messages);
+            messages.addAll(buffer);
+        }
         return buildMessageIds(messages, topicRegex);
     }
 
@@ -550,6 +680,12 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         return buildMessageIds(messages, topicRegex);
     }
 
+    @Override
+    public int getInFlightMessageCount() {
+        Map<DataTransportToken, Integer> inFlight = this.inFlightMsgIds;
+        return inFlight != null ? inFlight.size() : 0;
+    }
+
     @Override
     public List<Integer> getDroppedInFlightMessageIds(String topicRegex) throws KuraStoreException {
         List<DataMessage> messages = this.store.allDroppedInFlightMessagesNoPayload();
@@ -563,6 +699,29 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.lock.unlock();
     }
 
+    private void signalNewMessage(int qos) {
+        this.lock.lock();
+        this.notifyPending = true;
+        this.lockCondition.signal();
+        if (qos == 0) {
+            // QoS 0 messages are still published while the in-flight window is full
+            this.qos0Pending = true;
+            this.inFlightWindowCondition.signal();
+        }
+        this.lock.unlock();
+    }
+
+    private void signalInFlightWindow() {
+        this.lock.lock();
+        this.inFlightWindowCondition.signal();
+        this.lock.unlock();
+    }
+
+    private boolean isInFlightWindowFull() {
+        return this.inFlightMsgIds != null
+                && this.inFlightMsgIds.size() >= this.dataServiceOptions.getMaxInFlightMessages();
+    }
+
     private boolean startConnectionMonitorTask() {
         if (this.connectionMonitorFuture != null && !this.connectionMonitorFuture.isDone()) {
             logger.error("Reconnect task already running");
@@ -659,6 +818,13 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         return autoConnect;
     }
 
+    private DataStore createDataStore() {
+        if (this.dataServiceOptions.isStoreConcurrentWrites()) {
+            return new ConcurrentDbDataStore(this.storeTable);
+        }
+        return new DbDataStore(this.storeTable);
+    }
+
     private void createThrottle() {
         if (this.dataServiceOptions.isRateLimitEnabled()) {
             int publishRate = this.dataServiceOptions.getRateLimitAverageRate();
@@ -672,6 +838,183 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
     }
 
+    private void createMemoryBuffer() {
+        int size = this.dataServiceOptions.getStoreMemoryBufferSize();
+        BlockingQueue<DataMessage> buffer = this.memoryBuffer;
+        if (buffer != null && buffer.size() + buffer.remainingCapacity() == size) {
+            return;
+        }
+
+        if (size > 0) {
+            logger.info("Using an in-memory buffer of {} messages for QoS 0 messages", size);
+            this.memoryBuffer = new ArrayBlockingQueue<>(size);
+        } else {
+            this.memoryBuffer = null;
+        }
+        if (buffer != null) {
+            spillMemoryBuffer(buffer);
+        }
+    }
+
+    /**
+     * Memory buffered messages are given negative IDs so that they never clash with the IDs generated by the
+     * store.
+     */
+    private int nextMemoryBufferMessageId() {
+        int id = this.memoryBufferMsgId.decrementAndGet();
+        if (id == Integer.MIN_VALUE) {
+            this.memoryBufferMsgId.compareAndSet(Integer.MIN_VALUE, 0);
+        }
+        return id;
+    }
+
+    private boolean isMemoryBuffered(int qos, int priority) {
+        return qos == 0 && priority >= this.dataServiceOptions.getStoreMemoryBufferMinPriority()
+                && this.dataTransportService.isConnected();
+    }
+
+    /**
+     * Adds the message to the memory buffer if it is eligible for buffering and the buffer has room.
+     * The check is done under the buffer lock, so that the message cannot be added to a buffer that has been
+     * spilled to the store in the meantime, because of a disconnection or of a configuration change.
+     *
+     * @return true if the message has been buffered, false if it must be stored
+     */
+    private boolean offerBufferedMessage(BlockingQueue<DataMessage> buffer, DataMessage message) {
+        synchronized (buffer) {
+            if (buffer != this.memoryBuffer || !isMemoryBuffered(message.getQos(), message.getPriority())) {
+                return false;
+            }
+            if (buffer.offer(message)) {
+                return true;
+            }
+        }
+        logger.debug("Memory buffer full, storing message on topic :{}", message.getTopic());
+        return false;
+    }
+
+    private DataMessage buildBufferedMessage(String topic, byte[] payload, int qos, boolean retain, int priority) {
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+
+        return new DataMessage.Builder(nextMemoryBufferMessageId()).withTopic(topic).withPayload(payload)
+                .withQos(qos).withRetain(retain).withPriority(priority).withCreatedOn(new Date())
+                .withPublishedMessageId(-1).build();
+    }
+
+    private void completeConfirmation(int messageId) {
+        CompletableFuture<Integer> confirmFuture = this.confirmFutures.remove(messageId);
+        if (confirmFuture != null) {
+            runConfirmationCallback(() -> confirmFuture.complete(messageId));
+        }
+    }
+
+    private void failConfirmation(int messageId, Throwable cause) {
+        CompletableFuture<Integer> confirmFuture = this.confirmFutures.remove(messageId);
+        if (confirmFuture != null) {
+            runConfirmationCallback(() -> confirmFuture.completeExceptionally(cause));
+        }
+    }
+
+    /**
+     * Completes a confirmation future on the confirmation executor, as the caller may be holding the DataService
+     * monitor. Once the service is deactivated the future is completed by the calling thread.
+     */
+    private void runConfirmationCallback(Runnable completion) {
+        try {
+            this.confirmationExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    private synchronized void scheduleConfirmationCheck() {
+        if (this.confirmationCheckFuture != null) {
+            this.confirmationCheckFuture.cancel(false);
+        }
+        try {
+            this.confirmationCheckFuture = this.confirmationExecutor.scheduleWithFixedDelay(
+                    this::failLostConfirmations, 0, this.dataServiceOptions.getStoreHousekeeperInterval(),
+                    TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("DataService deactivated, not checking the pending confirmations");
+        }
+    }
+
+    /**
+     * Fails the confirmation futures of the stored messages that are neither unpublished nor in-flight anymore.
+     * These messages have been deleted or dropped by the store, for example by the housekeeper, or belong to a
+     * store that has been replaced, and would never be confirmed.
+     * Runs under the DataService monitor, so that the messages being published or confirmed are not reported
+     * as lost.
+     */
+    private synchronized void failLostConfirmations() {
+        // Memory buffered messages have negative IDs and are not tracked by the store
+        Set<Integer> lostMsgIds = new HashSet<>();
+        for (Integer messageId : this.confirmFutures.keySet()) {
+            if (messageId >= 0) {
+                lostMsgIds.add(messageId);
+            }
+        }
+        if (lostMsgIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (DataMessage message : this.store.allUnpublishedMessagesNoPayload()) {
+                lostMsgIds.remove(message.getId());
+            }
+            for (DataMessage message : this.store.allInFlightMessagesNoPayload()) {
+                lostMsgIds.remove(message.getId());
+            }
+        } catch (KuraStoreException e) {
+            logger.debug("Cannot check the pending confirmations", e);
+            return;
+        }
+
+        for (Integer messageId : lostMsgIds) {
+            logger.warn("Message with ID: {} is no longer in the store, it will not be confirmed", messageId);
+            failConfirmation(messageId, new KuraStoreException("Message " + messageId + " no longer in the store"));
+        }
+    }
+
+    private void spillMemoryBuffer() {
+        BlockingQueue<DataMessage> buffer = this.memoryBuffer;
+        if (buffer != null) {
+            spillMemoryBuffer(buffer);
+        }
+    }
+
+    private void spillMemoryBuffer(BlockingQueue<DataMessage> buffer) {
+        List<DataMessage> messages = new ArrayList<>(buffer.size());
+        // Serialized with the publishers adding messages and with the publishing thread taking them
+        synchronized (buffer) {
+            buffer.drainTo(messages);
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        logger.info("Moving {} buffered messages to the store", messages.size());
+        for (DataMessage message : messages) {
+            storeBufferedMessage(message);
+        }
+    }
+
+    /**
+     * Moves a buffered message to the store. The message keeps its ID, so that the ID returned to the caller
+     * when the message was published is still reported by the listeners and still tracks its confirmation.
+     */
+    private void storeBufferedMessage(DataMessage message) {
+        try {
+            this.store.store(message);
+        } catch (KuraStoreException e) {
+            logger.warn("Cannot store buffered message on topic: {}, dropping it", message.getTopic(), e);
+            failConfirmation(message.getId(), e);
+        }
+    }
+
     private void stopConnectionMonitorTask() {
         if (this.connectionMonitorFuture != null && !this.connectionMonitorFuture.isDone()) {
 
@@ -714,6 +1057,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         if (token == null) {
             this.store.published(msgId);
             logger.debug("Published message with ID: {}", msgId);
+            completeConfirmation(msgId);
         } else {
 
             // Check if the token is already tracked in the map (in which case we are in trouble)
@@ -728,6 +1072,44 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
     }
 
+    // It's very important that the publishInternal and messageConfirmed methods are synchronized
+    private synchronized void publishInternal(List<DataMessage> messages, List<DataMessage> publishedMessages)
+            throws KuraException {
+
+        try {
+            for (DataMessage message : messages) {
+                logger.debug("Publishing message with ID: {} on topic: {}, priority: {}",
+                        new Object[] { message.getId(), message.getTopic(), message.getPriority() });
+
+                DataTransportToken token = this.dataTransportService.publish(message.getTopic(),
+                        message.getPayload(), message.getQos(), message.isRetain());
+
+                DataMessage.Builder builder = new DataMessage.Builder(message.getId()).withTopic(message.getTopic())
+                        .withQos(message.getQos()).withPriority(message.getPriority()).withPublishedMessageId(-1);
+                if (token != null) {
+                    // Check if the token is already tracked in the map (in which case we are in trouble)
+                    Integer trackedMsgId = this.inFlightMsgIds.get(token);
+                    if (trackedMsgId != null) {
+                        logger.error("Token already tracked: {} - {}", token.getSessionId(), token.getMessageId());
+                    }
+
+                    this.inFlightMsgIds.put(token, message.getId());
+                    builder.withPublishedMessageId(token.getMessageId()).withSessionId(token.getSessionId());
+                }
+                publishedMessages.add(builder.build());
+            }
+        } finally {
+            // Record whatever made it to the transport, even if the batch has been interrupted
+            this.store.published(publishedMessages);
+            logger.debug("Published {} messages", publishedMessages.size());
+            for (DataMessage message : publishedMessages) {
+                if (message.getQos() == 0) {
+                    completeConfirmation(message.getId());
+                }
+            }
+        }
+    }
+
     private List<Integer> buildMessageIds(List<DataMessage> messages, String topicRegex) {
         Pattern topicPattern = Pattern.compile(topicRegex);
         List<Integer> ids = new ArrayList<>();
@@ -786,27 +1168,74 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private final class PublishManager implements Runnable {
 
+        // Buffered and stored messages take turns, so that a backlog in the store does not starve the buffer
+        private boolean bufferTurn;
+
         @Override
         public void run() {
             Thread.currentThread().setName("DataServiceImpl:Submit");
-            while (DataServiceImpl.this.publisherEnabled.get()) {
+            while (DataServiceImpl.this.publisherEnabled.get() && !Thread.currentThread().isInterrupted()) {
                 long sleepingTime = -1;
                 boolean messagePublished = false;
 
-                if (DataServiceImpl.this.dataTransportService.isConnected()) {
+                if (DataServiceImpl.this.dataServiceOptions.isInFlightMessagesFlowControl()
+                        && DataServiceImpl.this.dataTransportService.isConnected() && isInFlightWindowFull()) {
+                    // Only the QoS 0 messages are published until the window has room again
                     try {
-                        DataMessage message = DataServiceImpl.this.store.getNextMessage();
-
-                        if (message != null) {
-                            checkInFlightMessages(message);
+                        sleepingTime = publishNextQos0();
+                    } catch (KuraNotConnectedException e) {
+                        logger.info("DataPublisherService is not connected");
+                    } catch (Exception e) {
+                        logger.error("Probably an unrecoverable exception", e);
+                    }
+                    if (sleepingTime == -1) {
+                        awaitInFlightWindow();
+                    } else if (sleepingTime > 0) {
+                        suspendPublisher(sleepingTime, TimeUnit.MILLISECONDS);
+                    }
+                    continue;
+                }
 
-                            if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled()
-                                    && message.getPriority() >= 5) {
-                                messagePublished = publishMessageTokenBucket(message);
-                                sleepingTime = DataServiceImpl.this.throttle.getTokenWaitTime();
+                if (DataServiceImpl.this.dataTransportService.isConnected()
+                        && DataServiceImpl.this.dataServiceOptions.getPublishBatchSize() > 1) {
+                    try {
+                        if (takeBufferTurn()) {
+                            sleepingTime = publishNextBuffered(
+                                    DataServiceImpl.this.dataServiceOptions.getPublishBatchSize());
+                        }
+                        if (sleepingTime != 0) {
+                            sleepingTime = publishNextBatch();
+                        }
+                        messagePublished = sleepingTime == 0;
+                    } catch (KuraNotConnectedException e) {
+                        logger.info("DataPublisherService is not connected");
+                    } catch (KuraTooManyInflightMessagesException e) {
+                        logger.info("Too many in-flight messages");
+                        handleInFlightCongestion();
+                    } catch (Exception e) {
+                        logger.error("Probably an unrecoverable exception", e);
+                    }
+                } else if (DataServiceImpl.this.dataTransportService.isConnected()) {
+                    try {
+                        if (takeBufferTurn() && publishNextBuffered(1) == 0) {
+                            messagePublished = true;
+                        } else {
+                            DataMessage message = DataServiceImpl.this.store.getNextMessage();
+
+                            if (message != null) {
+                                checkInFlightMessages(message);
+
+                                if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled()
+                                        && message.getPriority() >= 5) {
+                                    messagePublished = publishMessageTokenBucket(message);
+                                    sleepingTime = DataServiceImpl.this.throttle.getTokenWaitTime();
+                                } else {
+                                    publishMessageUnbound(message);
+                                    messagePublished = true;
+                                }
                             } else {
-                                publishMessageUnbound(message);
-                                messagePublished = true;
+                                sleepingTime = publishNextBuffered(1);
+                                messagePublished = sleepingTime == 0;
                             }
                         }
                     } catch (KuraNotConnectedException e) {
@@ -828,6 +1257,11 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             logger.debug("Exited publisher loop.");
         }
 
+        private boolean takeBufferTurn() {
+            this.bufferTurn = !this.bufferTurn;
+            return this.bufferTurn;
+        }
+
         private void checkInFlightMessages(DataMessage message) throws KuraTooManyInflightMessagesException {
             if (message.getQos() > 0 && DataServiceImpl.this.inFlightMsgIds
                     .size() >= DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages()) {
@@ -836,6 +1270,154 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             }
         }
 
+        /**
+         * Fetches the next batch of messages from the store and hands them to the transport back-to-back.
+         * The batch is cut short as soon as the in-flight window is full or the rate limiter runs out of tokens.
+         *
+         * @return 0 if at least one message has been published, otherwise the time in milliseconds the publisher
+         *         should be suspended for, -1 meaning until signaled
+         */
+        private long publishNextBatch() throws KuraException {
+            return publishBatch(DataServiceImpl.this.store
+                    .getNextMessages(DataServiceImpl.this.dataServiceOptions.getPublishBatchSize()));
+        }
+
+        /**
+         * Publishes the next QoS 0 messages, from the in-memory buffer and from the store, skipping the messages
+         * with QoS > 0 that are waiting for the in-flight window.
+         *
+         * @return 0 if at least one message has been published, otherwise the time in milliseconds the publisher
+         *         should be suspended for, -1 meaning until a message is confirmed or a QoS 0 message is published
+         */
+        private long publishNextQos0() throws KuraException {
+            int batchSize = DataServiceImpl.this.dataServiceOptions.getPublishBatchSize();
+            if (takeBufferTurn() && publishNextBuffered(batchSize) == 0) {
+                return 0;
+            }
+            return publishBatch(DataServiceImpl.this.store.getNextQos0Messages(batchSize));
+        }
+
+        private long publishBatch(List<DataMessage> messages) throws KuraException {
+
+            // The in-flight map can only shrink concurrently, so this is a conservative estimate
+            int window = DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages()
+                    - DataServiceImpl.this.inFlightMsgIds.size();
+            boolean congested = false;
+            boolean throttled = false;
+
+            List<DataMessage> batch = new ArrayList<>(messages.size());
+            for (DataMessage message : messages) {
+                if (message.getQos() > 0) {
+                    if (window <= 0) {
+                        congested = true;
+                        break;
+                    }
+                    window--;
+                }
+                if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled() && message.getPriority() >= 5
+                        && !DataServiceImpl.this.throttle.getToken()) {
+                    throttled = true;
+                    break;
+                }
+                batch.add(message);
+            }
+
+            if (messages.isEmpty()) {
+                return publishNextBuffered(DataServiceImpl.this.dataServiceOptions.getPublishBatchSize());
+            }
+
+            if (batch.isEmpty()) {
+                if (congested) {
+                    logger.info("Too many in-flight messages");
+                    handleInFlightCongestion();
+                }
+                return throttled ? DataServiceImpl.this.throttle.getTokenWaitTime() : -1;
+            }
+
+            List<DataMessage> publishedMessages = new ArrayList<>(batch.size());
+            try {
+                publishInternal(batch, publishedMessages);
+            } finally {
+                // Notify the listeners
+                for (DataMessage message : publishedMessages) {
+                    DataServiceImpl.this.dataServiceListeners.onMessagePublished(message.getId(),
+                            message.getTopic());
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Publishes up to maxCount messages from the in-memory buffer. Buffered messages are QoS 0 and are not
+         * tracked by the store.
+         *
+         * @return 0 if at least one message has been published, otherwise the time in milliseconds the publisher
+         *         should be suspended for, -1 meaning until signaled
+         */
+        private long publishNextBuffered(int maxCount) throws KuraException {
+            BlockingQueue<DataMessage> buffer = DataServiceImpl.this.memoryBuffer;
+            if (buffer == null) {
+                return -1;
+            }
+
+            int count = 0;
+            while (count < maxCount) {
+                DataMessage message;
+                // The lock only covers taking the message, the transport is not called while holding it
+                synchronized (buffer) {
+                    message = buffer.peek();
+                    if (message == null) {
+                        break;
+                    }
+                    if (DataServiceImpl.this.dataServiceOptions.isRateLimitEnabled() && message.getPriority() >= 5
+                            && !DataServiceImpl.this.throttle.getToken()) {
+                        return count > 0 ? 0 : DataServiceImpl.this.throttle.getTokenWaitTime();
+                    }
+                    buffer.poll();
+                }
+
+                try {
+                    DataServiceImpl.this.dataTransportService.publish(message.getTopic(), message.getPayload(),
+                            message.getQos(), message.isRetain());
+                } catch (KuraException e) {
+                    // Not handed to the transport, keep it for later
+                    storeBufferedMessage(message);
+                    signalPublisher();
+                    throw e;
+                }
+                count++;
+                completeConfirmation(message.getId());
+
+                // Notify the listeners
+                DataServiceImpl.this.dataServiceListeners.onMessagePublished(message.getId(), message.getTopic());
+            }
+            return count > 0 ? 0 : -1;
+        }
+
+        /**
+         * Blocks the publisher while the in-flight window is full, until a message is confirmed, a QoS 0 message is
+         * published or the connection state changes. New messages with QoS > 0 do not wake up the publisher.
+         */
+        private void awaitInFlightWindow() {
+            logger.debug("In-flight window full with {} messages, waiting for confirmations",
+                    getInFlightMessageCount());
+            handleInFlightCongestion();
+            try {
+                DataServiceImpl.this.lock.lock();
+                while (DataServiceImpl.this.publisherEnabled.get()
+                        && DataServiceImpl.this.dataTransportService.isConnected() && isInFlightWindowFull()
+                        && !DataServiceImpl.this.qos0Pending) {
+                    DataServiceImpl.this.inFlightWindowCondition.await();
+                }
+                DataServiceImpl.this.qos0Pending = false;
+            } catch (InterruptedException e) {
+                // the publisher is being stopped
+                Thread.currentThread().interrupt();
+            } finally {
+                DataServiceImpl.this.lock.unlock();
+            }
+        }
+
         private void suspendPublisher(long timeout, TimeUnit timeUnit) {
             if (!DataServiceImpl.this.publisherEnabled.get()) {
                 return;
@@ -29,9 +29,14 @@ public class DataServiceOptions {
     private static final String STORE_HOUSEKEEPER_INTERVAL_PROP_NAME = "store.housekeeper-interval";
     private static final String STORE_PURGE_AGE_PROP_NAME = "store.purge-age";
     private static final String STORE_CAPACITY_PROP_NAME = "store.capacity";
+    private static final String STORE_CONCURRENT_WRITES_PROP_NAME = "store.concurrent-writes";
+    private static final String STORE_MEMORY_BUFFER_SIZE_PROP_NAME = "store.memory-buffer.size";
+    private static final String STORE_MEMORY_BUFFER_MIN_PRIORITY_PROP_NAME = "store.memory-buffer.min-priority";
     private static final String REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.republish-on-new-session";
     private static final String MAX_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.max-number";
     private static final String IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_PROP_NAME = "in-flight-messages.congestion-timeout";
+    private static final String IN_FLIGHT_MSGS_FLOW_CONTROL_PROP_NAME = "in-flight-messages.flow-control";
+    private static final String PUBLISH_BATCH_SIZE_PROP_NAME = "publish.batch-size";
     private static final String RATE_LIMIT_ENABLE_PROP_NAME = "enable.rate.limit";
     private static final String RATE_LIMIT_AVERAGE_RATE_PROP_NAME = "rate.limit.average";
     private static final String RATE_LIMIT_TIME_UNIT_PROP_NAME = "rate.limit.time.unit";
@@ -46,9 +51,14 @@ public class DataServiceOptions {
     private static final int STORE_HOUSEKEEPER_INTERVAL_DEFAULT = 900;
     private static final int STORE_PURGE_AGE_DEFAULT = 60;
     private static final int STORE_CAPACITY_DEFAULT = 10000;
+    private static final boolean STORE_CONCURRENT_WRITES_DEFAULT = false;
+    private static final int STORE_MEMORY_BUFFER_SIZE_DEFAULT = 0;
+    private static final int STORE_MEMORY_BUFFER_MIN_PRIORITY_DEFAULT = 5;
     private static final boolean REPUBLISH_IN_FLIGHT_MSGS_DEFAULT = true;
     private static final int MAX_IN_FLIGHT_MSGS_DEFAULT = 9;
     private static final int IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_DEFAULT = 0;
+    private static final boolean IN_FLIGHT_MSGS_FLOW_CONTROL_DEFAULT = false;
+    private static final int PUBLISH_BATCH_SIZE_DEFAULT = 1;
     private static final boolean RATE_LIMIT_ENABLE_DEFAULT = true;
     private static final int RATE_LIMIT_AVERAGE_RATE_DEFAULT = 1;
     private static final String RATE_LIMIT_TIME_UNIT_DEFAULT = "SECONDS";
@@ -78,6 +88,20 @@ public class DataServiceOptions {
         return (int) this.properties.getOrDefault(STORE_CAPACITY_PROP_NAME, STORE_CAPACITY_DEFAULT);
     }
 
+    boolean isStoreConcurrentWrites() {
+        return (boolean) this.properties.getOrDefault(STORE_CONCURRENT_WRITES_PROP_NAME,
+                STORE_CONCURRENT_WRITES_DEFAULT);
+    }
+
+    int getStoreMemoryBufferSize() {
+        return (int) this.properties.getOrDefault(STORE_MEMORY_BUFFER_SIZE_PROP_NAME, STORE_MEMORY_BUFFER_SIZE_DEFAULT);
+    }
+
+    int getStoreMemoryBufferMinPriority() {
+        return (int) this.properties.getOrDefault(STORE_MEMORY_BUFFER_MIN_PRIORITY_PROP_NAME,
+                STORE_MEMORY_BUFFER_MIN_PRIORITY_DEFAULT);
+    }
+
     boolean isPublishInFlightMessages() {
         return (boolean) this.properties.getOrDefault(REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME,
                 REPUBLISH_IN_FLIGHT_MSGS_DEFAULT);
@@ -92,6 +116,15 @@ public class DataServiceOptions {
                 IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_DEFAULT);
     }
 
+    boolean isInFlightMessagesFlowControl() {
+        return (boolean) this.properties.getOrDefault(IN_FLIGHT_MSGS_FLOW_CONTROL_PROP_NAME,
+                IN_FLIGHT_MSGS_FLOW_CONTROL_DEFAULT);
+    }
+
+    int getPublishBatchSize() {
+        return (int) this.properties.getOrDefault(PUBLISH_BATCH_SIZE_PROP_NAME, PUBLISH_BATCH_SIZE_DEFAULT);
+    }
+
     boolean isAutoConnect() {
         return (boolean) this.properties.getOrDefault(AUTOCONNECT_PROP_NAME, AUTOCONNECT_PROP_DEFAULT);
     }
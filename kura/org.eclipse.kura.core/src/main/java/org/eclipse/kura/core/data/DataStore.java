@@ -12,6 +12,8 @@
 package org.eclipse.kura.core.data;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.eclipse.kura.KuraStoreException;
 import org.eclipse.kura.db.H2DbService;
@@ -49,6 +51,38 @@ public interface DataStore {
     public DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraStoreException;
 
+    /**
+     * Stores an MQTT message for deferred publication keeping its identifier, for example a message that was
+     * held in memory before being moved to the store. The store capacity is checked as in
+     * {@link #store(String, byte[], int, boolean, int)}.
+     * 
+     * @param message
+     *            the message to be stored, including its payload
+     * @return the stored message
+     * @throws KuraStoreException
+     *             if the message cannot be stored, e.g. because its identifier is already in use
+     */
+    public DataMessage store(DataMessage message) throws KuraStoreException;
+
+    /**
+     * Stores an MQTT message for deferred publication like {@link #store(String, byte[], int, boolean, int)},
+     * without blocking the caller until the message has been written if the implementation supports it.
+     * The onStored callback is invoked with the stored message before the message can be returned by
+     * {@link #getNextMessage()}, so that the caller can start tracking it before it is published.
+     * The returned future is completed with the stored message once it is available for publishing,
+     * or exceptionally if the message cannot be stored.
+     * 
+     * @param topic
+     * @param payload
+     * @param qos
+     * @param retain
+     * @param priority
+     * @param onStored
+     * @return
+     */
+    public CompletableFuture<DataMessage> storeAsync(String topic, byte[] payload, int qos, boolean retain,
+            int priority, Consumer<DataMessage> onStored);
+
     /**
      * Acknowledges the publication of the DataMessage with the given ID
      * associating it to the protocol (e.g. MQTT) message ID (QoS > 0).
@@ -71,6 +105,17 @@ public interface DataStore {
      */
     public void published(int msgId) throws KuraStoreException;
 
+    /**
+     * Acknowledges the publication of all the given DataMessages with a single
+     * batched update. The protocol message ID and the session ID of each
+     * message are stored as well; they are expected to be -1 and null
+     * respectively for messages published with QoS = 0.
+     * 
+     * @param messages
+     * @throws KuraStoreException
+     */
+    public void published(List<DataMessage> messages) throws KuraStoreException;
+
     /**
      * Acknowledges the delivery of the DataMessage published with the given
      * protocol (e.g. MQTT) message ID. This method is only called for messages
@@ -91,6 +136,28 @@ public interface DataStore {
      */
     public DataMessage getNextMessage() throws KuraStoreException;
 
+    /**
+     * Gets up to maxCount unpublished messages, in the same order in which
+     * they would be returned by subsequent calls to {@link #getNextMessage()}.
+     * 
+     * @param maxCount
+     *            the maximum number of messages to be returned
+     * @return the list of unpublished messages, empty if there are none
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> getNextMessages(int maxCount) throws KuraStoreException;
+
+    /**
+     * Gets up to maxCount unpublished messages with QoS 0, in the same order in which
+     * they would be returned by {@link #getNextMessages(int)}.
+     * 
+     * @param maxCount
+     *            the maximum number of messages to be returned
+     * @return the list of unpublished QoS 0 messages, empty if there are none
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> getNextQos0Messages(int maxCount) throws KuraStoreException;
+
     /**
      * Returns a message from the DataStore by its message id.
      * 
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.db.H2DbService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DbDataStore} with a separate write path.
+ * <p>
+ * Messages passed to {@link #store(String, byte[], int, boolean, int)} or to
+ * {@link #storeAsync(String, byte[], int, boolean, int, Consumer)} are queued to a single writer thread which
+ * inserts all the pending messages in one transaction (group commit). Producers therefore only wait for the
+ * writer and never for the store monitor, which is still used by the publisher and the housekeeper for reading and
+ * updating messages.
+ */
+public class ConcurrentDbDataStore extends DbDataStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentDbDataStore.class);
+
+    private static final int MAX_GROUP_COMMIT_SIZE = 256;
+
+    // Only used by the writer thread
+    private final Calendar utcCalendar = newUtcCalendar();
+
+    private final BlockingQueue<StoreRequest> storeQueue = new LinkedBlockingQueue<>();
+
+    // The instance used by the writer, cleared before the writer is stopped
+    private volatile H2DbService dbService;
+    private ExecutorService writerExecutor;
+
+    public ConcurrentDbDataStore(String table) {
+        super(table);
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Start/Stop
+    //
+    // ----------------------------------------------------------
+
+    @Override
+    public synchronized void start(H2DbService dbService, int houseKeeperInterval, int purgeAge, int capacity)
+            throws KuraStoreException {
+        super.start(dbService, houseKeeperInterval, purgeAge, capacity);
+        this.dbService = dbService;
+
+        if (this.writerExecutor != null) {
+            this.writerExecutor.shutdownNow();
+        }
+        this.writerExecutor = Executors.newSingleThreadExecutor();
+        this.writerExecutor.execute(new Writer());
+    }
+
+    @Override
+    public synchronized void stop() {
+        this.dbService = null;
+        if (this.writerExecutor != null) {
+            this.writerExecutor.shutdownNow();
+            this.writerExecutor = null;
+        }
+        failPendingRequests(new KuraStoreException("DbService instance not attached"));
+
+        super.stop();
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Message APIs
+    //
+    // ----------------------------------------------------------
+
+    /**
+     * Queues the message to the writer and blocks the caller until the transaction including it has been
+     * committed. The caller does not wait for the store monitor, but still waits for the writer: callers that
+     * must not block should use {@link #storeAsync(String, byte[], int, boolean, int, Consumer)} instead.
+     */
+    @Override
+    public DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+            throws KuraStoreException {
+        try {
+            return storeAsync(topic, payload, qos, retain, priority, message -> {
+            }).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KuraStoreException) {
+                throw (KuraStoreException) e.getCause();
+            }
+            throw new KuraStoreException(e.getCause(), "Cannot store message");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KuraStoreException(e, "Interrupted while storing message");
+        }
+    }
+
+    @Override
+    public CompletableFuture<DataMessage> storeAsync(String topic, byte[] payload, int qos, boolean retain,
+            int priority, Consumer<DataMessage> onStored) {
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+
+        StoreRequest request = new StoreRequest(topic, payload, qos, retain, priority, onStored);
+        if (this.dbService == null) {
+            request.result.completeExceptionally(new KuraStoreException("DbService instance not attached"));
+            return request.result;
+        }
+        this.storeQueue.add(request);
+
+        // The writer may have been stopped in the meantime
+        if (this.dbService == null) {
+            failPendingRequests(new KuraStoreException("DbService instance not attached"));
+        }
+
+        return request.result;
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods
+    //
+    // ------------------------------------------------------------------
+
+    private void failPendingRequests(KuraStoreException e) {
+        List<StoreRequest> pending = new ArrayList<>();
+        this.storeQueue.drainTo(pending);
+        for (StoreRequest request : pending) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    private void storeAll(H2DbService dbService, List<StoreRequest> requests) {
+        try {
+            storeAllInternal(dbService, requests);
+        } catch (SQLException e) {
+            // Try to reset the sequence generator and store the messages again.
+            if (isIdentityLimitExceeded(e)) {
+                logger.warn("Identity generator limit exceeded. Resetting it...");
+                try {
+                    resetIdentityGenerator();
+                    storeAllInternal(dbService, requests);
+                    return;
+                } catch (SQLException e1) {
+                    e = e1;
+                } catch (KuraStoreException e1) {
+                    failRequests(requests, e1);
+                    return;
+                }
+            }
+            logger.error("SQL error code: {}", e.getErrorCode());
+            failRequests(requests, new KuraStoreException(e, "Cannot store message"));
+        }
+    }
+
+    private static void failRequests(List<StoreRequest> requests, Exception e) {
+        for (StoreRequest request : requests) {
+            request.result.completeExceptionally(e);
+        }
+    }
+
+    private void storeAllInternal(H2DbService dbService, List<StoreRequest> requests) throws SQLException {
+        // null entries mark the messages rejected because of the store capacity
+        DataMessage[] messages = new DataMessage[requests.size()];
+
+        ResultSet rs = null;
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        PreparedStatement cstmt = null;
+        try {
+
+            conn = dbService.getConnection();
+            conn.setAutoCommit(false);
+
+            // The capacity is checked once per group
+            int count = getMessageCount(conn);
+            logger.debug("Store message count: {}", count);
+
+            int capacity = getCapacity();
+            pstmt = prepareStore(conn);
+            cstmt = conn.prepareStatement(SQL_IDENTITY);
+            for (int i = 0; i < messages.length; i++) {
+                StoreRequest request = requests.get(i);
+                // Priority 0 and 1 messages bypass the capacity check, see DbDataStore
+                if (request.priority != 0 && request.priority != 1 && count >= capacity) {
+                    continue;
+                }
+
+                setStoreParameters(pstmt, 1, request.topic, request.payload, request.qos, request.retain,
+                        request.priority, request.createdOn, this.utcCalendar);
+                pstmt.execute();
+
+                // retrieve message id
+                int messageId = -1;
+                rs = cstmt.executeQuery();
+                if (rs.next()) {
+                    messageId = rs.getInt(1);
+                }
+                dbService.close(rs);
+                rs = null;
+
+                messages[i] = request.toDataMessage(messageId);
+                count++;
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            dbService.rollback(conn);
+            throw e;
+        } finally {
+            dbService.close(rs);
+            dbService.close(cstmt, pstmt);
+            resetAutoCommit(conn);
+            dbService.close(conn);
+        }
+
+        // Complete the requests only once the transaction has been committed
+        for (int i = 0; i < messages.length; i++) {
+            StoreRequest request = requests.get(i);
+            if (messages[i] == null) {
+                logger.error("Store capacity exceeded");
+                request.result.completeExceptionally(new KuraStoreCapacityReachedException("Store capacity exceeded"));
+            } else {
+                try {
+                    request.onStored.accept(messages[i]);
+                } catch (RuntimeException e) {
+                    logger.warn("Unexpected exception while notifying stored message", e);
+                }
+                messageStored(messages[i].getId(), messages[i].getPriority(), messages[i].getQos());
+                request.result.complete(messages[i]);
+            }
+        }
+    }
+
+    private final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName("ConcurrentDbDataStore:Writer");
+            List<StoreRequest> requests = new ArrayList<>(MAX_GROUP_COMMIT_SIZE);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    requests.add(ConcurrentDbDataStore.this.storeQueue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                ConcurrentDbDataStore.this.storeQueue.drainTo(requests, MAX_GROUP_COMMIT_SIZE - 1);
+
+                H2DbService dbService = ConcurrentDbDataStore.this.dbService;
+                if (dbService == null) {
+                    failRequests(requests, new KuraStoreException("DbService instance not attached"));
+                } else {
+                    try {
+                        storeAll(dbService, requests);
+                    } catch (RuntimeException e) {
+                        logger.error("Unexpected exception while storing messages", e);
+                        failRequests(requests, e);
+                    }
+                }
+                requests.clear();
+            }
+            logger.debug("Exited writer loop.");
+        }
+    }
+
+    private static final class StoreRequest {
+
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+        private final boolean retain;
+        private final int priority;
+        private final Timestamp createdOn;
+        private final Consumer<DataMessage> onStored;
+        private final CompletableFuture<DataMessage> result = new CompletableFuture<>();
+
+        StoreRequest(String topic, byte[] payload, int qos, boolean retain, int priority,
+                Consumer<DataMessage> onStored) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+            this.priority = priority;
+            this.createdOn = new Timestamp(new Date().getTime());
+            this.onStored = onStored;
+        }
+
+        DataMessage toDataMessage(int messageId) {
+            return new DataMessage.Builder(messageId).withTopic(this.topic).withQos(this.qos)
+                    .withRetain(this.retain).withCreatedOn(this.createdOn).withPublishedMessageId(-1)
+                    .withPayload(this.payload).withPriority(this.priority).build();
+        }
+    }
+}
@@ -21,12 +21,18 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.eclipse.kura.KuraStoreCapacityReachedException;
 import org.eclipse.kura.KuraStoreException;
@@ -34,6 +40,7 @@ import org.eclipse.kura.core.data.DataMessage;
 import org.eclipse.kura.core.data.DataStore;
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.system.SystemService;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
@@ -49,21 +56,32 @@ public class DbDataStore implements DataStore {
 
     private static final String DATA_SERVICE_REPAIR_ENABLED_PROPNAME = "db.store.repair.enabled";
 
+    // H2 error code of a numeric value out of range, raised when the identity generator reaches its limit
+    private static final int IDENTITY_LIMIT_EXCEEDED = 22003;
+
+    static final String SQL_IDENTITY = "CALL IDENTITY();";
+
     private H2DbService dbService;
     private final Calendar utcCalendar;
     private ScheduledExecutorService houseKeeperExecutor;
     private ScheduledFuture<?> houseKeeperTask;
-    private int capacity;
+    // Stores the messages passed to storeAsync, its thread is only created on the first message
+    private volatile ExecutorService storeExecutor;
+    private volatile int capacity;
 
     private final String table;
 
+    // Unpublished message IDs in publishing order, so that the next messages can be loaded by primary key
+    private final UnpublishedMessageIndex unpublishedIndex = new UnpublishedMessageIndex();
+
     private final String sqlCreateTable;
     private final String sqlCreateIndex;
     private final String sqlMessageCount;
     private final String sqlResetId;
     private final String sqlStore;
+    private final String sqlStoreWithId;
     private final String sqlGetMessage;
-    private final String sqlGetNextMessage;
+    private final String sqlAllUnpublishedMessageIds;
     private final String sqlSetPublished;
     private final String sqlSetPublished2;
     private final String sqlSetConfirmed;
@@ -83,7 +101,7 @@ public class DbDataStore implements DataStore {
     // package level constructor to be invoked only by the factory
     public DbDataStore(String table) {
         // do not make this static as it may not be thread safe
-        this.utcCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        this.utcCalendar = newUtcCalendar();
 
         this.table = table;
 
@@ -95,11 +113,12 @@ public class DbDataStore implements DataStore {
         this.sqlResetId = "ALTER TABLE " + this.table + " ALTER COLUMN id RESTART WITH 1;";
         this.sqlStore = "INSERT INTO " + this.table
                 + " (topic, qos, retain, createdOn, publishedOn, publishedMessageId, confirmedOn, payload, priority, sessionId, droppedOn) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+        this.sqlStoreWithId = "INSERT INTO " + this.table
+                + " (id, topic, qos, retain, createdOn, publishedOn, publishedMessageId, confirmedOn, payload, priority, sessionId, droppedOn) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
         this.sqlGetMessage = "SELECT id, topic, qos, retain, createdOn, publishedOn, publishedMessageId, confirmedOn, payload, priority, sessionId, droppedOn FROM "
                 + this.table + " WHERE id = ?";
-        this.sqlGetNextMessage = "SELECT a.id, a.topic, a.qos, a.retain, a.createdOn, a.publishedOn, a.publishedMessageId, a.confirmedOn, a.payload, a.priority, a.sessionId, a.droppedOn FROM "
-                + this.table + " AS a JOIN (SELECT id, publishedOn FROM " + this.table
-                + " ORDER BY publishedOn ASC NULLS FIRST, priority ASC, createdOn ASC LIMIT 1) AS b WHERE a.id = b.id AND b.publishedOn IS NULL;";
+        this.sqlAllUnpublishedMessageIds = "SELECT id, priority, qos FROM " + this.table
+                + " WHERE publishedOn IS NULL ORDER BY priority ASC, createdOn ASC, id ASC;";
         this.sqlSetPublished = "UPDATE " + this.table
                 + " SET publishedOn = ?, publishedMessageId = ?, sessionId = ? WHERE id = ?;";
         this.sqlSetPublished2 = "UPDATE " + this.table + " SET publishedOn = ? WHERE id = ?;";
@@ -141,6 +160,7 @@ public class DbDataStore implements DataStore {
         this.dbService = dbService;
 
         this.houseKeeperExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.storeExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "DbDataStore:Writer"));
 
         //
         // Set up the schema tables required by the DataStore
@@ -154,12 +174,21 @@ public class DbDataStore implements DataStore {
             this.houseKeeperTask.cancel(true);
         }
         this.houseKeeperExecutor.shutdownNow();
+        // the pending messages are failed by the writer, since the DbService is detached
+        this.storeExecutor.shutdown();
         dbService = null;
     }
 
     private boolean isRepairEnabled() {
-        final BundleContext context = FrameworkUtil.getBundle(DbDataStore.class).getBundleContext();
+        final Bundle bundle = FrameworkUtil.getBundle(DbDataStore.class);
+        final BundleContext context = bundle != null ? bundle.getBundleContext() : null;
+        if (context == null) {
+            return false;
+        }
         ServiceReference<SystemService> reference = context.getServiceReference(SystemService.class);
+        if (reference == null) {
+            return false;
+        }
         SystemService systemService = context.getService(reference);
         if (systemService == null) {
             return false;
@@ -190,6 +219,8 @@ public class DbDataStore implements DataStore {
             createIndex(this.table + "_CONFIRMEDON", this.table, "(CONFIRMEDON DESC)");
             createIndex(this.table + "_DROPPEDON", this.table, "(DROPPEDON DESC)");
 
+            rebuildUnpublishedIndex();
+
             // Start the Housekeeper task
             this.houseKeeperTask = this.houseKeeperExecutor.scheduleWithFixedDelay(
                     new HouseKeeperTask(this, purgeAge, isRepairEnabled()), 1,    // start in one second
@@ -208,56 +239,126 @@ public class DbDataStore implements DataStore {
     // ----------------------------------------------------------
 
     private synchronized int getMessageCount() throws KuraStoreException {
-        ResultSet rs = null;
         Connection conn = null;
-        PreparedStatement stmt = null;
-        int count = -1;
         try {
 
             conn = getConnection();
-            stmt = conn.prepareStatement(this.sqlMessageCount);
-            rs = stmt.executeQuery();
-            if (rs.next()) {
-                count = rs.getInt(1);
-            }
+            return getMessageCount(conn);
         } catch (Exception e) {
             throw new KuraStoreException(e, "Cannot get message count");
         } finally {
-            close(rs);
-            close(stmt);
             close(conn);
         }
-
-        return count;
     }
 
-    private synchronized void resetIdentityGenerator() throws KuraStoreException {
+    synchronized void resetIdentityGenerator() throws KuraStoreException {
         execute(this.sqlResetId);
     }
 
     @Override
     public synchronized DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraStoreException {
-        if (dbService == null) {
-            throw new KuraStoreException("DbService instance not attached");
+        DataMessage message = storeWithRetry(topic, payload, qos, retain, priority);
+        if (message != null) {
+            messageStored(message.getId(), message.getPriority(), message.getQos());
         }
+        return message;
+    }
+
+    /**
+     * The message is written by a writer thread in submission order, the caller waits neither for the store
+     * monitor nor for the insert.
+     */
+    @Override
+    public CompletableFuture<DataMessage> storeAsync(String topic, byte[] payload, int qos, boolean retain,
+            int priority, Consumer<DataMessage> onStored) {
         if (topic == null || topic.trim().length() == 0) {
             throw new IllegalArgumentException("topic");
         }
 
-        // Priority 0 are used for life-cycle messages like birth and death certificates.
-        // Priority 1 are used for remove management by Cloudlet applications.
-        // For those messages, bypass the max message count check of the DB cache;
-        // we want to publish those message even if the db is full, so allow their storage.
-        if (priority != 0 && priority != 1) {
-            int count = getMessageCount();
-            logger.debug("Store message count: {}", count);
-            if (count >= this.capacity) {
-                logger.error("Store capacity exceeded");
-                throw new KuraStoreCapacityReachedException("Store capacity exceeded");
+        CompletableFuture<DataMessage> result = new CompletableFuture<>();
+        ExecutorService executor = this.storeExecutor;
+        if (executor == null) {
+            result.completeExceptionally(new KuraStoreException("DbService instance not attached"));
+            return result;
+        }
+        try {
+            executor.execute(() -> storeAsyncInternal(topic, payload, qos, retain, priority, onStored, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new KuraStoreException(e, "DbService instance not attached"));
+        }
+        return result;
+    }
+
+    private synchronized void storeAsyncInternal(String topic, byte[] payload, int qos, boolean retain,
+            int priority, Consumer<DataMessage> onStored, CompletableFuture<DataMessage> result) {
+        DataMessage message;
+        try {
+            message = storeWithRetry(topic, payload, qos, retain, priority);
+            if (message == null) {
+                throw new KuraStoreException("Cannot load stored message");
             }
+        } catch (KuraStoreException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        try {
+            onStored.accept(message);
+        } catch (RuntimeException e) {
+            logger.warn("Unexpected exception while notifying stored message", e);
+        }
+        messageStored(message.getId(), message.getPriority(), message.getQos());
+        result.complete(message);
+    }
+
+    @Override
+    public synchronized DataMessage store(DataMessage message) throws KuraStoreException {
+        if (dbService == null) {
+            throw new KuraStoreException("DbService instance not attached");
+        }
+        if (message.getTopic() == null || message.getTopic().trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+        checkCapacity(message.getPriority());
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+
+            conn = getConnection();
+
+            pstmt = conn.prepareStatement(this.sqlStoreWithId);
+            pstmt.setInt(1, message.getId());                   // id
+            setStoreParameters(pstmt, 2, message.getTopic(), message.getPayload(), message.getQos(),
+                    message.isRetain(), message.getPriority(), new Timestamp(message.getCreatedOn().getTime()),
+                    this.utcCalendar);
+            pstmt.execute();
+
+            conn.commit();
+        } catch (SQLException e) {
+            rollback(conn);
+            throw new KuraStoreException(e, "Cannot store message with ID " + message.getId());
+        } finally {
+            close(pstmt);
+            close(conn);
         }
 
+        DataMessage stored = get(message.getId());
+        messageStored(stored.getId(), stored.getPriority(), stored.getQos());
+        return stored;
+    }
+
+    private synchronized DataMessage storeWithRetry(String topic, byte[] payload, int qos, boolean retain,
+            int priority) throws KuraStoreException {
+        if (dbService == null) {
+            throw new KuraStoreException("DbService instance not attached");
+        }
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+        checkCapacity(priority);
+
         DataMessage message = null;
         try {
             message = storeInternal(topic, payload, qos, retain, priority);
@@ -267,8 +368,7 @@ public class DbDataStore implements DataStore {
             Throwable cause = e.getCause();
             if (cause instanceof SQLException) {
                 SQLException sqle = (SQLException) cause;
-                int errorCode = sqle.getErrorCode();
-                if (errorCode == 22003) {
+                if (isIdentityLimitExceeded(sqle)) {
                     logger.warn("Identity generator limit exceeded. Resetting it...");
                     resetIdentityGenerator();
                     message = storeInternal(topic, payload, qos, retain, priority);
@@ -283,6 +383,21 @@ public class DbDataStore implements DataStore {
         return message;
     }
 
+    private synchronized void checkCapacity(int priority) throws KuraStoreException {
+        // Priority 0 are used for life-cycle messages like birth and death certificates.
+        // Priority 1 are used for remove management by Cloudlet applications.
+        // For those messages, bypass the max message count check of the DB cache;
+        // we want to publish those message even if the db is full, so allow their storage.
+        if (priority != 0 && priority != 1) {
+            int count = getMessageCount();
+            logger.debug("Store message count: {}", count);
+            if (count >= this.capacity) {
+                logger.error("Store capacity exceeded");
+                throw new KuraStoreCapacityReachedException("Store capacity exceeded");
+            }
+        }
+    }
+
     private synchronized DataMessage storeInternal(String topic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraStoreException {
         if (topic == null || topic.trim().length() == 0) {
@@ -301,22 +416,12 @@ public class DbDataStore implements DataStore {
             conn = getConnection();
 
             // store message
-            pstmt = conn.prepareStatement(this.sqlStore);
-            pstmt.setString(1, topic);				// topic
-            pstmt.setInt(2, qos);				// qos
-            pstmt.setBoolean(3, retain);				// retain
-            pstmt.setTimestamp(4, now, this.utcCalendar); // createdOn
-            pstmt.setTimestamp(5, null);				// publishedOn
-            pstmt.setInt(6, -1);                 // publishedMessageId
-            pstmt.setTimestamp(7, null);				// confirmedOn
-            pstmt.setBytes(8, payload);			// payload
-            pstmt.setInt(9, priority);            // priority
-            pstmt.setString(10, null);               // sessionId
-            pstmt.setTimestamp(11, null);				// droppedOn
+            pstmt = prepareStore(conn);
+            setStoreParameters(pstmt, 1, topic, payload, qos, retain, priority, now, this.utcCalendar);
             pstmt.execute();
 
             // retrieve message id
-            cstmt = conn.prepareStatement("CALL IDENTITY();");
+            cstmt = conn.prepareStatement(SQL_IDENTITY);
             rs = cstmt.executeQuery();
             if (rs != null && rs.next()) {
                 messageId = rs.getInt(1);
@@ -363,26 +468,66 @@ public class DbDataStore implements DataStore {
 
     @Override
     public synchronized DataMessage getNextMessage() throws KuraStoreException {
-        DataMessage msg = null;
+        List<DataMessage> msgs = getNextMessages(1);
+        return msgs.isEmpty() ? null : msgs.get(0);
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int maxCount) throws KuraStoreException {
+        return getNextMessages(maxCount, false);
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextQos0Messages(int maxCount) throws KuraStoreException {
+        return getNextMessages(maxCount, true);
+    }
+
+    private List<DataMessage> getNextMessages(int maxCount, boolean qos0) throws KuraStoreException {
+        List<DataMessage> msgs = new ArrayList<DataMessage>();
         ResultSet rs = null;
         Connection conn = null;
         PreparedStatement stmt = null;
         try {
 
             conn = getConnection();
-            stmt = conn.prepareStatement(this.sqlGetNextMessage);
-            rs = stmt.executeQuery();
-            if (rs != null && rs.next()) {
-                msg = buildDataMessage(rs);
+            stmt = conn.prepareStatement(this.sqlGetMessage);
+
+            // Stale entries are removed from the index and replaced by the following ones
+            Set<Integer> loadedIds = new HashSet<Integer>();
+            boolean stale = true;
+            while (stale && msgs.size() < maxCount) {
+                stale = false;
+                List<Integer> ids = qos0 ? this.unpublishedIndex.nextQos0(maxCount)
+                        : this.unpublishedIndex.next(maxCount);
+                for (Integer id : ids) {
+                    if (loadedIds.contains(id)) {
+                        continue;
+                    }
+
+                    stmt.setInt(1, id);
+                    rs = stmt.executeQuery();
+                    DataMessage msg = rs.next() ? buildDataMessage(rs) : null;
+                    close(rs);
+                    rs = null;
+
+                    if (msg != null && msg.getPublishedOn() == null) {
+                        msgs.add(msg);
+                        loadedIds.add(id);
+                    } else {
+                        // The message has been published or deleted in the meantime
+                        this.unpublishedIndex.remove(id);
+                        stale = true;
+                    }
+                }
             }
         } catch (Exception e) {
-            throw new KuraStoreException(e, "Cannot get message next message");
+            throw new KuraStoreException(e, "Cannot get next messages");
         } finally {
             close(rs);
             close(stmt);
             close(conn);
         }
-        return msg;
+        return msgs;
     }
 
     @Override
@@ -402,6 +547,7 @@ public class DbDataStore implements DataStore {
 
             stmt.execute();
             conn.commit();
+            this.unpublishedIndex.remove(msgId);
         } catch (SQLException e) {
             rollback(conn);
             throw new KuraStoreException(e, "Cannot update timestamp");
@@ -414,6 +560,45 @@ public class DbDataStore implements DataStore {
     @Override
     public synchronized void published(int msgId) throws KuraStoreException {
         updateTimestamp(this.sqlSetPublished2, msgId);
+        this.unpublishedIndex.remove(msgId);
+    }
+
+    @Override
+    public synchronized void published(List<DataMessage> messages) throws KuraStoreException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = new Timestamp(new Date().getTime());
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            stmt = conn.prepareStatement(this.sqlSetPublished);
+            for (DataMessage message : messages) {
+                stmt.setTimestamp(1, now, this.utcCalendar); // timestamp
+                stmt.setInt(2, message.getPublishedMessageId());
+                stmt.setString(3, message.getSessionId());
+                stmt.setInt(4, message.getId());
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+            conn.commit();
+            for (DataMessage message : messages) {
+                this.unpublishedIndex.remove(message.getId());
+            }
+        } catch (SQLException e) {
+            rollback(conn);
+            throw new KuraStoreException(e, "Cannot update timestamps");
+        } finally {
+            close(stmt);
+            resetAutoCommit(conn);
+            close(conn);
+        }
     }
 
     @Override
@@ -442,6 +627,7 @@ public class DbDataStore implements DataStore {
     @Override
     public synchronized void unpublishAllInFlighMessages() throws KuraStoreException {
         execute(this.sqlUnpublishAllInFlightMessages);
+        rebuildUnpublishedIndex();
     }
 
     @Override
@@ -504,6 +690,8 @@ public class DbDataStore implements DataStore {
             execute("CHECKPOINT");
             logger.info("Checkpoint");
             conn.commit();
+
+            rebuildUnpublishedIndex();
         } catch (SQLException e) {
             rollback(conn);
             throw new KuraStoreException(e, "Cannot repair database");
@@ -521,6 +709,88 @@ public class DbDataStore implements DataStore {
     //
     // ------------------------------------------------------------------
 
+    /**
+     * Adds a newly stored message to the index of the unpublished messages.
+     */
+    void messageStored(int msgId, int priority, int qos) {
+        this.unpublishedIndex.add(msgId, priority, qos);
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Helpers for the subclasses writing messages on their own connections
+    //
+    // ------------------------------------------------------------------
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns a new UTC calendar for the timestamps of the messages. Calendars are not thread safe, each writer
+     * thread must use its own.
+     */
+    static Calendar newUtcCalendar() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    }
+
+    PreparedStatement prepareStore(Connection conn) throws SQLException {
+        return conn.prepareStatement(this.sqlStore);
+    }
+
+    /**
+     * Sets the parameters of a new unpublished message, starting from the topic column at the given index.
+     */
+    static void setStoreParameters(PreparedStatement pstmt, int index, String topic, byte[] payload, int qos,
+            boolean retain, int priority, Timestamp createdOn, Calendar utcCalendar) throws SQLException {
+        pstmt.setString(index, topic);                  // topic
+        pstmt.setInt(index + 1, qos);                   // qos
+        pstmt.setBoolean(index + 2, retain);            // retain
+        pstmt.setTimestamp(index + 3, createdOn, utcCalendar); // createdOn
+        pstmt.setTimestamp(index + 4, null);            // publishedOn
+        pstmt.setInt(index + 5, -1);                    // publishedMessageId
+        pstmt.setTimestamp(index + 6, null);            // confirmedOn
+        pstmt.setBytes(index + 7, payload);             // payload
+        pstmt.setInt(index + 8, priority);              // priority
+        pstmt.setString(index + 9, null);               // sessionId
+        pstmt.setTimestamp(index + 10, null);           // droppedOn
+    }
+
+    int getMessageCount(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(this.sqlMessageCount);
+                ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    static boolean isIdentityLimitExceeded(SQLException e) {
+        return e.getErrorCode() == IDENTITY_LIMIT_EXCEEDED;
+    }
+
+    private synchronized void rebuildUnpublishedIndex() throws KuraStoreException {
+        ResultSet rs = null;
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+
+            conn = getConnection();
+            stmt = conn.prepareStatement(this.sqlAllUnpublishedMessageIds);
+            rs = stmt.executeQuery();
+
+            this.unpublishedIndex.clear();
+            while (rs.next()) {
+                this.unpublishedIndex.add(rs.getInt("id"), rs.getInt("priority"), rs.getInt("qos"));
+            }
+            logger.debug("Unpublished message index rebuilt with {} messages", this.unpublishedIndex.size());
+        } catch (SQLException e) {
+            throw new KuraStoreException(e, "Cannot rebuild the unpublished message index");
+        } finally {
+            close(rs);
+            close(stmt);
+            close(conn);
+        }
+    }
+
     private synchronized void updateTimestamp(String sql, Integer... msgIds) throws KuraStoreException {
         Timestamp now = new Timestamp(new Date().getTime());
 
@@ -640,6 +910,16 @@ public class DbDataStore implements DataStore {
         return builder;
     }
 
+    static void resetAutoCommit(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Cannot reset auto-commit", e);
+        }
+    }
+
     private Connection getConnection() throws SQLException {
         return this.dbService.getConnection();
     }
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * In-memory index of the IDs of the unpublished messages, kept in publishing order: by priority (0 being the
+ * highest priority) and then in insertion order within each priority level. The IDs of the QoS 0 messages are also
+ * kept in a separate index, so that they can be published while the in-flight window is full.
+ * <p>
+ * The index only contains IDs; the messages themselves are still loaded from the store by primary key. Adding an
+ * ID that is already indexed has no effect.
+ */
+class UnpublishedMessageIndex {
+
+    private final TreeMap<Integer, LinkedHashSet<Integer>> idsByPriority = new TreeMap<>();
+    private final TreeMap<Integer, LinkedHashSet<Integer>> qos0IdsByPriority = new TreeMap<>();
+    private int size;
+
+    synchronized void add(int msgId, int priority, int qos) {
+        if (add(this.idsByPriority, msgId, priority)) {
+            this.size++;
+            if (qos == 0) {
+                add(this.qos0IdsByPriority, msgId, priority);
+            }
+        }
+    }
+
+    synchronized void remove(int msgId) {
+        if (remove(this.idsByPriority, msgId)) {
+            this.size--;
+            remove(this.qos0IdsByPriority, msgId);
+        }
+    }
+
+    /**
+     * Returns up to maxCount IDs in publishing order, without removing them from the index.
+     */
+    synchronized List<Integer> next(int maxCount) {
+        return next(this.idsByPriority, maxCount);
+    }
+
+    /**
+     * Returns up to maxCount IDs of QoS 0 messages in publishing order, without removing them from the index.
+     */
+    synchronized List<Integer> nextQos0(int maxCount) {
+        return next(this.qos0IdsByPriority, maxCount);
+    }
+
+    synchronized void clear() {
+        this.idsByPriority.clear();
+        this.qos0IdsByPriority.clear();
+        this.size = 0;
+    }
+
+    synchronized int size() {
+        return this.size;
+    }
+
+    private static boolean add(TreeMap<Integer, LinkedHashSet<Integer>> idsByPriority, int msgId, int priority) {
+        LinkedHashSet<Integer> ids = idsByPriority.get(priority);
+        if (ids == null) {
+            ids = new LinkedHashSet<>();
+            idsByPriority.put(priority, ids);
+        }
+        return ids.add(msgId);
+    }
+
+    private static boolean remove(TreeMap<Integer, LinkedHashSet<Integer>> idsByPriority, int msgId) {
+        Iterator<Entry<Integer, LinkedHashSet<Integer>>> iterator = idsByPriority.entrySet().iterator();
+        while (iterator.hasNext()) {
+            LinkedHashSet<Integer> ids = iterator.next().getValue();
+            if (ids.remove(msgId)) {
+                if (ids.isEmpty()) {
+                    iterator.remove();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Integer> next(TreeMap<Integer, LinkedHashSet<Integer>> idsByPriority, int maxCount) {
+        List<Integer> result = new ArrayList<>();
+        for (LinkedHashSet<Integer> ids : idsByPriority.values()) {
+            for (Integer id : ids) {
+                if (result.size() >= maxCount) {
+                    return result;
+                }
+                result.add(id);
+            }
+        }
+        return result;
+    }
+}
@@ -76,6 +76,7 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
     private static final String MQTT_CLIENT_ID_PROP_NAME = "client-id";
     private static final String MQTT_KEEP_ALIVE_PROP_NAME = "keep-alive";
     private static final String MQTT_CLEAN_SESSION_PROP_NAME = "clean-session";
+    private static final String MQTT_MAX_INFLIGHT_PROP_NAME = "max-inflight";
 
     // All timeouts
     private static final String MQTT_TIMEOUT_PROP_NAME = "timeout";
@@ -763,6 +764,12 @@ public class MqttDataTransport implements DataTransportService, MqttCallback, Co
 
             conOpt.setCleanSession((Boolean) properties.get(MQTT_CLEAN_SESSION_PROP_NAME));
 
+            Integer maxInflight = (Integer) properties.get(MQTT_MAX_INFLIGHT_PROP_NAME);
+            if (maxInflight != null) {
+                ValidationUtil.notNegative(maxInflight, MQTT_MAX_INFLIGHT_PROP_NAME);
+                conOpt.setMaxInflight(maxInflight);
+            }
+
             conOpt.setMqttVersion((Integer) properties.get(MQTT_DEFAULT_VERSION_PROP_NAME));
 
             synchronized (this.topicContext) {
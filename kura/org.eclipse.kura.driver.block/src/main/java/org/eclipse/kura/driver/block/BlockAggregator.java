@@ -64,6 +64,14 @@ import java.util.stream.StreamSupport;
  * transfered.
  * </p>
  *
+ * <p>
+ * The {@code maximumSize} parameter can be used to limit the size of the resulting blocks, for example if the protocol
+ * limits the amount of data that can be transferred by a single request. If {@code maximumSize > 0}, two non
+ * overlapping input blocks are not aggregated if the resulting block would be larger than {@code maximumSize}.
+ * Overlapping input blocks are always aggregated, the resulting block might be larger than {@code maximumSize} only
+ * if the input blocks overlap.
+ * </p>
+ *
  * @param <T>
  *            The type of the blocks obtained as result of the aggregation process.
  */
@@ -72,6 +80,7 @@ public class BlockAggregator<T extends Block> {
     protected List<Block> blocks;
     private final BlockFactory<T> factory;
     private int minimumGapSize;
+    private int maximumSize;
 
     /**
      * Creates a new {@link BlockAggregator} instance that operates on the given list of blocks.
@@ -132,6 +141,22 @@ public class BlockAggregator<T extends Block> {
         this.minimumGapSize = minimumGapSize;
     }
 
+    /**
+     * Specifies the {@code maximumSize} parameter. The default for this parameter is 0, that means that the size of
+     * the resulting blocks is not limited.
+     *
+     * @param maximumSize
+     * @throws IllegalArgumentException
+     *             If the provided argument is negative
+     * @since 1.1
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size paramenter must be non negative");
+        }
+        this.maximumSize = maximumSize;
+    }
+
     /**
      * Inserts a new {@link Block} into the input blocks list.
      *
@@ -168,6 +193,13 @@ public class BlockAggregator<T extends Block> {
                 final Block next = this.source.next();
                 final boolean isTypeDifferent = this.last instanceof ProhibitedBlock ^ next instanceof ProhibitedBlock;
 
+                if (BlockAggregator.this.maximumSize > 0 && !(this.last instanceof ProhibitedBlock)
+                        && this.last.getEnd() <= next.getStart()
+                        && next.getEnd() - this.last.getStart() > BlockAggregator.this.maximumSize) {
+                    this.source.previous();
+                    break;
+                }
+
                 if (this.last.getEnd() < next.getStart()) {
                     if (BlockAggregator.this.minimumGapSize > 0
                             && next.getStart() - this.last.getEnd() < BlockAggregator.this.minimumGapSize
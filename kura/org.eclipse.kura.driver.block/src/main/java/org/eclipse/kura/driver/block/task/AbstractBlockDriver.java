@@ -217,6 +217,20 @@ public abstract class AbstractBlockDriver<T> implements Driver {
         }
     }
 
+    /**
+     * Executes the provided {@link BlockTask} instances, obtained as result of an aggregation process. The default
+     * implementation runs the tasks one at a time in the calling thread using {@link #runTask(BlockTask)}.
+     * Implementors can override this method, for example for running the tasks concurrently if the underlying protocol
+     * allows several requests to be in flight at the same time. This method is called while holding the lock on this
+     * driver instance and must return only after all the provided tasks have been completed.
+     *
+     * @param tasks
+     *            the {@link BlockTask} instances to be run
+     */
+    protected void runTasks(List<BlockTask> tasks) {
+        tasks.forEach(this::runTask);
+    }
+
     @Override
     public void registerChannelListener(final Map<String, Object> channelConfig, final ChannelListener listener)
             throws ConnectionException {
@@ -232,7 +246,7 @@ public abstract class AbstractBlockDriver<T> implements Driver {
     public synchronized void read(final List<ChannelRecord> records) throws ConnectionException {
         connect();
         try {
-            optimize(records, Mode.READ).forEach(this::runTask);
+            runTasks(optimize(records, Mode.READ));
         } catch (Exception e) {
             logger.warn("Unexpected exception during read", e);
             for (ChannelRecord record : records) {
@@ -246,7 +260,7 @@ public abstract class AbstractBlockDriver<T> implements Driver {
     public synchronized void write(final List<ChannelRecord> records) throws ConnectionException {
         connect();
         try {
-            optimize(records, Mode.WRITE).forEach(this::runTask);
+            runTasks(optimize(records, Mode.WRITE));
         } catch (Exception e) {
             logger.warn("Unexpected exception during write", e);
             for (ChannelRecord record : records) {
@@ -291,9 +305,7 @@ public abstract class AbstractBlockDriver<T> implements Driver {
         public List<ChannelRecord> execute() throws ConnectionException, KuraException {
             synchronized (AbstractBlockDriver.this) {
                 connect();
-                for (BlockTask task : this.tasks) {
-                    runTask(task);
-                }
+                runTasks(this.tasks);
                 return this.records;
             }
         }
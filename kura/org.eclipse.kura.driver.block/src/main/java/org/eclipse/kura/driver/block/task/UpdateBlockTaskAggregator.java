@@ -105,6 +105,18 @@ public class UpdateBlockTaskAggregator extends BlockTaskAggregator {
         this.readTaskAggregator.setMinimumGapSize(minimumGapSize);
     }
 
+    /**
+     * Sets the {@code maximumSize} that will be used for aggregating both the {@link ToplevelBlockTask} instances in
+     * {@link Mode#READ} mode and the ones in {@link Mode#WRITE} mode.
+     *
+     * @since 1.1
+     */
+    @Override
+    public void setMaximumSize(int maximumSize) {
+        super.setMaximumSize(maximumSize);
+        this.readTaskAggregator.setMaximumSize(maximumSize);
+    }
+
     /**
      * {@inheritDoc}
      *
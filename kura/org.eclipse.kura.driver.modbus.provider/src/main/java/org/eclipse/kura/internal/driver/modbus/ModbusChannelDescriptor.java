@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+package org.eclipse.kura.internal.driver.modbus;
+
+import java.util.List;
+
+import org.eclipse.kura.core.configuration.metatype.Tad;
+import org.eclipse.kura.core.configuration.metatype.Toption;
+import org.eclipse.kura.core.configuration.metatype.Tscalar;
+import org.eclipse.kura.driver.ChannelDescriptor;
+import org.eclipse.kura.driver.binary.Endianness;
+import org.eclipse.kura.driver.modbus.localization.ModbusMessages;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.util.collection.CollectionUtil;
+
+/**
+ * Modbus specific channel descriptor. The descriptor contains the following
+ * attribute definition identifiers.
+ *
+ * <ul>
+ * <li>unit.id</li> the Unit ID of the device
+ * <li>primary.table</li> the primary table containing the coil or register
+ * <li>memory.address</li> the address of the first coil or register, starting from 0
+ * <li>data.type</li> the type of the value stored in the registers
+ * <li>data.endianness</li> the byte order of the value stored in the registers
+ * </ul>
+ */
+public final class ModbusChannelDescriptor implements ChannelDescriptor {
+
+    public static final String UNIT_ID = "unit.id";
+    public static final String PRIMARY_TABLE = "primary.table";
+    public static final String MEMORY_ADDRESS = "memory.address";
+    public static final String DATA_TYPE = "data.type";
+    public static final String ENDIANNESS = "data.endianness";
+
+    /** Localization Resource. */
+    private static final ModbusMessages s_message = LocalizationAdapter.adapt(ModbusMessages.class);
+
+    private Toption generateOption(Enum<?> value) {
+        Toption option = new Toption();
+        option.setLabel(value.name());
+        option.setValue(value.name());
+        return option;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getDescriptor() {
+        final List<Tad> elements = CollectionUtil.newArrayList();
+
+        final Tad unitId = new Tad();
+        unitId.setName(UNIT_ID);
+        unitId.setId(UNIT_ID);
+        unitId.setDescription(s_message.unitIdDesc());
+        unitId.setType(Tscalar.INTEGER);
+        unitId.setRequired(true);
+        unitId.setMin("0");
+        unitId.setMax("255");
+        unitId.setDefault("1");
+
+        elements.add(unitId);
+
+        final Tad primaryTable = new Tad();
+        primaryTable.setName(PRIMARY_TABLE);
+        primaryTable.setId(PRIMARY_TABLE);
+        primaryTable.setDescription(s_message.primaryTableDesc());
+        primaryTable.setType(Tscalar.STRING);
+        primaryTable.setRequired(true);
+        primaryTable.setDefault(ModbusTable.HOLDING_REGISTERS.name());
+
+        for (ModbusTable t : ModbusTable.values()) {
+            primaryTable.setOption(generateOption(t));
+        }
+
+        elements.add(primaryTable);
+
+        final Tad memoryAddress = new Tad();
+        memoryAddress.setName(MEMORY_ADDRESS);
+        memoryAddress.setId(MEMORY_ADDRESS);
+        memoryAddress.setDescription(s_message.memoryAddressDesc());
+        memoryAddress.setType(Tscalar.INTEGER);
+        memoryAddress.setRequired(true);
+        memoryAddress.setMin("0");
+        memoryAddress.setMax("65535");
+        memoryAddress.setDefault("0");
+
+        elements.add(memoryAddress);
+
+        final Tad dataType = new Tad();
+        dataType.setName(DATA_TYPE);
+        dataType.setId(DATA_TYPE);
+        dataType.setDescription(s_message.modbusDataTypeDesc());
+        dataType.setType(Tscalar.STRING);
+        dataType.setRequired(true);
+        dataType.setDefault(ModbusDataType.INT16.name());
+
+        for (ModbusDataType t : ModbusDataType.values()) {
+            dataType.setOption(generateOption(t));
+        }
+
+        elements.add(dataType);
+
+        final Tad endianness = new Tad();
+        endianness.setName(ENDIANNESS);
+        endianness.setId(ENDIANNESS);
+        endianness.setDescription(s_message.endiannessDesc());
+        endianness.setType(Tscalar.STRING);
+        endianness.setRequired(true);
+        endianness.setDefault(Endianness.BIG_ENDIAN.name());
+
+        for (Endianness e : Endianness.values()) {
+            endianness.setOption(generateOption(e));
+        }
+
+        elements.add(endianness);
+
+        return elements;
+    }
+
+}
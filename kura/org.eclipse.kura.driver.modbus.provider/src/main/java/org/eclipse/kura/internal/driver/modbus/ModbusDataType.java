@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import org.eclipse.kura.driver.binary.BinaryData;
+import org.eclipse.kura.driver.binary.BinaryDataTypes;
+import org.eclipse.kura.driver.binary.Endianness;
+
+/**
+ * The data types that can be stored in one or more consecutive Modbus registers.
+ */
+public enum ModbusDataType {
+
+    INT16(BinaryDataTypes.INT16_BE, BinaryDataTypes.INT16_LE),
+    UINT16(BinaryDataTypes.UINT16_BE, BinaryDataTypes.UINT16_LE),
+    INT32(BinaryDataTypes.INT32_BE, BinaryDataTypes.INT32_LE),
+    UINT32(BinaryDataTypes.UINT32_BE, BinaryDataTypes.UINT32_LE),
+    INT64(BinaryDataTypes.INT64_BE, BinaryDataTypes.INT64_LE),
+    FLOAT(BinaryDataTypes.FLOAT_BE, BinaryDataTypes.FLOAT_LE),
+    DOUBLE(BinaryDataTypes.DOUBLE_BE, BinaryDataTypes.DOUBLE_LE);
+
+    private final BinaryData<?> bigEndian;
+    private final BinaryData<?> littleEndian;
+
+    private ModbusDataType(BinaryData<?> bigEndian, BinaryData<?> littleEndian) {
+        this.bigEndian = bigEndian;
+        this.littleEndian = littleEndian;
+    }
+
+    public BinaryData<?> getBinaryData(Endianness endianness) {
+        return endianness == Endianness.LITTLE_ENDIAN ? littleEndian : bigEndian;
+    }
+}
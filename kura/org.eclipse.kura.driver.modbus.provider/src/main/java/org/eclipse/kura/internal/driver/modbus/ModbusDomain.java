@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+/**
+ * The (unit id, function code) pair identifying the requests that can be aggregated together.
+ */
+public class ModbusDomain {
+
+    private final int unitId;
+    private final ModbusFunctionCode functionCode;
+
+    public ModbusDomain(int unitId, ModbusFunctionCode functionCode) {
+        this.unitId = unitId;
+        this.functionCode = functionCode;
+    }
+
+    public int getUnitId() {
+        return unitId;
+    }
+
+    public ModbusFunctionCode getFunctionCode() {
+        return functionCode;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * unitId + functionCode.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ModbusDomain other = (ModbusDomain) obj;
+        if (unitId != other.unitId)
+            return false;
+        if (functionCode != other.functionCode)
+            return false;
+        return true;
+    }
+}
@@ -0,0 +1,393 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraConnectionStatus;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.driver.ChannelDescriptor;
+import org.eclipse.kura.driver.block.BlockFactory;
+import org.eclipse.kura.driver.block.task.AbstractBlockDriver;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.BlockTaskAggregator;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.driver.modbus.localization.ModbusMessages;
+import org.eclipse.kura.internal.driver.modbus.task.ModbusTaskBuilder;
+import org.eclipse.kura.internal.driver.modbus.task.ModbusToplevelBlockTask;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolErrorCode;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolException;
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDevice;
+import org.eclipse.kura.usb.UsbService;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.io.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Kura ModbusDriver is a Modbus TCP and RTU Driver implementation for Kura
+ * Asset-Driver Topology.<br/>
+ * <br/>
+ *
+ * The channels reading or writing the same primary table of the same unit are
+ * aggregated into the smallest number of requests allowed by the protocol, a
+ * request can transfer at most 125 registers or 2000 coils when reading, and
+ * 123 registers or 1968 coils when writing.<br/>
+ * <br/>
+ *
+ * With Modbus TCP the requests can optionally be sent concurrently, the
+ * responses are matched to the requests by their transaction identifier.<br/>
+ * <br/>
+ *
+ * The required properties are enlisted in {@link ModbusChannelDescriptor} and
+ * the driver connection specific properties are enlisted in
+ * {@link ModbusOptions}
+ *
+ * @see ModbusChannelDescriptor
+ * @see ModbusOptions
+ */
+public final class ModbusDriver extends AbstractBlockDriver<ModbusDomain> implements ConfigurableComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusDriver.class);
+
+    private static final ModbusMessages messages = LocalizationAdapter.adapt(ModbusMessages.class);
+
+    private final ModbusProtocolDevice device = new ModbusProtocolDevice();
+
+    private ModbusOptions options;
+
+    private ExecutorService executor;
+
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.device.setConnectionFactory(connectionFactory);
+    }
+
+    public void unsetConnectionFactory(ConnectionFactory connectionFactory) {
+        this.device.unsetConnectionFactory(connectionFactory);
+    }
+
+    public void setUsbService(UsbService usbService) {
+        this.device.setUsbService(usbService);
+    }
+
+    public void unsetUsbService(UsbService usbService) {
+        this.device.unsetUsbService(usbService);
+    }
+
+    protected synchronized void activate(final ComponentContext componentContext,
+            final Map<String, Object> properties) {
+        logger.debug(messages.activating());
+        requireNonNull(properties, messages.propertiesNonNull());
+        this.options = new ModbusOptions(properties);
+        updateExecutor();
+        logger.debug(messages.activatingDone());
+    }
+
+    protected synchronized void deactivate(final ComponentContext componentContext) {
+        logger.debug(messages.deactivating());
+        try {
+            this.disconnect();
+        } catch (final ConnectionException e) {
+            logger.error(messages.errorDisconnecting(), e);
+        }
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        logger.debug(messages.deactivatingDone());
+    }
+
+    public synchronized void updated(final Map<String, Object> properties) {
+        logger.debug(messages.updating());
+        requireNonNull(properties, messages.propertiesNonNull());
+        this.options = new ModbusOptions(properties);
+        updateExecutor();
+        if (isConnected()) {
+            try {
+                logger.info(messages.reconnectingAfterConfigurationUpdate());
+                disconnect();
+                connect();
+            } catch (ConnectionException e) {
+                logger.warn(messages.errorReconnectFailed(), e);
+            }
+        }
+        logger.debug(messages.updatingDone());
+    }
+
+    /**
+     * Creates the threads used for sending concurrent requests, only Modbus TCP supports several requests in flight
+     * on the same connection.
+     */
+    private void updateExecutor() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        final int maximumConcurrentRequests = this.options.getMaximumConcurrentRequests();
+        if (maximumConcurrentRequests > 1
+                && ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.options.getConnectionType())) {
+            this.executor = Executors.newFixedThreadPool(maximumConcurrentRequests);
+        }
+    }
+
+    private boolean isConnected() {
+        return this.device.getConnectStatus() == KuraConnectionStatus.CONNECTED;
+    }
+
+    @Override
+    public synchronized void connect() throws ConnectionException {
+        if (isConnected()) {
+            return;
+        }
+        logger.debug(messages.connecting());
+        try {
+            // discards a previous configuration, that would be rejected by the device
+            this.device.disconnect();
+            this.device.configureConnection(this.options.getConnectionProperties());
+            this.device.connect();
+        } catch (Exception e) {
+            throw new ConnectionException(messages.errorConnectFailed(), e);
+        }
+        if (!isConnected()) {
+            throw new ConnectionException(messages.errorConnectFailed());
+        }
+        logger.debug(messages.connectingDone());
+    }
+
+    @Override
+    public synchronized void disconnect() throws ConnectionException {
+        logger.debug(messages.disconnecting());
+        try {
+            this.device.disconnect();
+        } catch (ModbusProtocolException e) {
+            throw new ConnectionException(messages.disconnectionProblem(), e);
+        }
+        logger.debug(messages.disconnectingDone());
+    }
+
+    @Override
+    protected int getReadMinimumGapSizeForDomain(ModbusDomain domain) {
+        return this.options.getMinimumGapSize() * domain.getFunctionCode().getBytesPerElement();
+    }
+
+    @Override
+    protected void beforeAggregation(ModbusDomain domain, Mode mode, BlockTaskAggregator aggregator) {
+        final ModbusFunctionCode functionCode = domain.getFunctionCode();
+        aggregator.setMaximumSize(functionCode.getMaximumQuantity() * functionCode.getBytesPerElement());
+    }
+
+    @Override
+    protected BlockFactory<ToplevelBlockTask> getTaskFactoryForDomain(final ModbusDomain domain, final Mode mode) {
+        return (start, end) -> new ModbusToplevelBlockTask(ModbusDriver.this, mode, domain, start, end);
+    }
+
+    @Override
+    protected Stream<Pair<ModbusDomain, BlockTask>> toTasks(List<ChannelRecord> records, Mode mode) {
+        return ModbusTaskBuilder.build(records, mode);
+    }
+
+    @Override
+    public ChannelDescriptor getChannelDescriptor() {
+        return new ModbusChannelDescriptor();
+    }
+
+    @Override
+    protected void runTask(BlockTask task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            handleTaskException(e);
+        }
+    }
+
+    /**
+     * Runs the provided tasks concurrently if enabled by the configuration. The failures are handled in the calling
+     * thread, once all the tasks have been completed.
+     */
+    @Override
+    protected void runTasks(List<BlockTask> tasks) {
+        final ExecutorService currentExecutor = this.executor;
+        if (currentExecutor == null || tasks.size() < 2) {
+            super.runTasks(tasks);
+            return;
+        }
+        final List<Future<?>> results = new ArrayList<>(tasks.size());
+        for (final BlockTask task : tasks) {
+            results.add(currentExecutor.submit(() -> {
+                task.run();
+                return null;
+            }));
+        }
+        for (final Future<?> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                handleTaskException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn(messages.errorUnexpectedException(), e);
+                results.forEach(pending -> pending.cancel(true));
+                return;
+            }
+        }
+    }
+
+    private void handleTaskException(Throwable e) {
+        if (e instanceof ModbusIOException) {
+            handleModbusIOException((ModbusIOException) e);
+        } else {
+            logger.warn(messages.errorUnexpectedException(), e);
+        }
+    }
+
+    private void handleModbusIOException(ModbusIOException e) {
+        logger.warn(messages.errorIOFailed(), e);
+        final ModbusProtocolErrorCode code = e.getErrorCode();
+        if (code == ModbusProtocolErrorCode.NOT_CONNECTED || code == ModbusProtocolErrorCode.CONNECTION_FAILURE) {
+            logger.warn(messages.connectionProblemsDetected());
+            try {
+                disconnect();
+            } catch (ConnectionException e1) {
+                logger.warn(messages.disconnectionProblem(), e1);
+            }
+        }
+    }
+
+    /**
+     * Reads the coils or registers covered by the provided buffer. The buffer contains a byte for each coil and two
+     * bytes in big endian order for each register, the start offset is expressed in the same unit.
+     * <br/>
+     * This method is called by the tasks while the driver lock is held by the thread performing the read or write
+     * operation, possibly from several threads at the same time if concurrent requests are enabled.
+     */
+    public void read(ModbusDomain domain, int start, byte[] data) throws IOException {
+        final ModbusFunctionCode functionCode = domain.getFunctionCode();
+        final int unitId = domain.getUnitId();
+        final int address = start / functionCode.getBytesPerElement();
+        final int count = data.length / functionCode.getBytesPerElement();
+        try {
+            switch (functionCode) {
+            case READ_COILS:
+                fromCoils(this.device.readCoils(unitId, address, count), data);
+                break;
+            case READ_DISCRETE_INPUTS:
+                fromCoils(this.device.readDiscreteInputs(unitId, address, count), data);
+                break;
+            case READ_HOLDING_REGISTERS:
+                fromRegisters(this.device.readHoldingRegisters(unitId, address, count), data);
+                break;
+            case READ_INPUT_REGISTERS:
+                fromRegisters(this.device.readInputRegisters(unitId, address, count), data);
+                break;
+            default:
+                throw new ModbusIOException(describe(domain, address, count),
+                        ModbusProtocolErrorCode.METHOD_NOT_SUPPORTED);
+            }
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException(describe(domain, address, count), e);
+        }
+    }
+
+    /**
+     * Writes the coils or registers covered by the provided buffer, encoded as described in
+     * {@link #read(ModbusDomain, int, byte[])}.
+     */
+    public void write(ModbusDomain domain, int start, byte[] data) throws IOException {
+        final ModbusFunctionCode functionCode = domain.getFunctionCode();
+        final int unitId = domain.getUnitId();
+        final int address = start / functionCode.getBytesPerElement();
+        final int count = data.length / functionCode.getBytesPerElement();
+        try {
+            switch (functionCode) {
+            case WRITE_MULTIPLE_COILS:
+                this.device.writeMultipleCoils(unitId, address, toCoils(data));
+                break;
+            case WRITE_MULTIPLE_REGISTERS:
+                this.device.writeMultipleRegister(unitId, address, toRegisters(data));
+                break;
+            default:
+                throw new ModbusIOException(describe(domain, address, count),
+                        ModbusProtocolErrorCode.METHOD_NOT_SUPPORTED);
+            }
+        } catch (ModbusProtocolException e) {
+            throw new ModbusIOException(describe(domain, address, count), e);
+        }
+    }
+
+    private static String describe(ModbusDomain domain, int address, int count) {
+        return "unit: " + domain.getUnitId() + " function: " + domain.getFunctionCode().getCode() + " address: "
+                + address + " count: " + count;
+    }
+
+    private static void fromCoils(boolean[] coils, byte[] data) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (coils[i] ? 1 : 0);
+        }
+    }
+
+    private static boolean[] toCoils(byte[] data) {
+        final boolean[] coils = new boolean[data.length];
+        for (int i = 0; i < data.length; i++) {
+            coils[i] = data[i] != 0;
+        }
+        return coils;
+    }
+
+    private static void fromRegisters(int[] registers, byte[] data) {
+        for (int i = 0; i < registers.length; i++) {
+            data[2 * i] = (byte) (registers[i] >> 8);
+            data[2 * i + 1] = (byte) registers[i];
+        }
+    }
+
+    private static int[] toRegisters(byte[] data) {
+        final int[] registers = new int[data.length / 2];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (data[2 * i] & 0xff) << 8 | data[2 * i + 1] & 0xff;
+        }
+        return registers;
+    }
+
+    @SuppressWarnings("serial")
+    private class ModbusIOException extends IOException {
+
+        private final ModbusProtocolErrorCode errorCode;
+
+        public ModbusIOException(String message, ModbusProtocolErrorCode errorCode) {
+            super(message + " error: " + errorCode);
+            this.errorCode = errorCode;
+        }
+
+        public ModbusIOException(String message, ModbusProtocolException cause) {
+            super(message + " error: " + cause.getCode(), cause);
+            this.errorCode = cause.getCode();
+        }
+
+        public ModbusProtocolErrorCode getErrorCode() {
+            return errorCode;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+/**
+ * The Modbus function codes used by the driver. Each function code is associated with the maximum number of coils or
+ * registers that can be transferred by a single request, and with the number of bytes used to represent a coil or a
+ * register in the buffers of the driver tasks.
+ */
+public enum ModbusFunctionCode {
+
+    READ_COILS(1, 2000, 1),
+    READ_DISCRETE_INPUTS(2, 2000, 1),
+    READ_HOLDING_REGISTERS(3, 125, 2),
+    READ_INPUT_REGISTERS(4, 125, 2),
+    WRITE_MULTIPLE_COILS(15, 1968, 1),
+    WRITE_MULTIPLE_REGISTERS(16, 123, 2);
+
+    private final int code;
+    private final int maximumQuantity;
+    private final int bytesPerElement;
+
+    private ModbusFunctionCode(int code, int maximumQuantity, int bytesPerElement) {
+        this.code = code;
+        this.maximumQuantity = maximumQuantity;
+        this.bytesPerElement = bytesPerElement;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the maximum number of coils or registers that can be transferred by a single request.
+     *
+     * @return the maximum quantity
+     */
+    public int getMaximumQuantity() {
+        return maximumQuantity;
+    }
+
+    /**
+     * Returns the number of bytes used to represent a single coil or register in the buffer of a task, the coils are
+     * represented by a byte each, the registers by two bytes in big endian order.
+     *
+     * @return the number of bytes per coil or register
+     */
+    public int getBytesPerElement() {
+        return bytesPerElement;
+    }
+}
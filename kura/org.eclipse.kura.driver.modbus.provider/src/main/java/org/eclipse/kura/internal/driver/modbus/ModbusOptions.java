@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.kura.protocol.modbus.ModbusProtocolDevice;
+
+final class ModbusOptions {
+
+    private static final String CONNECTION_TYPE_PROP_NAME = "connection.type";
+    private static final String IP_PROP_NAME = "ip";
+    private static final String PORT_PROP_NAME = "port";
+    private static final String SERIAL_PORT_PROP_NAME = "serial.port";
+    private static final String SERIAL_BAUDRATE_PROP_NAME = "serial.baudrate";
+    private static final String SERIAL_DATA_BITS_PROP_NAME = "serial.data.bits";
+    private static final String SERIAL_STOP_BITS_PROP_NAME = "serial.stop.bits";
+    private static final String SERIAL_PARITY_PROP_NAME = "serial.parity";
+    private static final String SERIAL_TRANSMISSION_MODE_PROP_NAME = "serial.transmission.mode";
+    private static final String RESPONSE_TIMEOUT_PROP_NAME = "response.timeout";
+    private static final String MINIMUM_GAP_SIZE_PROP_NAME = "read.minimum.gap.size";
+    private static final String MAXIMUM_CONCURRENT_REQUESTS_PROP_NAME = "max.concurrent.requests";
+
+    private static final String CONNECTION_TYPE_DEFAULT = ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_TCP;
+    private static final String IP_DEFAULT = "";
+    private static final int PORT_DEFAULT = 502;
+    private static final String SERIAL_PORT_DEFAULT = "";
+    private static final int SERIAL_BAUDRATE_DEFAULT = 9600;
+    private static final int SERIAL_DATA_BITS_DEFAULT = 8;
+    private static final int SERIAL_STOP_BITS_DEFAULT = 1;
+    private static final int SERIAL_PARITY_DEFAULT = 0;
+    private static final String SERIAL_TRANSMISSION_MODE_DEFAULT = "RTU";
+    private static final int RESPONSE_TIMEOUT_DEFAULT = 1000;
+    private static final int MINIMUM_GAP_SIZE_DEFAULT = 0;
+    private static final int MAXIMUM_CONCURRENT_REQUESTS_DEFAULT = 1;
+
+    private final Map<String, Object> properties;
+
+    ModbusOptions(final Map<String, Object> properties) {
+        this.properties = properties;
+    }
+
+    String getConnectionType() {
+        return (String) properties.getOrDefault(CONNECTION_TYPE_PROP_NAME, CONNECTION_TYPE_DEFAULT);
+    }
+
+    String getIp() {
+        return (String) properties.getOrDefault(IP_PROP_NAME, IP_DEFAULT);
+    }
+
+    int getPort() {
+        return (Integer) properties.getOrDefault(PORT_PROP_NAME, PORT_DEFAULT);
+    }
+
+    String getSerialPort() {
+        return (String) properties.getOrDefault(SERIAL_PORT_PROP_NAME, SERIAL_PORT_DEFAULT);
+    }
+
+    int getSerialBaudrate() {
+        return (Integer) properties.getOrDefault(SERIAL_BAUDRATE_PROP_NAME, SERIAL_BAUDRATE_DEFAULT);
+    }
+
+    int getSerialDataBits() {
+        return (Integer) properties.getOrDefault(SERIAL_DATA_BITS_PROP_NAME, SERIAL_DATA_BITS_DEFAULT);
+    }
+
+    int getSerialStopBits() {
+        return (Integer) properties.getOrDefault(SERIAL_STOP_BITS_PROP_NAME, SERIAL_STOP_BITS_DEFAULT);
+    }
+
+    int getSerialParity() {
+        return (Integer) properties.getOrDefault(SERIAL_PARITY_PROP_NAME, SERIAL_PARITY_DEFAULT);
+    }
+
+    String getSerialTransmissionMode() {
+        return (String) properties.getOrDefault(SERIAL_TRANSMISSION_MODE_PROP_NAME, SERIAL_TRANSMISSION_MODE_DEFAULT);
+    }
+
+    int getResponseTimeout() {
+        return (Integer) properties.getOrDefault(RESPONSE_TIMEOUT_PROP_NAME, RESPONSE_TIMEOUT_DEFAULT);
+    }
+
+    /**
+     * Returns the minimum gap size for read requests, expressed in coils or registers.
+     */
+    int getMinimumGapSize() {
+        return (Integer) properties.getOrDefault(MINIMUM_GAP_SIZE_PROP_NAME, MINIMUM_GAP_SIZE_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of Modbus TCP requests in flight at the same time.
+     */
+    int getMaximumConcurrentRequests() {
+        return (Integer) properties.getOrDefault(MAXIMUM_CONCURRENT_REQUESTS_PROP_NAME,
+                MAXIMUM_CONCURRENT_REQUESTS_DEFAULT);
+    }
+
+    /**
+     * Returns the connection properties in the format expected by
+     * {@link ModbusProtocolDevice#configureConnection(Properties)}.
+     */
+    Properties getConnectionProperties() {
+        final Properties connectionProperties = new Properties();
+        final String connectionType = getConnectionType();
+        connectionProperties.setProperty("connectionType", connectionType);
+        connectionProperties.setProperty("respTimeout", Integer.toString(getResponseTimeout()));
+        if (ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_SERIAL.equals(connectionType)) {
+            connectionProperties.setProperty("transmissionMode", getSerialTransmissionMode());
+            connectionProperties.setProperty("port", getSerialPort());
+            connectionProperties.setProperty("baudRate", Integer.toString(getSerialBaudrate()));
+            connectionProperties.setProperty("bitsPerWord", Integer.toString(getSerialDataBits()));
+            connectionProperties.setProperty("stopBits", Integer.toString(getSerialStopBits()));
+            connectionProperties.setProperty("parity", Integer.toString(getSerialParity()));
+        } else {
+            connectionProperties.setProperty("transmissionMode", "RTU");
+            connectionProperties.setProperty("ipAddress", getIp());
+            connectionProperties.setProperty("ethport", Integer.toString(getPort()));
+        }
+        return connectionProperties;
+    }
+
+}
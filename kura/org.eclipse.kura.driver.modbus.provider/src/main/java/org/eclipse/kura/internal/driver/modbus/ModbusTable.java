@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.modbus;
+
+/**
+ * The Modbus primary tables, along with the function codes used to read and write them.
+ */
+public enum ModbusTable {
+
+    COILS(ModbusFunctionCode.READ_COILS, ModbusFunctionCode.WRITE_MULTIPLE_COILS),
+    DISCRETE_INPUTS(ModbusFunctionCode.READ_DISCRETE_INPUTS, null),
+    INPUT_REGISTERS(ModbusFunctionCode.READ_INPUT_REGISTERS, null),
+    HOLDING_REGISTERS(ModbusFunctionCode.READ_HOLDING_REGISTERS, ModbusFunctionCode.WRITE_MULTIPLE_REGISTERS);
+
+    private final ModbusFunctionCode readFunctionCode;
+    private final ModbusFunctionCode writeFunctionCode;
+
+    private ModbusTable(ModbusFunctionCode readFunctionCode, ModbusFunctionCode writeFunctionCode) {
+        this.readFunctionCode = readFunctionCode;
+        this.writeFunctionCode = writeFunctionCode;
+    }
+
+    public ModbusFunctionCode getReadFunctionCode() {
+        return readFunctionCode;
+    }
+
+    /**
+     * Returns the function code used to write this table.
+     *
+     * @return the function code, or null if the table is read only
+     */
+    public ModbusFunctionCode getWriteFunctionCode() {
+        return writeFunctionCode;
+    }
+
+    public boolean isBitTable() {
+        return readFunctionCode.getBytesPerElement() == 1;
+    }
+}
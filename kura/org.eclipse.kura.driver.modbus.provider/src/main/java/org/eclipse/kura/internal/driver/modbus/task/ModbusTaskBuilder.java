@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraErrorCode;
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.driver.binary.BinaryData;
+import org.eclipse.kura.driver.binary.Endianness;
+import org.eclipse.kura.driver.block.task.AbstractBlockDriver.Pair;
+import org.eclipse.kura.driver.block.task.BinaryDataTask;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.modbus.localization.ModbusMessages;
+import org.eclipse.kura.internal.driver.modbus.ModbusChannelDescriptor;
+import org.eclipse.kura.internal.driver.modbus.ModbusDataType;
+import org.eclipse.kura.internal.driver.modbus.ModbusDomain;
+import org.eclipse.kura.internal.driver.modbus.ModbusFunctionCode;
+import org.eclipse.kura.internal.driver.modbus.ModbusTable;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.type.DataType;
+
+public final class ModbusTaskBuilder {
+
+    private static final ModbusMessages messages = LocalizationAdapter.adapt(ModbusMessages.class);
+
+    private static final int MAXIMUM_ADDRESS = 65535;
+    private static final int ADDRESS_SPACE_SIZE = MAXIMUM_ADDRESS + 1;
+
+    private ModbusTaskBuilder() {
+    }
+
+    private static int getIntProperty(ChannelRecord record, String propertyName, String failureMessage)
+            throws KuraException {
+        try {
+            return Integer.parseInt(record.getChannelConfig().get(propertyName).toString());
+        } catch (Exception e) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, failureMessage);
+        }
+    }
+
+    private static <E extends Enum<E>> E getEnumProperty(ChannelRecord record, String propertyName,
+            Class<E> enumClass, String failureMessage) throws KuraException {
+        try {
+            return Enum.valueOf(enumClass, record.getChannelConfig().get(propertyName).toString());
+        } catch (Exception e) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, failureMessage);
+        }
+    }
+
+    private static void assertAddressRange(int address, int count) throws KuraException {
+        if (address + count > ADDRESS_SPACE_SIZE) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR,
+                    messages.errorAddressOutOfRange() + (address + count - 1));
+        }
+    }
+
+    private static void assertChannelType(ChannelRecord record, DataType channelType) throws KuraException {
+        if (channelType != record.getValueType()) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, messages.errorConvertingType() + channelType);
+        }
+    }
+
+    private static Pair<ModbusDomain, BlockTask> build(ChannelRecord record, Mode mode) throws KuraException {
+
+        final Map<String, Object> channelConfig = record.getChannelConfig();
+
+        final int unitId = getIntProperty(record, ModbusChannelDescriptor.UNIT_ID, messages.errorRetrievingUnitId());
+        final ModbusTable table = getEnumProperty(record, ModbusChannelDescriptor.PRIMARY_TABLE, ModbusTable.class,
+                messages.errorRetrievingPrimaryTable());
+        final int address = getIntProperty(record, ModbusChannelDescriptor.MEMORY_ADDRESS,
+                messages.errorRetrievingMemoryAddress());
+
+        if (address < 0 || address > MAXIMUM_ADDRESS) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, messages.errorRetrievingMemoryAddress());
+        }
+
+        final ModbusFunctionCode functionCode = mode == Mode.READ ? table.getReadFunctionCode()
+                : table.getWriteFunctionCode();
+        if (functionCode == null) {
+            throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, messages.errorReadOnlyTable() + table);
+        }
+
+        final ModbusDomain domain = new ModbusDomain(unitId, functionCode);
+
+        if (table.isBitTable()) {
+            assertChannelType(record, DataType.BOOLEAN);
+            assertAddressRange(address, 1);
+            return new Pair<>(domain, new CoilTask(record, address, mode));
+        }
+
+        final ModbusDataType modbusDataType = getEnumProperty(record, ModbusChannelDescriptor.DATA_TYPE,
+                ModbusDataType.class, messages.errorRetrievingModbusDataType());
+        final Endianness endianness = Endianness.LITTLE_ENDIAN.name()
+                .equals(channelConfig.get(ModbusChannelDescriptor.ENDIANNESS)) ? Endianness.LITTLE_ENDIAN
+                        : Endianness.BIG_ENDIAN;
+        final BinaryData<?> binaryData = modbusDataType.getBinaryData(endianness);
+
+        // a value can span several registers, the last one must be addressable
+        assertAddressRange(address, (binaryData.getSize() + 1) / 2);
+
+        return new Pair<>(domain, new BinaryDataTask<>(record, address * 2, binaryData, record.getValueType(), mode));
+    }
+
+    public static Stream<Pair<ModbusDomain, BlockTask>> build(List<ChannelRecord> records, Mode mode) {
+        return records.stream().map((record) -> {
+            try {
+                return build(record, mode);
+            } catch (Exception e) {
+                record.setTimestamp(System.currentTimeMillis());
+                record.setChannelStatus(new ChannelStatus(ChannelFlag.FAILURE, e.getMessage(), e));
+                return null;
+            }
+        }).filter(Objects::nonNull);
+    }
+
+}
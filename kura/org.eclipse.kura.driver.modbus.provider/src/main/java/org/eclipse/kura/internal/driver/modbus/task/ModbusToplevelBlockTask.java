@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import java.io.IOException;
+
+import org.eclipse.kura.driver.binary.Buffer;
+import org.eclipse.kura.driver.binary.ByteArrayBuffer;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.internal.driver.modbus.ModbusDomain;
+import org.eclipse.kura.internal.driver.modbus.ModbusDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ModbusToplevelBlockTask extends ToplevelBlockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusToplevelBlockTask.class);
+
+    private final ModbusDomain domain;
+    private ByteArrayBuffer data;
+    private final ModbusDriver driver;
+
+    public ModbusToplevelBlockTask(ModbusDriver driver, Mode mode, ModbusDomain domain, int start, int end) {
+        super(start, end, mode);
+        this.domain = domain;
+        this.driver = driver;
+    }
+
+    @Override
+    public void processBuffer() throws IOException {
+        if (getMode() == Mode.READ) {
+            logger.debug("Reading from unit {}, function {} offset: {} length: {}", domain.getUnitId(),
+                    domain.getFunctionCode(), getStart(), getBuffer().getLength());
+            driver.read(domain, getStart(), ((ByteArrayBuffer) getBuffer()).getBackingArray());
+        } else {
+            logger.debug("Writing to unit {}, function {} offset: {} length: {}", domain.getUnitId(),
+                    domain.getFunctionCode(), getStart(), getBuffer().getLength());
+            driver.write(domain, getStart(), ((ByteArrayBuffer) getBuffer()).getBackingArray());
+        }
+    }
+
+    @Override
+    public Buffer getBuffer() {
+        if (data == null) {
+            data = new ByteArrayBuffer(new byte[getEnd() - getStart()]);
+        }
+        return data;
+    }
+
+}
@@ -105,4 +105,22 @@ public interface OpcUaMessages {
     @En("Operation Result Variant cannot be null")
     public String errorNullVariant();
 
+    @En("Channel Listener cannot be null")
+    public String listenerNonNull();
+
+    @En("Error while retrieving Channel Name")
+    public String errorRetrievingChannelName();
+
+    @En("Unable to subscribe to the OPC-UA node changes")
+    public String errorRegisteringListener();
+
+    @En("Unable to unsubscribe from the OPC-UA node changes")
+    public String errorUnregisteringListener();
+
+    @En("Unable to restore the OPC-UA subscriptions after connecting")
+    public String errorRestoringSubscriptions();
+
+    @En("Error while notifying a Channel Listener")
+    public String errorNotifyingListener();
+
 }
\ No newline at end of file
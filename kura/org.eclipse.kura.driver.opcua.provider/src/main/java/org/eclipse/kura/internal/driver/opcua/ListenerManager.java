@@ -0,0 +1,352 @@
+/**
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Eurotech
+ */
+package org.eclipse.kura.internal.driver.opcua;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.eclipse.kura.channel.ChannelFlag.FAILURE;
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.channel.listener.ChannelEvent;
+import org.eclipse.kura.channel.listener.ChannelListener;
+import org.eclipse.kura.driver.Driver.ConnectionException;
+import org.eclipse.kura.driver.opcua.localization.OpcUaMessages;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager.SubscriptionListener;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.DataChangeFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class {@link ListenerManager} keeps the {@link ChannelListener}s registered on the {@link OpcUaDriver} and
+ * serves them with a single OPC-UA subscription, creating a monitored item for each registered channel. The server
+ * samples the monitored nodes and publishes only the changed values, so that the listeners are notified without
+ * polling the nodes.
+ * <br/>
+ * <br/>
+ * The registrations survive the driver disconnection, the subscription and its monitored items are created again
+ * when the driver connects. If the subscription cannot be transferred to a new session after a connection loss, it
+ * is created again as well.
+ */
+final class ListenerManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerManager.class);
+
+    private static final OpcUaMessages message = LocalizationAdapter.adapt(OpcUaMessages.class);
+
+    private final OpcUaDriver driver;
+
+    private final List<Registration> registrations = new ArrayList<>();
+
+    private final AtomicInteger clientHandles = new AtomicInteger();
+
+    private OpcUaClient client;
+
+    private OpcUaOptions options;
+
+    private UaSubscription subscription;
+
+    private final SubscriptionListener subscriptionListener = new SubscriptionListener() {
+
+        @Override
+        public void onSubscriptionTransferFailed(final UaSubscription subscription, final StatusCode statusCode) {
+            subscriptionTransferFailed(subscription, statusCode);
+        }
+    };
+
+    ListenerManager(final OpcUaDriver driver) {
+        this.driver = driver;
+    }
+
+    /**
+     * Registers the provided listener and starts monitoring the node of its channel.
+     *
+     * @param client
+     *            the connected OPC-UA client
+     * @param options
+     *            the driver options
+     * @param registration
+     *            the listener and the details of its channel
+     * @throws ConnectionException
+     *             if the subscription or the monitored item cannot be created
+     */
+    synchronized void register(final OpcUaClient client, final OpcUaOptions options, final Registration registration)
+            throws ConnectionException {
+        try {
+            ensureSubscription(client, options);
+            createMonitoredItems(options, Collections.singletonList(registration));
+        } catch (final Exception e) {
+            if (this.registrations.isEmpty()) {
+                // do not leave behind the subscription created for this registration
+                deleteSubscription();
+            }
+            throw new ConnectionException(message.errorRegisteringListener(), e);
+        }
+        this.registrations.add(registration);
+    }
+
+    /**
+     * Returns true if at least one listener is registered.
+     */
+    synchronized boolean hasRegistrations() {
+        return !this.registrations.isEmpty();
+    }
+
+    /**
+     * Unregisters the provided listener from all the channels it has been registered for.
+     *
+     * @param listener
+     *            the listener to unregister
+     * @throws ConnectionException
+     *             if the monitored items or the subscription cannot be deleted
+     */
+    synchronized void unregister(final ChannelListener listener) throws ConnectionException {
+        final List<UaMonitoredItem> items = new ArrayList<>();
+        final Iterator<Registration> iterator = this.registrations.iterator();
+        while (iterator.hasNext()) {
+            final Registration registration = iterator.next();
+            if (registration.listener == listener) {
+                iterator.remove();
+                if (nonNull(registration.item)) {
+                    items.add(registration.item);
+                }
+            }
+        }
+
+        if (isNull(this.subscription)) {
+            return;
+        }
+        try {
+            if (this.registrations.isEmpty()) {
+                this.driver.runSafe(this.client.getSubscriptionManager()
+                        .deleteSubscription(this.subscription.getSubscriptionId()));
+                this.subscription = null;
+            } else if (!items.isEmpty()) {
+                this.driver.runSafe(this.subscription.deleteMonitoredItems(items));
+            }
+        } catch (final Exception e) {
+            throw new ConnectionException(message.errorUnregisteringListener(), e);
+        }
+    }
+
+    /**
+     * Creates the subscription and the monitored items of the registered listeners on the new client.
+     *
+     * @param client
+     *            the connected OPC-UA client
+     * @param options
+     *            the driver options
+     */
+    synchronized void connected(final OpcUaClient client, final OpcUaOptions options) {
+        this.client = client;
+        this.options = options;
+        this.subscription = null;
+        client.getSubscriptionManager().addSubscriptionListener(this.subscriptionListener);
+        if (this.registrations.isEmpty()) {
+            return;
+        }
+        try {
+            resubscribe();
+        } catch (final Exception e) {
+            logger.warn(message.errorRestoringSubscriptions(), e);
+            this.driver.restoreListeners(OpcUaDriver.LISTENERS_RESTORE_DELAY);
+        }
+    }
+
+    /**
+     * Creates again the subscription and the monitored items of all the registered listeners, deleting the current
+     * subscription if any.
+     *
+     * @throws Exception
+     *             if the subscription or the monitored items cannot be created
+     */
+    synchronized void resubscribe() throws Exception {
+        if (isNull(this.client) || this.registrations.isEmpty()) {
+            return;
+        }
+        deleteSubscription();
+        ensureSubscription(this.client, this.options);
+        createMonitoredItems(this.options, this.registrations);
+    }
+
+    /**
+     * Forgets the subscription and the monitored items, that are discarded together with the client session.
+     */
+    synchronized void disconnected() {
+        if (nonNull(this.client)) {
+            this.client.getSubscriptionManager().removeSubscriptionListener(this.subscriptionListener);
+        }
+        this.client = null;
+        this.subscription = null;
+        for (final Registration registration : this.registrations) {
+            registration.item = null;
+        }
+    }
+
+    private synchronized void subscriptionTransferFailed(final UaSubscription subscription,
+            final StatusCode statusCode) {
+        if (subscription != this.subscription) {
+            return;
+        }
+        logger.info("subscription transfer failed with status: {}, creating it again", statusCode);
+        this.driver.restoreListeners(0);
+    }
+
+    /**
+     * Deletes the current subscription, if any. The subscription might be already gone together with its session, so
+     * failures are only logged.
+     */
+    private void deleteSubscription() {
+        final UaSubscription current = this.subscription;
+        this.subscription = null;
+        for (final Registration registration : this.registrations) {
+            registration.item = null;
+        }
+        if (isNull(current) || isNull(this.client)) {
+            return;
+        }
+        try {
+            this.driver.runSafe(this.client.getSubscriptionManager().deleteSubscription(current.getSubscriptionId()));
+        } catch (final Exception e) {
+            logger.debug("Unable to delete subscription", e);
+        }
+    }
+
+    private void ensureSubscription(final OpcUaClient client, final OpcUaOptions options) throws Exception {
+        if (this.client != client || isNull(this.subscription)) {
+            this.client = client;
+            this.subscription = this.driver.runSafe(
+                    client.getSubscriptionManager().createSubscription(options.getSubscriptionPublishingInterval()));
+        }
+    }
+
+    private void createMonitoredItems(final OpcUaOptions options, final List<Registration> registrations)
+            throws Exception {
+        final List<MonitoredItemCreateRequest> requests = new ArrayList<>(registrations.size());
+        for (final Registration registration : registrations) {
+            final ReadValueId readValueId = new ReadValueId(registration.nodeId, AttributeId.Value.uid(), null,
+                    QualifiedName.NULL_VALUE);
+            final MonitoringParameters parameters = new MonitoringParameters(
+                    uint(this.clientHandles.incrementAndGet()), options.getSubscriptionSamplingInterval(),
+                    getFilter(options, registration.dataType), uint(options.getSubscriptionQueueSize()), true);
+            requests.add(new MonitoredItemCreateRequest(readValueId, MonitoringMode.Reporting, parameters));
+        }
+
+        final List<UaMonitoredItem> items = this.driver.runSafe(this.subscription.createMonitoredItems(
+                TimestampsToReturn.Neither, requests, (item, index) -> {
+                    final Registration registration = registrations.get(index);
+                    item.setValueConsumer((monitoredItem, value) -> notify(registration, value));
+                }));
+
+        for (int i = 0; i < items.size(); i++) {
+            final Registration registration = registrations.get(i);
+            final UaMonitoredItem item = items.get(i);
+            final StatusCode status = item.getStatusCode();
+            if (nonNull(status) && status.isGood()) {
+                registration.item = item;
+            } else {
+                logger.warn("monitoring node id: {} failed", registration.nodeId);
+                notifyFailure(registration, message.errorBadResultStatus(isNull(status) ? 0 : status.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Returns the data change filter applying the configured deadband, that is supported only by numeric nodes.
+     */
+    private static ExtensionObject getFilter(final OpcUaOptions options, final DataType dataType) {
+        final DeadbandType deadbandType = options.getSubscriptionDeadbandType();
+        final boolean isNumeric = dataType == DataType.INTEGER || dataType == DataType.LONG
+                || dataType == DataType.FLOAT || dataType == DataType.DOUBLE;
+        if (deadbandType == DeadbandType.None || !isNumeric) {
+            return null;
+        }
+        return ExtensionObject.encode(new DataChangeFilter(DataChangeTrigger.StatusValue,
+                uint(deadbandType.getValue()), options.getSubscriptionDeadbandValue()));
+    }
+
+    private void notify(final Registration registration, final DataValue value) {
+        final ChannelRecord record = registration.newRecord();
+        this.driver.setReadResult(record, registration.dataType, registration.nodeId, value);
+        record.setTimestamp(System.currentTimeMillis());
+        notify(registration, record);
+    }
+
+    private void notifyFailure(final Registration registration, final String failure) {
+        final ChannelRecord record = registration.newRecord();
+        record.setChannelStatus(new ChannelStatus(FAILURE, failure, null));
+        record.setTimestamp(System.currentTimeMillis());
+        notify(registration, record);
+    }
+
+    private static void notify(final Registration registration, final ChannelRecord record) {
+        try {
+            registration.listener.onChannelEvent(new ChannelEvent(record));
+        } catch (final Exception e) {
+            logger.warn(message.errorNotifyingListener(), e);
+        }
+    }
+
+    /**
+     * A {@link ChannelListener} registered for a channel, and the monitored item serving it.
+     */
+    static final class Registration {
+
+        private final ChannelListener listener;
+        private final Map<String, Object> channelConfig;
+        private final String channelName;
+        private final DataType dataType;
+        private final NodeId nodeId;
+        private volatile UaMonitoredItem item;
+
+        Registration(final ChannelListener listener, final Map<String, Object> channelConfig,
+                final String channelName, final DataType dataType, final NodeId nodeId) {
+            this.listener = listener;
+            this.channelConfig = channelConfig;
+            this.channelName = channelName;
+            this.dataType = dataType;
+            this.nodeId = nodeId;
+        }
+
+        private ChannelRecord newRecord() {
+            final ChannelRecord record = ChannelRecord.createReadRecord(this.channelName, this.dataType);
+            record.setChannelConfig(this.channelConfig);
+            return record;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.eclipse.kura.core.configuration.metatype.Tad;
 import org.eclipse.kura.core.configuration.metatype.Toption;
 import org.eclipse.kura.core.configuration.metatype.Tscalar;
 import org.eclipse.kura.driver.ChannelDescriptor;
+import org.eclipse.kura.type.DataType;
 import org.eclipse.kura.util.collection.CollectionUtil;
 import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
@@ -42,6 +43,10 @@ public final class OpcUaChannelDescriptor implements ChannelDescriptor {
     private static final String NODE_NAMESPACE_INDEX = "node.namespace.index";
     private static final String NODE_ID_TYPE = "node.id.type";
 
+    /** The channel name and value type, added to the channel configuration by the Asset */
+    private static final String CHANNEL_NAME = "+name";
+    private static final String CHANNEL_VALUE_TYPE = "+value.type";
+
     private static void addOptions(Tad target, Enum<?>[] values) {
         final List<Option> options = target.getOption();
         for (Enum<?> value : values) {
@@ -90,6 +95,16 @@ public final class OpcUaChannelDescriptor implements ChannelDescriptor {
         return elements;
     }
 
+    static String getChannelName(Map<String, Object> properties) {
+        final Object channelName = properties.get(CHANNEL_NAME);
+        return channelName != null ? channelName.toString() : null;
+    }
+
+    static DataType getValueType(Map<String, Object> properties) {
+        final Object valueType = properties.get(CHANNEL_VALUE_TYPE);
+        return valueType != null ? DataType.getDataType(valueType.toString()) : null;
+    }
+
     static int getNodeNamespaceIndex(Map<String, Object> properties) {
         return Integer.parseInt((String) properties.get(NODE_NAMESPACE_INDEX));
     }
@@ -15,7 +15,7 @@ package org.eclipse.kura.internal.driver.opcua;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
-import static org.eclipse.kura.KuraErrorCode.OPERATION_NOT_SUPPORTED;
+import static java.util.stream.Collectors.toList;
 import static org.eclipse.kura.channel.ChannelFlag.FAILURE;
 import static org.eclipse.kura.channel.ChannelFlag.SUCCESS;
 
@@ -27,13 +27,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.eclipse.kura.KuraRuntimeException;
-import org.eclipse.kura.channel.ChannelFlag;
 import org.eclipse.kura.channel.ChannelRecord;
 import org.eclipse.kura.channel.ChannelStatus;
 import org.eclipse.kura.channel.listener.ChannelListener;
@@ -53,12 +55,14 @@ import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
 import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfigBuilder;
 import org.eclipse.milo.opcua.sdk.client.api.nodes.VariableNode;
 import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
 import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,7 +72,9 @@ import io.netty.util.internal.StringUtil;
 /**
  * The Class {@link OpcUaDriver} is an OPC-UA Driver implementation for Kura Asset-Driver
  * Topology. Currently it only supports reading and writing from/to a specific
- * node. As of now, it doesn't support method execution or history read.
+ * node, and notifying the value changes of a node to the registered channel
+ * listeners through an OPC-UA subscription. As of now, it doesn't support
+ * method execution or history read.
  * <br/>
  * <br/>
  * This OPC-UA Driver can be used in cooperation with Kura Asset Model and in
@@ -93,6 +99,9 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
     /** Localization Resource. */
     private static final OpcUaMessages message = LocalizationAdapter.adapt(OpcUaMessages.class);
 
+    /** The delay in seconds between the attempts to restore the subscription of the channel listeners */
+    static final long LISTENERS_RESTORE_DELAY = 10;
+
     /** OPC-UA Client Connector */
     private OpcUaClient client;
 
@@ -104,7 +113,18 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
 
     private final AtomicBoolean isBusy = new AtomicBoolean();
 
-    private <U> U runSafe(final Future<U> future) throws ExecutionException, InterruptedException, TimeoutException {
+    /** The maximum number of nodes of a Read service call supported by the server, 0 if unlimited */
+    private volatile int maxNodesPerRead;
+
+    /** The channel listeners, notified through an OPC-UA subscription */
+    private final ListenerManager listenerManager = new ListenerManager(this);
+
+    /** Restores the subscription of the channel listeners after a disconnection */
+    private ScheduledExecutorService listenersRestoreExecutor;
+    private ScheduledFuture<?> listenersRestoreTask;
+    private final Object listenersRestoreLock = new Object();
+
+    <U> U runSafe(final Future<U> future) throws ExecutionException, InterruptedException, TimeoutException {
         try {
             return future.get(this.options.getRequestTimeout(), TimeUnit.MILLISECONDS);
         } catch (ExecutionException | InterruptedException | TimeoutException e) {
@@ -122,6 +142,9 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
     protected synchronized void activate(final Map<String, Object> properties) {
         logger.debug("Activating OPC-UA Driver...");
         this.extractProperties(properties);
+        synchronized (this.listenersRestoreLock) {
+            this.listenersRestoreExecutor = Executors.newSingleThreadScheduledExecutor();
+        }
         logger.debug("Activating OPC-UA Driver... Done");
     }
 
@@ -199,6 +222,8 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
             logger.debug("Connecting...");
             newClient = new OpcUaClient(clientConfigBuilder.build());
             this.client = (OpcUaClient) runSafe(newClient.connect());
+            this.maxNodesPerRead = readMaxNodesPerRead(this.client);
+            this.listenerManager.connected(this.client, this.options);
 
             logger.info(message.connectingDone());
         } catch (final Exception e) {
@@ -217,6 +242,9 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
      */
     protected synchronized void deactivate() {
         logger.debug("Deactivating OPC-UA Driver...");
+        synchronized (this.listenersRestoreLock) {
+            this.listenersRestoreExecutor.shutdownNow();
+        }
         try {
             this.disconnect();
         } catch (final ConnectionException e) {
@@ -234,6 +262,7 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
         }
         try {
             logger.info(message.disconnecting());
+            this.listenerManager.disconnected();
             shutdownClient(this.client);
             this.client = null;
             logger.info(message.disconnectingDone());
@@ -242,6 +271,21 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
         }
     }
 
+    private int readMaxNodesPerRead(final OpcUaClient client) {
+        try {
+            final DataValue value = runSafe(client.readValue(0.0, TimestampsToReturn.Neither,
+                    Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerRead));
+            final Object limit = value.getValue().getValue();
+            logger.debug("MaxNodesPerRead: {}", limit);
+            if (limit instanceof Number && ((Number) limit).intValue() > 0) {
+                return ((Number) limit).intValue();
+            }
+        } catch (final Exception e) {
+            logger.debug("Unable to read MaxNodesPerRead, assuming no limit", e);
+        }
+        return 0;
+    }
+
     private void shutdownClient(final OpcUaClient client) throws ConnectionException {
         if (isNull(this.client)) {
             return;
@@ -313,31 +357,68 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
         }
     }
 
-    private void runReadRequest(OpcUaRequestInfo requestInfo) {
-        ChannelRecord record = requestInfo.channelRecord;
-        final VariableNode node = this.client.getAddressSpace().createVariableNode(requestInfo.nodeId);
-        Object readResult = null;
+    /**
+     * Reads the provided nodes with as few Read service calls as possible, splitting them in batches of at most
+     * {@link #maxNodesPerRead} nodes.
+     *
+     * @param requestInfos
+     *            the nodes to read and the records to be filled
+     * @param nodeIds
+     *            the ids of the nodes to read, in the same order as the request infos
+     */
+    private void runReadRequests(final List<OpcUaRequestInfo> requestInfos, final List<NodeId> nodeIds) {
+        final int size = requestInfos.size();
+        final int batchSize = this.maxNodesPerRead > 0 ? this.maxNodesPerRead : size;
+
+        for (int start = 0; start < size; start += batchSize) {
+            final int end = Math.min(size, start + batchSize);
+            List<DataValue> values = null;
+            Exception failure = null;
+            try {
+                logger.debug("reading {} nodes", end - start);
+                values = runSafe(this.client.readValues(0.0, TimestampsToReturn.Neither, nodeIds.subList(start, end)));
+                if (values.size() != end - start) {
+                    throw new IOException(message.readFailed());
+                }
+                logger.debug("Read Successful");
+            } catch (final Exception e) {
+                logger.warn(message.readFailed(), e);
+                failure = e;
+            }
+
+            final long timestamp = System.currentTimeMillis();
+            for (int i = start; i < end; i++) {
+                final ChannelRecord record = requestInfos.get(i).channelRecord;
+                if (failure != null) {
+                    record.setChannelStatus(new ChannelStatus(FAILURE, message.readFailed(), failure));
+                } else {
+                    final OpcUaRequestInfo requestInfo = requestInfos.get(i);
+                    setReadResult(record, requestInfo.dataType, requestInfo.nodeId, values.get(i - start));
+                }
+                record.setTimestamp(timestamp);
+            }
+        }
+    }
+
+    void setReadResult(final ChannelRecord record, final DataType dataType, final NodeId nodeId,
+            final DataValue value) {
+        final Object readResult;
         try {
-            logger.debug("reading:  namespace index: {} node id: {}", requestInfo.nodeNamespaceIndex,
-                    requestInfo.nodeId);
-            readResult = extractValue(runSafe(node.readValue()));
-            logger.debug("Read Successful");
+            checkStatus(value.getStatusCode());
+            readResult = extractValue(value);
         } catch (final Exception e) {
-            record.setChannelStatus(new ChannelStatus(ChannelFlag.FAILURE, message.readFailed(), e));
-            record.setTimestamp(System.currentTimeMillis());
-            logger.warn(message.readFailed(), e);
+            record.setChannelStatus(new ChannelStatus(FAILURE, message.readFailed(), e));
+            logger.warn("reading node id: {} failed", nodeId, e);
             return;
         }
 
-        final Optional<TypedValue<?>> typedValue = this.getTypedValue(requestInfo.dataType, readResult);
+        final Optional<TypedValue<?>> typedValue = this.getTypedValue(dataType, readResult);
         if (!typedValue.isPresent()) {
             record.setChannelStatus(new ChannelStatus(FAILURE, message.errorValueTypeConversion(), null));
-            record.setTimestamp(System.currentTimeMillis());
             return;
         }
         record.setValue(typedValue.get());
         record.setChannelStatus(new ChannelStatus(SUCCESS));
-        record.setTimestamp(System.currentTimeMillis());
     }
 
     /** {@inheritDoc} */
@@ -349,22 +430,57 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
         if (isNull(this.client)) {
             this.connect();
         }
+        final List<OpcUaRequestInfo> requestInfos = new ArrayList<>(records.size());
         for (final ChannelRecord record : records) {
-            OpcUaRequestInfo.extract(record).ifPresent(this::runReadRequest);
+            OpcUaRequestInfo.extract(record).ifPresent(requestInfos::add);
         }
+        runReadRequests(requestInfos, requestInfos.stream().map(info -> info.nodeId).collect(toList()));
     }
 
     /** {@inheritDoc} */
     @Override
     public void registerChannelListener(final Map<String, Object> channelConfig, final ChannelListener listener)
             throws ConnectionException {
-        throw new KuraRuntimeException(OPERATION_NOT_SUPPORTED);
+        requireNonNull(channelConfig, message.propertiesNonNull());
+        requireNonNull(listener, message.listenerNonNull());
+        if (this.isBusy.get()) {
+            throw new ConnectionException(message.errorDriverBusy());
+        }
+        if (isNull(this.client)) {
+            this.connect();
+        }
+
+        final String channelName = OpcUaChannelDescriptor.getChannelName(channelConfig);
+        if (isNull(channelName)) {
+            throw new IllegalArgumentException(message.errorRetrievingChannelName());
+        }
+        final DataType dataType;
+        final NodeId nodeId;
+        try {
+            dataType = OpcUaChannelDescriptor.getValueType(channelConfig);
+        } catch (final Exception e) {
+            throw new IllegalArgumentException(message.errorRetrievingValueType(), e);
+        }
+        if (isNull(dataType)) {
+            throw new IllegalArgumentException(message.errorRetrievingValueType());
+        }
+        try {
+            final int nodeNamespaceIndex = OpcUaChannelDescriptor.getNodeNamespaceIndex(channelConfig);
+            final NodeIdType nodeIdType = OpcUaChannelDescriptor.getNodeIdType(channelConfig);
+            nodeId = OpcUaChannelDescriptor.getNodeId(channelConfig, nodeNamespaceIndex, nodeIdType);
+        } catch (final Exception e) {
+            throw new IllegalArgumentException(message.errorRetrievingNodeId(), e);
+        }
+
+        this.listenerManager.register(this.client, this.options,
+                new ListenerManager.Registration(listener, channelConfig, channelName, dataType, nodeId));
     }
 
     /** {@inheritDoc} */
     @Override
     public void unregisterChannelListener(final ChannelListener listener) throws ConnectionException {
-        throw new KuraRuntimeException(OPERATION_NOT_SUPPORTED);
+        requireNonNull(listener, message.listenerNonNull());
+        this.listenerManager.unregister(listener);
     }
 
     /**
@@ -383,9 +499,55 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
             }
         }
         this.extractProperties(properties);
+        if (this.listenerManager.hasRegistrations()) {
+            // the listeners are notified only while connected, connect again without waiting for a read or write
+            restoreListeners(0);
+        }
         logger.debug("Updating OPC-UA Driver... Done");
     }
 
+    /**
+     * Schedules an attempt to restore the subscription of the channel listeners, connecting the driver if needed.
+     * The attempt is repeated every {@link #LISTENERS_RESTORE_DELAY} seconds until it succeeds or all the listeners
+     * are unregistered.
+     *
+     * @param delay
+     *            the delay in seconds of the first attempt
+     */
+    void restoreListeners(final long delay) {
+        synchronized (this.listenersRestoreLock) {
+            if (nonNull(this.listenersRestoreTask) && !this.listenersRestoreTask.isDone()) {
+                return;
+            }
+            try {
+                this.listenersRestoreTask = this.listenersRestoreExecutor.schedule(this::runListenersRestore, delay,
+                        TimeUnit.SECONDS);
+            } catch (final RejectedExecutionException e) {
+                logger.debug("Driver deactivated, not restoring the listeners");
+            }
+        }
+    }
+
+    private void runListenersRestore() {
+        synchronized (this.listenersRestoreLock) {
+            this.listenersRestoreTask = null;
+        }
+        if (!this.listenerManager.hasRegistrations()) {
+            return;
+        }
+        try {
+            if (isNull(this.client)) {
+                // restores the subscription through ListenerManager.connected()
+                connect();
+            } else {
+                this.listenerManager.resubscribe();
+            }
+        } catch (final Exception e) {
+            logger.warn(message.errorRestoringSubscriptions(), e);
+            restoreListeners(LISTENERS_RESTORE_DELAY);
+        }
+    }
+
     private void runWriteRequest(OpcUaRequestInfo requestInfo) {
         ChannelRecord record = requestInfo.channelRecord;
         final TypedValue<?> value = record.getValue();
@@ -486,12 +648,14 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
         for (ChannelRecord record : channelRecords) {
             OpcUaRequestInfo.extract(record).ifPresent(preparedRead.requestInfos::add);
         }
+        preparedRead.nodeIds = preparedRead.requestInfos.stream().map(info -> info.nodeId).collect(toList());
         return preparedRead;
     }
 
     private class OpcUaPreparedRead implements PreparedRead {
 
         private List<OpcUaRequestInfo> requestInfos = new ArrayList<>();
+        private List<NodeId> nodeIds;
         private volatile List<ChannelRecord> channelRecords;
 
         @Override
@@ -503,9 +667,7 @@ public final class OpcUaDriver implements Driver, ConfigurableComponent {
                 OpcUaDriver.this.connect();
             }
 
-            for (OpcUaRequestInfo requestInfo : requestInfos) {
-                OpcUaDriver.this.runReadRequest(requestInfo);
-            }
+            OpcUaDriver.this.runReadRequests(requestInfos, nodeIds);
 
             return Collections.unmodifiableList(channelRecords);
         }
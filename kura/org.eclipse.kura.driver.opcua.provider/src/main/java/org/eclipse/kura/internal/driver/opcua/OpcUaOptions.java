@@ -31,6 +31,7 @@ import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
 import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
 import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
 import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +58,11 @@ import org.slf4j.LoggerFactory;
  * <li>password</li>
  * <li>request.timeout</li>
  * <li>session.timeout</li>
+ * <li>subscription.publishing.interval</li>
+ * <li>subscription.sampling.interval</li>
+ * <li>subscription.queue.size</li>
+ * <li>subscription.deadband.type</li> must be one of these : None, Absolute, Percent
+ * <li>subscription.deadband.value</li>
  * </ul>
  */
 final class OpcUaOptions {
@@ -131,6 +137,31 @@ final class OpcUaOptions {
      */
     private static final String SESSION_TIMEOUT = "session.timeout";
 
+    /**
+     * Configurable property specifying the publishing interval of the subscription used by the channel listeners
+     */
+    private static final String SUBSCRIPTION_PUBLISHING_INTERVAL = "subscription.publishing.interval";
+
+    /**
+     * Configurable property specifying the sampling interval of the nodes monitored for the channel listeners
+     */
+    private static final String SUBSCRIPTION_SAMPLING_INTERVAL = "subscription.sampling.interval";
+
+    /**
+     * Configurable property specifying the queue size of the nodes monitored for the channel listeners
+     */
+    private static final String SUBSCRIPTION_QUEUE_SIZE = "subscription.queue.size";
+
+    /**
+     * Configurable property specifying the deadband type of the numeric nodes monitored for the channel listeners
+     */
+    private static final String SUBSCRIPTION_DEADBAND_TYPE = "subscription.deadband.type";
+
+    /**
+     * Configurable property specifying the deadband of the numeric nodes monitored for the channel listeners
+     */
+    private static final String SUBSCRIPTION_DEADBAND_VALUE = "subscription.deadband.value";
+
     /**
      * Configurable Property to set OPC-UA server username
      */
@@ -392,6 +423,77 @@ final class OpcUaOptions {
         return sessionTimeout * 1000;
     }
 
+    /**
+     * Returns the publishing interval of the subscription used by the channel listeners (in milliseconds)
+     *
+     * @return the publishing interval (in milliseconds)
+     */
+    double getSubscriptionPublishingInterval() {
+        double publishingInterval = 1000;
+        final Object interval = this.properties.get(SUBSCRIPTION_PUBLISHING_INTERVAL);
+        if (nonNull(interval) && (interval instanceof Integer)) {
+            publishingInterval = (Integer) interval;
+        }
+        return publishingInterval;
+    }
+
+    /**
+     * Returns the sampling interval of the nodes monitored for the channel listeners (in milliseconds)
+     *
+     * @return the sampling interval (in milliseconds), 0 for the fastest rate supported by the server
+     */
+    double getSubscriptionSamplingInterval() {
+        double samplingInterval = 1000;
+        final Object interval = this.properties.get(SUBSCRIPTION_SAMPLING_INTERVAL);
+        if (nonNull(interval) && (interval instanceof Integer)) {
+            samplingInterval = Math.max(0, (Integer) interval);
+        }
+        return samplingInterval;
+    }
+
+    /**
+     * Returns the number of samples of a monitored node that the server keeps between two publishing intervals
+     *
+     * @return the queue size
+     */
+    int getSubscriptionQueueSize() {
+        int queueSize = 10;
+        final Object size = this.properties.get(SUBSCRIPTION_QUEUE_SIZE);
+        if (nonNull(size) && (size instanceof Integer)) {
+            queueSize = Math.max(1, (Integer) size);
+        }
+        return queueSize;
+    }
+
+    /**
+     * Returns the deadband type of the numeric nodes monitored for the channel listeners
+     *
+     * @return the deadband type
+     */
+    DeadbandType getSubscriptionDeadbandType() {
+        final Object type = this.properties.get(SUBSCRIPTION_DEADBAND_TYPE);
+        if (DeadbandType.Absolute.name().equals(type)) {
+            return DeadbandType.Absolute;
+        } else if (DeadbandType.Percent.name().equals(type)) {
+            return DeadbandType.Percent;
+        }
+        return DeadbandType.None;
+    }
+
+    /**
+     * Returns the deadband of the numeric nodes monitored for the channel listeners
+     *
+     * @return the deadband value
+     */
+    double getSubscriptionDeadbandValue() {
+        double deadbandValue = 0;
+        final Object value = this.properties.get(SUBSCRIPTION_DEADBAND_VALUE);
+        if (nonNull(value) && (value instanceof Number)) {
+            deadbandValue = Math.abs(((Number) value).doubleValue());
+        }
+        return deadbandValue;
+    }
+
     /**
      * Returns the OPC-UA Username
      *
@@ -15,6 +15,7 @@ package org.eclipse.kura.internal.driver.s7plc;
 import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -39,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import Moka7.S7;
 import Moka7.S7Client;
+import Moka7.S7DataItem;
 
 /**
  * The Kura S7PlcDriver is a S7 PLC Driver implementation for Kura Asset-Driver
@@ -188,6 +190,101 @@ public final class S7PlcDriver extends AbstractBlockDriver<S7PlcDomain> implemen
         }
     }
 
+    /**
+     * Packs the consecutive {@link S7PlcToplevelBlockTask} instances with the same {@link Mode} into multi variables
+     * requests, so that blocks belonging to different DBs are transferred with a single request. A request contains
+     * at most {@link S7Client#MaxVars} items and both the request and its reply must fit in the negotiated PDU. Tasks
+     * that do not fit in a PDU alone are executed with a plain read or write request, that is split by Moka7.
+     */
+    @Override
+    protected void runTasks(List<BlockTask> tasks) {
+        final int pduLength = this.client.PDULength();
+        MultiVarsRequest request = null;
+        for (BlockTask task : tasks) {
+            if (request != null && request.add(task)) {
+                continue;
+            }
+            if (request != null) {
+                runMultiVarsRequest(request.tasks);
+            }
+            request = new MultiVarsRequest(task.getMode(), pduLength);
+            if (!request.add(task)) {
+                request = null;
+                runTask(task);
+            }
+        }
+        if (request != null) {
+            runMultiVarsRequest(request.tasks);
+        }
+    }
+
+    private void runMultiVarsRequest(List<S7PlcToplevelBlockTask> tasks) {
+        if (tasks.size() == 1) {
+            runTask(tasks.get(0));
+            return;
+        }
+        final Mode mode = tasks.get(0).getMode();
+        final List<S7PlcToplevelBlockTask> requestTasks = new ArrayList<>(tasks.size());
+        if (mode == Mode.READ) {
+            requestTasks.addAll(tasks);
+        } else {
+            for (S7PlcToplevelBlockTask task : tasks) {
+                if (updateChildren(task)) {
+                    requestTasks.add(task);
+                }
+            }
+            if (requestTasks.isEmpty()) {
+                return;
+            }
+        }
+
+        final S7DataItem[] items = new S7DataItem[requestTasks.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = requestTasks.get(i).getDataItem();
+        }
+        logger.debug("{} {} DB blocks with a single request", mode == Mode.READ ? "Reading" : "Writing",
+                items.length);
+        final int result = mode == Mode.READ ? this.client.ReadMultiVars(items, items.length)
+                : this.client.WriteMultiVars(items, items.length);
+        if (result != 0) {
+            final Moka7Exception e = new Moka7Exception(
+                    "multiple variables, count: " + items.length + " status: " + result, result);
+            requestTasks.forEach(task -> task.onFailure(e));
+            handleMoka7IOException(e);
+            return;
+        }
+
+        for (int i = 0; i < items.length; i++) {
+            final S7PlcToplevelBlockTask task = requestTasks.get(i);
+            final S7DataItem item = items[i];
+            if (item.Result != 0) {
+                final Moka7Exception e = new Moka7Exception("DB: " + item.DBNumber + " off: " + item.Start + " len: "
+                        + item.Amount + " status: " + item.Result, item.Result);
+                logger.warn(messages.errorIOFailed(), e);
+                task.onFailure(e);
+            } else if (mode == Mode.READ) {
+                updateChildren(task);
+            } else {
+                task.onSuccess();
+            }
+        }
+    }
+
+    private boolean updateChildren(S7PlcToplevelBlockTask task) {
+        try {
+            if (task.getMode() == Mode.READ) {
+                task.onBufferRead();
+            } else {
+                task.fillBuffer();
+            }
+            return true;
+        } catch (Exception e) {
+            task.onFailure(e);
+            logger.warn(messages.errorUnexpectedException(), e);
+            return false;
+        }
+    }
+
     private void handleMoka7IOException(Moka7Exception e) {
         logger.warn(messages.errorIOFailed(), e);
         if (e.getStatusCode() <= S7Client.errTCPConnectionReset) {
@@ -216,6 +313,56 @@ public final class S7PlcDriver extends AbstractBlockDriver<S7PlcDomain> implemen
         }
     }
 
+    /**
+     * Collects the tasks of a multi variables request, as long as they fit in the request and in its reply.
+     */
+    private static final class MultiVarsRequest {
+
+        // S7 job and ack data headers, including function and items count
+        private static final int REQUEST_HEADER_SIZE = 12;
+        private static final int REPLY_HEADER_SIZE = 14;
+        // variable specification of a request item
+        private static final int ITEM_SPEC_SIZE = 12;
+        // return code, transport size and length of a data item
+        private static final int ITEM_DATA_HEADER_SIZE = 4;
+
+        private final Mode mode;
+        private final int pduLength;
+        private final List<S7PlcToplevelBlockTask> tasks = new ArrayList<>();
+        private int requestSize = REQUEST_HEADER_SIZE;
+        private int replySize = REPLY_HEADER_SIZE;
+
+        MultiVarsRequest(Mode mode, int pduLength) {
+            this.mode = mode;
+            this.pduLength = pduLength;
+        }
+
+        boolean add(BlockTask task) {
+            if (!(task instanceof S7PlcToplevelBlockTask) || task.getMode() != this.mode
+                    || this.tasks.size() >= S7Client.MaxVars) {
+                return false;
+            }
+            final int length = task.getEnd() - task.getStart();
+            // data items are padded to an even length
+            final int itemDataSize = ITEM_DATA_HEADER_SIZE + length + length % 2;
+            int newRequestSize = this.requestSize + ITEM_SPEC_SIZE;
+            int newReplySize = this.replySize;
+            if (this.mode == Mode.READ) {
+                newReplySize += itemDataSize;
+            } else {
+                newRequestSize += itemDataSize;
+                newReplySize += 1;
+            }
+            if (newRequestSize > this.pduLength || newReplySize > this.pduLength) {
+                return false;
+            }
+            this.requestSize = newRequestSize;
+            this.replySize = newReplySize;
+            this.tasks.add((S7PlcToplevelBlockTask) task);
+            return true;
+        }
+    }
+
     @SuppressWarnings("serial")
     private class Moka7Exception extends IOException {
 
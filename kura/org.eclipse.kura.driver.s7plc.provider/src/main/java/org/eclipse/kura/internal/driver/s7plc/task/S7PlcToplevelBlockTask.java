@@ -22,6 +22,9 @@ import org.eclipse.kura.internal.driver.s7plc.S7PlcDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import Moka7.S7;
+import Moka7.S7DataItem;
+
 public class S7PlcToplevelBlockTask extends ToplevelBlockTask {
 
     private static final Logger logger = LoggerFactory.getLogger(S7PlcDriver.class);
@@ -46,6 +49,36 @@ public class S7PlcToplevelBlockTask extends ToplevelBlockTask {
         }
     }
 
+    /**
+     * Decodes the values of the children of this task, after its buffer has been read by a multi variables request.
+     *
+     * @throws IOException
+     *             if a child fails
+     */
+    public void onBufferRead() throws IOException {
+        runChildren();
+    }
+
+    /**
+     * Encodes the values of the children of this task, before its buffer is written by a multi variables request.
+     *
+     * @throws IOException
+     *             if a child fails
+     */
+    public void fillBuffer() throws IOException {
+        runChildren();
+    }
+
+    /**
+     * Returns an {@link S7DataItem} describing the data of this task, backed by the buffer of this task.
+     *
+     * @return the {@link S7DataItem}
+     */
+    public S7DataItem getDataItem() {
+        return new S7DataItem(S7.S7AreaDB, areaNo, getStart(), getEnd() - getStart(),
+                ((ByteArrayBuffer) getBuffer()).getBackingArray());
+    }
+
     @Override
     public Buffer getBuffer() {
         if (data == null) {
@@ -699,4 +699,67 @@ public interface WireMessages {
 
     @En("Unexpected exception while dispatching envelope")
     public String fifoUnexpectedExceptionWhileDispatching();
+
+    @En("Activating Window Aggregator...")
+    public String activatingWindowAggregator();
+
+    @En("Activating Window Aggregator...Done")
+    public String activatingWindowAggregatorDone();
+
+    @En("Updating Window Aggregator...")
+    public String updatingWindowAggregator();
+
+    @En("Updating Window Aggregator...Done")
+    public String updatingWindowAggregatorDone();
+
+    @En("Deactivating Window Aggregator...")
+    public String deactivatingWindowAggregator();
+
+    @En("Deactivating Window Aggregator...Done")
+    public String deactivatingWindowAggregatorDone();
+
+    @En("The window size and slide would split the window in more than {0} panes, using a tumbling window")
+    public String windowAggregatorTooManyPanes(int maxPanes);
+
+    @En("Activating Deadband Filter...")
+    public String activatingDeadbandFilter();
+
+    @En("Activating Deadband Filter...Done")
+    public String activatingDeadbandFilterDone();
+
+    @En("Updating Deadband Filter...")
+    public String updatingDeadbandFilter();
+
+    @En("Updating Deadband Filter...Done")
+    public String updatingDeadbandFilterDone();
+
+    @En("Invalid monitored properties regular expression, monitoring all the properties")
+    public String deadbandFilterInvalidPattern();
+
+    @En("Activating Wire Helper Service...")
+    public String activatingWireHelperService();
+
+    @En("Activating Wire Helper Service...Done")
+    public String activatingWireHelperServiceDone();
+
+    @En("Updating Wire Helper Service...")
+    public String updatingWireHelperService();
+
+    @En("Updating Wire Helper Service...Done")
+    public String updatingWireHelperServiceDone();
+
+    @En("Deactivating Wire Helper Service...")
+    public String deactivatingWireHelperService();
+
+    @En("Deactivating Wire Helper Service...Done")
+    public String deactivatingWireHelperServiceDone();
+
+    @En("Unexpected exception while delivering envelope")
+    public String dispatcherUnexpectedExceptionWhileDelivering();
+
+    @En("Interrupted while adding new envelope to the wire queue")
+    public String dispatcherInterruptedWhileSubmitting();
+
+    @En("Timeout while delivering the envelopes of the closed dispatcher")
+    public String dispatcherCloseTimeout();
 }
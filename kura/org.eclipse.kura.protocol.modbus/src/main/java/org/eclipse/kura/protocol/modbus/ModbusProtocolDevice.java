@@ -16,10 +16,20 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.KuraConnectionStatus;
 import org.eclipse.kura.comm.CommConnection;
@@ -635,17 +645,21 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
     }
 
     /**
-     * Installation of an ethernet connection to communicate
+     * Installation of an ethernet connection to communicate.
+     * <p>
+     * The connection is served by an {@link EthernetConnection}, that sends the requests and receives the responses
+     * without blocking the callers. In Modbus TCP mode the responses are matched to the requests by the MBAP
+     * transaction identifier, so that concurrent callers keep several transactions in flight on the same
+     * connection. The RTU over TCP frames have no transaction identifier, in this mode the transactions are
+     * performed one at a time.
      */
     private final class EthernetCommunicate extends Communicate {
 
-        InputStream inputStream;
-        OutputStream outputStream;
-        Socket socket;
         int port;
         String ipAddress;
         String connType;
-        boolean connected = false;
+        private volatile EthernetConnection connection;
+        private final Semaphore rtuTransaction = new Semaphore(1);
 
         public EthernetCommunicate(ConnectionFactory connFactory, Properties connectionConfig)
                 throws ModbusProtocolException {
@@ -659,26 +673,18 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             }
             this.port = Integer.valueOf(sPort).intValue();
             ModbusProtocolDevice.this.m_connConfigd = true;
-            this.socket = new Socket();
         }
 
         @Override
-        public void connect() {
+        public synchronized void connect() {
             if (!ModbusProtocolDevice.this.m_connConfigd) {
                 s_logger.error("Can't connect, port not configured");
             } else {
-                if (!this.connected) {
+                if (this.connection == null || !this.connection.isOpen()) {
                     try {
-                        this.socket = new Socket(this.ipAddress, this.port);
-                        try {
-                            this.inputStream = this.socket.getInputStream();
-                            this.outputStream = this.socket.getOutputStream();
-                            this.connected = true;
-                            s_logger.info("TCP connected");
-                        } catch (IOException e) {
-                            disconnect();
-                            s_logger.error("Failed to get socket streams: " + e);
-                        }
+                        this.connection = new EthernetConnection(new InetSocketAddress(this.ipAddress, this.port),
+                                PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType));
+                        s_logger.info("TCP connected");
                     } catch (IOException e) {
                         s_logger.error("Failed to connect to remote: " + e);
                     }
@@ -687,34 +693,17 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         }
 
         @Override
-        public void disconnect() {
-            if(this.socket==null){
-                return;
-            }
-            if (ModbusProtocolDevice.this.m_connConfigd) {
-                if (this.connected) {
-                    try {
-                        if (!this.socket.isInputShutdown()) {
-                            this.socket.shutdownInput();
-                        }
-                        if (!this.socket.isOutputShutdown()) {
-                            this.socket.shutdownOutput();
-                        }
-                        this.socket.close();
-                    } catch (IOException eClose) {
-                        s_logger.error("Error closing TCP: " + eClose);
-                    }
-                    this.inputStream = null;
-                    this.outputStream = null;
-                    this.connected = false;
-                    this.socket = null;
-                }
+        public synchronized void disconnect() {
+            if (this.connection != null) {
+                this.connection.close(new IOException("Connection closed"));
+                this.connection = null;
             }
         }
 
         @Override
         public int getConnectStatus() {
-            if (this.connected) {
+            final EthernetConnection currentConnection = this.connection;
+            if (currentConnection != null && currentConnection.isOpen()) {
                 return KuraConnectionStatus.CONNECTED;
             } else if (ModbusProtocolDevice.this.m_connConfigd) {
                 return KuraConnectionStatus.DISCONNECTED;
@@ -725,156 +714,408 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
 
         @Override
         public byte[] msgTransaction(byte[] msg) throws ModbusProtocolException {
-            byte[] cmd = null;
-
-            // ---------------------------------------------- Send Message
-            // ---------------------------------------------------
-            if (ModbusProtocolDevice.this.m_txMode == ModbusTransmissionMode.RTU_MODE) {
-                if (PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)) {
-                    cmd = new byte[msg.length + 6];
-                    // build MBAP header
-                    int index = getNextTransactionIndex();
-                    cmd[0] = (byte) (index >> 8);
-                    cmd[1] = (byte) index;
-                    cmd[2] = 0;
-                    cmd[3] = 0;
-                    // length
-                    int len = msg.length;
-                    cmd[4] = (byte) (len >> 8);
-                    cmd[5] = (byte) len;
-                    for (int i = 0; i < msg.length; i++) {
-                        cmd[i + 6] = msg[i];
-                    }
-                    // No crc in Modbus TCP
-                } else {
-                    cmd = new byte[msg.length + 2];
-                    for (int i = 0; i < msg.length; i++) {
-                        cmd[i] = msg[i];
-                    }
-                    // Add crc calculation to end of message
-                    int crc = Crc16.getCrc16(msg, msg.length, 0x0ffff);
-                    cmd[msg.length] = (byte) crc;
-                    cmd[msg.length + 1] = (byte) (crc >> 8);
-                }
-            } else {
+            if (ModbusProtocolDevice.this.m_txMode != ModbusTransmissionMode.RTU_MODE) {
                 throw new ModbusProtocolException(ModbusProtocolErrorCode.METHOD_NOT_SUPPORTED,
                         "Only RTU over TCP/IP supported");
             }
 
             // Check connection status and connect
             connect();
-            if (!this.connected) {
+            final EthernetConnection currentConnection = this.connection;
+            if (currentConnection == null || !currentConnection.isOpen()) {
                 throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
                         "Cannot transact on closed socket");
             }
 
-            // Send the message
-            try {
-                // flush input
-                while (this.inputStream.available() > 0) {
-                    this.inputStream.read();
+            byte[] response;
+            if (PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)) {
+                byte[] cmd = new byte[msg.length + 6];
+                // build MBAP header
+                int index = getNextTransactionIndex();
+                cmd[0] = (byte) (index >> 8);
+                cmd[1] = (byte) index;
+                cmd[2] = 0;
+                cmd[3] = 0;
+                // length
+                int len = msg.length;
+                cmd[4] = (byte) (len >> 8);
+                cmd[5] = (byte) len;
+                System.arraycopy(msg, 0, cmd, 6, msg.length);
+                // No crc in Modbus TCP
+                response = currentConnection.transact(cmd, index, ModbusProtocolDevice.this.m_respTout);
+            } else {
+                byte[] cmd = new byte[msg.length + 2];
+                System.arraycopy(msg, 0, cmd, 0, msg.length);
+                // Add crc calculation to end of message
+                int crc = Crc16.getCrc16(msg, msg.length, 0x0ffff);
+                cmd[msg.length] = (byte) crc;
+                cmd[msg.length + 1] = (byte) (crc >> 8);
+                try {
+                    this.rtuTransaction.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Interrupted");
+                }
+                try {
+                    response = currentConnection.transact(cmd, 0, ModbusProtocolDevice.this.m_respTout);
+                } finally {
+                    this.rtuTransaction.release();
                 }
-                // send all data
-                this.outputStream.write(cmd, 0, cmd.length);
-                this.outputStream.flush();
+            }
+
+            // test modbus id
+            if (response[0] != msg[0]) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "incorrect modbus id " + String.format("%02X", response[0]));
+            }
+            // test function number
+            if ((response[1] & 0x7f) != msg[1]) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "incorrect function number " + String.format("%02X", response[1]));
+            }
+            // check for an Exception response
+            if ((response[1] & 0x80) == 0x80) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "Modbus responds an error = " + String.format("%02X", response[2]));
+            }
+            return response;
+        }
+    }
+
+    /**
+     * A TCP connection to a Modbus device, served by a non blocking {@link SocketChannel} and by a dedicated I/O
+     * thread. The callers queue their requests and wait for the matching response, the I/O thread writes the queued
+     * requests as soon as the socket accepts them and dispatches the received responses to the waiting callers.
+     * <p>
+     * The Modbus TCP responses are matched to the requests by the MBAP transaction identifier, the responses that do
+     * not match any pending transaction, for example because the caller has timed out, are discarded. The RTU over
+     * TCP responses are dispatched to the single pending transaction. Since they carry no transaction identifier, the
+     * received data is drained before each RTU request is written, as the serial connections do, and the responses
+     * received while no request is in flight are discarded.
+     * <p>
+     * A response completes a transaction only if its request has been written and it has the unit identifier and
+     * the function code of the request. The requests of the callers that have timed out are not written, unless
+     * they are already being written.
+     */
+    private static final class EthernetConnection implements Runnable {
+
+        private static final int MBAP_HEADER_LENGTH = 6;
+        private static final int MAXIMUM_ADU_LENGTH = 260;
+
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final boolean isMbap;
+        private final ConcurrentMap<Integer, Transaction> pending = new ConcurrentHashMap<Integer, Transaction>();
+        private final Queue<Transaction> outgoing = new ConcurrentLinkedQueue<Transaction>();
+        private final ByteBuffer input = ByteBuffer.allocate(4 * MAXIMUM_ADU_LENGTH);
+        private volatile boolean open = true;
+
+        EthernetConnection(InetSocketAddress address, boolean isMbap) throws IOException {
+            this.isMbap = isMbap;
+            this.channel = SocketChannel.open(address);
+            Selector channelSelector = null;
+            try {
+                this.channel.configureBlocking(false);
+                this.channel.socket().setTcpNoDelay(true);
+                channelSelector = Selector.open();
+                this.channel.register(channelSelector, SelectionKey.OP_READ);
             } catch (IOException e) {
-                // Assume this means the socket is closed...make sure it is
-                s_logger.error("Socket disconnect in send: " + e);
-                disconnect();
-                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Send failure: "
-                        + e.getMessage());
+                if (channelSelector != null) {
+                    channelSelector.close();
+                }
+                this.channel.close();
+                throw e;
             }
+            this.selector = channelSelector;
 
-            // ---------------------------------------------- Receive response
-            // ---------------------------------------------------
-            // wait for and process response
+            final Thread ioThread = new Thread(this, "ModbusTCP " + address);
+            ioThread.setDaemon(true);
+            ioThread.start();
+        }
 
-            boolean endFrame = false;
-            byte[] response = new byte[262]; // response buffer
-            int respIndex = 0;
-            int minimumLength = 5; // default minimum message length
-            if (PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)) {
-                minimumLength += 6;
+        boolean isOpen() {
+            return this.open;
+        }
+
+        /**
+         * Queues the provided request and waits for the response.
+         *
+         * @param adu
+         *            the request, including the MBAP header or the CRC
+         * @param transactionId
+         *            the MBAP transaction identifier, 0 for RTU over TCP
+         * @param timeout
+         *            the response timeout in milliseconds, 0 to wait indefinitely
+         * @return the response, without the MBAP header
+         * @throws ModbusProtocolException
+         *             if the response is not received in time or the connection fails
+         */
+        byte[] transact(byte[] adu, int transactionId, int timeout) throws ModbusProtocolException {
+            final int pduOffset = this.isMbap ? MBAP_HEADER_LENGTH : 0;
+            final Transaction transaction = new Transaction(ByteBuffer.wrap(adu), adu[pduOffset], adu[pduOffset + 1]);
+            if (this.pending.putIfAbsent(transactionId, transaction) != null) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "Transaction identifier already in use " + transactionId);
             }
-            while (!endFrame) {
-                try {
-                    this.socket.setSoTimeout(ModbusProtocolDevice.this.m_respTout);
-                    int resp = this.inputStream.read(response, respIndex, 1);
-                    if (resp > 0) {
-                        respIndex += resp;
-                        if (PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)) {
-                            if (respIndex == 7) {
-                                // test modbus id
-                                if (response[6] != msg[0]) {
-                                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                                            "incorrect modbus id " + String.format("%02X", response[6]));
-                                }
-                            } else if (respIndex == 8) {
-                                // test function number
-                                if ((response[7] & 0x7f) != msg[1]) {
-                                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                                            "incorrect function number " + String.format("%02X", response[7]));
-                                }
-                            } else if (respIndex == 9) {
-                                // Check first for an Exception response
-                            	if ((response[7] & 0x80) == 0x80) {                                    
-                            		throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
-                            				"Modbus responds an error = " + String.format("%02X", response[8]));
-                                } else {
-                                    if (response[7] == ModbusFunctionCodes.FORCE_SINGLE_COIL
-                                            || response[7] == ModbusFunctionCodes.PRESET_SINGLE_REG
-                                            || response[7] == ModbusFunctionCodes.FORCE_MULTIPLE_COILS
-                                            || response[7] == ModbusFunctionCodes.PRESET_MULTIPLE_REGS) {
-                                        minimumLength = 12;
-                                    } else {
-                                        // bytes count
-                                        minimumLength = response[8] + 9;
-                                    }
-                                }
-                            } else if (respIndex == minimumLength) {
-                                endFrame = true;
-                            }
-                        } else {
+            try {
+                if (!this.open) {
+                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                            "Cannot transact on closed socket");
+                }
+                this.outgoing.add(transaction);
+                this.selector.wakeup();
+                return transaction.await(timeout);
+            } finally {
+                // the request is not written if it is still queued
+                transaction.cancel();
+                this.pending.remove(transactionId, transaction);
+            }
+        }
 
-                        }
-                    } else {
-                        s_logger.error("Socket disconnect in recv");
-                        throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Recv failure");
+        @Override
+        public void run() {
+            try {
+                final SelectionKey key = this.channel.keyFor(this.selector);
+                while (this.open) {
+                    key.interestOps(this.outgoing.isEmpty() ? SelectionKey.OP_READ
+                            : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    this.selector.select();
+                    if (!this.selector.selectedKeys().remove(key)) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        send();
+                    }
+                    if (key.isReadable()) {
+                        receive();
                     }
-                } catch (SocketTimeoutException e) {
-                    String failMsg = "Recv timeout";
-                    s_logger.warn(failMsg);
-                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, failMsg);
-                } catch (IOException e) {
-                    s_logger.error("Socket disconnect in recv: " + e);
-                    throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Recv failure");
                 }
-
+            } catch (IOException e) {
+                s_logger.error("Socket disconnect: " + e);
+                close(e);
+            } catch (RuntimeException e) {
+                // the selector or the channel have been closed by disconnect()
+                close(new IOException(e));
             }
+        }
 
-            // then check for a valid message
-            switch (response[7]) {
-            case ModbusFunctionCodes.FORCE_SINGLE_COIL:
-            case ModbusFunctionCodes.PRESET_SINGLE_REG:
-            case ModbusFunctionCodes.FORCE_MULTIPLE_COILS:
-            case ModbusFunctionCodes.PRESET_MULTIPLE_REGS:
-                byte[] ret = new byte[8];
-                for (int i = 6; i < 12; i++) {
-                    ret[i - 6] = response[i];
+        private void send() throws IOException {
+            Transaction transaction;
+            while ((transaction = this.outgoing.peek()) != null) {
+                final ByteBuffer buffer = transaction.request;
+                if (buffer.position() == 0) {
+                    if (transaction.isCancelled()) {
+                        this.outgoing.poll();
+                        continue;
+                    }
+                    if (!this.isMbap) {
+                        drainInput();
+                    }
                 }
-                return ret;
-            case ModbusFunctionCodes.READ_COIL_STATUS:
-            case ModbusFunctionCodes.READ_INPUT_STATUS:
-            case ModbusFunctionCodes.READ_INPUT_REGS:
-            case ModbusFunctionCodes.READ_HOLDING_REGS:
-                int byteCnt = (response[8] & 0xff) + 3 + 6;
-                ret = new byte[byteCnt - 6];
-                for (int i = 6; i < byteCnt; i++) {
-                    ret[i - 6] = response[i];
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // the socket send buffer is full, wait until it can be written again
+                    return;
+                }
+                this.outgoing.poll();
+                transaction.sent = true;
+            }
+        }
+
+        /**
+         * Discards the data received so far, including the data not yet read from the socket.
+         */
+        private void drainInput() throws IOException {
+            int discarded = this.input.position();
+            this.input.clear();
+            int read;
+            while ((read = this.channel.read(this.input)) > 0) {
+                discarded += read;
+                this.input.clear();
+            }
+            if (read < 0) {
+                throw new IOException("Connection closed by the remote device");
+            }
+            if (discarded > 0) {
+                s_logger.debug("Discarding {} bytes of stale data", discarded);
+            }
+        }
+
+        private void receive() throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                throw new IOException("Connection closed by the remote device");
+            }
+            this.input.flip();
+            while (this.isMbap ? receiveMbapFrame() : receiveRtuFrame()) {
+                // dispatch all the complete frames
+            }
+            this.input.compact();
+        }
+
+        private boolean receiveMbapFrame() {
+            if (this.input.remaining() < MBAP_HEADER_LENGTH) {
+                return false;
+            }
+            final int start = this.input.position();
+            final int transactionId = getUnsignedShort(start);
+            final int protocolId = getUnsignedShort(start + 2);
+            final int length = getUnsignedShort(start + 4);
+            if (protocolId != 0 || length < 3 || length > MAXIMUM_ADU_LENGTH - MBAP_HEADER_LENGTH) {
+                discardInput();
+                return false;
+            }
+            if (this.input.remaining() < MBAP_HEADER_LENGTH + length) {
+                return false;
+            }
+            final byte[] response = new byte[length];
+            this.input.position(start + MBAP_HEADER_LENGTH);
+            this.input.get(response);
+            dispatch(transactionId, response);
+            return true;
+        }
+
+        private boolean receiveRtuFrame() {
+            if (this.input.remaining() < 3) {
+                return false;
+            }
+            final int start = this.input.position();
+            final int function = this.input.get(start + 1) & 0xff;
+            final int length;
+            if ((function & 0x80) == 0x80 || function == ModbusFunctionCodes.READ_EXCEPTION_STATUS) {
+                length = 5;
+            } else if (function == ModbusFunctionCodes.FORCE_SINGLE_COIL
+                    || function == ModbusFunctionCodes.PRESET_SINGLE_REG
+                    || function == ModbusFunctionCodes.FORCE_MULTIPLE_COILS
+                    || function == ModbusFunctionCodes.PRESET_MULTIPLE_REGS
+                    || function == ModbusFunctionCodes.GET_COMM_EVENT_COUNTER) {
+                length = 8;
+            } else {
+                // bytes count
+                length = (this.input.get(start + 2) & 0xff) + 5;
+            }
+            if (this.input.remaining() < length) {
+                return false;
+            }
+            final byte[] response = new byte[length];
+            this.input.get(response);
+            if (Crc16.getCrc16(response, length, 0xffff) != 0) {
+                discardInput();
+                return false;
+            }
+            dispatch(0, response);
+            return true;
+        }
+
+        private int getUnsignedShort(int index) {
+            return (this.input.get(index) & 0xff) << 8 | this.input.get(index + 1) & 0xff;
+        }
+
+        /**
+         * Drops the received data, that cannot be parsed as a valid frame.
+         */
+        private void discardInput() {
+            s_logger.warn("Discarding " + this.input.remaining() + " bytes of invalid data");
+            this.input.position(this.input.limit());
+        }
+
+        private void dispatch(int transactionId, byte[] response) {
+            final Transaction transaction = this.pending.get(transactionId);
+            if (transaction == null || !transaction.sent) {
+                s_logger.debug("Discarding response of unknown transaction {}", transactionId);
+            } else if (!transaction.matches(response)) {
+                s_logger.debug("Discarding response of transaction {} with unexpected unit or function", transactionId);
+            } else if (this.pending.remove(transactionId, transaction)) {
+                transaction.complete(response);
+            }
+        }
+
+        synchronized void close(IOException cause) {
+            if (!this.open) {
+                return;
+            }
+            this.open = false;
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                s_logger.error("Error closing selector: " + e);
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                s_logger.error("Error closing TCP: " + e);
+            }
+            for (Transaction transaction : this.pending.values()) {
+                transaction.fail(cause);
+            }
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    private static final class Transaction {
+
+        private final ByteBuffer request;
+        private final byte unitId;
+        private final byte function;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] response;
+        private volatile IOException failure;
+        private volatile boolean cancelled;
+
+        /**
+         * Whether the request has been completely written, only accessed by the I/O thread.
+         */
+        private boolean sent;
+
+        Transaction(ByteBuffer request, byte unitId, byte function) {
+            this.request = request;
+            this.unitId = unitId;
+            this.function = function;
+        }
+
+        boolean matches(byte[] response) {
+            return response.length >= 2 && response[0] == this.unitId && (response[1] & 0x7f) == this.function;
+        }
+
+        void cancel() {
+            this.cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        void complete(byte[] response) {
+            this.response = response;
+            this.done.countDown();
+        }
+
+        void fail(IOException failure) {
+            this.failure = failure;
+            this.done.countDown();
+        }
+
+        byte[] await(int timeout) throws ModbusProtocolException {
+            try {
+                if (timeout > 0) {
+                    if (!this.done.await(timeout, TimeUnit.MILLISECONDS)) {
+                        String failMsg = "Recv timeout";
+                        s_logger.warn(failMsg);
+                        throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, failMsg);
+                    }
+                } else {
+                    this.done.await();
                 }
-                return ret;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Interrupted");
+            }
+            if (this.failure != null) {
+                s_logger.error("Socket disconnect in recv: " + this.failure);
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Recv failure");
             }
-            return null;
+            return this.response;
         }
     }
 
@@ -1404,7 +1645,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
      * 
      * @return the next transaction index.
      */
-    private int getNextTransactionIndex() {
+    private static synchronized int getNextTransactionIndex() {
         transactionIndex++;
         if (transactionIndex > 0xffff) {
             transactionIndex = 0;
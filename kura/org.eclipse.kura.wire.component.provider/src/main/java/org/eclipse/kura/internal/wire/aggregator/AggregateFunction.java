@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+/**
+ * The functions that can be computed by the {@link WindowAggregator} for each property of the received records. The
+ * result of a function is emitted in a property named {@code <property>_<suffix>}.
+ */
+enum AggregateFunction {
+
+    MIN("min"),
+    MAX("max"),
+    AVG("avg"),
+    SUM("sum"),
+    COUNT("count"),
+    STDDEV("stddev"),
+    FIRST("first"),
+    LAST("last");
+
+    private final String suffix;
+
+    private AggregateFunction(final String suffix) {
+        this.suffix = suffix;
+    }
+
+    String getSuffix() {
+        return this.suffix;
+    }
+
+    /**
+     * Returns the function with the provided suffix.
+     *
+     * @param suffix
+     *            the suffix, case insensitive
+     * @return the function, or null if there is no function with the provided suffix
+     */
+    static AggregateFunction fromSuffix(final String suffix) {
+        for (final AggregateFunction function : values()) {
+            if (function.suffix.equalsIgnoreCase(suffix)) {
+                return function;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * A window split in panes of equal length. The samples are added to the current pane, a window is the combination of
+ * the last panes. A tumbling window has a single pane, a window sliding by a fraction of its size has as many panes as
+ * needed for the slide to be a whole number of panes, so that each sample is accumulated once regardless of the
+ * number of windows it belongs to.
+ * <p>
+ * Only the numeric properties of the received records are aggregated, the other properties are ignored.
+ */
+final class PaneWindow {
+
+    private final int panes;
+    private final Set<AggregateFunction> functions;
+    private final Map<String, PropertyAccumulator> accumulators = new HashMap<>();
+
+    private final long[] records;
+    private final long[] firstTimestamp;
+    private final long[] lastTimestamp;
+    private final int[] windowSlots;
+
+    private long currentPane;
+
+    /**
+     * Instantiates a new pane window.
+     *
+     * @param panes
+     *            the number of panes of a window
+     * @param functions
+     *            the functions to compute
+     */
+    PaneWindow(final int panes, final Set<AggregateFunction> functions) {
+        this.panes = panes;
+        this.functions = functions;
+        this.records = new long[panes];
+        this.firstTimestamp = new long[panes];
+        this.lastTimestamp = new long[panes];
+        this.windowSlots = new int[panes];
+    }
+
+    /**
+     * Adds the numeric properties of the provided record to the current pane.
+     *
+     * @param wireRecord
+     *            the record
+     * @param timestamp
+     *            the time the record has been received
+     */
+    void add(final WireRecord wireRecord, final long timestamp) {
+        final int slot = slot(this.currentPane);
+        if (this.records[slot]++ == 0) {
+            this.firstTimestamp[slot] = timestamp;
+        }
+        this.lastTimestamp[slot] = timestamp;
+
+        for (final Entry<String, TypedValue<?>> property : wireRecord.getProperties().entrySet()) {
+            final TypedValue<?> value = property.getValue();
+            if (value == null || !isNumeric(value.getType())) {
+                continue;
+            }
+            PropertyAccumulator accumulator = this.accumulators.get(property.getKey());
+            if (accumulator == null) {
+                accumulator = new PropertyAccumulator(this.panes);
+                this.accumulators.put(property.getKey(), accumulator);
+            }
+            accumulator.add(slot, ((Number) value.getValue()).doubleValue());
+        }
+    }
+
+    /**
+     * Closes the current pane and starts a new one.
+     *
+     * @param summarize
+     *            true if a window ends with the current pane
+     * @return the summary of the window ending with the current pane, or null if no window ends with the current pane
+     *         or the window contains no numeric properties
+     */
+    WireRecord closePane(final boolean summarize) {
+        final WireRecord summary = summarize ? summarize() : null;
+
+        this.currentPane++;
+        final int slot = slot(this.currentPane);
+        this.records[slot] = 0;
+
+        fillWindowSlots();
+        final Iterator<PropertyAccumulator> iterator = this.accumulators.values().iterator();
+        while (iterator.hasNext()) {
+            final PropertyAccumulator accumulator = iterator.next();
+            accumulator.reset(slot);
+            if (accumulator.count(this.windowSlots) == 0) {
+                // the property has not been received for a whole window
+                iterator.remove();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Returns true if the panes of the window contain no records.
+     *
+     * @return true if the window is empty
+     */
+    boolean isEmpty() {
+        for (final long paneRecords : this.records) {
+            if (paneRecords != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private WireRecord summarize() {
+        fillWindowSlots();
+
+        long windowStart = 0;
+        long windowEnd = 0;
+        boolean empty = true;
+        for (final int slot : this.windowSlots) {
+            if (this.records[slot] == 0) {
+                continue;
+            }
+            if (empty) {
+                windowStart = this.firstTimestamp[slot];
+                empty = false;
+            }
+            windowEnd = this.lastTimestamp[slot];
+        }
+        if (empty) {
+            return null;
+        }
+
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        for (final Entry<String, PropertyAccumulator> accumulator : this.accumulators.entrySet()) {
+            accumulator.getValue().summarize(accumulator.getKey(), this.windowSlots, this.functions, properties);
+        }
+        if (properties.isEmpty()) {
+            return null;
+        }
+        properties.put(WindowAggregator.WINDOW_START, TypedValues.newLongValue(windowStart));
+        properties.put(WindowAggregator.WINDOW_END, TypedValues.newLongValue(windowEnd));
+        return new WireRecord(properties);
+    }
+
+    private void fillWindowSlots() {
+        // from the oldest to the current pane
+        for (int i = 0; i < this.panes; i++) {
+            this.windowSlots[i] = slot(this.currentPane - this.panes + 1 + i);
+        }
+    }
+
+    private int slot(final long pane) {
+        return (int) Math.floorMod(pane, (long) this.panes);
+    }
+
+    private static boolean isNumeric(final DataType type) {
+        return type == DataType.INTEGER || type == DataType.LONG || type == DataType.FLOAT
+                || type == DataType.DOUBLE;
+    }
+}
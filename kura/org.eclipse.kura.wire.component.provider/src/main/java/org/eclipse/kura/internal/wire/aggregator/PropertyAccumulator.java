@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+
+/**
+ * Accumulates the samples of a single property, keeping one set of partial aggregates for each pane of a
+ * {@link PaneWindow} in primitive arrays indexed by the pane slot, so that adding a sample does not allocate.
+ * <p>
+ * The mean and the sum of the squared deviations of each pane are updated with the Welford method and the panes are
+ * combined with the Chan et al. method, avoiding the loss of precision of the sum of the squares.
+ */
+final class PropertyAccumulator {
+
+    private final long[] count;
+    private final double[] sum;
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] min;
+    private final double[] max;
+    private final double[] first;
+    private final double[] last;
+
+    PropertyAccumulator(final int slots) {
+        this.count = new long[slots];
+        this.sum = new double[slots];
+        this.mean = new double[slots];
+        this.m2 = new double[slots];
+        this.min = new double[slots];
+        this.max = new double[slots];
+        this.first = new double[slots];
+        this.last = new double[slots];
+    }
+
+    void add(final int slot, final double value) {
+        final long n = ++this.count[slot];
+        if (n == 1) {
+            this.sum[slot] = value;
+            this.mean[slot] = value;
+            this.m2[slot] = 0;
+            this.min[slot] = value;
+            this.max[slot] = value;
+            this.first[slot] = value;
+        } else {
+            this.sum[slot] += value;
+            final double delta = value - this.mean[slot];
+            this.mean[slot] += delta / n;
+            this.m2[slot] += delta * (value - this.mean[slot]);
+            if (value < this.min[slot]) {
+                this.min[slot] = value;
+            }
+            if (value > this.max[slot]) {
+                this.max[slot] = value;
+            }
+        }
+        this.last[slot] = value;
+    }
+
+    void reset(final int slot) {
+        this.count[slot] = 0;
+    }
+
+    /**
+     * Returns the number of samples in the provided slots.
+     *
+     * @param slots
+     *            the slots, from the oldest to the newest pane
+     * @return the number of samples
+     */
+    long count(final int[] slots) {
+        long n = 0;
+        for (final int slot : slots) {
+            n += this.count[slot];
+        }
+        return n;
+    }
+
+    /**
+     * Combines the panes in the provided slots and puts the results of the provided functions in the provided map,
+     * in properties named {@code <name>_<suffix>}. Nothing is put if the panes contain no samples.
+     *
+     * @param name
+     *            the property name
+     * @param slots
+     *            the slots, from the oldest to the newest pane
+     * @param functions
+     *            the functions to compute
+     * @param result
+     *            the map receiving the results
+     */
+    void summarize(final String name, final int[] slots, final Set<AggregateFunction> functions,
+            final Map<String, TypedValue<?>> result) {
+        long n = 0;
+        double totalSum = 0;
+        double totalMean = 0;
+        double totalM2 = 0;
+        double totalMin = Double.POSITIVE_INFINITY;
+        double totalMax = Double.NEGATIVE_INFINITY;
+        double totalFirst = 0;
+        double totalLast = 0;
+
+        for (final int slot : slots) {
+            final long paneCount = this.count[slot];
+            if (paneCount == 0) {
+                continue;
+            }
+            if (n == 0) {
+                totalFirst = this.first[slot];
+                totalMean = this.mean[slot];
+                totalM2 = this.m2[slot];
+            } else {
+                final long combined = n + paneCount;
+                final double delta = this.mean[slot] - totalMean;
+                totalMean += delta * paneCount / combined;
+                totalM2 += this.m2[slot] + delta * delta * n * paneCount / combined;
+            }
+            n += paneCount;
+            totalSum += this.sum[slot];
+            totalMin = Math.min(totalMin, this.min[slot]);
+            totalMax = Math.max(totalMax, this.max[slot]);
+            totalLast = this.last[slot];
+        }
+
+        if (n == 0) {
+            return;
+        }
+
+        for (final AggregateFunction function : functions) {
+            final String key = name + WindowAggregator.PROPERTY_SEPARATOR + function.getSuffix();
+            switch (function) {
+            case MIN:
+                result.put(key, TypedValues.newDoubleValue(totalMin));
+                break;
+            case MAX:
+                result.put(key, TypedValues.newDoubleValue(totalMax));
+                break;
+            case AVG:
+                result.put(key, TypedValues.newDoubleValue(totalMean));
+                break;
+            case SUM:
+                result.put(key, TypedValues.newDoubleValue(totalSum));
+                break;
+            case COUNT:
+                result.put(key, TypedValues.newLongValue(n));
+                break;
+            case STDDEV:
+                result.put(key, TypedValues.newDoubleValue(Math.sqrt(totalM2 / n)));
+                break;
+            case FIRST:
+                result.put(key, TypedValues.newDoubleValue(totalFirst));
+                break;
+            case LAST:
+                result.put(key, TypedValues.newDoubleValue(totalLast));
+                break;
+            default:
+                break;
+            }
+        }
+    }
+}
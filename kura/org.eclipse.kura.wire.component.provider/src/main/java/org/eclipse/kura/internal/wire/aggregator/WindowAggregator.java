@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.internal.wire.aggregator.WindowAggregatorOptions.WindowMode;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.localization.resources.WireMessages;
+import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireEmitter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.osgi.service.wireadmin.Wire;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class {@link WindowAggregator} represents a {@link WireComponent} which aggregates the numeric properties of the
+ * received records over tumbling or sliding windows, defined by time or by number of records, and emits one summary
+ * {@link WireRecord} per window.
+ * <p>
+ * The summary contains, for each aggregated property, the configured functions in properties named
+ * {@code <property>_<function>} and the times the first and the last aggregated records have been received in the
+ * {@code window_start} and {@code window_end} properties. Time windows are aligned to the epoch and are closed by a
+ * dedicated thread also if no records are received, windows without records are not emitted.
+ */
+public final class WindowAggregator implements WireEmitter, WireReceiver, ConfigurableComponent {
+
+    static final String PROPERTY_SEPARATOR = "_";
+    static final String WINDOW_START = "window_start";
+    static final String WINDOW_END = "window_end";
+
+    /** The maximum number of panes of a window, limiting the memory used by each property */
+    private static final int MAX_PANES = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(WindowAggregator.class);
+
+    private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
+
+    private volatile WireHelperService wireHelperService;
+    private WireSupport wireSupport;
+
+    private final LongSupplier clock;
+
+    private WindowMode windowMode;
+    private PaneWindow window;
+    private int panesPerWindow;
+    private int panesPerSlide;
+    /** The pane length, in milliseconds or in records depending on the window mode */
+    private long paneLength;
+
+    /** The index of the current pane, counted from the epoch in time mode and from the activation in count mode */
+    private long currentPane;
+    private long paneRecords;
+
+    private ScheduledExecutorService executor;
+    private String componentPid;
+
+    public WindowAggregator() {
+        this(System::currentTimeMillis);
+    }
+
+    WindowAggregator(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Bind the {@link WireHelperService}.
+     *
+     * @param wireHelperService
+     *            the new {@link WireHelperService}
+     */
+    protected synchronized void bindWireHelperService(final WireHelperService wireHelperService) {
+        if (isNull(this.wireHelperService)) {
+            this.wireHelperService = wireHelperService;
+        }
+    }
+
+    /**
+     * Unbind the {@link WireHelperService}
+     *
+     * @param wireHelperService
+     *            the new {@link WireHelperService}
+     */
+    protected synchronized void unbindWireHelperService(final WireHelperService wireHelperService) {
+        if (this.wireHelperService == wireHelperService) {
+            this.wireHelperService = null;
+        }
+    }
+
+    /**
+     * OSGi service component activation callback
+     *
+     * @param properties
+     *            the configured properties
+     */
+    protected synchronized void activate(final Map<String, Object> properties) {
+        logger.debug(message.activatingWindowAggregator());
+        this.wireSupport = this.wireHelperService.newWireSupport(this);
+        updated(properties);
+        logger.debug(message.activatingWindowAggregatorDone());
+    }
+
+    /**
+     * OSGi service component modification callback. The partially aggregated windows are discarded.
+     *
+     * @param properties
+     *            the updated properties
+     */
+    protected synchronized void updated(final Map<String, Object> properties) {
+        logger.debug(message.updatingWindowAggregator());
+        stopExecutor();
+
+        this.componentPid = String.valueOf(properties.getOrDefault(KURA_SERVICE_PID, "WindowAggregator"));
+        final WindowAggregatorOptions options = new WindowAggregatorOptions(properties);
+        this.windowMode = options.getWindowMode();
+
+        final int size = options.getWindowSize();
+        int slide = options.getWindowSlide();
+        if (size / gcd(size, slide) > MAX_PANES) {
+            logger.warn(message.windowAggregatorTooManyPanes(MAX_PANES));
+            slide = size;
+        }
+        final int pane = gcd(size, slide);
+        this.panesPerWindow = size / pane;
+        this.panesPerSlide = slide / pane;
+        this.window = new PaneWindow(this.panesPerWindow, options.getAggregateFunctions());
+        this.paneRecords = 0;
+
+        if (this.windowMode == WindowMode.TIME) {
+            this.paneLength = TimeUnit.SECONDS.toMillis(pane);
+            this.currentPane = this.clock.getAsLong() / this.paneLength;
+            this.executor = Executors
+                    .newSingleThreadScheduledExecutor(r -> new Thread(r, this.componentPid + "-WindowThread"));
+            scheduleNextPane();
+        } else {
+            this.paneLength = pane;
+            this.currentPane = 0;
+        }
+        logger.debug(message.updatingWindowAggregatorDone());
+    }
+
+    /**
+     * OSGi service component deactivation callback. The partially aggregated windows are discarded.
+     */
+    protected synchronized void deactivate() {
+        logger.debug(message.deactivatingWindowAggregator());
+        stopExecutor();
+        logger.debug(message.deactivatingWindowAggregatorDone());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void consumersConnected(final Wire[] wires) {
+        this.wireSupport.consumersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void producersConnected(final Wire[] wires) {
+        this.wireSupport.producersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Object polled(final Wire wire) {
+        return this.wireSupport.polled(wire);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void updated(final Wire wire, final Object value) {
+        this.wireSupport.updated(wire, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
+        requireNonNull(wireEnvelope, message.wireEnvelopeNonNull());
+        final long now = this.clock.getAsLong();
+        final List<WireRecord> summaries = new ArrayList<>();
+
+        if (this.windowMode == WindowMode.TIME) {
+            advanceTo(now / this.paneLength, summaries);
+            for (final WireRecord wireRecord : wireEnvelope.getRecords()) {
+                this.window.add(wireRecord, now);
+            }
+        } else {
+            for (final WireRecord wireRecord : wireEnvelope.getRecords()) {
+                this.window.add(wireRecord, now);
+                if (++this.paneRecords == this.paneLength) {
+                    this.paneRecords = 0;
+                    this.currentPane++;
+                    final boolean windowEnds = this.currentPane >= this.panesPerWindow
+                            && (this.currentPane - this.panesPerWindow) % this.panesPerSlide == 0;
+                    addSummary(this.window.closePane(windowEnds), summaries);
+                }
+            }
+        }
+        emit(summaries);
+    }
+
+    private synchronized void onPaneElapsed(final ScheduledExecutorService source) {
+        if (source != this.executor) {
+            // the component has been updated or deactivated
+            return;
+        }
+        final List<WireRecord> summaries = new ArrayList<>();
+        advanceTo(this.clock.getAsLong() / this.paneLength, summaries);
+        emit(summaries);
+        scheduleNextPane();
+    }
+
+    /**
+     * Closes the time panes up to the provided one, excluded.
+     */
+    private void advanceTo(final long pane, final List<WireRecord> summaries) {
+        while (this.currentPane < pane) {
+            final boolean windowEnds = (this.currentPane + 1) % this.panesPerSlide == 0;
+            addSummary(this.window.closePane(windowEnds), summaries);
+            this.currentPane++;
+            if (this.window.isEmpty()) {
+                // the following windows are empty as well
+                this.currentPane = pane;
+            }
+        }
+    }
+
+    private void scheduleNextPane() {
+        final long now = this.clock.getAsLong();
+        final long delay = (now / this.paneLength + 1) * this.paneLength - now;
+        final ScheduledExecutorService current = this.executor;
+        current.schedule(() -> onPaneElapsed(current), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopExecutor() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    private void emit(final List<WireRecord> summaries) {
+        if (!summaries.isEmpty()) {
+            this.wireSupport.emit(summaries);
+        }
+    }
+
+    private static void addSummary(final WireRecord summary, final List<WireRecord> summaries) {
+        if (summary != null) {
+            summaries.add(summary);
+        }
+    }
+
+    private static int gcd(final int a, final int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
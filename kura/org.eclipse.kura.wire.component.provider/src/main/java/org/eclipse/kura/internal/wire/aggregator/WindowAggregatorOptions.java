@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.localization.resources.WireMessages;
+
+/**
+ * The Class WindowAggregatorOptions is responsible to provide all the required
+ * options for the Window Aggregator Wire Component
+ */
+final class WindowAggregatorOptions {
+
+    private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
+
+    enum WindowType {
+        TUMBLING,
+        SLIDING
+    }
+
+    enum WindowMode {
+        TIME,
+        COUNT
+    }
+
+    private static final String WINDOW_TYPE = "window.type";
+    private static final String WINDOW_MODE = "window.mode";
+    private static final String WINDOW_SIZE = "window.size";
+    private static final String WINDOW_SLIDE = "window.slide";
+    private static final String AGGREGATE_FUNCTIONS = "aggregate.functions";
+
+    private static final String DEFAULT_WINDOW_TYPE = "tumbling";
+    private static final String DEFAULT_WINDOW_MODE = "time";
+    private static final int DEFAULT_WINDOW_SIZE = 60;
+    private static final int DEFAULT_WINDOW_SLIDE = 10;
+    private static final String DEFAULT_AGGREGATE_FUNCTIONS = "min,max,avg,count";
+
+    private final Map<String, Object> properties;
+
+    /**
+     * Instantiates a new window aggregator options.
+     *
+     * @param properties
+     *            the properties
+     */
+    WindowAggregatorOptions(final Map<String, Object> properties) {
+        requireNonNull(properties, message.propertiesNonNull());
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the window type.
+     *
+     * @return the window type
+     */
+    WindowType getWindowType() {
+        final Object type = this.properties.getOrDefault(WINDOW_TYPE, DEFAULT_WINDOW_TYPE);
+        return "sliding".equalsIgnoreCase(String.valueOf(type)) ? WindowType.SLIDING : WindowType.TUMBLING;
+    }
+
+    /**
+     * Returns the window mode, that defines if the window size and slide are expressed in seconds or in records.
+     *
+     * @return the window mode
+     */
+    WindowMode getWindowMode() {
+        final Object mode = this.properties.getOrDefault(WINDOW_MODE, DEFAULT_WINDOW_MODE);
+        return "count".equalsIgnoreCase(String.valueOf(mode)) ? WindowMode.COUNT : WindowMode.TIME;
+    }
+
+    /**
+     * Returns the window size, in seconds or in records depending on the window mode.
+     *
+     * @return the window size, at least 1
+     */
+    int getWindowSize() {
+        return getPositiveInteger(WINDOW_SIZE, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Returns the interval between the ends of two consecutive windows, in seconds or in records depending on the
+     * window mode. A tumbling window slides by its size.
+     *
+     * @return the window slide, at least 1
+     */
+    int getWindowSlide() {
+        if (getWindowType() == WindowType.TUMBLING) {
+            return getWindowSize();
+        }
+        return getPositiveInteger(WINDOW_SLIDE, DEFAULT_WINDOW_SLIDE);
+    }
+
+    /**
+     * Returns the functions to compute for each property. The unknown function names are ignored.
+     *
+     * @return the functions, all the functions if none is configured
+     */
+    Set<AggregateFunction> getAggregateFunctions() {
+        final Object configured = this.properties.getOrDefault(AGGREGATE_FUNCTIONS, DEFAULT_AGGREGATE_FUNCTIONS);
+        final Set<AggregateFunction> functions = EnumSet.noneOf(AggregateFunction.class);
+        for (final String name : String.valueOf(configured).split(",")) {
+            final AggregateFunction function = AggregateFunction.fromSuffix(name.trim());
+            if (function != null) {
+                functions.add(function);
+            }
+        }
+        return functions.isEmpty() ? EnumSet.allOf(AggregateFunction.class) : functions;
+    }
+
+    private int getPositiveInteger(final String key, final int defaultValue) {
+        final Object value = this.properties.get(key);
+        if (value instanceof Integer) {
+            return Math.max(1, (Integer) value);
+        }
+        return defaultValue;
+    }
+}
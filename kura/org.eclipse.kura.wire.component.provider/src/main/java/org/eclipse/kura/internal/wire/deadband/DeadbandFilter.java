@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.deadband;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.internal.wire.deadband.DeadbandFilterOptions.DeadbandType;
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.localization.resources.WireMessages;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireEmitter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.osgi.service.wireadmin.Wire;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class {@link DeadbandFilter} represents a {@link WireComponent} which forwards the monitored properties of the
+ * received records only when they change (report by exception). A numeric property is forwarded when it differs from
+ * the last forwarded value by more than an absolute or percentage deadband, any other property when it is not equal
+ * to the last forwarded value. A property is also forwarded when the heartbeat interval has elapsed since it has been
+ * last forwarded.
+ * <p>
+ * The properties not matching the monitored properties pattern, as the {@code assetName} and
+ * {@code <channel>_timestamp} properties emitted by the Wire Asset by default, are forwarded together with the
+ * monitored properties of their record. A {@code <channel>_timestamp} property is forwarded only together with its
+ * channel. The records without forwarded monitored properties are dropped. The last forwarded values are kept
+ * separately for each emitter.
+ */
+public final class DeadbandFilter implements WireEmitter, WireReceiver, ConfigurableComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadbandFilter.class);
+
+    private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
+
+    private static final String TIMESTAMP_SUFFIX = "_timestamp";
+
+    private volatile WireHelperService wireHelperService;
+    private WireSupport wireSupport;
+
+    private final LongSupplier clock;
+
+    private DeadbandType deadbandType;
+    private double deadband;
+    private long heartbeatInterval;
+    private Pattern monitoredProperties;
+
+    /** The last forwarded values, by emitter and property name */
+    private final Map<String, Map<String, PropertyState>> states = new HashMap<>();
+
+    public DeadbandFilter() {
+        this(System::currentTimeMillis);
+    }
+
+    DeadbandFilter(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Bind the {@link WireHelperService}.
+     *
+     * @param wireHelperService
+     *            the new {@link WireHelperService}
+     */
+    protected synchronized void bindWireHelperService(final WireHelperService wireHelperService) {
+        if (isNull(this.wireHelperService)) {
+            this.wireHelperService = wireHelperService;
+        }
+    }
+
+    /**
+     * Unbind the {@link WireHelperService}
+     *
+     * @param wireHelperService
+     *            the new {@link WireHelperService}
+     */
+    protected synchronized void unbindWireHelperService(final WireHelperService wireHelperService) {
+        if (this.wireHelperService == wireHelperService) {
+            this.wireHelperService = null;
+        }
+    }
+
+    /**
+     * OSGi service component activation callback
+     *
+     * @param properties
+     *            the configured properties
+     */
+    protected synchronized void activate(final Map<String, Object> properties) {
+        logger.debug(message.activatingDeadbandFilter());
+        this.wireSupport = this.wireHelperService.newWireSupport(this);
+        updated(properties);
+        logger.debug(message.activatingDeadbandFilterDone());
+    }
+
+    /**
+     * OSGi service component modification callback. The last forwarded values are discarded, the next received value
+     * of every property is forwarded.
+     *
+     * @param properties
+     *            the updated properties
+     */
+    protected synchronized void updated(final Map<String, Object> properties) {
+        logger.debug(message.updatingDeadbandFilter());
+        final DeadbandFilterOptions options = new DeadbandFilterOptions(properties);
+        this.deadbandType = options.getDeadbandType();
+        this.deadband = options.getDeadbandValue();
+        this.heartbeatInterval = options.getHeartbeatInterval();
+        try {
+            this.monitoredProperties = options.getMonitoredProperties();
+        } catch (final PatternSyntaxException e) {
+            logger.warn(message.deadbandFilterInvalidPattern(), e);
+            this.monitoredProperties = null;
+        }
+        this.states.clear();
+        logger.debug(message.updatingDeadbandFilterDone());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void consumersConnected(final Wire[] wires) {
+        this.wireSupport.consumersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void producersConnected(final Wire[] wires) {
+        this.wireSupport.producersConnected(wires);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized Object polled(final Wire wire) {
+        return this.wireSupport.polled(wire);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void updated(final Wire wire, final Object value) {
+        this.wireSupport.updated(wire, value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
+        requireNonNull(wireEnvelope, message.wireEnvelopeNonNull());
+        final long now = this.clock.getAsLong();
+        Map<String, PropertyState> emitterStates = this.states.get(wireEnvelope.getEmitterPid());
+        if (emitterStates == null) {
+            emitterStates = new HashMap<>();
+            this.states.put(wireEnvelope.getEmitterPid(), emitterStates);
+        }
+
+        final List<WireRecord> filteredRecords = new ArrayList<>();
+        for (final WireRecord wireRecord : wireEnvelope.getRecords()) {
+            final WireRecord filteredRecord = filter(wireRecord, emitterStates, now);
+            if (filteredRecord != null) {
+                filteredRecords.add(filteredRecord);
+            }
+        }
+        if (!filteredRecords.isEmpty()) {
+            this.wireSupport.emit(filteredRecords);
+        }
+    }
+
+    /**
+     * Filters the properties of the provided record.
+     *
+     * @return the provided record if all its properties are forwarded, a new record containing the forwarded ones, or
+     *         null if no monitored property is forwarded
+     */
+    private WireRecord filter(final WireRecord wireRecord, final Map<String, PropertyState> emitterStates,
+            final long now) {
+        final Map<String, TypedValue<?>> properties = wireRecord.getProperties();
+        final Map<String, TypedValue<?>> forwarded = new HashMap<>();
+        final List<String> unmonitored = new ArrayList<>();
+
+        for (final Entry<String, TypedValue<?>> property : properties.entrySet()) {
+            final TypedValue<?> value = property.getValue();
+            if (value == null || !isMonitored(property.getKey())) {
+                unmonitored.add(property.getKey());
+                continue;
+            }
+            PropertyState state = emitterStates.get(property.getKey());
+            if (state == null) {
+                state = new PropertyState();
+                emitterStates.put(property.getKey(), state);
+            }
+            if (state.isChanged(value, now, this.deadbandType, this.deadband, this.heartbeatInterval)) {
+                state.forwarded(value, now);
+                forwarded.put(property.getKey(), value);
+            }
+        }
+
+        if (forwarded.isEmpty()) {
+            return null;
+        }
+        final List<String> timestamps = new ArrayList<>();
+        for (final String propertyName : unmonitored) {
+            final String channelName = getTimestampChannel(propertyName);
+            if (channelName != null && properties.containsKey(channelName)) {
+                timestamps.add(propertyName);
+            } else {
+                forwarded.put(propertyName, properties.get(propertyName));
+            }
+        }
+        // the timestamp of a channel is forwarded only together with the channel
+        for (final String propertyName : timestamps) {
+            if (forwarded.containsKey(getTimestampChannel(propertyName))) {
+                forwarded.put(propertyName, properties.get(propertyName));
+            }
+        }
+        return forwarded.size() == properties.size() ? wireRecord : new WireRecord(forwarded);
+    }
+
+    /**
+     * Returns the channel name of a {@code <channel>_timestamp} property.
+     *
+     * @return the channel name, or null if the property is not a channel timestamp
+     */
+    private static String getTimestampChannel(final String propertyName) {
+        if (propertyName.length() > TIMESTAMP_SUFFIX.length() && propertyName.endsWith(TIMESTAMP_SUFFIX)) {
+            return propertyName.substring(0, propertyName.length() - TIMESTAMP_SUFFIX.length());
+        }
+        return null;
+    }
+
+    private boolean isMonitored(final String propertyName) {
+        return this.monitoredProperties == null || this.monitoredProperties.matcher(propertyName).matches();
+    }
+}
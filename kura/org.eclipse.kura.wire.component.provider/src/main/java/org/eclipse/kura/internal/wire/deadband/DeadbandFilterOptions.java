@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.deadband;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.localization.resources.WireMessages;
+
+/**
+ * The Class DeadbandFilterOptions is responsible to provide all the required
+ * options for the Deadband Filter Wire Component
+ */
+final class DeadbandFilterOptions {
+
+    private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
+
+    enum DeadbandType {
+        ABSOLUTE,
+        PERCENT
+    }
+
+    private static final String DEADBAND_TYPE = "deadband.type";
+    private static final String DEADBAND_VALUE = "deadband.value";
+    private static final String HEARTBEAT_INTERVAL = "heartbeat.interval";
+    private static final String MONITORED_PROPERTIES = "monitored.properties";
+
+    private static final String DEFAULT_DEADBAND_TYPE = "absolute";
+    private static final double DEFAULT_DEADBAND_VALUE = 0;
+    private static final int DEFAULT_HEARTBEAT_INTERVAL = 0;
+    private static final String DEFAULT_MONITORED_PROPERTIES = "(?!assetName$).*(?<!_timestamp)";
+
+    private final Map<String, Object> properties;
+
+    /**
+     * Instantiates a new deadband filter options.
+     *
+     * @param properties
+     *            the properties
+     */
+    DeadbandFilterOptions(final Map<String, Object> properties) {
+        requireNonNull(properties, message.propertiesNonNull());
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the deadband type, that defines if the deadband is an absolute difference or a percentage of the last
+     * forwarded value.
+     *
+     * @return the deadband type
+     */
+    DeadbandType getDeadbandType() {
+        final Object type = this.properties.getOrDefault(DEADBAND_TYPE, DEFAULT_DEADBAND_TYPE);
+        return "percent".equalsIgnoreCase(String.valueOf(type)) ? DeadbandType.PERCENT : DeadbandType.ABSOLUTE;
+    }
+
+    /**
+     * Returns the deadband, a numeric value is forwarded if it differs from the last forwarded one by more than the
+     * deadband.
+     *
+     * @return the deadband, not negative
+     */
+    double getDeadbandValue() {
+        final Object value = this.properties.get(DEADBAND_VALUE);
+        if (value instanceof Number) {
+            return Math.abs(((Number) value).doubleValue());
+        }
+        return DEFAULT_DEADBAND_VALUE;
+    }
+
+    /**
+     * Returns the interval after which a monitored property is forwarded even if it has not changed.
+     *
+     * @return the heartbeat interval in milliseconds, 0 if disabled
+     */
+    long getHeartbeatInterval() {
+        final Object interval = this.properties.get(HEARTBEAT_INTERVAL);
+        final int seconds = interval instanceof Integer ? (Integer) interval : DEFAULT_HEARTBEAT_INTERVAL;
+        return TimeUnit.SECONDS.toMillis(Math.max(0, seconds));
+    }
+
+    /**
+     * Returns the pattern matching the names of the properties subject to the deadband.
+     *
+     * @return the pattern
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the configured regular expression is invalid
+     */
+    Pattern getMonitoredProperties() {
+        final Object regex = this.properties.getOrDefault(MONITORED_PROPERTIES, DEFAULT_MONITORED_PROPERTIES);
+        return Pattern.compile(String.valueOf(regex));
+    }
+}
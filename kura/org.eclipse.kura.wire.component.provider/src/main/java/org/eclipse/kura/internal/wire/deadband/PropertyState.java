@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.deadband;
+
+import org.eclipse.kura.internal.wire.deadband.DeadbandFilterOptions.DeadbandType;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+
+/**
+ * The last forwarded value of a property. Numeric values are kept as a primitive long or double and compared with the
+ * deadband, the other values are compared for equality. Integral values are compared as longs, a double would not
+ * represent exactly the longs greater than 2^53.
+ */
+final class PropertyState {
+
+    private DataType type;
+    private long integralValue;
+    private double numericValue;
+    private TypedValue<?> value;
+    private long lastForwarded;
+
+    /**
+     * Returns true if the provided value must be forwarded, because it differs from the last forwarded value by more
+     * than the deadband, or its type is changed, or the heartbeat interval has elapsed since the last forwarded value.
+     *
+     * @param newValue
+     *            the received value
+     * @param now
+     *            the current time in milliseconds
+     * @param deadbandType
+     *            the deadband type
+     * @param deadband
+     *            the absolute deadband or the percentage of the last forwarded value
+     * @param heartbeatInterval
+     *            the heartbeat interval in milliseconds, 0 if disabled
+     * @return true if the value must be forwarded
+     */
+    boolean isChanged(final TypedValue<?> newValue, final long now, final DeadbandType deadbandType,
+            final double deadband, final long heartbeatInterval) {
+        if (this.type != newValue.getType()) {
+            return true;
+        }
+        if (heartbeatInterval > 0 && now - this.lastForwarded >= heartbeatInterval) {
+            return true;
+        }
+        if (!isNumeric(this.type)) {
+            return !this.value.equals(newValue);
+        }
+
+        if (isIntegral(this.type)) {
+            final long current = ((Number) newValue.getValue()).longValue();
+            final long difference;
+            try {
+                difference = Math.abs(Math.subtractExact(current, this.integralValue));
+            } catch (final ArithmeticException e) {
+                // the difference does not fit in a long, it is greater than any deadband
+                return true;
+            }
+            // Long.MIN_VALUE has no absolute value
+            return difference < 0 || difference > getThreshold(this.integralValue, deadbandType, deadband);
+        }
+
+        final double current = ((Number) newValue.getValue()).doubleValue();
+        final double difference = Math.abs(current - this.numericValue);
+        if (Double.isNaN(difference)) {
+            return Double.compare(current, this.numericValue) != 0;
+        }
+        return difference > getThreshold(this.numericValue, deadbandType, deadband);
+    }
+
+    /**
+     * Records the provided value as the last forwarded one.
+     *
+     * @param newValue
+     *            the forwarded value
+     * @param now
+     *            the current time in milliseconds
+     */
+    void forwarded(final TypedValue<?> newValue, final long now) {
+        this.type = newValue.getType();
+        if (isIntegral(this.type)) {
+            this.integralValue = ((Number) newValue.getValue()).longValue();
+            this.value = null;
+        } else if (isNumeric(this.type)) {
+            this.numericValue = ((Number) newValue.getValue()).doubleValue();
+            this.value = null;
+        } else {
+            this.value = newValue;
+        }
+        this.lastForwarded = now;
+    }
+
+    private static double getThreshold(final double lastValue, final DeadbandType deadbandType,
+            final double deadband) {
+        return deadbandType == DeadbandType.PERCENT ? Math.abs(lastValue) * deadband / 100 : deadband;
+    }
+
+    private static boolean isIntegral(final DataType type) {
+        return type == DataType.INTEGER || type == DataType.LONG;
+    }
+
+    private static boolean isNumeric(final DataType type) {
+        return type == DataType.INTEGER || type == DataType.LONG || type == DataType.FLOAT
+                || type == DataType.DOUBLE;
+    }
+}
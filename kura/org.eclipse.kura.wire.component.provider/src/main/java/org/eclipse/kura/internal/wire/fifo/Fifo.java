@@ -16,20 +16,21 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.configuration.ConfigurationService;
+import org.eclipse.kura.internal.wire.fifo.FifoRingBuffer.WaitStrategy;
 import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
 import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
 import org.eclipse.kura.wire.WireSupport;
 import org.osgi.service.wireadmin.Wire;
 import org.slf4j.Logger;
@@ -39,6 +40,11 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private static final String DISCARD_ENVELOPES_PROP_NAME = "discard.envelopes";
     private static final String QUEUE_CAPACITY_PROP_NAME = "queue.capacity";
+    private static final String WAIT_STRATEGY_PROP_NAME = "wait.strategy";
+    private static final String MERGE_ENVELOPES_PROP_NAME = "merge.envelopes";
+
+    private static final String QUEUE_DEPTH_METRIC_NAME = "queue.depth";
+    private static final String DISCARDED_ENVELOPES_METRIC_NAME = "discarded.envelopes";
 
     private static final Logger logger = LoggerFactory.getLogger(Fifo.class);
     private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
@@ -46,7 +52,9 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
     private volatile WireHelperService wireHelperService;
     private WireSupport wireSupport;
 
-    private FifoEmitterThread emitterThread;
+    private volatile FifoEmitterThread emitterThread;
+
+    private final LongAdder discardedEnvelopes = new LongAdder();
 
     public void bindWireHelperService(final WireHelperService wireHelperService) {
         if (isNull(this.wireHelperService)) {
@@ -63,6 +71,8 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
     public void activate(final Map<String, Object> properties) {
         logger.info(message.activatingFifo());
         wireSupport = this.wireHelperService.newWireSupport(this);
+        wireSupport.registerMetric(QUEUE_DEPTH_METRIC_NAME, this::getQueueDepth);
+        wireSupport.registerMetric(DISCARDED_ENVELOPES_METRIC_NAME, this.discardedEnvelopes::sum);
         updated(properties);
         logger.info(message.activatingFifoDone());
     }
@@ -80,12 +90,20 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
                 + "-EmitterThread";
         int queueCapacity = (Integer) properties.getOrDefault(QUEUE_CAPACITY_PROP_NAME, 50);
         boolean discardEnvelopes = (Boolean) properties.getOrDefault(DISCARD_ENVELOPES_PROP_NAME, false);
+        WaitStrategy waitStrategy = WaitStrategy
+                .fromString((String) properties.getOrDefault(WAIT_STRATEGY_PROP_NAME, "block"));
+        boolean mergeEnvelopes = (Boolean) properties.getOrDefault(MERGE_ENVELOPES_PROP_NAME, false);
 
-        restartEmitterThread(threadName, queueCapacity, discardEnvelopes);
+        restartEmitterThread(threadName, queueCapacity, discardEnvelopes, waitStrategy, mergeEnvelopes);
 
         logger.info(message.updatingFifoDone());
     }
 
+    private long getQueueDepth() {
+        final FifoEmitterThread currentEmitterThread = this.emitterThread;
+        return currentEmitterThread != null ? currentEmitterThread.queue.size() : 0;
+    }
+
     private synchronized void stopEmitterThread() {
         if (emitterThread != null) {
             emitterThread.shutdown();
@@ -93,12 +111,15 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
         }
     }
 
-    private synchronized void restartEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes) {
+    private synchronized void restartEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes,
+            WaitStrategy waitStrategy, boolean mergeEnvelopes) {
         stopEmitterThread();
 
-        logger.debug("Creating new emitter thread: {}, queue capacity: {}, discard envelopes: {}", threadName,
-                queueCapacity, discardEnvelopes);
-        emitterThread = new FifoEmitterThread(threadName, queueCapacity, discardEnvelopes);
+        logger.debug(
+                "Creating new emitter thread: {}, queue capacity: {}, discard envelopes: {}, wait strategy: {}, merge envelopes: {}",
+                threadName, queueCapacity, discardEnvelopes, waitStrategy, mergeEnvelopes);
+        emitterThread = new FifoEmitterThread(threadName, queueCapacity, discardEnvelopes, waitStrategy,
+                mergeEnvelopes);
         emitterThread.start();
     }
 
@@ -132,20 +153,17 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private class FifoEmitterThread extends Thread {
 
-        private Lock lock = new ReentrantLock();
-
-        private Condition producer = lock.newCondition();
-        private Condition consumer = lock.newCondition();
-
-        private boolean run = true;
-        private ArrayList<WireEnvelope> queue;
-        private int queueCapacity;
+        private final FifoRingBuffer<WireEnvelope> queue;
+        private final boolean mergeEnvelopes;
+        private final List<WireEnvelope> drained;
 
         private Consumer<WireEnvelope> submitter;
 
-        public FifoEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes) {
-            this.queue = new ArrayList<WireEnvelope>();
-            this.queueCapacity = queueCapacity;
+        public FifoEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes,
+                WaitStrategy waitStrategy, boolean mergeEnvelopes) {
+            this.queue = new FifoRingBuffer<>(queueCapacity, waitStrategy);
+            this.mergeEnvelopes = mergeEnvelopes;
+            this.drained = new ArrayList<>(queueCapacity);
             setName(threadName);
             if (discardEnvelopes) {
                 submitter = getEnvelopeDiscardingSubmitter();
@@ -156,18 +174,11 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
         private Consumer<WireEnvelope> getEnvelopeDiscardingSubmitter() {
             return (envelope) -> {
-                try {
-                    lock.lock();
-                    if (!run || queue.size() >= queueCapacity) {
-                        logger.debug("envelope discarded");
-                        return;
-                    } else {
-                        queue.add(envelope);
-                        producer.signal();
-                        logger.debug("envelope submitted");
-                    }
-                } finally {
-                    lock.unlock();
+                if (queue.offer(envelope)) {
+                    logger.debug("envelope submitted");
+                } else {
+                    discardedEnvelopes.increment();
+                    logger.debug("envelope discarded");
                 }
             };
         }
@@ -175,33 +186,20 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
         private Consumer<WireEnvelope> getEmitterBlockingSubmitter() {
             return (envelope) -> {
                 try {
-                    lock.lock();
-                    while (run && queue.size() >= queueCapacity) {
-                        consumer.await();
-                    }
-                    if (!run) {
-                        return;
+                    while (!queue.offer(envelope)) {
+                        if (!queue.awaitNotFull()) {
+                            return;
+                        }
                     }
-                    queue.add(envelope);
-                    producer.signal();
                     logger.debug("envelope submitted");
                 } catch (InterruptedException e) {
                     logger.warn(message.fifoInterruptedWhileSubmitting(), e);
-                } finally {
-                    lock.unlock();
                 }
             };
         }
 
         public void shutdown() {
-            try {
-                lock.lock();
-                run = false;
-                producer.signalAll();
-                consumer.signalAll();
-            } finally {
-                lock.unlock();
-            }
+            queue.shutdown();
         }
 
         public void submit(WireEnvelope envelope) {
@@ -210,28 +208,49 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
         @Override
         public void run() {
-            while (run) {
+            while (queue.isRunning()) {
                 try {
-                    WireEnvelope next = null;
-                    try {
-                        lock.lock();
-                        while (run && queue.isEmpty()) {
-                            producer.await();
-                        }
-                        if (!run) {
-                            break;
-                        }
-                        next = queue.remove(0);
-                        consumer.signal();
-                    } finally {
-                        lock.unlock();
+                    if (!queue.awaitNotEmpty()) {
+                        break;
+                    }
+                    queue.drainTo(drained);
+                    if (mergeEnvelopes) {
+                        emitMerged();
+                    } else {
+                        emitAll();
                     }
-                    wireSupport.emit(next.getRecords());
                 } catch (Exception e) {
                     logger.warn(message.fifoUnexpectedExceptionWhileDispatching(), e);
+                } finally {
+                    drained.clear();
                 }
             }
             logger.debug("exiting");
         }
+
+        private void emitAll() {
+            for (WireEnvelope next : drained) {
+                if (!queue.isRunning()) {
+                    return;
+                }
+                try {
+                    wireSupport.emit(next.getRecords());
+                } catch (Exception e) {
+                    logger.warn(message.fifoUnexpectedExceptionWhileDispatching(), e);
+                }
+            }
+        }
+
+        private void emitMerged() {
+            if (drained.size() == 1) {
+                wireSupport.emit(drained.get(0).getRecords());
+                return;
+            }
+            List<WireRecord> records = new ArrayList<>();
+            for (WireEnvelope next : drained) {
+                records.addAll(next.getRecords());
+            }
+            wireSupport.emit(records);
+        }
     }
 }
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.fifo;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, preallocated ring buffer for many producers and a single consumer.
+ * <p>
+ * The producers claim a slot with a compare-and-set on the tail and publish the element by advancing the sequence
+ * number of the slot, the consumer drains all the published elements in one pass without taking any lock. A lock is
+ * only used by the {@link WaitStrategy#BLOCK} strategy to put the waiting threads to sleep.
+ *
+ * @param <E>
+ *            the type of the elements
+ */
+final class FifoRingBuffer<E> {
+
+    /**
+     * Defines how the threads wait for the buffer to become not empty or not full.
+     */
+    enum WaitStrategy {
+        /**
+         * Waits on a condition, signaled by the other side. Lowest CPU usage.
+         */
+        BLOCK,
+        /**
+         * Busy spins, yielding the processor between the checks. Lowest latency, but keeps a core busy while
+         * waiting.
+         */
+        SPIN,
+        /**
+         * Spins for a few attempts, then polls the buffer parking the thread for a short time between the attempts.
+         */
+        PARK;
+
+        static WaitStrategy fromString(final String value) {
+            for (final WaitStrategy strategy : values()) {
+                if (strategy.name().equalsIgnoreCase(value)) {
+                    return strategy;
+                }
+            }
+            return BLOCK;
+        }
+    }
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final int capacity;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final WaitStrategy waitStrategy;
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private volatile boolean consumerWaiting;
+    private final AtomicInteger producersWaiting = new AtomicInteger();
+
+    private volatile boolean run = true;
+
+    FifoRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            this.sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    int capacity() {
+        return this.capacity;
+    }
+
+    boolean isRunning() {
+        return this.run;
+    }
+
+    /**
+     * Returns the number of elements in the buffer. The value is approximate while the buffer is being modified.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        final long size = this.tail.get() - this.head;
+        return (int) Math.max(0, Math.min(size, this.capacity));
+    }
+
+    /**
+     * Adds an element, if there is room for it. Can be called by any thread.
+     *
+     * @param element
+     *            the element
+     * @return true if the element has been added, false if the buffer is full or has been shut down
+     */
+    boolean offer(final E element) {
+        if (!this.run) {
+            return false;
+        }
+
+        long position = this.tail.get();
+        int index;
+        while (true) {
+            index = index(position);
+            final long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+
+        this.elements.set(index, element);
+        this.sequences.set(index, position + 1);
+
+        if (this.consumerWaiting) {
+            signal(this.notEmpty);
+        }
+        return true;
+    }
+
+    /**
+     * Moves all the available elements to the collection, in insertion order. Must be called by the consumer
+     * thread only.
+     *
+     * @param target
+     *            the collection receiving the elements
+     * @return the number of elements moved
+     */
+    int drainTo(final Collection<? super E> target) {
+        long position = this.head;
+        int count = 0;
+        while (count < this.capacity) {
+            final int index = index(position);
+            if (this.sequences.get(index) != position + 1) {
+                break;
+            }
+            target.add(this.elements.get(index));
+            this.elements.set(index, null);
+            this.sequences.set(index, position + this.capacity);
+            position++;
+            count++;
+        }
+        this.head = position;
+
+        if (count > 0 && this.producersWaiting.get() > 0) {
+            signal(this.notFull);
+        }
+        return count;
+    }
+
+    /**
+     * Waits until an element is available. Must be called by the consumer thread only.
+     *
+     * @return false if the buffer has been shut down
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    boolean awaitNotEmpty() throws InterruptedException {
+        if (this.waitStrategy == WaitStrategy.BLOCK) {
+            this.lock.lock();
+            try {
+                this.consumerWaiting = true;
+                while (this.run && isEmpty()) {
+                    this.notEmpty.await();
+                }
+            } finally {
+                this.consumerWaiting = false;
+                this.lock.unlock();
+            }
+        } else {
+            int attempts = 0;
+            while (this.run && isEmpty()) {
+                pause(attempts++);
+            }
+        }
+        return this.run;
+    }
+
+    /**
+     * Waits until there is room for an element. Can be called by any producer thread.
+     *
+     * @return false if the buffer has been shut down
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    boolean awaitNotFull() throws InterruptedException {
+        if (this.waitStrategy == WaitStrategy.BLOCK) {
+            this.lock.lock();
+            this.producersWaiting.incrementAndGet();
+            try {
+                while (this.run && isFull()) {
+                    this.notFull.await();
+                }
+            } finally {
+                this.producersWaiting.decrementAndGet();
+                this.lock.unlock();
+            }
+        } else {
+            int attempts = 0;
+            while (this.run && isFull()) {
+                pause(attempts++);
+            }
+        }
+        return this.run;
+    }
+
+    /**
+     * Shuts the buffer down, waking up all the waiting threads. The elements still in the buffer are not drained.
+     */
+    void shutdown() {
+        this.run = false;
+        this.lock.lock();
+        try {
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean isEmpty() {
+        final long position = this.head;
+        return this.sequences.get(index(position)) != position + 1;
+    }
+
+    private boolean isFull() {
+        return this.tail.get() - this.head >= this.capacity;
+    }
+
+    private int index(final long position) {
+        return (int) (position % this.capacity);
+    }
+
+    private void pause(final int attempts) throws InterruptedException {
+        if (this.waitStrategy == WaitStrategy.PARK && attempts >= SPINS_BEFORE_PARK) {
+            LockSupport.parkNanos(PARK_NANOS);
+        } else {
+            // let the other side run on single core devices
+            Thread.yield();
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private void signal(final Condition condition) {
+        this.lock.lock();
+        try {
+            condition.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
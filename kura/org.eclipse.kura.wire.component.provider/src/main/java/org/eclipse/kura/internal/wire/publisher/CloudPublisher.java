@@ -353,9 +353,17 @@ public final class CloudPublisher implements WireReceiver, CloudClientListener,
                             this.cloudPublisherOptions.getPublishingRetain(),
                             this.cloudPublisherOptions.getPublishingPriority());
                 } else {
-                    this.cloudClient.publish(appTopic, kuraPayload, this.cloudPublisherOptions.getPublishingQos(),
-                            this.cloudPublisherOptions.getPublishingRetain(),
-                            this.cloudPublisherOptions.getPublishingPriority());
+                    // published asynchronously, so that the payloads can be coalesced by the cloud service
+                    // and the storage failures are still logged
+                    this.cloudClient
+                            .publishAsync(appTopic, kuraPayload, this.cloudPublisherOptions.getPublishingQos(),
+                                    this.cloudPublisherOptions.getPublishingRetain(),
+                                    this.cloudPublisherOptions.getPublishingPriority())
+                            .getStored().whenComplete((id, e) -> {
+                                if (e != null) {
+                                    logger.error(message.errorPublishingWireRecords(), e);
+                                }
+                            });
                 }
 
             }
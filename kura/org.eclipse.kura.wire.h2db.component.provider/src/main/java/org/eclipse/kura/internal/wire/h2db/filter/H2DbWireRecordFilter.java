@@ -20,6 +20,7 @@ import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_P
 
 import java.sql.Blob;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -34,6 +35,7 @@ import java.util.Map;
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
+import org.eclipse.kura.internal.wire.h2db.filter.H2DbWireRecordFilterOptions.QueryMode;
 import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
 import org.eclipse.kura.type.TypedValue;
@@ -69,6 +71,13 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
 
     private List<WireRecord> lastRecords;
 
+    /**
+     * The value of the cursor column of the last row read in the incremental query mode, null until it is initialized
+     * with the greatest value of the cursor column, so that the rows already present are not emitted again on each
+     * activation.
+     */
+    private Long lastCursor;
+
     private H2DbServiceHelper dbHelper;
 
     private H2DbWireRecordFilterOptions options;
@@ -87,6 +96,13 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
 
     public synchronized void bindDbService(H2DbService dbService) {
         this.dbHelper = H2DbServiceHelper.of(dbService);
+        if (this.options.getQueryMode() == QueryMode.INCREMENTAL && isNull(this.lastCursor)) {
+            try {
+                initCursor();
+            } catch (final SQLException e) {
+                logger.warn(message.errorFiltering(), e);
+            }
+        }
     }
 
     public synchronized void unbindDbService(H2DbService dbService) {
@@ -150,8 +166,16 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         logger.debug(message.updatingFilter() + properties);
         final String oldDbServicePid = this.options.getDbServiceInstancePid();
 
+        final String oldTableName = this.options.getTableName();
+        final String oldCursorColumn = this.options.getCursorColumn();
+
         this.options = new H2DbWireRecordFilterOptions(properties);
 
+        if (!oldTableName.equals(this.options.getTableName())
+                || !oldCursorColumn.equals(this.options.getCursorColumn())) {
+            this.lastCursor = null;
+        }
+
         if (!oldDbServicePid.equals(this.options.getDbServiceInstancePid())) {
             restartDbServiceTracker();
         }
@@ -211,6 +235,88 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         return dataRecords;
     }
 
+    /**
+     * Initializes the cursor with the greatest value of the cursor column of the configured table, the rows added
+     * from now on will be read by the incremental queries.
+     */
+    private void initCursor() throws SQLException {
+        final String sql = "SELECT MAX(" + this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getCursorColumn())
+                + ") FROM " + this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getTableName());
+
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rset = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            stmt = conn.createStatement();
+            rset = stmt.executeQuery(sql);
+            long maxCursor = Long.MIN_VALUE;
+            if (rset.next()) {
+                final long value = rset.getLong(1);
+                if (!rset.wasNull()) {
+                    maxCursor = value;
+                }
+            }
+            this.lastCursor = maxCursor;
+            logger.debug("Incremental query cursor initialized to {}", maxCursor);
+        } finally {
+            this.dbHelper.close(rset);
+            this.dbHelper.close(stmt);
+            this.dbHelper.close(conn);
+        }
+    }
+
+    /**
+     * Reads the rows of the configured table with a cursor column value greater than the last read one, in
+     * ascending cursor order. The rows are fetched {@code fetch.size} at a time and each envelope of at most
+     * {@code fetch.size} records is emitted as soon as it is read, the cursor is advanced after each emit.
+     */
+    private void performIncrementalQuery() throws SQLException {
+        if (isNull(this.lastCursor)) {
+            initCursor();
+        }
+        final String cursorColumn = this.options.getCursorColumn();
+        final String sqlCursorColumn = this.dbHelper.sanitizeSqlTableAndColumnName(cursorColumn);
+        final int fetchSize = this.options.getFetchSize();
+
+        final String sql = "SELECT * FROM " + this.dbHelper.sanitizeSqlTableAndColumnName(this.options.getTableName())
+                + " WHERE " + sqlCursorColumn + " > ? ORDER BY " + sqlCursorColumn;
+
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rset = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+            stmt.setMaxRows(this.options.getMaximumRecords());
+            stmt.setLong(1, this.lastCursor);
+            rset = stmt.executeQuery();
+
+            List<WireRecord> dataRecords = new ArrayList<>(fetchSize);
+            long cursor = this.lastCursor;
+            while (rset.next()) {
+                dataRecords.add(new WireRecord(convertSQLRowToWireRecord(rset)));
+                cursor = rset.getLong(cursorColumn);
+                if (dataRecords.size() == fetchSize) {
+                    this.wireSupport.emit(Collections.unmodifiableList(dataRecords));
+                    this.lastCursor = cursor;
+                    dataRecords = new ArrayList<>(fetchSize);
+                }
+            }
+            if (!dataRecords.isEmpty()) {
+                this.wireSupport.emit(Collections.unmodifiableList(dataRecords));
+                this.lastCursor = cursor;
+            }
+
+            logger.debug(message.refreshed());
+        } finally {
+            this.dbHelper.close(rset);
+            this.dbHelper.close(stmt);
+            this.dbHelper.close(conn);
+        }
+    }
+
     private Map<String, TypedValue<?>> convertSQLRowToWireRecord(ResultSet rset) throws SQLException {
         final Map<String, TypedValue<?>> wireRecordProperties = new HashMap<>();
         final ResultSetMetaData rmet = rset.getMetaData();
@@ -246,6 +352,8 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
      * The cache validity is determined by the {@link H2DbWireRecordFilterOptions#CONF_CACHE_EXPIRATION_INTERVAL}
      * property
      * provided by the user in the component configuration.
+     * In the incremental query mode, only the rows added to the configured table since the last database read are
+     * emitted when the cache expires, and nothing is emitted otherwise.
      */
     @Override
     public synchronized void onWireReceive(final WireEnvelope wireEnvelope) {
@@ -256,6 +364,13 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
             return;
         }
 
+        if (this.options.getQueryMode() == QueryMode.INCREMENTAL) {
+            if (isCacheExpired()) {
+                refreshIncrementally();
+            }
+            return;
+        }
+
         if (isCacheExpired() && this.dbHelper != null) {
             refreshCachedRecords();
         }
@@ -281,6 +396,15 @@ public class H2DbWireRecordFilter implements WireEmitter, WireReceiver, Configur
         }
     }
 
+    private void refreshIncrementally() {
+        try {
+            performIncrementalQuery();
+            this.lastRefreshedTime = Calendar.getInstance(this.lastRefreshedTime.getTimeZone());
+        } catch (SQLException e) {
+            logger.error(message.errorFiltering(), e);
+        }
+    }
+
     protected void restartDbServiceTracker() {
         stopDbServiceTracker();
         try {
@@ -30,6 +30,20 @@ import org.eclipse.kura.localization.resources.WireMessages;
  */
 final class H2DbWireRecordFilterOptions {
 
+    /**
+     * How the records are read from the database.
+     */
+    enum QueryMode {
+        /**
+         * The query is performed again when the cache expires, and its result is emitted on every trigger.
+         */
+        SNAPSHOT,
+        /**
+         * Only the rows of a table newer than the last read row are read when the cache expires, and emitted once.
+         */
+        INCREMENTAL
+    }
+
     private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
 
     private static final String DB_SERVICE_INSTANCE = "db.service.pid";
@@ -38,6 +52,24 @@ final class H2DbWireRecordFilterOptions {
 
     private static final String CONF_SQL_VIEW = "sql.view";
 
+    private static final String CONF_QUERY_MODE = "query.mode";
+
+    private static final String CONF_TABLE_NAME = "table.name";
+
+    private static final String CONF_CURSOR_COLUMN = "cursor.column";
+
+    private static final String CONF_FETCH_SIZE = "fetch.size";
+
+    private static final String CONF_MAXIMUM_RECORDS = "maximum.records";
+
+    private static final String DEFAULT_TABLE_NAME = "WR_data";
+
+    private static final String DEFAULT_CURSOR_COLUMN = "ID";
+
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
+    private static final int DEFAULT_MAXIMUM_RECORDS = 10000;
+
     private final Map<String, Object> properties;
 
     /**
@@ -79,6 +111,76 @@ final class H2DbWireRecordFilterOptions {
         return sqlView;
     }
 
+    QueryMode getQueryMode() {
+        QueryMode queryMode = QueryMode.SNAPSHOT;
+        final Object mode = this.properties.get(CONF_QUERY_MODE);
+        if (nonNull(mode) && mode instanceof String) {
+            try {
+                queryMode = QueryMode.valueOf(((String) mode).toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                // keep the default
+            }
+        }
+        return queryMode;
+    }
+
+    /**
+     * Returns the table read in the incremental query mode.
+     *
+     * @return the configured table name
+     */
+    String getTableName() {
+        String tableName = DEFAULT_TABLE_NAME;
+        final Object table = this.properties.get(CONF_TABLE_NAME);
+        if (nonNull(table) && table instanceof String && !((String) table).trim().isEmpty()) {
+            tableName = ((String) table).trim();
+        }
+        return tableName;
+    }
+
+    /**
+     * Returns the column used to remember the last read row in the incremental query mode.
+     *
+     * @return the configured cursor column
+     */
+    String getCursorColumn() {
+        String cursorColumn = DEFAULT_CURSOR_COLUMN;
+        final Object column = this.properties.get(CONF_CURSOR_COLUMN);
+        if (nonNull(column) && column instanceof String && !((String) column).trim().isEmpty()) {
+            cursorColumn = ((String) column).trim();
+        }
+        return cursorColumn;
+    }
+
+    /**
+     * Returns the number of rows fetched at a time in the incremental query mode, that is also the maximum number of
+     * records of an emitted envelope.
+     *
+     * @return the configured fetch size
+     */
+    int getFetchSize() {
+        int fetchSize = DEFAULT_FETCH_SIZE;
+        final Object size = this.properties.get(CONF_FETCH_SIZE);
+        if (nonNull(size) && size instanceof Integer) {
+            fetchSize = (Integer) size;
+        }
+        return Math.max(1, fetchSize);
+    }
+
+    /**
+     * Returns the maximum number of rows read per query in the incremental query mode, at least 1.
+     *
+     * @return the configured maximum number of records
+     */
+    int getMaximumRecords() {
+        int maximumRecords = DEFAULT_MAXIMUM_RECORDS;
+        final Object maximum = this.properties.get(CONF_MAXIMUM_RECORDS);
+        if (nonNull(maximum) && maximum instanceof Integer) {
+            maximumRecords = (Integer) maximum;
+        }
+        return Math.max(1, maximumRecords);
+    }
+
     String getDbServiceInstancePid() {
         String dbServicePid = H2DbService.DEFAULT_INSTANCE_PID;
         final Object pid = this.properties.get(DB_SERVICE_INSTANCE);
@@ -0,0 +1,513 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.h2db.store;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
+import org.eclipse.kura.internal.wire.h2db.store.H2DbDataTypeMapper.JdbcType;
+import org.eclipse.kura.type.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the records of a {@link H2DbWireRecordStore} in partitions: tables named after the store table with the
+ * {@code _P<creation time>} suffix, sharing the same ID sequence. A new partition is started when the current one
+ * is full or too old, and the oldest partitions are dropped as a whole, so the cost of the retention does not depend
+ * on the number of records. The store table name is a view over all the partitions, so that the records can still
+ * be queried as a single table. When the store goes back to the {@code delete} retention mode, the records of the
+ * partitions are merged into a plain table.
+ */
+final class H2DbWireRecordPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(H2DbWireRecordPartitions.class);
+
+    private static final String COLUMN_NAME = "COLUMN_NAME";
+
+    private static final String DATA_TYPE = "DATA_TYPE";
+
+    private static final String TYPE_NAME = "TYPE_NAME";
+
+    private static final String TABLE_NAME = "TABLE_NAME";
+
+    private static final String ID = "ID";
+
+    private static final String TIMESTAMP = "TIMESTAMP";
+
+    private static final String PARTITION_SUFFIX = "_P";
+
+    private static final String SEQUENCE_SUFFIX = "_SEQ";
+
+    private static final String INDEX_SUFFIX = "_TIMESTAMP";
+
+    private static final String SQL_CREATE_SEQUENCE = "CREATE SEQUENCE IF NOT EXISTS {0} START WITH {1};";
+
+    private static final String SQL_CREATE_PARTITION = "CREATE TABLE IF NOT EXISTS {0} (ID BIGINT DEFAULT NEXT VALUE FOR {1} PRIMARY KEY, TIMESTAMP BIGINT);";
+
+    private static final String SQL_CREATE_PARTITION_INDEX = "CREATE INDEX IF NOT EXISTS {0} ON {1} (TIMESTAMP DESC);";
+
+    private static final String SQL_ADD_COLUMN = "ALTER TABLE {0} ADD COLUMN {1} {2};";
+
+    private static final String SQL_RENAME_TABLE = "ALTER TABLE {0} RENAME TO {1};";
+
+    private static final String SQL_RENAME_INDEX = "ALTER INDEX IF EXISTS {0} RENAME TO {1};";
+
+    private static final String SQL_DROP_TABLE = "DROP TABLE IF EXISTS {0};";
+
+    private static final String SQL_DROP_SEQUENCE = "DROP SEQUENCE IF EXISTS {0};";
+
+    private static final String SQL_MERGE_PARTITION = "INSERT INTO {0} ({1}) SELECT {1} FROM {2} WHERE ID > (SELECT COALESCE(MAX(ID), 0) FROM {0});";
+
+    private static final String SQL_MAX_ID = "SELECT COALESCE(MAX(ID), 0) FROM {0};";
+
+    private static final String SQL_RESTART_ID = "ALTER TABLE {0} ALTER COLUMN ID RESTART WITH {1};";
+
+    private static final String SQL_CREATE_VIEW = "CREATE OR REPLACE VIEW {0} AS {1};";
+
+    private static final String SQL_DROP_VIEW = "DROP VIEW IF EXISTS {0};";
+
+    private static final String SQL_PARTITION_STATS = "SELECT COUNT(*), MAX(TIMESTAMP), MAX(ID) FROM {0};";
+
+    private static final String[] TABLE_TYPE = new String[] { "TABLE" };
+
+    private static final String[] VIEW_TYPE = new String[] { "VIEW" };
+
+    private final H2DbServiceHelper dbHelper;
+
+    private final String tableName;
+
+    /**
+     * The partitions from the oldest to the current one.
+     */
+    private final Deque<Partition> partitions = new ArrayDeque<>();
+
+    private long size;
+
+    H2DbWireRecordPartitions(final H2DbServiceHelper dbHelper, final String tableName) {
+        requireNonNull(dbHelper);
+        requireNonNull(tableName);
+        this.dbHelper = dbHelper;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Loads the existing partitions and creates the first one if needed. A plain table with the store table name,
+     * created by the {@code delete} retention mode, becomes the oldest partition.
+     *
+     * @param now
+     *            the current time in milliseconds
+     * @throws SQLException
+     *             the SQL exception
+     */
+    void reconcile(final long now) throws SQLException {
+        this.partitions.clear();
+        this.size = 0;
+
+        final TreeMap<Long, String> partitionNames = new TreeMap<>();
+        final boolean plainTable = findTables(partitionNames);
+
+        if (plainTable) {
+            final long start = partitionNames.isEmpty() ? 0 : partitionNames.firstKey() - 1;
+            final String name = partitionName(start);
+            logger.info("Moving the records of table {} to partition {}", this.tableName, name);
+            this.dbHelper.execute(MessageFormat.format(SQL_RENAME_TABLE, sanitize(this.tableName), sanitize(name)));
+            this.dbHelper.execute(MessageFormat.format(SQL_RENAME_INDEX, sanitize(this.tableName + INDEX_SUFFIX),
+                    sanitize(name + INDEX_SUFFIX)));
+            partitionNames.put(start, name);
+        }
+
+        long maxId = 0;
+        for (final Entry<Long, String> entry : partitionNames.entrySet()) {
+            final Partition partition = new Partition(entry.getValue(), entry.getKey());
+            maxId = Math.max(maxId, loadStats(partition));
+            this.partitions.addLast(partition);
+            this.size += partition.rows;
+        }
+
+        this.dbHelper.execute(MessageFormat.format(SQL_CREATE_SEQUENCE, sanitize(this.tableName + SEQUENCE_SUFFIX),
+                Long.toString(maxId + 1)));
+
+        // the records of a plain table are inserted with its own identity column, never insert there again
+        if (this.partitions.isEmpty() || plainTable) {
+            createPartition(now);
+        } else {
+            updateView();
+        }
+        logger.info("Table {} has {} partitions and {} records", this.tableName, this.partitions.size(), this.size);
+    }
+
+    /**
+     * Moves the records of the partitions to the plain table with the store table name, created by the
+     * {@code delete} retention mode, then drops the partitions and their ID sequence. The columns of the table are
+     * added as needed, the values of the columns whose type differs from the one in the table are not moved. The
+     * records are moved one partition at a time, from the oldest one, and the records already moved by an
+     * interrupted merge are not moved again.
+     *
+     * @throws SQLException
+     *             the SQL exception
+     */
+    void merge() throws SQLException {
+        final TreeMap<Long, String> partitionNames = new TreeMap<>();
+        if (!findTables(partitionNames)) {
+            throw new SQLException("Table " + this.tableName + " does not exist");
+        }
+        if (partitionNames.isEmpty()) {
+            return;
+        }
+
+        final String sqlTableName = sanitize(this.tableName);
+        final Map<String, String> tableColumns = getColumns(this.tableName);
+        final Map<String, Map<String, String>> partitionColumns = new LinkedHashMap<>();
+        for (final String partition : partitionNames.values()) {
+            final Map<String, String> columns = getColumns(partition);
+            partitionColumns.put(partition, columns);
+            for (final Entry<String, String> column : columns.entrySet()) {
+                if (!tableColumns.containsKey(column.getKey())) {
+                    this.dbHelper.execute(MessageFormat.format(SQL_ADD_COLUMN, sqlTableName,
+                            sanitize(column.getKey()), column.getValue()));
+                    tableColumns.put(column.getKey(), column.getValue());
+                }
+            }
+        }
+
+        for (final Entry<String, Map<String, String>> entry : partitionColumns.entrySet()) {
+            final StringBuilder sb = new StringBuilder("ID, TIMESTAMP");
+            for (final Entry<String, String> column : entry.getValue().entrySet()) {
+                if (column.getValue().equals(tableColumns.get(column.getKey()))) {
+                    sb.append(", ").append(sanitize(column.getKey()));
+                }
+            }
+            logger.info("Moving the records of partition {} to table {}", entry.getKey(), this.tableName);
+            this.dbHelper.execute(
+                    MessageFormat.format(SQL_MERGE_PARTITION, sqlTableName, sb.toString(), sanitize(entry.getKey())));
+            this.dbHelper.execute(MessageFormat.format(SQL_DROP_TABLE, sanitize(entry.getKey())));
+        }
+
+        // the identity column of the table goes on from the IDs of the partitions
+        this.dbHelper.execute(MessageFormat.format(SQL_RESTART_ID, sqlTableName, Long.toString(getMaxId() + 1)));
+        this.dbHelper.execute(MessageFormat.format(SQL_DROP_SEQUENCE, sanitize(this.tableName + SEQUENCE_SUFFIX)));
+    }
+
+    /**
+     * Starts a new partition if the current one is full or older than the partition interval, then drops the oldest
+     * partitions while the records are more than the maximum table size or older than the maximum record age. The
+     * current partition is never dropped.
+     *
+     * @param options
+     *            the store options
+     * @param now
+     *            the current time in milliseconds
+     * @throws SQLException
+     *             the SQL exception
+     */
+    void applyRetention(final H2DbWireRecordStoreOptions options, final long now) throws SQLException {
+        final long maximumTableSize = options.getMaximumTableSize();
+        final long noOfRecordsToKeep = options.getNoOfRecordsToKeep();
+        // dropping a full partition leaves the configured number of records
+        final long partitionSize = Math.max(1,
+                noOfRecordsToKeep < maximumTableSize ? maximumTableSize - noOfRecordsToKeep : maximumTableSize);
+        final long partitionInterval = options.getPartitionInterval();
+        final long maximumRecordAge = options.getMaximumRecordAge();
+
+        final Partition current = this.partitions.getLast();
+        if (current.rows >= partitionSize || partitionInterval > 0 && now - current.start >= partitionInterval) {
+            createPartition(now);
+        }
+
+        while (this.partitions.size() > 1) {
+            final Partition oldest = this.partitions.getFirst();
+            if (this.size >= maximumTableSize
+                    || maximumRecordAge > 0 && now - oldest.lastTimestamp > maximumRecordAge) {
+                dropOldestPartition();
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the partition the records have to be inserted in.
+     *
+     * @return the current partition name
+     */
+    String getCurrentPartition() {
+        return this.partitions.getLast().name;
+    }
+
+    /**
+     * Accounts the records inserted in the current partition.
+     *
+     * @param records
+     *            the number of inserted records
+     * @param timestamp
+     *            the timestamp of the last inserted record
+     */
+    void recordsInserted(final int records, final long timestamp) {
+        final Partition current = this.partitions.getLast();
+        current.rows += records;
+        current.lastTimestamp = Math.max(current.lastTimestamp, timestamp);
+        this.size += records;
+    }
+
+    /**
+     * Drops the view over the partitions, that prevents the columns of the partitions from being dropped.
+     *
+     * @throws SQLException
+     *             the SQL exception
+     */
+    void dropView() throws SQLException {
+        dropView(this.dbHelper, this.tableName);
+    }
+
+    /**
+     * Creates or replaces the view over the partitions. The columns have the type they have in the most recent
+     * partitions, they are null in the partitions where they are missing or have another type, as they would be if
+     * the type changed in a single table.
+     *
+     * @throws SQLException
+     *             the SQL exception
+     */
+    void updateView() throws SQLException {
+        final Map<String, Map<String, String>> partitionColumns = new LinkedHashMap<>();
+        final Map<String, String> viewColumns = new LinkedHashMap<>();
+        for (final Partition partition : this.partitions) {
+            final Map<String, String> columns = getColumns(partition.name);
+            partitionColumns.put(partition.name, columns);
+            viewColumns.putAll(columns);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final Entry<String, Map<String, String>> entry : partitionColumns.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(" UNION ALL ");
+            }
+            sb.append("SELECT ID, TIMESTAMP");
+            for (final Entry<String, String> column : viewColumns.entrySet()) {
+                final String sqlColName = sanitize(column.getKey());
+                if (column.getValue().equals(entry.getValue().get(column.getKey()))) {
+                    sb.append(", ").append(sqlColName);
+                } else {
+                    sb.append(", CAST(NULL AS ").append(column.getValue()).append(") AS ").append(sqlColName);
+                }
+            }
+            sb.append(" FROM ").append(sanitize(entry.getKey()));
+        }
+        this.dbHelper.execute(MessageFormat.format(SQL_CREATE_VIEW, sanitize(this.tableName), sb.toString()));
+    }
+
+    /**
+     * Drops the view with the provided name, if it exists. The partitions the view was built on are kept.
+     *
+     * @param dbHelper
+     *            the DB service helper
+     * @param tableName
+     *            the store table name
+     * @throws SQLException
+     *             the SQL exception
+     */
+    static void dropView(final H2DbServiceHelper dbHelper, final String tableName) throws SQLException {
+        Connection conn = null;
+        ResultSet rsTbls = null;
+        boolean exists;
+        try {
+            conn = dbHelper.getConnection();
+            final DatabaseMetaData dbMetaData = conn.getMetaData();
+            rsTbls = dbMetaData.getTables(conn.getCatalog(), null, escapePattern(dbMetaData, tableName), VIEW_TYPE);
+            exists = rsTbls.next();
+        } finally {
+            dbHelper.close(rsTbls);
+            dbHelper.close(conn);
+        }
+        if (exists) {
+            dbHelper.execute(MessageFormat.format(SQL_DROP_VIEW, dbHelper.sanitizeSqlTableAndColumnName(tableName)));
+        }
+    }
+
+    /**
+     * Finds the partitions of the store table.
+     *
+     * @param partitionNames
+     *            filled with the partition names by their start time
+     * @return true if a plain table with the store table name exists
+     */
+    private boolean findTables(final TreeMap<Long, String> partitionNames) throws SQLException {
+        boolean plainTable = false;
+
+        Connection conn = null;
+        ResultSet rsTbls = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            final DatabaseMetaData dbMetaData = conn.getMetaData();
+            rsTbls = dbMetaData.getTables(conn.getCatalog(), null,
+                    escapePattern(dbMetaData, this.tableName + PARTITION_SUFFIX) + "%", TABLE_TYPE);
+            while (rsTbls.next()) {
+                final String name = rsTbls.getString(TABLE_NAME);
+                try {
+                    final long start = Long
+                            .parseLong(name.substring(this.tableName.length() + PARTITION_SUFFIX.length()));
+                    partitionNames.put(start, name);
+                } catch (final NumberFormatException e) {
+                    // not a partition
+                }
+            }
+            this.dbHelper.close(rsTbls);
+            rsTbls = dbMetaData.getTables(conn.getCatalog(), null, escapePattern(dbMetaData, this.tableName),
+                    TABLE_TYPE);
+            plainTable = rsTbls.next();
+        } finally {
+            this.dbHelper.close(rsTbls);
+            this.dbHelper.close(conn);
+        }
+        return plainTable;
+    }
+
+    private void createPartition(final long now) throws SQLException {
+        final Partition previous = this.partitions.peekLast();
+        final long start = isNull(previous) ? now : Math.max(now, previous.start + 1);
+        final Partition partition = new Partition(partitionName(start), start);
+        final String sqlPartitionName = sanitize(partition.name);
+
+        logger.info("Creating partition {}", partition.name);
+        this.dbHelper.execute(MessageFormat.format(SQL_CREATE_PARTITION, sqlPartitionName,
+                sanitize(this.tableName + SEQUENCE_SUFFIX)));
+        this.dbHelper.execute(
+                MessageFormat.format(SQL_CREATE_PARTITION_INDEX, sanitize(partition.name + INDEX_SUFFIX),
+                        sqlPartitionName));
+
+        // the records will most likely have the same properties as the previous ones
+        if (!isNull(previous)) {
+            for (final Entry<String, String> column : getColumns(previous.name).entrySet()) {
+                this.dbHelper.execute(MessageFormat.format(SQL_ADD_COLUMN, sqlPartitionName,
+                        sanitize(column.getKey()), column.getValue()));
+            }
+        }
+
+        this.partitions.addLast(partition);
+        updateView();
+    }
+
+    private void dropOldestPartition() throws SQLException {
+        final Partition oldest = this.partitions.removeFirst();
+        this.size -= oldest.rows;
+
+        logger.info("Dropping partition {} with {} records", oldest.name, oldest.rows);
+        // the view depends on the partition
+        updateView();
+        this.dbHelper.execute(MessageFormat.format(SQL_DROP_TABLE, sanitize(oldest.name)));
+    }
+
+    private long loadStats(final Partition partition) throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rset = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            stmt = conn.createStatement();
+            rset = stmt.executeQuery(MessageFormat.format(SQL_PARTITION_STATS, sanitize(partition.name)));
+            rset.next();
+            partition.rows = rset.getLong(1);
+            partition.lastTimestamp = Math.max(partition.start, rset.getLong(2));
+            return rset.getLong(3);
+        } finally {
+            this.dbHelper.close(rset);
+            this.dbHelper.close(stmt);
+            this.dbHelper.close(conn);
+        }
+    }
+
+    private long getMaxId() throws SQLException {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rset = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            stmt = conn.createStatement();
+            rset = stmt.executeQuery(MessageFormat.format(SQL_MAX_ID, sanitize(this.tableName)));
+            rset.next();
+            return rset.getLong(1);
+        } finally {
+            this.dbHelper.close(rset);
+            this.dbHelper.close(stmt);
+            this.dbHelper.close(conn);
+        }
+    }
+
+    /**
+     * Gets the SQL types of the columns of the provided table, except the ID and the TIMESTAMP.
+     */
+    private Map<String, String> getColumns(final String table) throws SQLException {
+        final Map<String, String> columns = new LinkedHashMap<>();
+        Connection conn = null;
+        ResultSet rsColumns = null;
+        try {
+            conn = this.dbHelper.getConnection();
+            final DatabaseMetaData dbMetaData = conn.getMetaData();
+            rsColumns = dbMetaData.getColumns(conn.getCatalog(), null, escapePattern(dbMetaData, table), null);
+            while (rsColumns.next()) {
+                final String colName = rsColumns.getString(COLUMN_NAME);
+                if (ID.equals(colName) || TIMESTAMP.equals(colName)) {
+                    continue;
+                }
+                final DataType dataType = H2DbDataTypeMapper.getDataType(rsColumns.getInt(DATA_TYPE));
+                final JdbcType jdbcType = isNull(dataType) ? null : H2DbDataTypeMapper.getJdbcType(dataType);
+                columns.put(colName, isNull(jdbcType) ? rsColumns.getString(TYPE_NAME) : jdbcType.getTypeString());
+            }
+        } finally {
+            this.dbHelper.close(rsColumns);
+            this.dbHelper.close(conn);
+        }
+        return columns;
+    }
+
+    /**
+     * Escapes the wildcards of the LIKE patterns of the {@link DatabaseMetaData} methods, that may be part of the
+     * table names.
+     */
+    static String escapePattern(final DatabaseMetaData dbMetaData, final String name) throws SQLException {
+        final String escape = dbMetaData.getSearchStringEscape();
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    private String partitionName(final long start) {
+        return this.tableName + PARTITION_SUFFIX + start;
+    }
+
+    private String sanitize(final String name) {
+        return this.dbHelper.sanitizeSqlTableAndColumnName(name);
+    }
+
+    private static final class Partition {
+
+        private final String name;
+        private final long start;
+        private long rows;
+        private long lastTimestamp;
+
+        Partition(final String name, final long start) {
+            this.name = name;
+            this.start = start;
+            this.lastTimestamp = start;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
+import static org.eclipse.kura.internal.wire.h2db.store.H2DbWireRecordPartitions.escapePattern;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -27,15 +28,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
 import org.eclipse.kura.internal.wire.h2db.store.H2DbDataTypeMapper.JdbcType;
+import org.eclipse.kura.internal.wire.h2db.store.H2DbWireRecordStoreOptions.RetentionMode;
 import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
 import org.eclipse.kura.type.BooleanValue;
@@ -98,6 +109,18 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
     private static final String[] TABLE_TYPE = new String[] { "TABLE" };
 
+    private static final int MAX_CACHED_INSERT_STATEMENTS = 16;
+
+    private static final long UNKNOWN_TABLE_SIZE = -1;
+
+    /**
+     * The maximum period, in milliseconds, of the retention checks of the partitions made while no records are
+     * received.
+     */
+    private static final long MAX_RETENTION_CHECK_PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long MIN_RETENTION_CHECK_PERIOD = TimeUnit.SECONDS.toMillis(1);
+
     private H2DbServiceHelper dbHelper;
 
     private H2DbWireRecordStoreOptions wireRecordStoreOptions;
@@ -110,6 +133,36 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
     private ComponentContext componentContext;
 
+    /**
+     * The insert statements by the set of wire record properties they store, in the current partition if the
+     * records are kept in partitions. The prepared statements are bound to the pooled connections, so only the SQL
+     * and the column order are kept across envelopes.
+     */
+    private final Map<Set<String>, InsertStatement> insertStatements = new LinkedHashMap<Set<String>, InsertStatement>(
+            MAX_CACHED_INSERT_STATEMENTS, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Set<String>, InsertStatement> eldest) {
+            return size() > MAX_CACHED_INSERT_STATEMENTS;
+        }
+    };
+
+    /**
+     * The number of rows of the table, counted once and then updated by the inserts.
+     */
+    private long tableSize = UNKNOWN_TABLE_SIZE;
+
+    /**
+     * The partitions of the table, if the records are kept in partitions.
+     */
+    private H2DbWireRecordPartitions partitions;
+
+    private ScheduledExecutorService retentionExecutor;
+
+    private ScheduledFuture<?> retentionCheck;
+
     public synchronized void bindDbService(final H2DbService dbService) {
         H2DbWireRecordStore.this.dbHelper = H2DbServiceHelper.of(dbService);
         reconcileDB(wireRecordStoreOptions.getTableName());
@@ -145,6 +198,9 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
         this.wireRecordStoreOptions = new H2DbWireRecordStoreOptions(properties);
 
         this.wireSupport = this.wireHelperService.newWireSupport(this);
+        final String componentPid = String.valueOf(properties.getOrDefault(KURA_SERVICE_PID, "H2DbWireRecordStore"));
+        this.retentionExecutor = Executors
+                .newSingleThreadScheduledExecutor(r -> new Thread(r, componentPid + "-RetentionThread"));
 
         restartDbServiceTracker();
         logger.debug(message.activatingStoreDone());
@@ -182,6 +238,9 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug(message.deactivatingStore());
         stopDbServiceTracker();
+        synchronized (this) {
+            this.retentionExecutor.shutdownNow();
+        }
         logger.debug(message.deactivatingStoreDone());
     }
 
@@ -210,7 +269,7 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
             final String catalog = conn.getCatalog();
             final DatabaseMetaData dbMetaData = conn.getMetaData();
-            rsTbls = dbMetaData.getTables(catalog, null, tableName, TABLE_TYPE);
+            rsTbls = dbMetaData.getTables(catalog, null, escapePattern(dbMetaData, tableName), TABLE_TYPE);
             if (rsTbls.next()) {
                 // table does exist, truncate it
                 if (noOfRecordsToKeep == 0) {
@@ -225,12 +284,17 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
         } catch (final SQLException sqlException) {
             logger.error(message.errorTruncatingTable(sqlTableName), sqlException);
         } finally {
+            this.tableSize = UNKNOWN_TABLE_SIZE;
             this.dbHelper.close(rsTbls);
             this.dbHelper.close(conn);
         }
     }
 
-    private int getTableSize() throws SQLException {
+    private long getTableSize() throws SQLException {
+        if (this.tableSize != UNKNOWN_TABLE_SIZE) {
+            return this.tableSize;
+        }
+
         final String tableName = this.wireRecordStoreOptions.getTableName();
         final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
 
@@ -238,14 +302,14 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
         Statement stmt = null;
         ResultSet rset = null;
 
-        int size = 0;
+        long size = 0;
         try {
             conn = this.dbHelper.getConnection();
             stmt = conn.createStatement();
             rset = stmt.executeQuery(MessageFormat.format(SQL_ROW_COUNT_TABLE, sqlTableName));
 
             rset.next();
-            size = rset.getInt(1);
+            size = rset.getLong(1);
         } catch (final SQLException e) {
             throw e;
         } finally {
@@ -254,6 +318,7 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
             this.dbHelper.close(conn);
         }
 
+        this.tableSize = size;
         return size;
     }
 
@@ -272,16 +337,16 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
 
         if (dbHelper != null) {
             try {
-                if (getTableSize() >= this.wireRecordStoreOptions.getMaximumTableSize()) {
+                if (nonNull(this.partitions)) {
+                    this.partitions.applyRetention(this.wireRecordStoreOptions, System.currentTimeMillis());
+                } else if (getTableSize() >= this.wireRecordStoreOptions.getMaximumTableSize()) {
                     truncate();
                 }
             } catch (SQLException e) {
                 logger.warn("Exception while trying to clean db");
             }
 
-            for (WireRecord wireRecord : records) {
-                store(wireRecord);
-            }
+            store(records);
         } else {
             logger.warn("DbService instance not attached");
         }
@@ -291,42 +356,77 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     }
 
     /**
-     * Stores the provided {@link WireRecord} in the database
+     * Stores the provided {@link WireRecord}s in the database, in a single transaction. If the transaction fails, the
+     * table is reconciled with the records and the transaction is retried. If it fails again, the records are stored
+     * one by one, so that a record that cannot be stored does not prevent the others from being stored.
      *
-     * @param wireRecord
-     *            the {@link WireRecord} to be stored
+     * @param wireRecords
+     *            the {@link WireRecord}s to be stored
      * @throws NullPointerException
      *             if the provided argument is null
      */
-    private void store(final WireRecord wireRecord) {
-        requireNonNull(wireRecord, message.wireRecordNonNull());
-        int retryCount = 0;
-        final String tableName = this.wireRecordStoreOptions.getTableName();
-        do {
+    private void store(final List<WireRecord> wireRecords) {
+        requireNonNull(wireRecords, message.wireRecordsNonNull());
+        if (wireRecords.isEmpty()) {
+            return;
+        }
+        final String tableName = nonNull(this.partitions) ? this.partitions.getCurrentPartition()
+                : this.wireRecordStoreOptions.getTableName();
+        try {
+            insertDataRecords(tableName, wireRecords);
+            return;
+        } catch (final SQLException e) {
+            logger.error(message.insertionFailed(), e);
+            reconcileDB(wireRecords, tableName);
+        }
+        try {
+            insertDataRecords(tableName, wireRecords);
+            return;
+        } catch (final SQLException e) {
+            logger.error(message.insertionFailed(), e);
+        }
+        for (final WireRecord wireRecord : wireRecords) {
             try {
-                insertDataRecord(tableName, wireRecord);
-                break;
+                insertDataRecords(tableName, Collections.singletonList(wireRecord));
             } catch (final SQLException e) {
-                logger.error(message.insertionFailed(), e);
-                reconcileDB(wireRecord, tableName);
-                retryCount++;
+                logger.error(message.errorStoring(), e);
             }
-        } while (retryCount < 2);
+        }
     }
 
     /**
      * Tries to reconcile the database.
      *
-     * @param wireRecord
+     * @param wireRecords
      *            against which the database columns have to be reconciled.
      * @param tableName
      *            the table name in the database that needs to be reconciled.
      */
-    private void reconcileDB(final WireRecord wireRecord, final String tableName) {
+    private void reconcileDB(final List<WireRecord> wireRecords, final String tableName) {
         try {
             if (nonNull(tableName) && !tableName.isEmpty()) {
                 reconcileTable(tableName);
-                reconcileColumns(tableName, wireRecord);
+                if (nonNull(this.partitions)) {
+                    // the view over the partitions prevents their columns from being dropped
+                    this.partitions.dropView();
+                }
+                try {
+                    // reconcile the columns once per distinct set of property names and types
+                    final Set<Map<String, DataType>> reconciled = new HashSet<>();
+                    for (final WireRecord wireRecord : wireRecords) {
+                        final Map<String, DataType> columnTypes = CollectionUtil.newHashMap();
+                        for (final Entry<String, TypedValue<?>> entry : wireRecord.getProperties().entrySet()) {
+                            columnTypes.put(entry.getKey(), entry.getValue().getType());
+                        }
+                        if (reconciled.add(columnTypes)) {
+                            reconcileColumns(tableName, wireRecord);
+                        }
+                    }
+                } finally {
+                    if (nonNull(this.partitions)) {
+                        this.partitions.updateView();
+                    }
+                }
             }
         } catch (final SQLException ee) {
             logger.error(message.errorStoring(), ee);
@@ -340,13 +440,67 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
      *            the table name in the database that needs to be reconciled.
      */
     private synchronized void reconcileDB(final String tableName) {
+        this.insertStatements.clear();
+        this.tableSize = UNKNOWN_TABLE_SIZE;
+        this.partitions = null;
         try {
             if (nonNull(dbHelper) && nonNull(tableName) && !tableName.isEmpty()) {
-                reconcileTable(tableName);
+                if (this.wireRecordStoreOptions.getRetentionMode() == RetentionMode.PARTITIONS) {
+                    final H2DbWireRecordPartitions tablePartitions = new H2DbWireRecordPartitions(this.dbHelper,
+                            tableName);
+                    tablePartitions.reconcile(System.currentTimeMillis());
+                    this.partitions = tablePartitions;
+                } else {
+                    // the view over the partitions is replaced by a table holding their records
+                    H2DbWireRecordPartitions.dropView(this.dbHelper, tableName);
+                    reconcileTable(tableName);
+                    new H2DbWireRecordPartitions(this.dbHelper, tableName).merge();
+                }
             }
         } catch (final SQLException ee) {
             logger.error(message.errorStoring(), ee);
         }
+        scheduleRetentionCheck();
+    }
+
+    /**
+     * Schedules the retention of the partitions, so that they are dropped by age and started by time even if no
+     * records are received.
+     */
+    private void scheduleRetentionCheck() {
+        if (nonNull(this.retentionCheck)) {
+            this.retentionCheck.cancel(false);
+            this.retentionCheck = null;
+        }
+        final long partitionInterval = this.wireRecordStoreOptions.getPartitionInterval();
+        final long maximumRecordAge = this.wireRecordStoreOptions.getMaximumRecordAge();
+        if (isNull(this.partitions) || partitionInterval == 0 && maximumRecordAge == 0
+                || this.retentionExecutor.isShutdown()) {
+            return;
+        }
+        long period = MAX_RETENTION_CHECK_PERIOD;
+        if (partitionInterval > 0) {
+            period = Math.min(period, partitionInterval);
+        }
+        if (maximumRecordAge > 0) {
+            period = Math.min(period, maximumRecordAge);
+        }
+        period = Math.max(period, MIN_RETENTION_CHECK_PERIOD);
+        final H2DbWireRecordPartitions current = this.partitions;
+        this.retentionCheck = this.retentionExecutor.scheduleWithFixedDelay(() -> applyRetention(current), period,
+                period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void applyRetention(final H2DbWireRecordPartitions current) {
+        if (current != this.partitions || isNull(this.dbHelper)) {
+            // the store has been reconciled again
+            return;
+        }
+        try {
+            current.applyRetention(this.wireRecordStoreOptions, System.currentTimeMillis());
+        } catch (final SQLException e) {
+            logger.warn("Exception while trying to clean db", e);
+        }
     }
 
     /**
@@ -368,7 +522,7 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
             // check for the table that would collect the data of this emitter
             final String catalog = conn.getCatalog();
             final DatabaseMetaData dbMetaData = conn.getMetaData();
-            rsTbls = dbMetaData.getTables(catalog, null, this.wireRecordStoreOptions.getTableName(), TABLE_TYPE);
+            rsTbls = dbMetaData.getTables(catalog, null, escapePattern(dbMetaData, tableName), TABLE_TYPE);
             if (!rsTbls.next()) {
                 // table does not exist, create it
                 logger.info(message.creatingTable(sqlTableName));
@@ -411,7 +565,7 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
             conn = this.dbHelper.getConnection();
             final String catalog = conn.getCatalog();
             final DatabaseMetaData dbMetaData = conn.getMetaData();
-            rsColumns = dbMetaData.getColumns(catalog, null, tableName, null);
+            rsColumns = dbMetaData.getColumns(catalog, null, escapePattern(dbMetaData, tableName), null);
             // map the columns
             while (rsColumns.next()) {
                 final String colName = rsColumns.getString(COLUMN_NAME);
@@ -443,67 +597,98 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
     }
 
     /**
-     * Insert the provided {@link WireRecord} to the specified table
+     * Inserts the provided {@link WireRecord}s to the specified table, in a single transaction. The consecutive
+     * records with the same properties are inserted in a single JDBC batch.
      *
      * @param tableName
      *            the table name
-     * @param wireRecord
-     *            the {@link WireRecord}
+     * @param wireRecords
+     *            the {@link WireRecord}s
      * @throws SQLException
      *             the SQL exception
      * @throws NullPointerException
      *             if any of the provided arguments is null
      */
-    private void insertDataRecord(final String tableName, final WireRecord wireRecord) throws SQLException {
+    private void insertDataRecords(final String tableName, final List<WireRecord> wireRecords) throws SQLException {
         requireNonNull(tableName, message.tableNameNonNull());
-        requireNonNull(wireRecord, message.wireRecordNonNull());
-
-        final Map<String, TypedValue<?>> wireRecordProperties = wireRecord.getProperties();
+        requireNonNull(wireRecords, message.wireRecordsNonNull());
 
+        final Map<InsertStatement, PreparedStatement> statements = new IdentityHashMap<>();
         Connection connection = null;
-        PreparedStatement stmt = null;
+        Boolean autoCommit = null;
         try {
             connection = this.dbHelper.getConnection();
-            stmt = prepareStatement(connection, tableName, wireRecordProperties, new Date().getTime());
-            stmt.execute();
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            PreparedStatement batch = null;
+            long timestamp = 0;
+            for (final WireRecord wireRecord : wireRecords) {
+                requireNonNull(wireRecord, message.wireRecordNonNull());
+                final Map<String, TypedValue<?>> wireRecordProperties = wireRecord.getProperties();
+                final InsertStatement insertStatement = getInsertStatement(tableName, wireRecordProperties.keySet());
+
+                PreparedStatement stmt = statements.get(insertStatement);
+                if (isNull(stmt)) {
+                    stmt = connection.prepareStatement(insertStatement.sql);
+                    statements.put(insertStatement, stmt);
+                }
+                if (stmt != batch) {
+                    // keep the insertion order
+                    executeBatch(batch);
+                    batch = stmt;
+                }
+                timestamp = System.currentTimeMillis();
+                setParameters(stmt, insertStatement.columns, wireRecordProperties, timestamp);
+                stmt.addBatch();
+            }
+            executeBatch(batch);
             connection.commit();
+
+            if (this.tableSize != UNKNOWN_TABLE_SIZE) {
+                this.tableSize += wireRecords.size();
+            }
+            if (nonNull(this.partitions)) {
+                this.partitions.recordsInserted(wireRecords.size(), timestamp);
+            }
             logger.debug(message.stored());
         } catch (final SQLException e) {
-            this.dbHelper.rollback(connection);
+            if (nonNull(connection)) {
+                this.dbHelper.rollback(connection);
+            }
             throw e;
         } finally {
-            this.dbHelper.close(stmt);
+            this.dbHelper.close(statements.values().toArray(new Statement[statements.size()]));
+            if (nonNull(autoCommit)) {
+                connection.setAutoCommit(autoCommit);
+            }
             this.dbHelper.close(connection);
         }
     }
 
-    private PreparedStatement prepareStatement(Connection connection, String tableName,
-            final Map<String, TypedValue<?>> properties, long timestamp) throws SQLException {
-
-        final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
-        final StringBuilder sbCols = new StringBuilder();
-        final StringBuilder sbVals = new StringBuilder();
-
-        // add the timestamp
-        sbCols.append("TIMESTAMP");
-        sbVals.append("?");
+    private static void executeBatch(final PreparedStatement stmt) throws SQLException {
+        if (nonNull(stmt)) {
+            stmt.executeBatch();
+        }
+    }
 
-        int i = 2;
-        for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
-            final String sqlColName = this.dbHelper.sanitizeSqlTableAndColumnName(entry.getKey());
-            sbCols.append(", ").append(sqlColName);
-            sbVals.append(", ?");
+    private InsertStatement getInsertStatement(final String tableName, final Set<String> propertyNames) {
+        InsertStatement insertStatement = this.insertStatements.get(propertyNames);
+        if (isNull(insertStatement) || !insertStatement.tableName.equals(tableName)) {
+            insertStatement = new InsertStatement(tableName, new ArrayList<>(propertyNames));
+            this.insertStatements.put(Collections.unmodifiableSet(new HashSet<>(propertyNames)), insertStatement);
         }
+        return insertStatement;
+    }
 
-        logger.debug(message.storingRecord(sqlTableName));
-        final String sqlInsert = MessageFormat.format(SQL_INSERT_RECORD, sqlTableName, sbCols.toString(),
-                sbVals.toString());
-        final PreparedStatement stmt = connection.prepareStatement(sqlInsert);
+    private void setParameters(final PreparedStatement stmt, final List<String> columns,
+            final Map<String, TypedValue<?>> properties, final long timestamp) throws SQLException {
         stmt.setLong(1, timestamp);
 
-        for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
-            final DataType dataType = entry.getValue().getType();
-            final Object value = entry.getValue();
+        int i = 2;
+        for (final String column : columns) {
+            final TypedValue<?> value = properties.get(column);
+            final DataType dataType = value.getType();
             switch (dataType) {
             case BOOLEAN:
                 stmt.setBoolean(i, ((BooleanValue) value).getValue());
@@ -533,7 +718,37 @@ public class H2DbWireRecordStore implements WireEmitter, WireReceiver, Configura
             }
             i++;
         }
-        return stmt;
+    }
+
+    /**
+     * The SQL inserting a wire record with a given set of properties, and the order of its parameters.
+     */
+    private final class InsertStatement {
+
+        private final String tableName;
+        private final String sql;
+        private final List<String> columns;
+
+        InsertStatement(final String tableName, final List<String> columns) {
+            this.tableName = tableName;
+            final String sqlTableName = H2DbWireRecordStore.this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
+            final StringBuilder sbCols = new StringBuilder();
+            final StringBuilder sbVals = new StringBuilder();
+
+            // add the timestamp
+            sbCols.append("TIMESTAMP");
+            sbVals.append("?");
+
+            for (final String column : columns) {
+                final String sqlColName = H2DbWireRecordStore.this.dbHelper.sanitizeSqlTableAndColumnName(column);
+                sbCols.append(", ").append(sqlColName);
+                sbVals.append(", ?");
+            }
+
+            logger.debug(message.storingRecord(sqlTableName));
+            this.sql = MessageFormat.format(SQL_INSERT_RECORD, sqlTableName, sbCols.toString(), sbVals.toString());
+            this.columns = columns;
+        }
     }
 
     protected void restartDbServiceTracker() {
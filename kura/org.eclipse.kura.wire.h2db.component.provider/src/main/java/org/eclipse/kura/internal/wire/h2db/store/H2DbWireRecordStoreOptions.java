@@ -19,6 +19,7 @@ import static java.util.Objects.requireNonNull;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.localization.LocalizationAdapter;
@@ -30,6 +31,20 @@ import org.eclipse.kura.localization.resources.WireMessages;
  */
 final class H2DbWireRecordStoreOptions {
 
+    /**
+     * How the old records are removed from the table.
+     */
+    enum RetentionMode {
+        /**
+         * The oldest records are deleted from the table.
+         */
+        DELETE,
+        /**
+         * The records are stored in partitions and the oldest partitions are dropped.
+         */
+        PARTITIONS
+    }
+
     private static final String DB_SERVICE_INSTANCE = "db.service.pid";
 
     private static final int DEFAULT_MAXIMUM_TABLE_SIZE = 10000;
@@ -42,6 +57,14 @@ final class H2DbWireRecordStoreOptions {
 
     private static final String TABLE_NAME = "table.name";
 
+    private static final String RETENTION_MODE = "retention.mode";
+
+    private static final String PARTITION_INTERVAL = "partition.interval";
+
+    private static final String MAXIMUM_RECORD_AGE = "maximum.record.age";
+
+    private static final int DEFAULT_PARTITION_INTERVAL = 3600;
+
     private final Map<String, Object> properties;
 
     /**
@@ -92,6 +115,47 @@ final class H2DbWireRecordStoreOptions {
         return tableName;
     }
 
+    RetentionMode getRetentionMode() {
+        RetentionMode retentionMode = RetentionMode.DELETE;
+        final Object mode = this.properties.get(RETENTION_MODE);
+        if (nonNull(mode) && mode instanceof String) {
+            try {
+                retentionMode = RetentionMode.valueOf(((String) mode).toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                // keep the default
+            }
+        }
+        return retentionMode;
+    }
+
+    /**
+     * Returns the time after which a new partition is started, 0 if the partitions are only started when full.
+     *
+     * @return the partition interval in milliseconds
+     */
+    long getPartitionInterval() {
+        int interval = DEFAULT_PARTITION_INTERVAL;
+        final Object propertiesInterval = this.properties.get(PARTITION_INTERVAL);
+        if (nonNull(propertiesInterval) && propertiesInterval instanceof Integer) {
+            interval = (Integer) propertiesInterval;
+        }
+        return TimeUnit.SECONDS.toMillis(Math.max(0, interval));
+    }
+
+    /**
+     * Returns the age after which the records are dropped, 0 if the records are kept regardless of their age.
+     *
+     * @return the maximum record age in milliseconds
+     */
+    long getMaximumRecordAge() {
+        int age = 0;
+        final Object propertiesAge = this.properties.get(MAXIMUM_RECORD_AGE);
+        if (nonNull(propertiesAge) && propertiesAge instanceof Integer) {
+            age = (Integer) propertiesAge;
+        }
+        return TimeUnit.SECONDS.toMillis(Math.max(0, age));
+    }
+
     String getDbServiceInstancePid() {
         String dbServicePid = H2DbService.DEFAULT_INSTANCE_PID;
         final Object pid = this.properties.get(DB_SERVICE_INSTANCE);
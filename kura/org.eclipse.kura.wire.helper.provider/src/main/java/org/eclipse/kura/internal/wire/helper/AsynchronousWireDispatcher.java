@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.localization.resources.WireMessages;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.osgi.service.wireadmin.Wire;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the envelopes on a bounded pool of threads shared by all the Wire Components.
+ * <p>
+ * Each wire has its own bounded queue, drained by at most one thread at a time: the envelopes are delivered to a
+ * wire in order, while different wires, and therefore independent branches of the graph, are served in parallel.
+ * A thread delivers at most {@value #MAX_BATCH} envelopes to a wire before yielding to the other wires.
+ * <p>
+ * When the queue of a wire is full the envelope is either discarded or the emitter blocks until there is room in the
+ * queue. If the queue is waiting for a dispatcher thread, the blocked emitter delivers the queued envelopes itself, so
+ * that emitters running on dispatcher threads cannot exhaust the pool waiting for each other.
+ */
+final class AsynchronousWireDispatcher implements WireDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsynchronousWireDispatcher.class);
+    private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
+
+    private static final int MAX_BATCH = 64;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Wire, WireQueue> queues = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final boolean discardEnvelopes;
+
+    /**
+     * Instantiates a new asynchronous dispatcher.
+     *
+     * @param threads
+     *            the number of dispatcher threads
+     * @param queueCapacity
+     *            the maximum number of envelopes waiting to be delivered to a wire
+     * @param discardEnvelopes
+     *            true to discard the envelopes dispatched to a wire with a full queue, false to block the emitter
+     */
+    AsynchronousWireDispatcher(final int threads, final int queueCapacity, final boolean discardEnvelopes) {
+        this.queueCapacity = queueCapacity;
+        this.discardEnvelopes = discardEnvelopes;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                r -> new Thread(r, "WireDispatcher-" + threadCount.incrementAndGet()));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void dispatch(final List<Wire> wires, final WireEnvelope envelope) {
+        for (final Wire wire : wires) {
+            this.queues.computeIfAbsent(wire, WireQueue::new).submit(envelope);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void release(final Wire wire) {
+        // a queue being drained is still referenced by its dispatcher thread
+        this.queues.remove(wire);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // the batches rescheduled after the shutdown are drained by the thread delivering them
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn(message.dispatcherCloseTimeout());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum State {
+        IDLE,
+        SCHEDULED,
+        RUNNING
+    }
+
+    private final class WireQueue implements Runnable {
+
+        private final Wire wire;
+        private final ArrayDeque<WireEnvelope> envelopes = new ArrayDeque<>();
+        private final Lock lock = new ReentrantLock();
+        private final Condition notFull = this.lock.newCondition();
+        private State state = State.IDLE;
+
+        WireQueue(final Wire wire) {
+            this.wire = wire;
+        }
+
+        void submit(final WireEnvelope envelope) {
+            boolean schedule = false;
+            this.lock.lock();
+            try {
+                while (this.envelopes.size() >= AsynchronousWireDispatcher.this.queueCapacity) {
+                    if (AsynchronousWireDispatcher.this.discardEnvelopes) {
+                        logger.debug("envelope discarded");
+                        return;
+                    }
+                    if (this.state == State.SCHEDULED) {
+                        this.state = State.RUNNING;
+                        this.lock.unlock();
+                        try {
+                            drain(Integer.MAX_VALUE);
+                        } finally {
+                            this.lock.lock();
+                        }
+                    } else {
+                        this.notFull.await();
+                    }
+                }
+                this.envelopes.addLast(envelope);
+                if (this.state == State.IDLE) {
+                    this.state = State.SCHEDULED;
+                    schedule = true;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn(message.dispatcherInterruptedWhileSubmitting(), e);
+            } finally {
+                this.lock.unlock();
+            }
+
+            if (schedule) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void run() {
+            this.lock.lock();
+            try {
+                // the envelopes may have been delivered by a blocked emitter in the meantime
+                if (this.state != State.SCHEDULED) {
+                    return;
+                }
+                this.state = State.RUNNING;
+            } finally {
+                this.lock.unlock();
+            }
+            drain(MAX_BATCH);
+        }
+
+        private void schedule() {
+            try {
+                AsynchronousWireDispatcher.this.executor.execute(this);
+            } catch (final RejectedExecutionException e) {
+                // the dispatcher has been closed, deliver the remaining envelopes on the current thread
+                run();
+            }
+        }
+
+        private void drain(final int maxBatch) {
+            int delivered = 0;
+            while (true) {
+                final WireEnvelope next;
+                this.lock.lock();
+                try {
+                    if (this.envelopes.isEmpty()) {
+                        this.state = State.IDLE;
+                        return;
+                    }
+                    if (delivered >= maxBatch) {
+                        this.state = State.SCHEDULED;
+                        next = null;
+                    } else {
+                        next = this.envelopes.pollFirst();
+                        this.notFull.signal();
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+
+                if (next == null) {
+                    schedule();
+                    return;
+                }
+                deliver(next);
+                delivered++;
+            }
+        }
+
+        private void deliver(final WireEnvelope envelope) {
+            try {
+                this.wire.update(envelope);
+            } catch (final Exception e) {
+                logger.warn(message.dispatcherUnexpectedExceptionWhileDelivering(), e);
+            }
+        }
+    }
+}
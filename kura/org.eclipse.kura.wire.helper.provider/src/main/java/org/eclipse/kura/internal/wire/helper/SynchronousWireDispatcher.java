@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.List;
+
+import org.eclipse.kura.wire.WireEnvelope;
+import org.osgi.service.wireadmin.Wire;
+
+/**
+ * Delivers the envelopes on the emitter thread, one wire after the other.
+ */
+final class SynchronousWireDispatcher implements WireDispatcher {
+
+    static final SynchronousWireDispatcher INSTANCE = new SynchronousWireDispatcher();
+
+    private SynchronousWireDispatcher() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void dispatch(final List<Wire> wires, final WireEnvelope envelope) {
+        for (final Wire wire : wires) {
+            wire.update(envelope);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void release(final Wire wire) {
+        // nothing to release
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
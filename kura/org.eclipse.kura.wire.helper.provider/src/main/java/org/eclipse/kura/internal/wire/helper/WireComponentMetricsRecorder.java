@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static java.util.Objects.requireNonNull;
+import static org.eclipse.kura.wire.WireComponentMetrics.PROCESSING_TIME_BUCKETS;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.eclipse.kura.wire.WireComponentMetrics;
+
+/**
+ * Records the metrics of a Wire Component. The counters are striped, so that recording from several threads does
+ * not contend, and are only summed when a snapshot is taken.
+ */
+final class WireComponentMetricsRecorder {
+
+    private final String wireComponentPid;
+
+    private final LongAdder receivedEnvelopes = new LongAdder();
+    private final LongAdder receivedRecords = new LongAdder();
+    private final LongAdder emittedEnvelopes = new LongAdder();
+    private final LongAdder emittedRecords = new LongAdder();
+    private final LongAdder totalProcessingTime = new LongAdder();
+    private final LongAccumulator maxProcessingTime = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] processingTimeHistogram = new LongAdder[PROCESSING_TIME_BUCKETS];
+    private final Map<String, LongSupplier> componentMetrics = new ConcurrentHashMap<>();
+
+    WireComponentMetricsRecorder(final String wireComponentPid) {
+        this.wireComponentPid = wireComponentPid;
+        for (int i = 0; i < PROCESSING_TIME_BUCKETS; i++) {
+            this.processingTimeHistogram[i] = new LongAdder();
+        }
+    }
+
+    String getWireComponentPid() {
+        return this.wireComponentPid;
+    }
+
+    void recordReceived(final int records, final long processingTimeNanos) {
+        this.receivedEnvelopes.increment();
+        this.receivedRecords.add(records);
+        this.totalProcessingTime.add(processingTimeNanos);
+        this.maxProcessingTime.accumulate(processingTimeNanos);
+        this.processingTimeHistogram[bucket(processingTimeNanos)].increment();
+    }
+
+    void recordEmitted(final int records) {
+        this.emittedEnvelopes.increment();
+        this.emittedRecords.add(records);
+    }
+
+    void registerMetric(final String name, final LongSupplier value) {
+        requireNonNull(name);
+        requireNonNull(value);
+        this.componentMetrics.put(name, value);
+    }
+
+    WireComponentMetrics snapshot() {
+        final long[] histogram = new long[PROCESSING_TIME_BUCKETS];
+        for (int i = 0; i < PROCESSING_TIME_BUCKETS; i++) {
+            histogram[i] = this.processingTimeHistogram[i].sum();
+        }
+        final Map<String, Long> metrics = new HashMap<>();
+        for (final Map.Entry<String, LongSupplier> entry : this.componentMetrics.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return new Snapshot(this.wireComponentPid, this.receivedEnvelopes.sum(), this.receivedRecords.sum(),
+                this.emittedEnvelopes.sum(), this.emittedRecords.sum(), histogram, this.totalProcessingTime.sum(),
+                this.maxProcessingTime.get(), Collections.unmodifiableMap(metrics));
+    }
+
+    static int bucket(final long processingTimeNanos) {
+        final long micros = processingTimeNanos / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), PROCESSING_TIME_BUCKETS - 1);
+    }
+
+    private static final class Snapshot implements WireComponentMetrics {
+
+        private final String wireComponentPid;
+        private final long receivedEnvelopes;
+        private final long receivedRecords;
+        private final long emittedEnvelopes;
+        private final long emittedRecords;
+        private final long[] processingTimeHistogram;
+        private final long totalProcessingTime;
+        private final long maxProcessingTime;
+        private final Map<String, Long> componentMetrics;
+
+        Snapshot(final String wireComponentPid, final long receivedEnvelopes, final long receivedRecords,
+                final long emittedEnvelopes, final long emittedRecords, final long[] processingTimeHistogram,
+                final long totalProcessingTime, final long maxProcessingTime,
+                final Map<String, Long> componentMetrics) {
+            this.wireComponentPid = wireComponentPid;
+            this.receivedEnvelopes = receivedEnvelopes;
+            this.receivedRecords = receivedRecords;
+            this.emittedEnvelopes = emittedEnvelopes;
+            this.emittedRecords = emittedRecords;
+            this.processingTimeHistogram = processingTimeHistogram;
+            this.totalProcessingTime = totalProcessingTime;
+            this.maxProcessingTime = maxProcessingTime;
+            this.componentMetrics = componentMetrics;
+        }
+
+        @Override
+        public String getWireComponentPid() {
+            return this.wireComponentPid;
+        }
+
+        @Override
+        public long getReceivedEnvelopes() {
+            return this.receivedEnvelopes;
+        }
+
+        @Override
+        public long getReceivedRecords() {
+            return this.receivedRecords;
+        }
+
+        @Override
+        public long getEmittedEnvelopes() {
+            return this.emittedEnvelopes;
+        }
+
+        @Override
+        public long getEmittedRecords() {
+            return this.emittedRecords;
+        }
+
+        @Override
+        public long[] getProcessingTimeHistogram() {
+            return this.processingTimeHistogram.clone();
+        }
+
+        @Override
+        public long getTotalProcessingTime() {
+            return this.totalProcessingTime;
+        }
+
+        @Override
+        public long getMaxProcessingTime() {
+            return this.maxProcessingTime;
+        }
+
+        @Override
+        public Map<String, Long> getComponentMetrics() {
+            return this.componentMetrics;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.List;
+
+import org.eclipse.kura.wire.WireEnvelope;
+import org.osgi.service.wireadmin.Wire;
+
+/**
+ * Delivers the envelopes emitted by a Wire Component to its outgoing wires.
+ */
+interface WireDispatcher {
+
+    /**
+     * Delivers an envelope to the wires. The envelopes dispatched to the same wire are delivered in the order in
+     * which they have been dispatched.
+     *
+     * @param wires
+     *            the outgoing wires of the emitter
+     * @param envelope
+     *            the envelope
+     */
+    void dispatch(List<Wire> wires, WireEnvelope envelope);
+
+    /**
+     * Releases the resources associated with a wire that is no longer connected.
+     *
+     * @param wire
+     *            the wire
+     */
+    void release(Wire wire);
+
+    /**
+     * Stops accepting new work and waits for the envelopes already dispatched to be delivered. The envelopes
+     * dispatched afterwards are delivered on the emitter thread.
+     */
+    void close();
+}
@@ -17,10 +17,21 @@ import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
 import static org.osgi.framework.Constants.SERVICE_PID;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
 import org.eclipse.kura.util.service.ServiceUtil;
 import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireComponentMetrics;
 import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireReceiver;
@@ -29,17 +40,41 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.EventAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The Class WireHelperServiceImpl is the implementation of
- * {@link WireHelperService}
+ * {@link WireHelperService}. Its configuration selects how the envelopes are
+ * delivered by the {@link WireSupport} instances it creates: synchronously on
+ * the emitter thread or asynchronously on a bounded pool of threads, and how
+ * often the emit events used to animate the wires are posted.
  */
-public final class WireHelperServiceImpl implements WireHelperService {
+public final class WireHelperServiceImpl implements WireHelperService, ConfigurableComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireHelperServiceImpl.class);
 
     private static final WireMessages wireMessages = LocalizationAdapter.adapt(WireMessages.class);
 
     private volatile EventAdmin eventAdmin;
 
+    private volatile WireDispatcher dispatcher = SynchronousWireDispatcher.INSTANCE;
+
+    private volatile WireHelperServiceOptions options = new WireHelperServiceOptions(Collections.emptyMap());
+
+    /** Posts the aggregated emit events still pending at the end of their interval. */
+    private final ScheduledExecutorService emitEventScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "WireEmitEvents");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The Wire Support instances by Wire Component PID. The instances are weakly referenced, so that the Wire
+     * Components which have been deactivated can be garbage collected.
+     */
+    private final Map<String, WeakReference<WireSupportImpl>> wireSupports = new ConcurrentHashMap<>();
+
     /**
      * Binds the Event Admin Service.
      *
@@ -64,6 +99,65 @@ public final class WireHelperServiceImpl implements WireHelperService {
         }
     }
 
+    /**
+     * OSGi Service Component callback for activation.
+     *
+     * @param properties
+     *            the service properties
+     */
+    protected void activate(final Map<String, Object> properties) {
+        logger.info(wireMessages.activatingWireHelperService());
+        updated(properties);
+        logger.info(wireMessages.activatingWireHelperServiceDone());
+    }
+
+    /**
+     * OSGi Service Component callback for updating.
+     *
+     * @param properties
+     *            the updated service properties
+     */
+    public void updated(final Map<String, Object> properties) {
+        logger.info(wireMessages.updatingWireHelperService());
+        final WireHelperServiceOptions newOptions = new WireHelperServiceOptions(properties);
+        final WireDispatcher next = newOptions.newDispatcher();
+        // the envelopes of the previous dispatcher are delivered before the new one is used, the envelopes emitted
+        // in the meantime are delivered by the emitters themselves
+        this.dispatcher.close();
+        this.options = newOptions;
+        this.dispatcher = next;
+        logger.info(wireMessages.updatingWireHelperServiceDone());
+    }
+
+    /**
+     * OSGi Service Component callback for deactivation.
+     */
+    protected void deactivate() {
+        logger.info(wireMessages.deactivatingWireHelperService());
+        this.dispatcher.close();
+        this.dispatcher = SynchronousWireDispatcher.INSTANCE;
+        this.emitEventScheduler.shutdownNow();
+        logger.info(wireMessages.deactivatingWireHelperServiceDone());
+    }
+
+    /**
+     * Returns the dispatcher used to deliver the emitted envelopes.
+     *
+     * @return the current dispatcher
+     */
+    WireDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    /**
+     * Returns the current configuration.
+     *
+     * @return the current configuration
+     */
+    WireHelperServiceOptions getOptions() {
+        return this.options;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getPid(final WireComponent wireComponent) {
@@ -161,6 +255,35 @@ public final class WireHelperServiceImpl implements WireHelperService {
     /** {@inheritDoc} */
     @Override
     public WireSupport newWireSupport(final WireComponent wireComponent) {
-        return new WireSupportImpl(wireComponent, this, this.eventAdmin);
+        final WireSupportImpl wireSupport = new WireSupportImpl(wireComponent, this, this.eventAdmin,
+                this::getDispatcher, this::getOptions, this.emitEventScheduler);
+        final String wireComponentPid = wireSupport.getMetrics().getWireComponentPid();
+        if (wireComponentPid != null) {
+            purgeWireSupports();
+            this.wireSupports.put(wireComponentPid, new WeakReference<>(wireSupport));
+        }
+        return wireSupport;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, WireComponentMetrics> getWireComponentMetrics() {
+        final Map<String, WireComponentMetrics> metrics = new HashMap<>();
+        for (final Map.Entry<String, WeakReference<WireSupportImpl>> entry : this.wireSupports.entrySet()) {
+            final WireSupportImpl wireSupport = entry.getValue().get();
+            if (wireSupport != null) {
+                metrics.put(entry.getKey(), wireSupport.getMetrics().snapshot());
+            }
+        }
+        return metrics;
+    }
+
+    private void purgeWireSupports() {
+        final Iterator<WeakReference<WireSupportImpl>> iterator = this.wireSupports.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
     }
 }
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of the {@link WireHelperServiceImpl}.
+ */
+final class WireHelperServiceOptions {
+
+    enum DispatchMode {
+        SYNCHRONOUS,
+        ASYNCHRONOUS
+    }
+
+    enum EmitEventsMode {
+        ALL,
+        AGGREGATED,
+        NONE
+    }
+
+    private static final String DISPATCH_MODE_PROP_NAME = "dispatch.mode";
+    private static final String DISPATCH_THREADS_PROP_NAME = "dispatch.threads";
+    private static final String DISPATCH_QUEUE_CAPACITY_PROP_NAME = "dispatch.queue.capacity";
+    private static final String DISPATCH_DISCARD_ENVELOPES_PROP_NAME = "dispatch.discard.envelopes";
+    private static final String EMIT_EVENTS_PROP_NAME = "emit.events";
+    private static final String EMIT_EVENTS_INTERVAL_PROP_NAME = "emit.events.interval";
+
+    private static final String DISPATCH_MODE_DEFAULT = "synchronous";
+    private static final Integer DISPATCH_THREADS_DEFAULT = 0;
+    private static final Integer DISPATCH_QUEUE_CAPACITY_DEFAULT = 50;
+    private static final Boolean DISPATCH_DISCARD_ENVELOPES_DEFAULT = false;
+    private static final String EMIT_EVENTS_DEFAULT = "aggregated";
+    private static final Integer EMIT_EVENTS_INTERVAL_DEFAULT = 1000;
+
+    private final DispatchMode dispatchMode;
+    private final int dispatchThreads;
+    private final int dispatchQueueCapacity;
+    private final boolean discardEnvelopes;
+    private final EmitEventsMode emitEventsMode;
+    private final long emitEventsIntervalNanos;
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getSafe(Object o, T defaultValue) {
+        if (defaultValue.getClass().isInstance(o)) {
+            return (T) o;
+        }
+        return defaultValue;
+    }
+
+    WireHelperServiceOptions(final Map<String, Object> properties) {
+        final String mode = getSafe(properties.get(DISPATCH_MODE_PROP_NAME), DISPATCH_MODE_DEFAULT);
+        this.dispatchMode = "asynchronous".equals(mode) ? DispatchMode.ASYNCHRONOUS : DispatchMode.SYNCHRONOUS;
+
+        final int threads = getSafe(properties.get(DISPATCH_THREADS_PROP_NAME), DISPATCH_THREADS_DEFAULT);
+        this.dispatchThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.dispatchQueueCapacity = Math.max(1,
+                getSafe(properties.get(DISPATCH_QUEUE_CAPACITY_PROP_NAME), DISPATCH_QUEUE_CAPACITY_DEFAULT));
+        this.discardEnvelopes = getSafe(properties.get(DISPATCH_DISCARD_ENVELOPES_PROP_NAME),
+                DISPATCH_DISCARD_ENVELOPES_DEFAULT);
+
+        final String emitEvents = getSafe(properties.get(EMIT_EVENTS_PROP_NAME), EMIT_EVENTS_DEFAULT);
+        if ("all".equals(emitEvents)) {
+            this.emitEventsMode = EmitEventsMode.ALL;
+        } else if ("none".equals(emitEvents)) {
+            this.emitEventsMode = EmitEventsMode.NONE;
+        } else {
+            this.emitEventsMode = EmitEventsMode.AGGREGATED;
+        }
+        this.emitEventsIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(0, getSafe(properties.get(EMIT_EVENTS_INTERVAL_PROP_NAME), EMIT_EVENTS_INTERVAL_DEFAULT)));
+    }
+
+    DispatchMode getDispatchMode() {
+        return this.dispatchMode;
+    }
+
+    int getDispatchThreads() {
+        return this.dispatchThreads;
+    }
+
+    int getDispatchQueueCapacity() {
+        return this.dispatchQueueCapacity;
+    }
+
+    boolean isDiscardEnvelopes() {
+        return this.discardEnvelopes;
+    }
+
+    EmitEventsMode getEmitEventsMode() {
+        return this.emitEventsMode;
+    }
+
+    long getEmitEventsIntervalNanos() {
+        return this.emitEventsIntervalNanos;
+    }
+
+    WireDispatcher newDispatcher() {
+        if (this.dispatchMode == DispatchMode.ASYNCHRONOUS) {
+            return new AsynchronousWireDispatcher(this.dispatchThreads, this.dispatchQueueCapacity,
+                    this.discardEnvelopes);
+        }
+        return SynchronousWireDispatcher.INSTANCE;
+    }
+}
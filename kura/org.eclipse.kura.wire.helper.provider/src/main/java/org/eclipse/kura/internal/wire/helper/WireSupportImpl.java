@@ -15,10 +15,16 @@ package org.eclipse.kura.internal.wire.helper;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
@@ -41,11 +47,35 @@ final class WireSupportImpl implements WireSupport {
 
     private static final WireMessages message = LocalizationAdapter.adapt(WireMessages.class);
 
+    /**
+     * The time spent by the current thread delivering emitted envelopes, subtracted from the processing time of the
+     * receiving component.
+     */
+    private static final ThreadLocal<long[]> dispatchTime = ThreadLocal.withInitial(() -> new long[1]);
+
     private final EventAdmin eventAdmin;
 
-    private List<Wire> incomingWires;
+    private final Supplier<WireDispatcher> dispatcher;
+
+    private final Supplier<WireHelperServiceOptions> options;
+
+    private final ScheduledExecutorService emitEventScheduler;
+
+    private final Object emitEventLock = new Object();
+
+    private long emitCount;
+
+    private long lastEmitEventNanos;
+
+    private boolean emitEventPosted;
+
+    private boolean emitEventFlushScheduled;
+
+    private final WireComponentMetricsRecorder metrics;
 
-    private List<Wire> outgoingWires;
+    private volatile List<Wire> incomingWires;
+
+    private volatile List<Wire> outgoingWires;
 
     private final WireComponent wireSupporter;
 
@@ -62,14 +92,24 @@ final class WireSupportImpl implements WireSupport {
      *            the Wire Helper service
      * @param eventAdmin
      *            the Event Admin service
+     * @param dispatcher
+     *            supplies the dispatcher currently used to deliver the emitted envelopes
+     * @param options
+     *            supplies the current Wire Helper service configuration
+     * @param emitEventScheduler
+     *            the executor posting the aggregated emit events pending at the end of their interval
      * @throws NullPointerException
      *             if any of the provided arguments is null
      */
     WireSupportImpl(final WireComponent wireSupporter, final WireHelperService wireHelperService,
-            final EventAdmin eventAdmin) {
+            final EventAdmin eventAdmin, final Supplier<WireDispatcher> dispatcher,
+            final Supplier<WireHelperServiceOptions> options, final ScheduledExecutorService emitEventScheduler) {
         requireNonNull(wireSupporter, message.wireSupportedComponentNonNull());
         requireNonNull(wireHelperService, message.wireHelperServiceNonNull());
         requireNonNull(eventAdmin, message.eventAdminNonNull());
+        requireNonNull(dispatcher);
+        requireNonNull(options);
+        requireNonNull(emitEventScheduler);
 
         this.outgoingWires = CollectionUtil.newArrayList();
         this.incomingWires = CollectionUtil.newArrayList();
@@ -77,29 +117,131 @@ final class WireSupportImpl implements WireSupport {
         this.pid = wireHelperService.getPid(wireSupporter);
         this.wireSupporter = wireSupporter;
         this.eventAdmin = eventAdmin;
+        this.dispatcher = dispatcher;
+        this.options = options;
+        this.emitEventScheduler = emitEventScheduler;
+        this.metrics = new WireComponentMetricsRecorder(this.pid);
     }
 
     /** {@inheritDoc} */
     @Override
     public synchronized void consumersConnected(final Wire[] wires) {
-        this.outgoingWires = Arrays.asList(wires);
+        final List<Wire> connected = Arrays.asList(wires);
+        final WireDispatcher wireDispatcher = this.dispatcher.get();
+        for (final Wire wire : this.outgoingWires) {
+            if (!connected.contains(wire)) {
+                wireDispatcher.release(wire);
+            }
+        }
+        this.outgoingWires = Collections.unmodifiableList(new ArrayList<>(connected));
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The emitters are not serialized: each emit delivers the envelope to a snapshot of the outgoing wires, with the
+     * dispatcher current at the time of the call.
+     */
     @Override
-    public synchronized void emit(final List<WireRecord> wireRecords) {
+    public void emit(final List<WireRecord> wireRecords) {
         requireNonNull(wireRecords, message.wireRecordsNonNull());
         if (this.wireSupporter instanceof WireEmitter) {
             final WireEnvelope wei = new WireEnvelope(emitterPid, wireRecords);
-            for (final Wire wire : this.outgoingWires) {
-                wire.update(wei);
+            final List<Wire> wires = this.outgoingWires;
+            final WireDispatcher wireDispatcher = this.dispatcher.get();
+            final long[] threadDispatchTime = dispatchTime.get();
+            final long previousDispatchTime = threadDispatchTime[0];
+            final long start = System.nanoTime();
+            wireDispatcher.dispatch(wires, wei);
+            // the time spent by the receivers is already included
+            threadDispatchTime[0] = previousDispatchTime + System.nanoTime() - start;
+            this.metrics.recordEmitted(wireRecords.size());
+            notifyEmit();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void registerMetric(final String name, final LongSupplier value) {
+        this.metrics.registerMetric(name, value);
+    }
+
+    /**
+     * Gets the metrics recorder of the contained Wire Component.
+     *
+     * @return the metrics recorder
+     */
+    WireComponentMetricsRecorder getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Posts the emit event, depending on the configuration: on every emit, or at most once per interval with the
+     * number of emits since the previous event. The emits counted within an interval are posted when it ends, even if
+     * no further emit occurs.
+     */
+    private void notifyEmit() {
+        final WireHelperServiceOptions currentOptions = this.options.get();
+        switch (currentOptions.getEmitEventsMode()) {
+        case NONE:
+            return;
+        case ALL:
+            postEmitEvent(null);
+            return;
+        default:
+            final long count;
+            synchronized (this.emitEventLock) {
+                this.emitCount++;
+                final long now = System.nanoTime();
+                final long elapsed = now - this.lastEmitEventNanos;
+                if (this.emitEventPosted && elapsed < currentOptions.getEmitEventsIntervalNanos()) {
+                    scheduleEmitEventFlush(currentOptions.getEmitEventsIntervalNanos() - elapsed);
+                    return;
+                }
+                count = this.emitCount;
+                this.emitEventPosted = true;
+                this.lastEmitEventNanos = now;
+                this.emitCount = 0;
             }
-            final Map<String, Object> properties = CollectionUtil.newHashMap();
-            properties.put("emitter", pid);
-            this.eventAdmin.postEvent(new Event(WireSupport.EMIT_EVENT_TOPIC, properties));
+            postEmitEvent(count);
         }
     }
 
+    private void scheduleEmitEventFlush(final long delayNanos) {
+        if (this.emitEventFlushScheduled) {
+            return;
+        }
+        try {
+            this.emitEventScheduler.schedule(this::flushEmitEvent, delayNanos, TimeUnit.NANOSECONDS);
+            this.emitEventFlushScheduled = true;
+        } catch (final RejectedExecutionException e) {
+            // the Wire Helper service is being deactivated, the count is posted with the next emit
+        }
+    }
+
+    private void flushEmitEvent() {
+        final long count;
+        synchronized (this.emitEventLock) {
+            this.emitEventFlushScheduled = false;
+            if (this.emitCount == 0) {
+                return;
+            }
+            count = this.emitCount;
+            this.lastEmitEventNanos = System.nanoTime();
+            this.emitCount = 0;
+        }
+        postEmitEvent(count);
+    }
+
+    private void postEmitEvent(final Long count) {
+        final Map<String, Object> properties = CollectionUtil.newHashMap();
+        properties.put("emitter", pid);
+        if (count != null) {
+            properties.put("count", count);
+        }
+        this.eventAdmin.postEvent(new Event(WireSupport.EMIT_EVENT_TOPIC, properties));
+    }
+
     /**
      * Gets the incoming wires.
      *
@@ -135,7 +277,16 @@ final class WireSupportImpl implements WireSupport {
     public void updated(final Wire wire, final Object value) {
         requireNonNull(wire, message.wireNonNull());
         if (value instanceof WireEnvelope && this.wireSupporter instanceof WireReceiver) {
-            ((WireReceiver) this.wireSupporter).onWireReceive((WireEnvelope) value);
+            final WireEnvelope wireEnvelope = (WireEnvelope) value;
+            final long[] threadDispatchTime = dispatchTime.get();
+            final long previousDispatchTime = threadDispatchTime[0];
+            final long start = System.nanoTime();
+            try {
+                ((WireReceiver) this.wireSupporter).onWireReceive(wireEnvelope);
+            } finally {
+                final long processingTime = System.nanoTime() - start - (threadDispatchTime[0] - previousDispatchTime);
+                this.metrics.recordReceived(wireEnvelope.getRecords().size(), Math.max(0, processingTime));
+            }
         }
     }
 }
@@ -14,16 +14,20 @@
  *******************************************************************************/
 package org.eclipse.kura.internal.wire;
 
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.felix.service.command.Descriptor;
 import org.eclipse.kura.KuraException;
+import org.eclipse.kura.wire.WireComponentMetrics;
 import org.eclipse.kura.wire.WireConfiguration;
 import org.eclipse.kura.wire.WireService;
 
 /**
- * Provides Gogo Shell commands to create, delete Wire Configurations and list
- * the available ones
+ * Provides Gogo Shell commands to create, delete Wire Configurations, list
+ * the available ones and show the metrics of the Wire Components
  */
 public final class WireServiceCommandProvider {
 
@@ -104,4 +108,53 @@ public final class WireServiceCommandProvider {
         }
         System.out.println("===========================================================");
     }
+
+    /**
+     * The command {@code wireMetrics} shows the metrics of the Wire Components: the received and emitted
+     * envelopes and records, the time spent processing the received envelopes and the metrics specific to the
+     * components
+     */
+    @Descriptor("Shows the metrics of the Wire Components")
+    public void wireMetrics() {
+        System.out.println("===================== Wire Components Metrics =====================");
+        final Map<String, WireComponentMetrics> metrics = new TreeMap<>(this.wireService.getWireComponentMetrics());
+        for (final WireComponentMetrics componentMetrics : metrics.values()) {
+            System.out.format("%s%n", componentMetrics.getWireComponentPid());
+            System.out.format("    received: %d envelopes, %d records  emitted: %d envelopes, %d records%n",
+                    componentMetrics.getReceivedEnvelopes(), componentMetrics.getReceivedRecords(),
+                    componentMetrics.getEmittedEnvelopes(), componentMetrics.getEmittedRecords());
+            if (componentMetrics.getReceivedEnvelopes() > 0) {
+                final long[] histogram = componentMetrics.getProcessingTimeHistogram();
+                System.out.format("    processing time (us): avg %d  p50 < %d  p99 < %d  max %d%n",
+                        TimeUnit.NANOSECONDS.toMicros(
+                                componentMetrics.getTotalProcessingTime() / componentMetrics.getReceivedEnvelopes()),
+                        percentile(histogram, 0.50), percentile(histogram, 0.99),
+                        TimeUnit.NANOSECONDS.toMicros(componentMetrics.getMaxProcessingTime()));
+            }
+            for (final Map.Entry<String, Long> entry : new TreeMap<>(componentMetrics.getComponentMetrics())
+                    .entrySet()) {
+                System.out.format("    %s: %d%n", entry.getKey(), entry.getValue());
+            }
+        }
+        System.out.println("===================================================================");
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the histogram bucket containing the provided percentile
+     */
+    private static long percentile(final long[] histogram, final double percentile) {
+        long total = 0;
+        for (final long count : histogram) {
+            total += count;
+        }
+        final long rank = (long) Math.ceil(total * percentile);
+        long cumulated = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            cumulated += histogram[i];
+            if (cumulated >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (histogram.length - 1);
+    }
 }
@@ -37,6 +37,7 @@ import org.eclipse.kura.localization.LocalizationAdapter;
 import org.eclipse.kura.localization.resources.WireMessages;
 import org.eclipse.kura.util.collection.CollectionUtil;
 import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireComponentMetrics;
 import org.eclipse.kura.wire.WireConfiguration;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireService;
@@ -388,6 +389,16 @@ public final class WireServiceImpl implements SelfConfiguringComponent, WireServ
         return this.wireConfigs;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, WireComponentMetrics> getWireComponentMetrics() {
+        final WireHelperService helperService = this.wireHelperService;
+        if (isNull(helperService)) {
+            return Collections.emptyMap();
+        }
+        return helperService.getWireComponentMetrics();
+    }
+
     /**
      * Unbinds {@link WireAdmin} dependency
      *
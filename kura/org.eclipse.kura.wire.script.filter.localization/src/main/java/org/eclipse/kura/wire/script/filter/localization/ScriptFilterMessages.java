@@ -55,4 +55,7 @@ public interface ScriptFilterMessages {
     @En("This object is immutable")
     public String errorObjectImmutable();
 
+    @En("Dropped {0} envelopes not processed before closing")
+    public String droppedEnvelopes(int count);
+
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire.script.filter.provider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.script.filter.localization.ScriptFilterMessages;
+import org.slf4j.Logger;
+
+/**
+ * Executes a script on a pool of threads, each envelope with one of a pool of {@link ScriptInstance}s, and emits the
+ * results in the order the envelopes have been submitted. Each script instance has its own global variables.
+ * <p>
+ * At most {@value #PENDING_ENVELOPES_PER_THREAD} envelopes per thread can be waiting to be processed or emitted,
+ * {@link #submit(WireEnvelope)} blocks while this limit is reached, until the executor is closed.
+ */
+final class ConcurrentScriptExecutor {
+
+    private static final ScriptFilterMessages message = LocalizationAdapter.adapt(ScriptFilterMessages.class);
+
+    private static final int PENDING_ENVELOPES_PER_THREAD = 2;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private static final List<WireRecord> NO_RECORDS = Collections.unmodifiableList(new ArrayList<WireRecord>());
+
+    private final int concurrency;
+    private final Logger logger;
+    private final Consumer<List<WireRecord>> emitter;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<ScriptInstance> instances;
+    private final int maxPendingEnvelopes;
+
+    private final Object emitLock = new Object();
+    private final Map<Long, List<WireRecord>> results = new HashMap<>();
+    private long nextSequence;
+    private long nextEmitted;
+    private boolean closed;
+
+    /**
+     * Instantiates a new concurrent script executor.
+     *
+     * @param concurrency
+     *            the number of threads and script instances
+     * @param logger
+     *            the logger available to the script
+     * @param emitter
+     *            the consumer of the records produced by the script, called in order by one thread at a time
+     */
+    ConcurrentScriptExecutor(final int concurrency, final Logger logger, final Consumer<List<WireRecord>> emitter) {
+        this.concurrency = concurrency;
+        this.logger = logger;
+        this.emitter = emitter;
+        this.instances = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            this.instances.add(new ScriptInstance(logger));
+        }
+        this.maxPendingEnvelopes = concurrency * PENDING_ENVELOPES_PER_THREAD;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                r -> new Thread(r, "ScriptFilter-" + threadCount.incrementAndGet()));
+    }
+
+    /**
+     * Compiles the provided script in all the script instances, waiting for the envelopes being processed.
+     *
+     * @param scriptSource
+     *            the script source
+     * @param dropContext
+     *            true to reset the global variables of the script instances
+     */
+    void update(final String scriptSource, final boolean dropContext) {
+        final List<ScriptInstance> updated = new ArrayList<>();
+        try {
+            while (updated.size() < this.concurrency) {
+                final ScriptInstance instance = this.instances.take();
+                instance.update(scriptSource, dropContext);
+                updated.add(instance);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.instances.addAll(updated);
+        }
+    }
+
+    /**
+     * Submits an envelope to be processed.
+     *
+     * @param wireEnvelope
+     *            the received envelope
+     * @throws InterruptedException
+     *             if interrupted while waiting for the pending envelopes to be processed
+     */
+    void submit(final WireEnvelope wireEnvelope) throws InterruptedException {
+        final Task task;
+        synchronized (this.emitLock) {
+            // the results are emitted in sequence, the envelopes not emitted yet are the pending ones
+            while (!this.closed && this.nextSequence - this.nextEmitted >= this.maxPendingEnvelopes) {
+                this.emitLock.wait();
+            }
+            task = new Task(this.nextSequence++, wireEnvelope);
+        }
+        try {
+            this.executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            // the executor has been closed, process the envelope on the current thread
+            task.run();
+        }
+    }
+
+    /**
+     * Stops the threads, after the pending envelopes have been processed and emitted. The envelopes still queued when
+     * the timeout expires are dropped. The submitters waiting for the pending envelopes are woken up and process their
+     * envelopes on their own thread.
+     */
+    void close() {
+        synchronized (this.emitLock) {
+            this.closed = true;
+            this.emitLock.notifyAll();
+        }
+
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                drop(this.executor.shutdownNow());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drop(this.executor.shutdownNow());
+        }
+    }
+
+    private void drop(final List<Runnable> tasks) {
+        if (!tasks.isEmpty()) {
+            this.logger.warn(message.droppedEnvelopes(tasks.size()));
+        }
+        // the sequences of the dropped envelopes are completed, so that the following results can be emitted
+        for (final Runnable task : tasks) {
+            complete(((Task) task).sequence, null);
+        }
+    }
+
+    private void process(final long sequence, final WireEnvelope wireEnvelope) {
+        List<WireRecord> result = null;
+        ScriptInstance instance = null;
+        try {
+            instance = this.instances.take();
+            if (instance.isCompiled()) {
+                result = instance.eval(wireEnvelope);
+            } else {
+                this.logger.warn(message.errorScriptCompileFalied());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            this.logger.warn(message.errorExecutingScript(), e);
+        } finally {
+            if (instance != null) {
+                this.instances.add(instance);
+            }
+            complete(sequence, result);
+        }
+    }
+
+    private void complete(final long sequence, final List<WireRecord> result) {
+        synchronized (this.emitLock) {
+            this.results.put(sequence, result != null ? result : NO_RECORDS);
+
+            // the thread completing the oldest envelope emits all the results ready in sequence
+            List<WireRecord> next;
+            while ((next = this.results.remove(this.nextEmitted)) != null) {
+                this.nextEmitted++;
+                try {
+                    if (next != NO_RECORDS) {
+                        this.emitter.accept(next);
+                    }
+                } catch (final Exception e) {
+                    this.logger.warn(message.errorExecutingScript(), e);
+                }
+            }
+            this.emitLock.notifyAll();
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        private final long sequence;
+        private final WireEnvelope wireEnvelope;
+
+        Task(final long sequence, final WireEnvelope wireEnvelope) {
+            this.sequence = sequence;
+            this.wireEnvelope = wireEnvelope;
+        }
+
+        @Override
+        public void run() {
+            process(this.sequence, this.wireEnvelope);
+        }
+    }
+}
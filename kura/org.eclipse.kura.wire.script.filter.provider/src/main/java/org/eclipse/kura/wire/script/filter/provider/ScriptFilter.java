@@ -11,21 +11,9 @@ package org.eclipse.kura.wire.script.filter.provider;
 
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.function.Supplier;
-
-import javax.script.Bindings;
-import javax.script.Compilable;
-import javax.script.CompiledScript;
-import javax.script.ScriptContext;
-import javax.script.ScriptEngine;
-import javax.script.ScriptException;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.localization.LocalizationAdapter;
-import org.eclipse.kura.type.DataType;
-import org.eclipse.kura.type.TypedValue;
-import org.eclipse.kura.type.TypedValues;
 import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
@@ -38,8 +26,6 @@ import org.osgi.service.wireadmin.Wire;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
-
 public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private static final Logger logger = LoggerFactory.getLogger(ScriptFilter.class);
@@ -47,15 +33,15 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
 
     private static final String SCRIPT_PROPERTY_KEY = "script";
     private static final String SCRIPT_CONTEXT_DROP_PROPERTY_KEY = "script.context.drop";
+    private static final String SCRIPT_CONCURRENCY_PROPERTY_KEY = "script.concurrency";
 
-    private CompiledScript script;
-    private Bindings bindings;
+    private ScriptInstance scriptInstance;
+    private ConcurrentScriptExecutor concurrentExecutor;
+    private int concurrency;
 
     private volatile WireHelperService wireHelperService;
     private WireSupport wireSupport;
 
-    private ScriptEngine scriptEngine;
-
     public void bindWireHelperService(final WireHelperService wireHelperService) {
         if (this.wireHelperService == null) {
             this.wireHelperService = wireHelperService;
@@ -72,9 +58,6 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
         logger.info(message.activating());
         this.wireSupport = this.wireHelperService.newWireSupport(this);
 
-        this.scriptEngine = createEngine();
-        this.bindings = createBindings();
-
         updated(properties);
 
         logger.info(message.activatingDone());
@@ -82,113 +65,108 @@ public class ScriptFilter implements WireEmitter, WireReceiver, ConfigurableComp
 
     public void deactivate() {
         logger.info(message.deactivating());
+        final ConcurrentScriptExecutor executor;
+        synchronized (this) {
+            executor = this.concurrentExecutor;
+            this.concurrentExecutor = null;
+        }
+        // waiting for the pending envelopes must not block the monitor
+        if (executor != null) {
+            executor.close();
+        }
         logger.info(message.deactivatingDone());
     }
 
-    public synchronized void updated(final Map<String, Object> properties) {
+    public void updated(final Map<String, Object> properties) {
         logger.info(message.updating());
 
+        final ConcurrentScriptExecutor oldExecutor;
+        synchronized (this) {
+            oldExecutor = update(properties);
+        }
+        // waiting for the pending envelopes must not block the monitor
+        if (oldExecutor != null) {
+            oldExecutor.close();
+        }
+    }
+
+    /**
+     * Applies the configuration, returning the replaced concurrent executor that must be closed, if any.
+     */
+    private ConcurrentScriptExecutor update(final Map<String, Object> properties) {
+        ConcurrentScriptExecutor oldExecutor = null;
+        final int newConcurrency = Math.max(1, (Integer) properties.getOrDefault(SCRIPT_CONCURRENCY_PROPERTY_KEY, 1));
+        if (newConcurrency != this.concurrency) {
+            // the script contexts are recreated
+            oldExecutor = this.concurrentExecutor;
+            this.concurrentExecutor = null;
+            if (newConcurrency > 1) {
+                this.concurrentExecutor = new ConcurrentScriptExecutor(newConcurrency, logger, this.wireSupport::emit);
+                this.scriptInstance = null;
+            } else {
+                this.scriptInstance = new ScriptInstance(logger);
+            }
+            this.concurrency = newConcurrency;
+        }
+
         final String scriptSource = (String) properties.get(SCRIPT_PROPERTY_KEY);
 
         if (scriptSource == null) {
             logger.warn(message.errorScriptSourceNull());
-            return;
-        }
-
-        this.script = null;
-        try {
-            this.script = ((Compilable) this.scriptEngine).compile(scriptSource);
-        } catch (ScriptException e) {
-            logger.warn(message.errorScriptCompileFalied(), e);
+            return oldExecutor;
         }
 
-        if (this.bindings == null || (Boolean) properties.getOrDefault(SCRIPT_CONTEXT_DROP_PROPERTY_KEY, false)) {
-            this.bindings = createBindings();
+        final boolean dropContext = (Boolean) properties.getOrDefault(SCRIPT_CONTEXT_DROP_PROPERTY_KEY, false);
+        if (this.concurrentExecutor != null) {
+            this.concurrentExecutor.update(scriptSource, dropContext);
+        } else {
+            this.scriptInstance.update(scriptSource, dropContext);
         }
 
         logger.info(message.updatingDone());
+        return oldExecutor;
     }
 
     @Override
-    public synchronized void onWireReceive(WireEnvelope wireEnvelope) {
-        if (this.script == null) {
-            logger.warn(message.errorScriptCompileFalied());
+    public void onWireReceive(WireEnvelope wireEnvelope) {
+        // the permit of the concurrent executor is acquired outside of the monitor, waiting for it must not block
+        // updated() and deactivate()
+        final ConcurrentScriptExecutor executor = evaluate(wireEnvelope);
+        if (executor == null) {
             return;
         }
-
         try {
-            final WireEnvelopeWrapper inputEnvelopeWrapper = new WireEnvelopeWrapper(
-                    new WireRecordListWrapper(wireEnvelope.getRecords()), wireEnvelope.getEmitterPid());
-            final OutputWireRecordListWrapper outputEnvelopeWrapper = new OutputWireRecordListWrapper();
-
-            this.bindings.put("input", inputEnvelopeWrapper);
-            this.bindings.put("output", outputEnvelopeWrapper);
-
-            this.script.eval(this.bindings);
-
-            final List<WireRecord> result = outputEnvelopeWrapper.getRecords();
-
-            if (result != null) {
-                this.wireSupport.emit(result);
-            }
-        } catch (Exception e) {
+            executor.submit(wireEnvelope);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             logger.warn(message.errorExecutingScript(), e);
         }
     }
 
-    private ScriptEngine createEngine() {
-        NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
-        ScriptEngine scriptEngine = factory.getScriptEngine(className -> false);
-
-        if (scriptEngine == null) {
-            throw new IllegalStateException(message.errorGettingScriptEngine());
+    /**
+     * Evaluates the script on the current thread if the concurrency is 1, otherwise returns the concurrent executor
+     * the envelope must be submitted to.
+     */
+    private synchronized ConcurrentScriptExecutor evaluate(WireEnvelope wireEnvelope) {
+        if (this.concurrentExecutor != null) {
+            return this.concurrentExecutor;
         }
 
-        final Bindings engineScopeBindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
-        if (engineScopeBindings != null) {
-            engineScopeBindings.remove("exit");
-            engineScopeBindings.remove("quit");
-        }
-
-        final Bindings globalScopeBindings = scriptEngine.getBindings(ScriptContext.GLOBAL_SCOPE);
-        if (globalScopeBindings != null) {
-            globalScopeBindings.remove("exit");
-            globalScopeBindings.remove("quit");
+        if (this.scriptInstance == null || !this.scriptInstance.isCompiled()) {
+            logger.warn(message.errorScriptCompileFalied());
+            return null;
         }
 
-        return scriptEngine;
-    }
-
-    private Bindings createBindings() {
-        Bindings bindings = this.scriptEngine.createBindings();
-
-        bindings.put("logger", logger);
-
-        bindings.put("newWireRecord", (Supplier<WireRecordWrapper>) WireRecordWrapper::new);
-
-        bindings.put("newBooleanValue", (Function<Boolean, TypedValue<?>>) TypedValues::newBooleanValue);
-        bindings.put("newByteArrayValue", (Function<byte[], TypedValue<?>>) TypedValues::newByteArrayValue);
-        bindings.put("newDoubleValue",
-                (Function<Number, TypedValue<?>>) num -> TypedValues.newDoubleValue(num.doubleValue()));
-        bindings.put("newFloatValue",
-                (Function<Number, TypedValue<?>>) num -> TypedValues.newFloatValue(num.floatValue()));
-        bindings.put("newIntegerValue",
-                (Function<Number, TypedValue<?>>) num -> TypedValues.newIntegerValue(num.intValue()));
-        bindings.put("newLongValue",
-                (Function<Number, TypedValue<?>>) num -> TypedValues.newLongValue(num.longValue()));
-        bindings.put("newStringValue",
-                (Function<Object, TypedValue<?>>) obj -> TypedValues.newStringValue(obj.toString()));
-
-        bindings.put("newByteArray", (Function<Integer, byte[]>) size -> new byte[size]);
+        try {
+            final List<WireRecord> result = this.scriptInstance.eval(wireEnvelope);
 
-        for (DataType type : DataType.values()) {
-            bindings.put(type.name(), type);
+            if (result != null) {
+                this.wireSupport.emit(result);
+            }
+        } catch (Exception e) {
+            logger.warn(message.errorExecutingScript(), e);
         }
-
-        bindings.remove("exit");
-        bindings.remove("quit");
-
-        return bindings;
+        return null;
     }
 
     @Override
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.wire.script.filter.provider;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.eclipse.kura.localization.LocalizationAdapter;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.script.filter.localization.ScriptFilterMessages;
+import org.slf4j.Logger;
+
+import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+/**
+ * A script compiled in its own engine, with its own context. An instance must not be used by more than one thread
+ * at a time.
+ */
+final class ScriptInstance {
+
+    private static final ScriptFilterMessages message = LocalizationAdapter.adapt(ScriptFilterMessages.class);
+
+    private final Logger logger;
+    private final ScriptEngine scriptEngine;
+
+    private CompiledScript script;
+    private Bindings bindings;
+
+    ScriptInstance(final Logger logger) {
+        this.logger = logger;
+        this.scriptEngine = createEngine();
+        this.bindings = createBindings();
+    }
+
+    void update(final String scriptSource, final boolean dropContext) {
+        this.script = null;
+        try {
+            this.script = ((Compilable) this.scriptEngine).compile(scriptSource);
+        } catch (ScriptException e) {
+            this.logger.warn(message.errorScriptCompileFalied(), e);
+        }
+
+        if (dropContext) {
+            this.bindings = createBindings();
+        }
+    }
+
+    boolean isCompiled() {
+        return this.script != null;
+    }
+
+    /**
+     * Executes the script on the provided envelope.
+     *
+     * @param wireEnvelope
+     *            the received envelope
+     * @return the records added to the output by the script, or null if none
+     * @throws ScriptException
+     *             if the script fails
+     */
+    List<WireRecord> eval(final WireEnvelope wireEnvelope) throws ScriptException {
+        final WireEnvelopeWrapper inputEnvelopeWrapper = new WireEnvelopeWrapper(
+                new WireRecordListWrapper(wireEnvelope.getRecords()), wireEnvelope.getEmitterPid());
+        final OutputWireRecordListWrapper outputEnvelopeWrapper = new OutputWireRecordListWrapper();
+
+        this.bindings.put("input", inputEnvelopeWrapper);
+        this.bindings.put("output", outputEnvelopeWrapper);
+
+        this.script.eval(this.bindings);
+
+        return outputEnvelopeWrapper.getRecords();
+    }
+
+    private ScriptEngine createEngine() {
+        NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
+        ScriptEngine scriptEngine = factory.getScriptEngine(className -> false);
+
+        if (scriptEngine == null) {
+            throw new IllegalStateException(message.errorGettingScriptEngine());
+        }
+
+        final Bindings engineScopeBindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (engineScopeBindings != null) {
+            engineScopeBindings.remove("exit");
+            engineScopeBindings.remove("quit");
+        }
+
+        final Bindings globalScopeBindings = scriptEngine.getBindings(ScriptContext.GLOBAL_SCOPE);
+        if (globalScopeBindings != null) {
+            globalScopeBindings.remove("exit");
+            globalScopeBindings.remove("quit");
+        }
+
+        return scriptEngine;
+    }
+
+    private Bindings createBindings() {
+        Bindings bindings = this.scriptEngine.createBindings();
+
+        bindings.put("logger", this.logger);
+
+        bindings.put("newWireRecord", (Supplier<WireRecordWrapper>) WireRecordWrapper::new);
+
+        bindings.put("newBooleanValue", (Function<Boolean, TypedValue<?>>) TypedValues::newBooleanValue);
+        bindings.put("newByteArrayValue", (Function<byte[], TypedValue<?>>) TypedValues::newByteArrayValue);
+        bindings.put("newDoubleValue",
+                (Function<Number, TypedValue<?>>) num -> TypedValues.newDoubleValue(num.doubleValue()));
+        bindings.put("newFloatValue",
+                (Function<Number, TypedValue<?>>) num -> TypedValues.newFloatValue(num.floatValue()));
+        bindings.put("newIntegerValue",
+                (Function<Number, TypedValue<?>>) num -> TypedValues.newIntegerValue(num.intValue()));
+        bindings.put("newLongValue",
+                (Function<Number, TypedValue<?>>) num -> TypedValues.newLongValue(num.longValue()));
+        bindings.put("newStringValue",
+                (Function<Object, TypedValue<?>>) obj -> TypedValues.newStringValue(obj.toString()));
+
+        bindings.put("newByteArray", (Function<Integer, byte[]>) size -> new byte[size]);
+
+        for (DataType type : DataType.values()) {
+            bindings.put(type.name(), type);
+        }
+
+        bindings.remove("exit");
+        bindings.remove("quit");
+
+        return bindings;
+    }
+}
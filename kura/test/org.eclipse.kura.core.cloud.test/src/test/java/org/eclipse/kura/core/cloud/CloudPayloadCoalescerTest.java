@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.data.DataService;
+import org.eclipse.kura.data.PublishResult;
+import org.eclipse.kura.message.KuraPayload;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+public class CloudPayloadCoalescerTest {
+
+    @Test
+    public void testCoalesceProtoBuf() throws Exception {
+        DataService dataService = mockDataService(42);
+        CloudPayloadCoalescer coalescer = new CloudPayloadCoalescer(dataService,
+                options("kura-protobuf", true, 60000, 3), CloudPayloadCompression.getDefault());
+
+        try {
+            PublishResult first = coalescer.publish("topic", payload(1), 1, false, 5);
+            coalescer.publish("topic", payload(2), 1, false, 5);
+            coalescer.publish("other", payload(10), 1, false, 5);
+            verify(dataService, never()).publishAsync(anyString(), (byte[]) any(), anyInt(), anyBoolean(), anyInt());
+            assertFalse(first.getStored().isDone());
+
+            // the third payload fills the batch
+            PublishResult third = coalescer.publish("topic", payload(3), 1, false, 5);
+
+            assertEquals(42, (int) first.getStored().get(1, TimeUnit.SECONDS));
+            assertEquals(42, (int) third.getConfirmed().get(1, TimeUnit.SECONDS));
+            ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+            verify(dataService, times(1)).publishAsync(eq("topic"), bytes.capture(), eq(1), eq(false), eq(5));
+
+            KuraPayload envelope = new CloudPayloadProtoBufDecoderImpl(bytes.getValue()).buildFromByteArray();
+            assertTrue(CloudPayloadBatchDecoder.isProtoBufBatch(envelope));
+            List<KuraPayload> payloads = CloudPayloadBatchDecoder.splitProtoBufBatch(envelope);
+            assertEquals(3, payloads.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i + 1, payloads.get(i).getMetric("value"));
+            }
+        } finally {
+            coalescer.close();
+        }
+
+        // the pending batch is published on close
+        verify(dataService, times(1)).publishAsync(eq("other"), (byte[]) any(), eq(1), eq(false), eq(5));
+    }
+
+    @Test
+    public void testCoalesceJson() throws Exception {
+        DataService dataService = mockDataService(7);
+        CloudPayloadCoalescer coalescer = new CloudPayloadCoalescer(dataService, options("simple-json", false, 10, 100),
+                CloudPayloadCompression.getDefault());
+
+        try {
+            PublishResult first = coalescer.publish("topic", payload(1), 0, false, 5);
+            PublishResult second = coalescer.publish("topic", payload(2), 0, false, 5);
+
+            // the batch is published when the window elapses
+            assertEquals(7, (int) first.getStored().get(10, TimeUnit.SECONDS));
+            assertEquals(7, (int) second.getStored().get(10, TimeUnit.SECONDS));
+
+            ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+            verify(dataService, times(1)).publishAsync(eq("topic"), bytes.capture(), eq(0), eq(false), eq(5));
+
+            assertTrue(CloudPayloadBatchDecoder.isJsonBatch(bytes.getValue()));
+            List<KuraPayload> payloads = CloudPayloadBatchDecoder.splitJsonBatch(bytes.getValue());
+            assertEquals(2, payloads.size());
+            // Json numbers are decoded as longs
+            assertEquals(1L, payloads.get(0).getMetric("value"));
+            assertEquals(2L, payloads.get(1).getMetric("value"));
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test
+    public void testPublishOutsideLock() throws Exception {
+        // the batches are published on the coalescer thread, in the order they are completed
+        CountDownLatch release = new CountDownLatch(1);
+        DataService dataService = mock(DataService.class);
+        when(dataService.publishAsync(anyString(), (byte[]) any(), anyInt(), anyBoolean(), anyInt()))
+                .thenAnswer(invocation -> {
+                    release.await();
+                    return new PublishResult(CompletableFuture.completedFuture(1),
+                            CompletableFuture.completedFuture(1));
+                });
+        CloudPayloadCoalescer coalescer = new CloudPayloadCoalescer(dataService,
+                options("kura-protobuf", false, 60000, 1), CloudPayloadCompression.getDefault());
+
+        try {
+            // the callers are not blocked by the publication of the previous batches
+            PublishResult first = coalescer.publish("topic", payload(1), 1, false, 5);
+            coalescer.publish("other", payload(2), 1, false, 5);
+            PublishResult last = coalescer.publish("topic", payload(3), 1, false, 5);
+            assertFalse(first.getStored().isDone());
+
+            release.countDown();
+            assertEquals(1, (int) last.getStored().get(1, TimeUnit.SECONDS));
+
+            ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+            InOrder inOrder = inOrder(dataService);
+            inOrder.verify(dataService).publishAsync(eq("topic"), bytes.capture(), eq(1), eq(false), eq(5));
+            inOrder.verify(dataService).publishAsync(eq("other"), (byte[]) any(), eq(1), eq(false), eq(5));
+            inOrder.verify(dataService).publishAsync(eq("topic"), bytes.capture(), eq(1), eq(false), eq(5));
+            for (int i = 0; i < 2; i++) {
+                KuraPayload envelope = new CloudPayloadProtoBufDecoderImpl(bytes.getAllValues().get(i))
+                        .buildFromByteArray();
+                assertEquals(i * 2 + 1,
+                        CloudPayloadBatchDecoder.splitProtoBufBatch(envelope).get(0).getMetric("value"));
+            }
+        } finally {
+            release.countDown();
+            coalescer.close();
+        }
+    }
+
+    @Test
+    public void testNotBatch() throws Exception {
+        KuraPayload payload = payload(1);
+        payload.setBody(new byte[] { 1, 2, 3 });
+
+        byte[] bytes = new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+        assertFalse(CloudPayloadBatchDecoder
+                .isProtoBufBatch(new CloudPayloadProtoBufDecoderImpl(bytes).buildFromByteArray()));
+        assertFalse(CloudPayloadBatchDecoder.isJsonBatch(CloudPayloadJsonEncoder.getBytes(payload)));
+    }
+
+    private static DataService mockDataService(int messageId) {
+        DataService dataService = mock(DataService.class);
+        when(dataService.publishAsync(anyString(), (byte[]) any(), anyInt(), anyBoolean(), anyInt()))
+                .thenReturn(new PublishResult(CompletableFuture.completedFuture(messageId),
+                        CompletableFuture.completedFuture(messageId)));
+        return dataService;
+    }
+
+    private static CloudServiceOptions options(String encoding, boolean gzip, int window, int maxCount) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("payload.encoding", encoding);
+        properties.put("encode.gzip", gzip);
+        properties.put("payload.coalescing.window", window);
+        properties.put("payload.coalescing.max.count", maxCount);
+        return new CloudServiceOptions(properties, null);
+    }
+
+    private static KuraPayload payload(int value) {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("value", value);
+        return payload;
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.kura.core.util.GZipUtil;
+import org.eclipse.kura.message.KuraPayload;
+import org.junit.Test;
+
+public class CloudPayloadCompressionTest {
+
+    @Test
+    public void testGZipCompatible() throws IOException {
+        CloudPayloadGZipCodec codec = new CloudPayloadGZipCodec();
+        for (byte[] source : new byte[][] { new byte[0], encode(payload(1)), random(100000) }) {
+            byte[] compressed = codec.compress(source);
+            byte[] expected = GZipUtil.compress(source);
+
+            // the operating system in the header depends on the JVM version
+            assertArrayEquals(Arrays.copyOf(expected, 9), Arrays.copyOf(compressed, 9));
+            assertArrayEquals(Arrays.copyOfRange(expected, 10, expected.length),
+                    Arrays.copyOfRange(compressed, 10, compressed.length));
+            assertArrayEquals(source, GZipUtil.decompress(compressed));
+            assertTrue(codec.isCompressed(compressed));
+            assertArrayEquals(source, codec.decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        CloudPayloadDeflateCodec codec = new CloudPayloadDeflateCodec(null);
+        for (byte[] source : new byte[][] { new byte[0], encode(payload(1)), random(100000) }) {
+            byte[] compressed = codec.compress(source);
+
+            assertTrue(codec.isCompressed(compressed));
+            assertArrayEquals(source, codec.decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testDeflateDictionary() throws IOException {
+        byte[] source = encode(payload(2));
+        byte[] dictionary = encode(payload(1));
+
+        CloudPayloadDeflateCodec codec = new CloudPayloadDeflateCodec(dictionary);
+        byte[] compressed = codec.compress(source);
+        assertTrue(compressed.length < new CloudPayloadGZipCodec().compress(source).length);
+        assertTrue(compressed.length < new CloudPayloadDeflateCodec(null).compress(source).length);
+        assertArrayEquals(source, codec.decompress(compressed));
+
+        // the previous dictionary is still known
+        codec.setDictionary(null);
+        assertArrayEquals(source, codec.decompress(compressed));
+        codec.setDictionary(new byte[] { 1, 2, 3 });
+        assertArrayEquals(source, codec.decompress(compressed));
+
+        // a receiver configured with the same dictionary decompresses the data
+        assertArrayEquals(source, new CloudPayloadDeflateCodec(dictionary.clone()).decompress(compressed));
+
+        // the receiver must know the dictionary
+        try {
+            new CloudPayloadDeflateCodec(null).decompress(compressed);
+            fail("Decompressed without the dictionary");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDeflateTruncated() throws IOException {
+        CloudPayloadDeflateCodec codec = new CloudPayloadDeflateCodec(null);
+        byte[] compressed = codec.compress(random(1000));
+
+        codec.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+    @Test
+    public void testDecoderAutoDetection() throws Exception {
+        byte[] dictionary = encode(payload(1));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("payload.compression.codec", "deflate");
+        properties.put("payload.compression.dictionary", Base64.getEncoder().encodeToString(dictionary));
+        CloudPayloadCompression compression = CloudPayloadCompression
+                .fromOptions(new CloudServiceOptions(properties, null));
+        assertEquals(CloudPayloadDeflateCodec.NAME, compression.getCodec().getName());
+
+        KuraPayload payload = payload(2);
+        byte[] source = encode(payload);
+        for (CloudPayloadCompressionCodec codec : compression.getCodecs()) {
+            byte[] compressed = codec.compress(source);
+            KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(compressed, compression)
+                    .buildFromByteArray();
+            assertEquals(payload.metrics(), decoded.metrics());
+        }
+
+        // uncompressed payloads are left untouched
+        assertSame(source, compression.decompress(source));
+    }
+
+    private static KuraPayload payload(int value) {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("temperature", 20.5 + value);
+        payload.addMetric("humidity", 40 + value);
+        payload.addMetric("status", "running");
+        payload.addMetric("counter", (long) value);
+        return payload;
+    }
+
+    private static byte[] encode(KuraPayload payload) throws IOException {
+        return new CloudPayloadProtoBufStreamingEncoderImpl(payload).getBytes();
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
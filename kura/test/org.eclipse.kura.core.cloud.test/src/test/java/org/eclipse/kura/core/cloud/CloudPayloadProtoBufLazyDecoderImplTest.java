@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.eclipse.kura.KuraInvalidMessageException;
+import org.eclipse.kura.cloud.CloudPayloadEncoding;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
+import org.eclipse.kura.core.util.GZipUtil;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.junit.Test;
+
+public class CloudPayloadProtoBufLazyDecoderImplTest {
+
+    @Test
+    public void testDecode() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.setTimestamp(new Date(1500000000000L));
+
+        KuraPosition position = new KuraPosition();
+        position.setLatitude(45.5);
+        position.setLongitude(-12.25);
+        position.setAltitude(100.0);
+        position.setSatellites(8);
+        position.setTimestamp(new Date(1500000000001L));
+        payload.setPosition(position);
+
+        payload.addMetric("double", 1.5d);
+        payload.addMetric("float", -2.5f);
+        payload.addMetric("long", Long.MIN_VALUE);
+        payload.addMetric("int", -1);
+        payload.addMetric("bool", true);
+        payload.addMetric("string", "value");
+        payload.addMetric("bytes", new byte[] { 0, 1, 2, -1 });
+        payload.setBody(new byte[] { 5, 4, 3 });
+
+        byte[] bytes = new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+        assertEquivalent(new CloudPayloadProtoBufDecoderImpl(bytes).buildFromByteArray(),
+                new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray());
+
+        byte[] compressed = GZipUtil.compress(bytes);
+        assertEquivalent(new CloudPayloadProtoBufDecoderImpl(compressed).buildFromByteArray(),
+                new CloudPayloadProtoBufLazyDecoderImpl(compressed).buildFromByteArray());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(new byte[0]).buildFromByteArray();
+
+        assertNull(decoded.getTimestamp());
+        assertNull(decoded.getPosition());
+        assertTrue(decoded.metrics().isEmpty());
+        assertNull(decoded.getBody());
+        assertNull(decoded.getBodyBuffer());
+    }
+
+    @Test
+    public void testBodyBuffer() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("metric", "value");
+        payload.setBody(new byte[] { 1, 2, 3, 4 });
+
+        byte[] bytes = new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+        KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray();
+
+        // the buffer is a view of the received message
+        ByteBuffer body = decoded.getBodyBuffer();
+        assertTrue(body.isReadOnly());
+        assertEquals(0, body.position());
+        assertEquals(4, body.remaining());
+        assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }), body);
+
+        decoded.setBody(new byte[] { 9 });
+        assertArrayEquals(new byte[] { 9 }, decoded.getBody());
+        assertEquals(ByteBuffer.wrap(new byte[] { 9 }), decoded.getBodyBuffer());
+    }
+
+    @Test
+    public void testModifyMetrics() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("first", 1);
+        payload.addMetric("second", 2);
+
+        byte[] bytes = new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+        KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray();
+
+        decoded.removeMetric("first");
+        decoded.addMetric("third", 3);
+        assertEquals(2, decoded.metrics().size());
+        assertEquals(2, decoded.getMetric("second"));
+        assertEquals(3, decoded.getMetric("third"));
+    }
+
+    @Test(expected = KuraInvalidMessageException.class)
+    public void testInvalidMessage() throws Exception {
+        new CloudPayloadProtoBufLazyDecoderImpl(new byte[] { (byte) 0xFF, (byte) 0xFF, 0x00 }).buildFromByteArray();
+    }
+
+    @Test(expected = KuraInvalidMessageException.class)
+    public void testMissingMetricType() throws Exception {
+        // the metric type is required
+        KuraPayloadProto.KuraPayload.KuraMetric metric = KuraPayloadProto.KuraPayload.KuraMetric.newBuilder()
+                .setName("metric").buildPartial();
+        byte[] bytes = KuraPayloadProto.KuraPayload.newBuilder().addMetric(metric).buildPartial().toByteArray();
+
+        new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray();
+    }
+
+    @Test
+    public void testBatchDetection() throws Exception {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("metric", 1);
+        byte[] entry = CloudPayloadBatchEncoder.encodeEntry(CloudPayloadEncoding.KURA_PROTOBUF, payload);
+
+        byte[] batch = new CloudPayloadBatchEncoder(CloudPayloadEncoding.KURA_PROTOBUF,
+                Collections.nCopies(2, entry)).getBytes();
+        KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(batch).buildFromByteArray();
+        assertTrue(CloudPayloadProtoBufLazyDecoderImpl.mayBeBatch(decoded));
+        assertTrue(CloudPayloadBatchDecoder.isProtoBufBatch(decoded));
+        assertEquals(2, CloudPayloadBatchDecoder.splitProtoBufBatch(decoded).size());
+
+        decoded = new CloudPayloadProtoBufLazyDecoderImpl(entry).buildFromByteArray();
+        assertFalse(CloudPayloadProtoBufLazyDecoderImpl.mayBeBatch(decoded));
+        assertFalse(CloudPayloadBatchDecoder.isProtoBufBatch(decoded));
+    }
+
+    @Test
+    public void testBatchLookalikeIsNotBatch() throws Exception {
+        // an application payload carrying an integer count metric and a body
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric(CloudPayloadBatchEncoder.BATCH_COUNT_METRIC, 2);
+        payload.setBody(new byte[] { 1, 2, 3 });
+        byte[] bytes = CloudPayloadBatchEncoder.encodeEntry(CloudPayloadEncoding.KURA_PROTOBUF, payload);
+        assertFalse(CloudPayloadBatchDecoder
+                .isProtoBufBatch(new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray()));
+
+        // with a different batch format
+        payload.addMetric(CloudPayloadBatchEncoder.BATCH_FORMAT_METRIC, "unknown");
+        bytes = CloudPayloadBatchEncoder.encodeEntry(CloudPayloadEncoding.KURA_PROTOBUF, payload);
+        KuraPayload decoded = new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray();
+        assertTrue(CloudPayloadProtoBufLazyDecoderImpl.mayBeBatch(decoded));
+        assertFalse(CloudPayloadBatchDecoder.isProtoBufBatch(decoded));
+
+        // with other metrics
+        payload.addMetric(CloudPayloadBatchEncoder.BATCH_FORMAT_METRIC, CloudPayloadBatchEncoder.BATCH_FORMAT);
+        payload.addMetric("metric", 1);
+        bytes = CloudPayloadBatchEncoder.encodeEntry(CloudPayloadEncoding.KURA_PROTOBUF, payload);
+        decoded = new CloudPayloadProtoBufLazyDecoderImpl(bytes).buildFromByteArray();
+        assertFalse(CloudPayloadProtoBufLazyDecoderImpl.mayBeBatch(decoded));
+        assertFalse(CloudPayloadBatchDecoder.isProtoBufBatch(decoded));
+    }
+
+    @Test(expected = KuraInvalidMessageException.class)
+    public void testJsonBatchOfNonObjects() throws Exception {
+        byte[] bytes = "[1, 2]".getBytes("UTF-8");
+        assertTrue(CloudPayloadBatchDecoder.isJsonBatch(bytes));
+        CloudPayloadBatchDecoder.splitJsonBatch(bytes);
+    }
+
+    private static void assertEquivalent(KuraPayload expected, KuraPayload actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+
+        KuraPosition expectedPosition = expected.getPosition();
+        KuraPosition actualPosition = actual.getPosition();
+        assertEquals(expectedPosition.getLatitude(), actualPosition.getLatitude());
+        assertEquals(expectedPosition.getLongitude(), actualPosition.getLongitude());
+        assertEquals(expectedPosition.getAltitude(), actualPosition.getAltitude());
+        assertEquals(expectedPosition.getPrecision(), actualPosition.getPrecision());
+        assertEquals(expectedPosition.getHeading(), actualPosition.getHeading());
+        assertEquals(expectedPosition.getSpeed(), actualPosition.getSpeed());
+        assertEquals(expectedPosition.getTimestamp(), actualPosition.getTimestamp());
+        assertEquals(expectedPosition.getSatellites(), actualPosition.getSatellites());
+        assertEquals(expectedPosition.getStatus(), actualPosition.getStatus());
+
+        assertEquals(expected.metricNames(), actual.metricNames());
+        for (Map.Entry<String, Object> entry : expected.metrics().entrySet()) {
+            Object value = actual.getMetric(entry.getKey());
+            if (entry.getValue() instanceof byte[]) {
+                assertTrue(Arrays.equals((byte[]) entry.getValue(), (byte[]) value));
+            } else {
+                assertEquals(entry.getValue(), value);
+            }
+        }
+
+        assertArrayEquals(expected.getBody(), actual.getBody());
+    }
+}
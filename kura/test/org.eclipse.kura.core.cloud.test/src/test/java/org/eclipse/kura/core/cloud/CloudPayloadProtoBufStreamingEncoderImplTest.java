@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.junit.Test;
+
+public class CloudPayloadProtoBufStreamingEncoderImplTest {
+
+    @Test
+    public void testEmptyPayload() throws IOException {
+        assertCompatible(new KuraPayload());
+    }
+
+    @Test
+    public void testFullPayload() throws IOException {
+        KuraPayload payload = new KuraPayload();
+        payload.setTimestamp(new Date(1500000000000L));
+
+        KuraPosition position = new KuraPosition();
+        position.setLatitude(45.5);
+        position.setLongitude(-12.25);
+        position.setAltitude(100.0);
+        position.setPrecision(1.5);
+        position.setHeading(270.0);
+        position.setSpeed(12.0);
+        position.setTimestamp(new Date(1500000000001L));
+        position.setSatellites(8);
+        position.setStatus(4);
+        payload.setPosition(position);
+
+        payload.addMetric("double", 1.5d);
+        payload.addMetric("float", -2.5f);
+        payload.addMetric("long", Long.MIN_VALUE);
+        payload.addMetric("int", -1);
+        payload.addMetric("bool", true);
+        payload.addMetric("string", "\u00e8\u4e2d value");
+        payload.addMetric("bytes", new byte[] { 0, 1, 2, -1 });
+        payload.addMetric("empty", "");
+        payload.addMetric("null", null);
+        payload.setBody(new byte[] { 5, 4, 3 });
+
+        assertCompatible(payload);
+    }
+
+    @Test
+    public void testManyMetrics() throws IOException {
+        // the metric buffer grows and is reused by the following payloads
+        KuraPayload payload = new KuraPayload();
+        for (int i = 0; i < 1000; i++) {
+            payload.addMetric("metric" + i, i % 2 == 0 ? (Object) (i * 1000L) : (Object) ("value" + i));
+        }
+        assertCompatible(payload);
+
+        KuraPayload small = new KuraPayload();
+        small.addMetric("metric", 1);
+        small.setBody(new byte[0]);
+        assertCompatible(small);
+    }
+
+    @Test
+    public void testPartialPosition() throws IOException {
+        KuraPayload payload = new KuraPayload();
+        KuraPosition position = new KuraPosition();
+        position.setLatitude(1.0);
+        position.setLongitude(2.0);
+        position.setStatus(1);
+        payload.setPosition(position);
+
+        assertCompatible(payload);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingLatitude() throws IOException {
+        KuraPayload payload = new KuraPayload();
+        KuraPosition position = new KuraPosition();
+        position.setLongitude(2.0);
+        payload.setPosition(position);
+
+        new CloudPayloadProtoBufStreamingEncoderImpl(payload).getBytes();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidMetricType() throws IOException {
+        KuraPayload payload = new KuraPayload();
+        payload.addMetric("date", new Date());
+
+        new CloudPayloadProtoBufStreamingEncoderImpl(payload).getBytes();
+    }
+
+    private static void assertCompatible(KuraPayload payload) throws IOException {
+        byte[] expected = new CloudPayloadProtoBufEncoderImpl(payload).getBytes();
+        byte[] actual = new CloudPayloadProtoBufStreamingEncoderImpl(payload).getBytes();
+
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.core.data.DataStore;
+import org.eclipse.kura.core.db.H2DbServiceImpl;
+import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.crypto.CryptoService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DataStoreConcurrencyTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int MESSAGES_PER_PRODUCER = 50;
+
+    private static H2DbServiceImpl dbService;
+
+    @BeforeClass
+    public static void setUp() throws Throwable {
+        dbService = new H2DbServiceImpl();
+
+        CryptoService csMock = mock(CryptoService.class);
+        dbService.setCryptoService(csMock);
+        when(csMock.decryptAes("enc".toCharArray())).thenReturn("pass".toCharArray());
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("db.user", "USR");
+        props.put("db.password", "enc");
+        props.put("db.connection.pool.max.size", PRODUCERS + 2);
+        props.put("db.connector.url", "jdbc:h2:mem:datastoreconcurrencytest");
+
+        TestUtil.invokePrivate(dbService, "updated", props);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Throwable {
+        TestUtil.invokePrivate(dbService, "deactivate", new Object[] { null });
+    }
+
+    @Test
+    public void testConcurrentStore() throws Exception {
+        // messages stored concurrently are all stored once, with unique IDs
+
+        testConcurrentStore(new DbDataStore("ds_concurrent_sync"));
+        testConcurrentStore(new ConcurrentDbDataStore("ds_concurrent"));
+    }
+
+    private void testConcurrentStore(final DataStore store) throws Exception {
+        store.start(dbService, 900, 60, PRODUCERS * MESSAGES_PER_PRODUCER);
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            List<Future<List<Integer>>> producers = new ArrayList<>();
+            for (int i = 0; i < PRODUCERS; i++) {
+                final String topic = "producer" + i;
+                producers.add(executor.submit(new Callable<List<Integer>>() {
+
+                    @Override
+                    public List<Integer> call() throws Exception {
+                        startLatch.await();
+                        List<Integer> ids = new ArrayList<>();
+                        for (int j = 0; j < MESSAGES_PER_PRODUCER; j++) {
+                            DataMessage message = store.store(topic, new byte[] { (byte) j }, 0, false, 5);
+                            assertEquals(topic, message.getTopic());
+                            ids.add(message.getId());
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            startLatch.countDown();
+
+            Set<Integer> storedIds = new HashSet<>();
+            for (Future<List<Integer>> producer : producers) {
+                for (Integer id : producer.get(1, TimeUnit.MINUTES)) {
+                    assertTrue("Duplicate ID " + id, storedIds.add(id));
+                }
+            }
+            assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, storedIds.size());
+
+            List<DataMessage> unpublished = store.allUnpublishedMessagesNoPayload();
+            assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, unpublished.size());
+            Set<Integer> unpublishedIds = new HashSet<>();
+            for (DataMessage message : unpublished) {
+                unpublishedIds.add(message.getId());
+            }
+            assertEquals(storedIds, unpublishedIds);
+
+            // every message is returned once for publishing
+            Set<Integer> nextIds = new HashSet<>();
+            DataMessage next;
+            while ((next = store.getNextMessage()) != null) {
+                assertTrue("Duplicate ID " + next.getId(), nextIds.add(next.getId()));
+                store.published(next.getId());
+            }
+            assertEquals(storedIds, nextIds);
+        } finally {
+            executor.shutdownNow();
+            store.stop();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.core.db.H2DbServiceImpl;
+import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.crypto.CryptoService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DbDataStoreTest {
+
+    private static H2DbServiceImpl dbService;
+
+    @BeforeClass
+    public static void setUp() throws Throwable {
+        dbService = new H2DbServiceImpl();
+
+        CryptoService csMock = mock(CryptoService.class);
+        dbService.setCryptoService(csMock);
+        when(csMock.decryptAes("enc".toCharArray())).thenReturn("pass".toCharArray());
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("db.user", "USR");
+        props.put("db.password", "enc");
+        props.put("db.connection.pool.max.size", 4);
+        props.put("db.connector.url", "jdbc:h2:mem:dbdatastoretest");
+
+        TestUtil.invokePrivate(dbService, "updated", props);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Throwable {
+        TestUtil.invokePrivate(dbService, "deactivate", new Object[] { null });
+    }
+
+    @Test
+    public void testNextMessageOrder() throws Exception {
+        // messages are returned by priority, then in store order
+
+        DbDataStore store = new DbDataStore("ds_next_order");
+        store.start(dbService, 900, 60, 100);
+        try {
+            int low1 = store.store("low1", null, 1, false, 7).getId();
+            int high = store.store("high", null, 1, false, 2).getId();
+            int low2 = store.store("low2", null, 0, false, 7).getId();
+
+            List<DataMessage> next = store.getNextMessages(10);
+            assertEquals(3, next.size());
+            assertEquals(high, next.get(0).getId());
+            assertEquals(low1, next.get(1).getId());
+            assertEquals(low2, next.get(2).getId());
+
+            // only the QoS 0 messages, in the same order
+            next = store.getNextQos0Messages(10);
+            assertEquals(1, next.size());
+            assertEquals(low2, next.get(0).getId());
+
+            assertEquals(high, store.getNextMessage().getId());
+            store.published(high, 1, "session");
+            assertEquals(low1, store.getNextMessage().getId());
+            store.published(low1, 2, "session");
+            assertEquals(low2, store.getNextMessage().getId());
+            store.published(low2);
+            assertNull(store.getNextMessage());
+            assertTrue(store.getNextQos0Messages(10).isEmpty());
+
+            // in-flight QoS 1 messages are back in the index after being unpublished
+            store.unpublishAllInFlighMessages();
+            next = store.getNextMessages(10);
+            assertEquals(2, next.size());
+            assertEquals(high, next.get(0).getId());
+            assertEquals(low1, next.get(1).getId());
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testNextMessageIndexRebuilt() throws Exception {
+        // the index is rebuilt from the table when the store is started
+
+        DbDataStore store = new DbDataStore("ds_next_rebuilt");
+        store.start(dbService, 900, 60, 100);
+        int first = store.store("first", null, 0, false, 5).getId();
+        int second = store.store("second", null, 0, false, 5).getId();
+        store.store("third", null, 1, false, 5);
+        store.published(first);
+        store.stop();
+
+        store = new DbDataStore("ds_next_rebuilt");
+        store.start(dbService, 900, 60, 100);
+        try {
+            List<DataMessage> next = store.getNextQos0Messages(10);
+            assertEquals(1, next.size());
+            assertEquals(second, next.get(0).getId());
+            assertEquals(2, store.getNextMessages(10).size());
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testStoreWithId() throws Exception {
+        // a message moved from the memory buffer keeps its ID
+
+        DbDataStore store = new DbDataStore("ds_store_with_id");
+        store.start(dbService, 900, 60, 100);
+        try {
+            DataMessage buffered = new DataMessage.Builder(-5).withTopic("buffered").withQos(0).withPriority(7)
+                    .withPayload(new byte[] { 1, 2 }).withCreatedOn(new Date()).build();
+            DataMessage stored = store.store(buffered);
+            assertEquals(-5, stored.getId());
+            assertArrayEquals(new byte[] { 1, 2 }, stored.getPayload());
+
+            int other = store.store("other", null, 0, false, 7).getId();
+
+            List<DataMessage> next = store.getNextMessages(10);
+            assertEquals(2, next.size());
+            assertEquals(-5, next.get(0).getId());
+            assertEquals(other, next.get(1).getId());
+
+            try {
+                store.store(buffered);
+                fail("Exception expected");
+            } catch (KuraStoreException e) {
+                // the ID is already in use
+            }
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testStoreAsync() throws Exception {
+        // the stored message is notified before it is available for publishing
+
+        testStoreAsync(new DbDataStore("ds_store_async"));
+        testStoreAsync(new ConcurrentDbDataStore("ds_store_async_concurrent"));
+    }
+
+    @Test
+    public void testStoreAsyncDoesNotWaitForMonitor() throws Exception {
+        // the caller does not wait for the publisher or the housekeeper holding the store monitor
+
+        DbDataStore store = new DbDataStore("ds_store_async_monitor");
+        store.start(dbService, 900, 60, 100);
+        try {
+            CompletableFuture<DataMessage> result;
+            synchronized (store) {
+                CompletableFuture<CompletableFuture<DataMessage>> submitted = CompletableFuture
+                        .supplyAsync(() -> store.storeAsync("async", null, 1, false, 5, message -> {
+                        }));
+                result = submitted.get(10, TimeUnit.SECONDS);
+                assertFalse(result.isDone());
+            }
+            assertEquals(result.get(10, TimeUnit.SECONDS).getId(), store.getNextMessage().getId());
+        } finally {
+            store.stop();
+        }
+
+        // the messages submitted after stopping the store fail
+        try {
+            store.storeAsync("async", null, 1, false, 5, message -> {
+            }).get(10, TimeUnit.SECONDS);
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KuraStoreException);
+        }
+    }
+
+    private void testStoreAsync(final DbDataStore store) throws Exception {
+        store.start(dbService, 900, 60, 100);
+        try {
+            final List<DataMessage> notified = new ArrayList<>();
+            CompletableFuture<DataMessage> result = store.storeAsync("async", null, 1, false, 5, message -> {
+                try {
+                    assertTrue(store.getNextMessages(10).isEmpty());
+                } catch (KuraStoreException e) {
+                    throw new IllegalStateException(e);
+                }
+                notified.add(message);
+            });
+
+            DataMessage message = result.get(10, TimeUnit.SECONDS);
+            assertEquals(1, notified.size());
+            assertEquals(message.getId(), notified.get(0).getId());
+            assertEquals(message.getId(), store.getNextMessage().getId());
+        } finally {
+            store.stop();
+        }
+    }
+}
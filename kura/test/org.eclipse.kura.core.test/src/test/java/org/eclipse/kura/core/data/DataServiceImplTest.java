@@ -9,33 +9,49 @@
 package org.eclipse.kura.core.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import org.eclipse.kura.KuraNotConnectedException;
+import org.eclipse.kura.KuraStoreCapacityReachedException;
 import org.eclipse.kura.KuraStoreException;
 import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.data.DataTransportService;
 import org.eclipse.kura.data.DataTransportToken;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.status.CloudConnectionStatusEnum;
 import org.eclipse.kura.status.CloudConnectionStatusService;
 import org.eclipse.kura.watchdog.WatchdogService;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.service.component.ComponentContext;
 
 public class DataServiceImplTest {
@@ -509,6 +525,466 @@ public class DataServiceImplTest {
         return storeMock;
     }
 
+    @Test
+    public void testPublishBatch() throws Throwable {
+        // publish a batch of messages and mark them as published with a single store update
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+
+        DataMessage msg0 = new DataMessage.Builder(1).withTopic("t0").withQos(0).withPublishedMessageId(-1).build();
+        DataMessage msg1 = new DataMessage.Builder(2).withTopic("t1").withQos(1).withPublishedMessageId(-1).build();
+        List<DataMessage> batch = new ArrayList<>();
+        batch.add(msg0);
+        batch.add(msg1);
+
+        DataTransportToken token = new DataTransportToken(7, "session");
+        when(dtsMock.publish("t1", null, 1, false)).thenReturn(token);
+
+        List<DataMessage> published = new ArrayList<>();
+        TestUtil.invokePrivate(svc, "publishInternal", new Class<?>[] { List.class, List.class }, batch, published);
+
+        verify(dtsMock, times(1)).publish("t0", null, 0, false);
+        verify(dtsMock, times(1)).publish("t1", null, 1, false);
+        verify(storeMock, times(1)).published(published);
+
+        assertEquals(2, published.size());
+        assertEquals(-1, published.get(0).getPublishedMessageId());
+        assertNull(published.get(0).getSessionId());
+        assertEquals(7, published.get(1).getPublishedMessageId());
+        assertEquals("session", published.get(1).getSessionId());
+        assertEquals(2, (int) inFlightMsgIds.get(token));
+    }
+
+    @Test
+    public void testPublishMemoryBuffer() throws Throwable {
+        // QoS 0 low priority messages are buffered while connected and moved to the store on disconnection
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+        when(dtsMock.isConnected()).thenReturn(true);
+
+        CloudConnectionStatusService ccssMock = mock(CloudConnectionStatusService.class);
+        svc.setCloudConnectionStatusService(ccssMock);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("store.memory-buffer.size", 1);
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(properties);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+        TestUtil.invokePrivate(svc, "createMemoryBuffer");
+
+        byte[] payload = new byte[] { 1 };
+        DataMessage storedMessage = new DataMessage.Builder(10).build();
+        when(storeMock.store("t", payload, 0, false, 7)).thenReturn(storedMessage);
+
+        assertEquals(-1, svc.publish("t", payload, 0, false, 7));
+        verify(storeMock, times(0)).store("t", payload, 0, false, 7);
+
+        // buffer full
+        assertEquals(10, svc.publish("t", payload, 0, false, 7));
+        verify(storeMock, times(1)).store("t", payload, 0, false, 7);
+
+        // the buffered message keeps its ID in the store
+        svc.onDisconnected();
+        ArgumentCaptor<DataMessage> spilled = ArgumentCaptor.forClass(DataMessage.class);
+        verify(storeMock, times(1)).store(spilled.capture());
+        assertEquals(-1, spilled.getValue().getId());
+        assertEquals("t", spilled.getValue().getTopic());
+
+        // not buffered while disconnected
+        when(dtsMock.isConnected()).thenReturn(false);
+        assertEquals(10, svc.publish("t", payload, 0, false, 7));
+        verify(storeMock, times(2)).store("t", payload, 0, false, 7);
+    }
+
+    @Test
+    public void testPublishBufferedOutsideLock() throws Throwable {
+        // the transport is not called while holding the buffer lock, a rejected message is moved to the store
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+        when(dtsMock.isConnected()).thenReturn(true);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("store.memory-buffer.size", 10);
+        properties.put("enable.rate.limit", false);
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(properties);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+        TestUtil.invokePrivate(svc, "createMemoryBuffer");
+        final Object buffer = TestUtil.getFieldValue(svc, "memoryBuffer");
+
+        final AtomicBoolean lockHeld = new AtomicBoolean();
+        when(dtsMock.publish(eq("t"), (byte[]) anyObject(), eq(0), eq(false))).thenAnswer(invocation -> {
+            lockHeld.compareAndSet(false, Thread.holdsLock(buffer));
+            throw new KuraNotConnectedException("test");
+        });
+
+        PublishResult result = svc.publishAsync("t", new byte[] { 1 }, 0, false, 7);
+        int id = result.getStored().get();
+
+        ExecutorService publisherExecutor = Executors.newSingleThreadExecutor();
+        TestUtil.setFieldValue(svc, "publisherExecutor", publisherExecutor);
+        try {
+            TestUtil.invokePrivate(svc, "submitPublishingWork");
+
+            ArgumentCaptor<DataMessage> stored = ArgumentCaptor.forClass(DataMessage.class);
+            verify(storeMock, timeout(1000)).store(stored.capture());
+            assertEquals(id, stored.getValue().getId());
+            assertFalse(lockHeld.get());
+            assertFalse(result.getConfirmed().isDone());
+        } finally {
+            ((AtomicBoolean) TestUtil.getFieldValue(svc, "publisherEnabled")).set(false);
+            TestUtil.invokePrivate(svc, "signalPublisher");
+            publisherExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPublishBufferedWithStoreBacklog() throws Throwable {
+        // buffered messages are published while the store has a backlog
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+        when(dtsMock.isConnected()).thenReturn(true);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("store.memory-buffer.size", 10);
+        properties.put("enable.rate.limit", false);
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(properties);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+        TestUtil.invokePrivate(svc, "createMemoryBuffer");
+
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", new ConcurrentHashMap<DataTransportToken, Integer>());
+
+        // the store never runs out of messages
+        when(storeMock.getNextMessage())
+                .thenReturn(new DataMessage.Builder(10).withTopic("stored").withPayload(new byte[] { 1 }).build());
+
+        svc.publish("buffered", new byte[] { 1 }, 0, false, 7);
+
+        ExecutorService publisherExecutor = Executors.newSingleThreadExecutor();
+        TestUtil.setFieldValue(svc, "publisherExecutor", publisherExecutor);
+        try {
+            TestUtil.invokePrivate(svc, "submitPublishingWork");
+
+            verify(dtsMock, timeout(1000)).publish(eq("buffered"), (byte[]) anyObject(), eq(0), eq(false));
+            verify(dtsMock, timeout(1000).atLeastOnce()).publish(eq("stored"), (byte[]) anyObject(), eq(0),
+                    eq(false));
+        } finally {
+            ((AtomicBoolean) TestUtil.getFieldValue(svc, "publisherEnabled")).set(false);
+            TestUtil.invokePrivate(svc, "signalPublisher");
+            publisherExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPublishAsync() throws Throwable {
+        // the stored future completes once the message is stored, the confirmed one once the broker confirms it
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(new HashMap<String, Object>());
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+
+        byte[] payload = new byte[] { 1 };
+        final DataMessage storedMessage = new DataMessage.Builder(10).withTopic("t").withQos(1).withPriority(5)
+                .build();
+        when(storeMock.storeAsync(eq("t"), eq(payload), eq(1), eq(false), eq(5), (Consumer<DataMessage>) anyObject()))
+                .thenAnswer(invocation -> {
+                    ((Consumer<DataMessage>) invocation.getArguments()[5]).accept(storedMessage);
+                    return CompletableFuture.completedFuture(storedMessage);
+                });
+        when(storeMock.get(10)).thenReturn(storedMessage);
+
+        PublishResult result = svc.publishAsync("t", payload, 1, false, 5);
+
+        assertEquals(10, (int) result.getStored().get());
+        assertFalse(result.getConfirmed().isDone());
+
+        DataTransportToken token = new DataTransportToken(1, "session");
+        inFlightMsgIds.put(token, 10);
+        svc.onMessageConfirmed(token);
+
+        verify(storeMock, times(1)).confirmed(10);
+        assertEquals(10, (int) result.getConfirmed().get());
+    }
+
+    @Test
+    public void testPublishAsyncStoreFailure() throws Throwable {
+        // store errors complete both futures exceptionally
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(new HashMap<String, Object>());
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        CompletableFuture<DataMessage> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new KuraStoreCapacityReachedException("test"));
+        when(storeMock.storeAsync(eq("t"), (byte[]) anyObject(), eq(0), eq(false), eq(7),
+                (Consumer<DataMessage>) anyObject())).thenReturn(failed);
+
+        PublishResult result = svc.publishAsync("t", new byte[] { 1 }, 0, false, 7);
+
+        assertTrue(result.getStored().isCompletedExceptionally());
+        assertTrue(result.getConfirmed().isCompletedExceptionally());
+        try {
+            result.getStored().get();
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KuraStoreCapacityReachedException);
+        }
+    }
+
+    @Test
+    public void testConfirmationCompletedOutsideMonitor() throws Throwable {
+        // the confirmation callbacks of the callers do not run while holding the DataService monitor
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(new HashMap<String, Object>());
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+
+        final DataMessage storedMessage = new DataMessage.Builder(10).withTopic("t").withQos(1).build();
+        when(storeMock.storeAsync(eq("t"), (byte[]) anyObject(), eq(1), eq(false), eq(5),
+                (Consumer<DataMessage>) anyObject())).thenAnswer(invocation -> {
+                    ((Consumer<DataMessage>) invocation.getArguments()[5]).accept(storedMessage);
+                    return CompletableFuture.completedFuture(storedMessage);
+                });
+        when(storeMock.get(10)).thenReturn(storedMessage);
+
+        PublishResult result = svc.publishAsync("t", new byte[] { 1 }, 1, false, 5);
+        CompletableFuture<Boolean> holdsLock = result.getConfirmed().thenApply(id -> Thread.holdsLock(svc));
+
+        DataTransportToken token = new DataTransportToken(1, "session");
+        inFlightMsgIds.put(token, 10);
+        svc.onMessageConfirmed(token);
+
+        assertFalse(holdsLock.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLostConfirmationsFailed() throws Throwable {
+        // the futures of the messages no longer in the store are completed exceptionally and forgotten
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(new HashMap<String, Object>());
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        for (final int id : new int[] { 10, 11, 12 }) {
+            final DataMessage storedMessage = new DataMessage.Builder(id).withTopic("t" + id).withQos(1).build();
+            when(storeMock.storeAsync(eq("t" + id), (byte[]) anyObject(), eq(1), eq(false), eq(5),
+                    (Consumer<DataMessage>) anyObject())).thenAnswer(invocation -> {
+                        ((Consumer<DataMessage>) invocation.getArguments()[5]).accept(storedMessage);
+                        return CompletableFuture.completedFuture(storedMessage);
+                    });
+        }
+        PublishResult unpublished = svc.publishAsync("t10", new byte[] { 1 }, 1, false, 5);
+        PublishResult inFlight = svc.publishAsync("t11", new byte[] { 1 }, 1, false, 5);
+        PublishResult purged = svc.publishAsync("t12", new byte[] { 1 }, 1, false, 5);
+
+        List<DataMessage> unpublishedMessages = new ArrayList<>();
+        unpublishedMessages.add(new DataMessage.Builder(10).build());
+        when(storeMock.allUnpublishedMessagesNoPayload()).thenReturn(unpublishedMessages);
+        List<DataMessage> inFlightMessages = new ArrayList<>();
+        inFlightMessages.add(new DataMessage.Builder(11).build());
+        when(storeMock.allInFlightMessagesNoPayload()).thenReturn(inFlightMessages);
+
+        TestUtil.invokePrivate(svc, "failLostConfirmations");
+
+        try {
+            purged.getConfirmed().get(1, TimeUnit.SECONDS);
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof KuraStoreException);
+        }
+        assertFalse(unpublished.getConfirmed().isDone());
+        assertFalse(inFlight.getConfirmed().isDone());
+
+        Map<Integer, CompletableFuture<Integer>> confirmFutures = (Map<Integer, CompletableFuture<Integer>>) TestUtil
+                .getFieldValue(svc, "confirmFutures");
+        assertEquals(2, confirmFutures.size());
+        assertFalse(confirmFutures.containsKey(12));
+    }
+
+    @Test
+    public void testInFlightFlowControl() throws Throwable {
+        // the publisher does not fetch messages while the in-flight window is full
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+        when(dtsMock.isConnected()).thenReturn(true);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("in-flight-messages.max-number", 1);
+        properties.put("in-flight-messages.flow-control", true);
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(properties);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        DataTransportToken token = new DataTransportToken(1, "session");
+        Map<DataTransportToken, Integer> inFlightMsgIds = new ConcurrentHashMap<>();
+        inFlightMsgIds.put(token, 10);
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        when(storeMock.get(10)).thenReturn(new DataMessage.Builder(10).withTopic("t").build());
+
+        assertEquals(1, svc.getInFlightMessageCount());
+
+        ExecutorService publisherExecutor = Executors.newSingleThreadExecutor();
+        TestUtil.setFieldValue(svc, "publisherExecutor", publisherExecutor);
+        try {
+            TestUtil.invokePrivate(svc, "submitPublishingWork");
+
+            // new messages do not wake up the publisher
+            TestUtil.invokePrivate(svc, "signalPublisher");
+            Thread.sleep(200);
+            verify(storeMock, times(0)).getNextMessage();
+
+            svc.onMessageConfirmed(token);
+
+            assertEquals(0, svc.getInFlightMessageCount());
+            verify(storeMock, timeout(1000).atLeastOnce()).getNextMessage();
+        } finally {
+            ((AtomicBoolean) TestUtil.getFieldValue(svc, "publisherEnabled")).set(false);
+            TestUtil.invokePrivate(svc, "signalPublisher");
+            publisherExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInFlightFlowControlQos0() throws Throwable {
+        // the QoS 0 messages are still published while the in-flight window is full
+
+        DataServiceImpl svc = new DataServiceImpl();
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        svc.setDataTransportService(dtsMock);
+        when(dtsMock.isConnected()).thenReturn(true);
+
+        ComponentContext ctxMock = mock(ComponentContext.class);
+        DataServiceListenerS dataServiceListeners = new DataServiceListenerS(ctxMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", dataServiceListeners);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("in-flight-messages.max-number", 1);
+        properties.put("in-flight-messages.flow-control", true);
+        DataServiceOptions dataServiceOptions = new DataServiceOptions(properties);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
+
+        Map<DataTransportToken, Integer> inFlightMsgIds = new ConcurrentHashMap<>();
+        inFlightMsgIds.put(new DataTransportToken(1, "session"), 10);
+        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+
+        DataMessage message = new DataMessage.Builder(11).withTopic("qos0").withPayload(new byte[] { 1 }).withQos(0)
+                .withPriority(1).build();
+        when(storeMock.store("qos0", message.getPayload(), 0, false, 1)).thenReturn(message);
+        when(storeMock.getNextQos0Messages(anyInt())).thenReturn(Collections.singletonList(message),
+                Collections.<DataMessage> emptyList());
+
+        ExecutorService publisherExecutor = Executors.newSingleThreadExecutor();
+        TestUtil.setFieldValue(svc, "publisherExecutor", publisherExecutor);
+        try {
+            TestUtil.invokePrivate(svc, "submitPublishingWork");
+            Thread.sleep(200);
+
+            // a new QoS 0 message wakes up the publisher, the messages with QoS > 0 are not fetched
+            svc.publish("qos0", message.getPayload(), 0, false, 1);
+
+            verify(dtsMock, timeout(1000).times(1)).publish("qos0", message.getPayload(), 0, false);
+            verify(storeMock, times(0)).getNextMessage();
+            verify(storeMock, times(0)).getNextMessages(anyInt());
+            assertEquals(1, svc.getInFlightMessageCount());
+        } finally {
+            ((AtomicBoolean) TestUtil.getFieldValue(svc, "publisherEnabled")).set(false);
+            TestUtil.invokePrivate(svc, "signalInFlightWindow");
+            publisherExecutor.shutdownNow();
+        }
+    }
+
     @Test
     public void testCongestion() throws Throwable {
         // run handleInFlightCongestion
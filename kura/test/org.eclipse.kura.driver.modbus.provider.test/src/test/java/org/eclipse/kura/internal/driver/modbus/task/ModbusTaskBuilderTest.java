@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.modbus.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.driver.block.task.AbstractBlockDriver.Pair;
+import org.eclipse.kura.driver.block.task.BinaryDataTask;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.internal.driver.modbus.ModbusChannelDescriptor;
+import org.eclipse.kura.internal.driver.modbus.ModbusDomain;
+import org.eclipse.kura.internal.driver.modbus.ModbusFunctionCode;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.Test;
+
+public class ModbusTaskBuilderTest {
+
+    @Test
+    public void testRegisterTask() {
+        ChannelRecord record = readRecord("HOLDING_REGISTERS", 10, "INT32", DataType.INTEGER);
+
+        List<Pair<ModbusDomain, BlockTask>> tasks = build(Mode.READ, record);
+
+        assertEquals(1, tasks.size());
+        ModbusDomain domain = tasks.get(0).getFirst();
+        assertEquals(3, domain.getUnitId());
+        assertEquals(ModbusFunctionCode.READ_HOLDING_REGISTERS, domain.getFunctionCode());
+        // the tasks are addressed in bytes
+        BlockTask task = tasks.get(0).getSecord();
+        assertTrue(task instanceof BinaryDataTask);
+        assertEquals(20, task.getStart());
+        assertEquals(24, task.getEnd());
+        assertNull(record.getChannelStatus());
+    }
+
+    @Test
+    public void testCoilTask() {
+        ChannelRecord record = readRecord("COILS", 65535, null, DataType.BOOLEAN);
+
+        List<Pair<ModbusDomain, BlockTask>> tasks = build(Mode.READ, record);
+
+        assertEquals(1, tasks.size());
+        assertEquals(ModbusFunctionCode.READ_COILS, tasks.get(0).getFirst().getFunctionCode());
+        assertTrue(tasks.get(0).getSecord() instanceof CoilTask);
+    }
+
+    @Test
+    public void testLastAddress() {
+        ChannelRecord int16 = readRecord("INPUT_REGISTERS", 65535, "INT16", DataType.INTEGER);
+        ChannelRecord int32 = readRecord("INPUT_REGISTERS", 65535, "INT32", DataType.INTEGER);
+        ChannelRecord lastDouble = readRecord("INPUT_REGISTERS", 65532, "DOUBLE", DataType.DOUBLE);
+        ChannelRecord overflowingDouble = readRecord("INPUT_REGISTERS", 65533, "DOUBLE", DataType.DOUBLE);
+
+        List<Pair<ModbusDomain, BlockTask>> tasks = build(Mode.READ, int16, int32, lastDouble, overflowingDouble);
+
+        // the values exceeding the last register are not read
+        assertEquals(2, tasks.size());
+        assertEquals(131070, tasks.get(0).getSecord().getStart());
+        assertEquals(131072, tasks.get(1).getSecord().getEnd());
+        assertNull(int16.getChannelStatus());
+        assertNull(lastDouble.getChannelStatus());
+        assertEquals(ChannelFlag.FAILURE, int32.getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, overflowingDouble.getChannelStatus().getChannelFlag());
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        ChannelRecord negativeAddress = readRecord("HOLDING_REGISTERS", -1, "INT16", DataType.INTEGER);
+        ChannelRecord wrongType = readRecord("COILS", 0, null, DataType.INTEGER);
+        ChannelRecord readOnlyTable = ChannelRecord.createWriteRecord("channel", TypedValues.newIntegerValue(1));
+        readOnlyTable.setChannelConfig(channelConfig("INPUT_REGISTERS", 0, "INT16"));
+
+        assertTrue(build(Mode.READ, negativeAddress, wrongType).isEmpty());
+        assertTrue(build(Mode.WRITE, readOnlyTable).isEmpty());
+
+        assertEquals(ChannelFlag.FAILURE, negativeAddress.getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, wrongType.getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, readOnlyTable.getChannelStatus().getChannelFlag());
+    }
+
+    private static List<Pair<ModbusDomain, BlockTask>> build(Mode mode, ChannelRecord... records) {
+        return ModbusTaskBuilder.build(Arrays.asList(records), mode).collect(Collectors.toList());
+    }
+
+    private static ChannelRecord readRecord(String table, int address, String modbusDataType, DataType valueType) {
+        ChannelRecord record = ChannelRecord.createReadRecord("channel", valueType);
+        record.setChannelConfig(channelConfig(table, address, modbusDataType));
+        return record;
+    }
+
+    private static Map<String, Object> channelConfig(String table, int address, String modbusDataType) {
+        Map<String, Object> channelConfig = new HashMap<>();
+        channelConfig.put(ModbusChannelDescriptor.UNIT_ID, 3);
+        channelConfig.put(ModbusChannelDescriptor.PRIMARY_TABLE, table);
+        channelConfig.put(ModbusChannelDescriptor.MEMORY_ADDRESS, address);
+        if (modbusDataType != null) {
+            channelConfig.put(ModbusChannelDescriptor.DATA_TYPE, modbusDataType);
+        }
+        return channelConfig;
+    }
+}
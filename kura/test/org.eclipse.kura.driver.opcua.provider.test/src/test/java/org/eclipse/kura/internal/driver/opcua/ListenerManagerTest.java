@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.opcua;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.listener.ChannelEvent;
+import org.eclipse.kura.channel.listener.ChannelListener;
+import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.crypto.CryptoService;
+import org.eclipse.kura.driver.Driver.ConnectionException;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager.SubscriptionListener;
+import org.eclipse.milo.opcua.sdk.client.subscriptions.OpcUaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class ListenerManagerTest {
+
+    private OpcUaDriver driver;
+    private ListenerManager listenerManager;
+    private final List<ChannelEvent> events = new ArrayList<>();
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        this.driver = new OpcUaDriver();
+        this.driver.bindCryptoService(mock(CryptoService.class));
+        this.driver.activate(new HashMap<>());
+        this.listenerManager = (ListenerManager) TestUtil.getFieldValue(this.driver, "listenerManager");
+    }
+
+    @After
+    public void tearDown() {
+        this.driver.deactivate();
+    }
+
+    @Test
+    public void testRegisterAndNotify() throws Exception {
+        MockClient client = new MockClient();
+        this.listenerManager.connected(client.client, options());
+
+        this.listenerManager.register(client.client, options(), registration(this.events::add, "channel1", 1));
+        this.listenerManager.register(client.client, options(), registration(this.events::add, "channel2", 2));
+
+        // a single subscription serves all the listeners
+        verify(client.subscriptionManager, times(1)).createSubscription(anyDouble());
+        assertEquals(2, client.items.size());
+        assertTrue(this.listenerManager.hasRegistrations());
+
+        client.publish(1, 42);
+        assertEquals(1, this.events.size());
+        assertEquals("channel2", this.events.get(0).getChannelRecord().getChannelName());
+        assertEquals(42, this.events.get(0).getChannelRecord().getValue().getValue());
+        assertEquals(ChannelFlag.SUCCESS, this.events.get(0).getChannelRecord().getChannelStatus().getChannelFlag());
+    }
+
+    @Test
+    public void testRegisterFailureDeletesSubscription() throws Exception {
+        MockClient client = new MockClient();
+        client.failMonitoredItems = true;
+        this.listenerManager.connected(client.client, options());
+
+        try {
+            this.listenerManager.register(client.client, options(), registration(this.events::add, "channel1", 1));
+            fail("Exception expected");
+        } catch (ConnectionException e) {
+            // expected
+        }
+
+        verify(client.subscriptionManager).deleteSubscription(uint(1));
+        assertFalse(this.listenerManager.hasRegistrations());
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        MockClient client = new MockClient();
+        this.listenerManager.connected(client.client, options());
+        ChannelListener listener1 = this.events::add;
+        ChannelListener listener2 = this.events::add;
+        this.listenerManager.register(client.client, options(), registration(listener1, "channel1", 1));
+        this.listenerManager.register(client.client, options(), registration(listener2, "channel2", 2));
+
+        this.listenerManager.unregister(listener1);
+        verify(client.subscription).deleteMonitoredItems(Collections.singletonList(client.items.get(0)));
+        verify(client.subscriptionManager, never()).deleteSubscription(any());
+        assertTrue(this.listenerManager.hasRegistrations());
+
+        // the subscription is deleted together with the last listener
+        this.listenerManager.unregister(listener2);
+        verify(client.subscriptionManager).deleteSubscription(uint(1));
+        assertFalse(this.listenerManager.hasRegistrations());
+    }
+
+    @Test
+    public void testResubscribeOnConnect() throws Exception {
+        MockClient client = new MockClient();
+        this.listenerManager.connected(client.client, options());
+        this.listenerManager.register(client.client, options(), registration(this.events::add, "channel1", 1));
+        this.listenerManager.register(client.client, options(), registration(this.events::add, "channel2", 2));
+
+        this.listenerManager.disconnected();
+        verify(client.subscriptionManager).removeSubscriptionListener(any(SubscriptionListener.class));
+
+        MockClient newClient = new MockClient();
+        this.listenerManager.connected(newClient.client, options());
+
+        verify(newClient.subscriptionManager, times(1)).createSubscription(anyDouble());
+        assertEquals(2, newClient.items.size());
+
+        newClient.publish(0, 7);
+        assertEquals(1, this.events.size());
+        assertEquals("channel1", this.events.get(0).getChannelRecord().getChannelName());
+    }
+
+    @Test
+    public void testResubscribeOnTransferFailure() throws Exception {
+        MockClient client = new MockClient();
+        TestUtil.setFieldValue(this.driver, "client", client.client);
+        this.listenerManager.connected(client.client, options());
+        this.listenerManager.register(client.client, options(), registration(this.events::add, "channel1", 1));
+
+        ArgumentCaptor<SubscriptionListener> captor = ArgumentCaptor.forClass(SubscriptionListener.class);
+        verify(client.subscriptionManager).addSubscriptionListener(captor.capture());
+        captor.getValue().onSubscriptionTransferFailed(client.subscription, StatusCode.BAD);
+
+        // the stale subscription is deleted and a new one is created with the monitored items of the listeners
+        verify(client.subscriptionManager, timeout(5000)).deleteSubscription(uint(1));
+        verify(client.subscriptionManager, timeout(5000).times(2)).createSubscription(anyDouble());
+        verify(client.subscription, timeout(5000).times(2)).createMonitoredItems(any(TimestampsToReturn.class),
+                anyListOf(MonitoredItemCreateRequest.class), any());
+    }
+
+    private OpcUaOptions options() {
+        return new OpcUaOptions(new HashMap<>(), mock(CryptoService.class));
+    }
+
+    private static ListenerManager.Registration registration(ChannelListener listener, String channelName,
+            int node) {
+        Map<String, Object> channelConfig = new HashMap<>();
+        return new ListenerManager.Registration(listener, channelConfig, channelName, DataType.INTEGER,
+                new NodeId(2, node));
+    }
+
+    /**
+     * A mocked {@link OpcUaClient}, whose subscription creates a mocked monitored item for each request.
+     */
+    private static final class MockClient {
+
+        private final OpcUaClient client = mock(OpcUaClient.class);
+        private final OpcUaSubscriptionManager subscriptionManager = mock(OpcUaSubscriptionManager.class);
+        private final UaSubscription subscription = mock(UaSubscription.class);
+        private final List<UaMonitoredItem> items = new ArrayList<>();
+        private final List<BiConsumer<UaMonitoredItem, DataValue>> consumers = new ArrayList<>();
+        private boolean failMonitoredItems;
+
+        @SuppressWarnings("unchecked")
+        MockClient() {
+            when(this.client.getSubscriptionManager()).thenReturn(this.subscriptionManager);
+            when(this.client.disconnect()).thenReturn(CompletableFuture.completedFuture(this.client));
+            when(this.subscription.getSubscriptionId()).thenReturn(uint(1));
+            when(this.subscriptionManager.createSubscription(anyDouble()))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(this.subscription));
+            when(this.subscriptionManager.deleteSubscription(any()))
+                    .thenReturn(CompletableFuture.completedFuture(this.subscription));
+            when(this.subscription.deleteMonitoredItems(anyListOf(UaMonitoredItem.class)))
+                    .thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+            when(this.subscription.createMonitoredItems(any(TimestampsToReturn.class),
+                    anyListOf(MonitoredItemCreateRequest.class), any())).thenAnswer(invocation -> {
+                        if (this.failMonitoredItems) {
+                            CompletableFuture<List<UaMonitoredItem>> result = new CompletableFuture<>();
+                            result.completeExceptionally(new Exception("failed"));
+                            return result;
+                        }
+                        List<MonitoredItemCreateRequest> requests = invocation.getArgumentAt(1, List.class);
+                        BiConsumer<UaMonitoredItem, Integer> onCreated = invocation.getArgumentAt(2,
+                                BiConsumer.class);
+                        List<UaMonitoredItem> created = new ArrayList<>();
+                        for (int i = 0; i < requests.size(); i++) {
+                            UaMonitoredItem item = mock(UaMonitoredItem.class);
+                            when(item.getStatusCode()).thenReturn(StatusCode.GOOD);
+                            doAnswer(setConsumer -> this.consumers.add(setConsumer.getArgumentAt(0, BiConsumer.class)))
+                                    .when(item).setValueConsumer(any(BiConsumer.class));
+                            onCreated.accept(item, i);
+                            created.add(item);
+                        }
+                        this.items.addAll(created);
+                        return CompletableFuture.completedFuture(created);
+                    });
+        }
+
+        void publish(int item, int value) {
+            this.consumers.get(item).accept(this.items.get(item), new DataValue(new Variant(value)));
+        }
+    }
+}
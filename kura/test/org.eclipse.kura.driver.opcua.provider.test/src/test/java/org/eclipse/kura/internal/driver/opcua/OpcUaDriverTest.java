@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.opcua;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.crypto.CryptoService;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class OpcUaDriverTest {
+
+    private OpcUaDriver driver;
+    private OpcUaClient client;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        this.driver = new OpcUaDriver();
+        this.driver.bindCryptoService(mock(CryptoService.class));
+        this.driver.activate(new HashMap<>());
+
+        // each node is read as its numeric identifier, the nodes with a negative identifier have a bad status
+        this.client = mock(OpcUaClient.class);
+        when(this.client.disconnect()).thenReturn(CompletableFuture.completedFuture(this.client));
+        when(this.client.readValues(anyDouble(), any(TimestampsToReturn.class), anyListOf(NodeId.class)))
+                .thenAnswer(invocation -> {
+                    List<DataValue> values = new ArrayList<>();
+                    for (Object nodeId : invocation.getArgumentAt(2, List.class)) {
+                        int id = ((Number) ((NodeId) nodeId).getIdentifier()).intValue();
+                        values.add(id < 0 ? new DataValue(StatusCode.BAD) : new DataValue(new Variant(id)));
+                    }
+                    return CompletableFuture.completedFuture(values);
+                });
+        TestUtil.setFieldValue(this.driver, "client", this.client);
+    }
+
+    @After
+    public void tearDown() {
+        this.driver.deactivate();
+    }
+
+    @Test
+    public void testReadSplitAtMaxNodesPerRead() throws Exception {
+        TestUtil.setFieldValue(this.driver, "maxNodesPerRead", 2);
+        List<ChannelRecord> records = Arrays.asList(record(1), record(2), record(3), record(4), record(5));
+
+        this.driver.read(records);
+
+        // 5 nodes are read with 3 calls of at most 2 nodes
+        List<List<NodeId>> requests = verifyReads(3);
+        assertEquals(Arrays.asList(new NodeId(2, 1), new NodeId(2, 2)), requests.get(0));
+        assertEquals(Arrays.asList(new NodeId(2, 3), new NodeId(2, 4)), requests.get(1));
+        assertEquals(Arrays.asList(new NodeId(2, 5)), requests.get(2));
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(ChannelFlag.SUCCESS, records.get(i).getChannelStatus().getChannelFlag());
+            assertEquals(i + 1, records.get(i).getValue().getValue());
+        }
+    }
+
+    @Test
+    public void testBadNodeStatus() throws Exception {
+        List<ChannelRecord> records = Arrays.asList(record(1), record(-2), record(3));
+
+        this.driver.read(records);
+
+        // a bad node only fails its own channel
+        verifyReads(1);
+        assertEquals(ChannelFlag.SUCCESS, records.get(0).getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.FAILURE, records.get(1).getChannelStatus().getChannelFlag());
+        assertEquals(ChannelFlag.SUCCESS, records.get(2).getChannelStatus().getChannelFlag());
+        assertEquals(3, records.get(2).getValue().getValue());
+        for (ChannelRecord record : records) {
+            assertNotNull(record.getTimestamp());
+        }
+    }
+
+    @Test
+    public void testUnlimitedMaxNodesPerRead() throws Throwable {
+        TestUtil.setFieldValue(this.driver, "maxNodesPerRead", 2);
+        when(this.client.readValue(0.0, TimestampsToReturn.Neither,
+                Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerRead))
+                        .thenReturn(CompletableFuture.completedFuture(new DataValue(new Variant(uint(0)))));
+
+        // the limit read on connection, 0 means that the server has no limit
+        int limit = (int) TestUtil.invokePrivate(this.driver, "readMaxNodesPerRead", this.client);
+        assertEquals(0, limit);
+        TestUtil.setFieldValue(this.driver, "maxNodesPerRead", limit);
+
+        this.driver.read(Arrays.asList(record(1), record(2), record(3), record(4), record(5)));
+
+        assertEquals(5, verifyReads(1).get(0).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<NodeId>> verifyReads(int count) {
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.client, times(count)).readValues(eq(0.0), eq(TimestampsToReturn.Neither), captor.capture());
+        List<List<NodeId>> requests = new ArrayList<>();
+        for (List<?> request : captor.getAllValues()) {
+            requests.add((List<NodeId>) request);
+        }
+        return requests;
+    }
+
+    private static ChannelRecord record(int node) {
+        Map<String, Object> channelConfig = new HashMap<>();
+        channelConfig.put("node.namespace.index", "2");
+        channelConfig.put("node.id.type", "NUMERIC");
+        channelConfig.put("node.id", Integer.toString(node));
+        ChannelRecord record = ChannelRecord.createReadRecord("channel" + node, DataType.INTEGER);
+        record.setChannelConfig(channelConfig);
+        return record;
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.s7plc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.internal.driver.s7plc.task.S7PlcToplevelBlockTask;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import Moka7.S7;
+import Moka7.S7Client;
+import Moka7.S7DataItem;
+
+public class S7PlcDriverTest {
+
+    private S7PlcDriver driver;
+    private S7Client client;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        this.driver = new S7PlcDriver();
+        this.client = mock(S7Client.class);
+        when(this.client.ReadMultiVars(any(S7DataItem[].class), anyInt())).thenReturn(0);
+        when(this.client.WriteMultiVars(any(S7DataItem[].class), anyInt())).thenReturn(0);
+        TestUtil.setFieldValue(this.driver, "client", this.client);
+    }
+
+    @Test
+    public void testPackAtMaxVars() {
+        when(this.client.PDULength()).thenReturn(480);
+        List<BlockTask> tasks = new ArrayList<>();
+        for (int db = 1; db <= 25; db++) {
+            tasks.add(task(Mode.READ, db, 4));
+        }
+
+        this.driver.runTasks(tasks);
+
+        // the blocks of different DBs are read with 2 requests of at most MaxVars items
+        List<S7DataItem[]> requests = verifyReadMultiVars(2);
+        assertEquals(S7Client.MaxVars, requests.get(0).length);
+        assertEquals(5, requests.get(1).length);
+        for (int i = 0; i < 25; i++) {
+            S7DataItem item = requests.get(i / S7Client.MaxVars)[i % S7Client.MaxVars];
+            assertEquals(i + 1, item.DBNumber);
+            assertEquals(4, item.Amount);
+        }
+        verify(this.client, never()).ReadArea(anyInt(), anyInt(), anyInt(), anyInt(), any(byte[].class));
+    }
+
+    @Test
+    public void testSplitAtPduLength() throws Exception {
+        when(this.client.PDULength()).thenReturn(240);
+        // the reply of a request can hold 2 items of 100 bytes
+        S7PlcToplevelBlockTask first = task(Mode.READ, 1, 100);
+        S7PlcToplevelBlockTask second = task(Mode.READ, 2, 100);
+        S7PlcToplevelBlockTask third = task(Mode.READ, 3, 100);
+        BlockTask firstChild = child(first);
+        BlockTask secondChild = child(second);
+        when(this.client.ReadMultiVars(any(S7DataItem[].class), anyInt())).thenAnswer(invocation -> {
+            invocation.getArgumentAt(0, S7DataItem[].class)[1].Result = S7Client.errS7DataRead;
+            return 0;
+        });
+
+        this.driver.runTasks(Arrays.asList(first, second, third));
+
+        List<S7DataItem[]> requests = verifyReadMultiVars(1);
+        assertEquals(2, requests.get(0).length);
+        // a failed item only fails its own task
+        verify(firstChild).run();
+        verify(secondChild, never()).run();
+        verify(secondChild).onFailure(any(Exception.class));
+        // a request with a single item is a plain read
+        verify(this.client).ReadArea(eq(S7.S7AreaDB), eq(3), eq(0), eq(100), any(byte[].class));
+    }
+
+    @Test
+    public void testFallbackToSingleTask() {
+        when(this.client.PDULength()).thenReturn(240);
+        // the first block does not fit in a PDU, it is read with a plain request that is split by Moka7
+        List<BlockTask> tasks = Arrays.asList(task(Mode.READ, 1, 300), task(Mode.READ, 2, 10),
+                task(Mode.READ, 3, 10), task(Mode.WRITE, 4, 10), task(Mode.WRITE, 5, 10));
+
+        this.driver.runTasks(tasks);
+
+        verify(this.client).ReadArea(eq(S7.S7AreaDB), eq(1), eq(0), eq(300), any(byte[].class));
+        List<S7DataItem[]> reads = verifyReadMultiVars(1);
+        assertEquals(2, reads.get(0).length);
+        assertEquals(2, reads.get(0)[0].DBNumber);
+        assertEquals(3, reads.get(0)[1].DBNumber);
+
+        // the tasks with a different mode start a new request
+        ArgumentCaptor<S7DataItem[]> writes = ArgumentCaptor.forClass(S7DataItem[].class);
+        verify(this.client).WriteMultiVars(writes.capture(), eq(2));
+        assertEquals(4, writes.getValue()[0].DBNumber);
+        assertEquals(5, writes.getValue()[1].DBNumber);
+    }
+
+    private List<S7DataItem[]> verifyReadMultiVars(int count) {
+        ArgumentCaptor<S7DataItem[]> captor = ArgumentCaptor.forClass(S7DataItem[].class);
+        verify(this.client, times(count)).ReadMultiVars(captor.capture(), anyInt());
+        return captor.getAllValues();
+    }
+
+    private S7PlcToplevelBlockTask task(Mode mode, int db, int length) {
+        return new S7PlcToplevelBlockTask(this.driver, mode, db, 0, length);
+    }
+
+    private static BlockTask child(S7PlcToplevelBlockTask task) {
+        BlockTask child = mock(BlockTask.class);
+        task.addChild(child);
+        return child;
+    }
+}
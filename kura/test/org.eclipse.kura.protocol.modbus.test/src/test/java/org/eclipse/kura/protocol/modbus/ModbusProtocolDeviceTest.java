@@ -11,11 +11,22 @@ package org.eclipse.kura.protocol.modbus;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.kura.KuraConnectionStatus;
+import org.eclipse.kura.protocol.modbus.test.ModbusHandler;
 import org.eclipse.kura.protocol.modbus.test.ModbusServer;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -125,4 +136,83 @@ public class ModbusProtocolDeviceTest {
         assertEquals(10, inputRegs[0]);
     }
 
+    @Test
+    public void testConcurrentTransactions() throws Exception {
+        // the server answers the requests in pairs, in reverse order
+        int outOfOrderResponses = ModbusHandler.outOfOrderResponses.get();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<int[]>> holdingRegs = new ArrayList<>();
+            List<Future<int[]>> inputRegs = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                holdingRegs.add(executor.submit(() -> modbusDevice.readHoldingRegisters(1, 0, 1)));
+                inputRegs.add(executor.submit(() -> modbusDevice.readInputRegisters(1, 8, 1)));
+            }
+            for (int i = 0; i < 50; i++) {
+                assertEquals(2, holdingRegs.get(i).get()[0]);
+                assertEquals(10, inputRegs.get(i).get()[0]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(KuraConnectionStatus.CONNECTED, modbusDevice.getConnectStatus());
+        assertTrue(ModbusHandler.outOfOrderResponses.get() > outOfOrderResponses);
+    }
+
+    @Test
+    public void testRtuOverTcpLateResponse() throws Exception {
+        // the late response of a timed out RTU over TCP request does not complete the next request
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread device = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream();
+                    byte[] request = new byte[8];
+                    in.readFully(request);
+                    in.readFully(request);
+                    // the input registers response comes after the holding registers request
+                    out.write(rtuFrame(1, 4, 2, 0, 10));
+                    out.write(rtuFrame(1, 3, 2, 0, 2));
+                    out.flush();
+                    in.read();
+                } catch (IOException e) {
+                    logger.error("RTU over TCP device", e);
+                }
+            });
+            device.start();
+
+            ModbusProtocolDevice rtuDevice = new ModbusProtocolDevice();
+            Properties connectionConfig = new Properties();
+            connectionConfig.setProperty("connectionType", ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_RTU);
+            connectionConfig.setProperty("ipAddress", "127.0.0.1");
+            connectionConfig.setProperty("ethport", Integer.toString(server.getLocalPort()));
+            connectionConfig.setProperty("respTimeout", "500");
+            connectionConfig.setProperty("transmissionMode", ModbusTransmissionMode.RTU);
+            rtuDevice.configureConnection(connectionConfig);
+            rtuDevice.connect();
+            try {
+                try {
+                    rtuDevice.readInputRegisters(1, 8, 1);
+                    fail("Timeout expected");
+                } catch (ModbusProtocolException e) {
+                    // expected
+                }
+                assertEquals(2, rtuDevice.readHoldingRegisters(1, 0, 1)[0]);
+            } finally {
+                rtuDevice.disconnect();
+            }
+            device.join(5000);
+        }
+    }
+
+    private static byte[] rtuFrame(int... data) {
+        byte[] frame = new byte[data.length + 2];
+        for (int i = 0; i < data.length; i++) {
+            frame[i] = (byte) data[i];
+        }
+        int crc = Crc16.getCrc16(frame, data.length, 0xffff);
+        frame[data.length] = (byte) crc;
+        frame[data.length + 1] = (byte) (crc >> 8);
+        return frame;
+    }
 }
@@ -9,10 +9,12 @@
 
 package org.eclipse.kura.protocol.modbus.test;
 
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +23,18 @@ public class ModbusHandler extends Thread {
 
     private static final Logger logger = LoggerFactory.getLogger(ModbusHandler.class);
 
+    /**
+     * The time the handler waits for a second request, to answer the two requests in reverse order.
+     */
+    private static final int PAIRING_TIMEOUT = 20;
+
+    private static final int NO_REQUEST = -2;
+
+    /**
+     * The number of responses sent before the response of an earlier request.
+     */
+    public static final AtomicInteger outOfOrderResponses = new AtomicInteger();
+
     private Socket socket = null;
 
     public ModbusHandler(Socket socket) {
@@ -29,11 +43,31 @@ public class ModbusHandler extends Thread {
     }
 
     public void run() {
-        try (OutputStream out = socket.getOutputStream(); InputStream in = socket.getInputStream()) {
+        try (OutputStream out = socket.getOutputStream();
+                DataInputStream in = new DataInputStream(socket.getInputStream())) {
             byte[] input = new byte[256];
-            int length = in.read(input);
-            byte[] output = handleRequest(input);
-            out.write(output);
+            byte[] nextInput = new byte[256];
+            while (readRequest(in, in.read(), input)) {
+                // answer the next request first, if it comes in time
+                int first;
+                socket.setSoTimeout(PAIRING_TIMEOUT);
+                try {
+                    first = in.read();
+                } catch (SocketTimeoutException e) {
+                    first = NO_REQUEST;
+                } finally {
+                    socket.setSoTimeout(0);
+                }
+                if (first != NO_REQUEST) {
+                    if (!readRequest(in, first, nextInput) || !respond(out, nextInput)) {
+                        break;
+                    }
+                    outOfOrderResponses.incrementAndGet();
+                }
+                if (!respond(out, input)) {
+                    break;
+                }
+            }
         } catch (IOException e) {
             logger.error("ModbusHandler", e);
             throw new RuntimeException(e);
@@ -46,6 +80,29 @@ public class ModbusHandler extends Thread {
         }
     }
 
+    private boolean respond(OutputStream out, byte[] input) throws IOException {
+        byte[] output = handleRequest(input);
+        if (output.length == 0) {
+            return false;
+        }
+        // echo the transaction identifier and send only the length declared in the MBAP header
+        output[0] = input[0];
+        output[1] = input[1];
+        out.write(output, 0, Math.min(output.length, 6 + output[5]));
+        return true;
+    }
+
+    private boolean readRequest(DataInputStream in, int first, byte[] input) throws IOException {
+        if (first < 0) {
+            return false;
+        }
+        input[0] = (byte) first;
+        in.readFully(input, 1, 5);
+        int length = (input[4] & 0xff) << 8 | input[5] & 0xff;
+        in.readFully(input, 6, length);
+        return true;
+    }
+
     private byte[] handleRequest(byte[] input) {
         byte command = input[7];
         switch (command) {
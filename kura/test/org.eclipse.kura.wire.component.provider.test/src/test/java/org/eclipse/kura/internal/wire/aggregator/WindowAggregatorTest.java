@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WindowAggregatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    private final AtomicLong clock = new AtomicLong(1000000);
+    private final List<WireRecord> emitted = new ArrayList<>();
+
+    private WindowAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        this.aggregator = new WindowAggregator(this.clock::get);
+
+        WireHelperService wireHelperServiceMock = mock(WireHelperService.class);
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        when(wireHelperServiceMock.newWireSupport(this.aggregator)).thenReturn(wireSupportMock);
+        doAnswer(invocation -> {
+            List<WireRecord> records = invocation.getArgumentAt(0, List.class);
+            this.emitted.addAll(records);
+            return null;
+        }).when(wireSupportMock).emit(anyListOf(WireRecord.class));
+        this.aggregator.bindWireHelperService(wireHelperServiceMock);
+    }
+
+    @After
+    public void tearDown() {
+        this.aggregator.deactivate();
+    }
+
+    @Test
+    public void testTumblingCountWindow() {
+        this.aggregator.activate(properties("tumbling", "count", 4, 1, "min,max,avg,sum,count,stddev,first,last"));
+
+        receive(2, 4, 4);
+        assertTrue(this.emitted.isEmpty());
+        receive(4, 5, 5, 7, 9);
+
+        assertEquals(2, this.emitted.size());
+        Map<String, TypedValue<?>> first = this.emitted.get(0).getProperties();
+        assertEquals(2.0, (Double) first.get("value_min").getValue(), DELTA);
+        assertEquals(4.0, (Double) first.get("value_max").getValue(), DELTA);
+        assertEquals(3.5, (Double) first.get("value_avg").getValue(), DELTA);
+        assertEquals(14.0, (Double) first.get("value_sum").getValue(), DELTA);
+        assertEquals(4L, first.get("value_count").getValue());
+        assertEquals(Math.sqrt(0.75), (Double) first.get("value_stddev").getValue(), DELTA);
+        assertEquals(2.0, (Double) first.get("value_first").getValue(), DELTA);
+        assertEquals(4.0, (Double) first.get("value_last").getValue(), DELTA);
+        assertFalse(first.containsKey("name_count"));
+
+        // the second window only contains the last four records
+        Map<String, TypedValue<?>> second = this.emitted.get(1).getProperties();
+        assertEquals(6.5, (Double) second.get("value_avg").getValue(), DELTA);
+        assertEquals(5.0, (Double) second.get("value_first").getValue(), DELTA);
+    }
+
+    @Test
+    public void testSlidingCountWindow() {
+        this.aggregator.activate(properties("sliding", "count", 4, 2, "avg,stddev,first,last,count"));
+
+        receive(2, 4, 4);
+        assertTrue(this.emitted.isEmpty());
+        receive(4, 5, 5, 7, 9);
+
+        // windows ending at the 4th, 6th and 8th record
+        assertEquals(3, this.emitted.size());
+        Map<String, TypedValue<?>> middle = this.emitted.get(1).getProperties();
+        assertEquals(4L, middle.get("value_count").getValue());
+        assertEquals(4.5, (Double) middle.get("value_avg").getValue(), DELTA);
+        assertEquals(4.0, (Double) middle.get("value_first").getValue(), DELTA);
+        assertEquals(5.0, (Double) middle.get("value_last").getValue(), DELTA);
+        assertEquals(Math.sqrt(0.25), (Double) middle.get("value_stddev").getValue(), DELTA);
+
+        Map<String, TypedValue<?>> last = this.emitted.get(2).getProperties();
+        assertEquals(6.5, (Double) last.get("value_avg").getValue(), DELTA);
+    }
+
+    @Test
+    public void testSlidingTimeWindow() {
+        this.aggregator.activate(properties("sliding", "time", 30, 10, "sum,count"));
+
+        // panes of 10 seconds aligned to the epoch, the clock starts at 1000 seconds
+        receive(1);
+        this.clock.addAndGet(5000);
+        receive(2);
+        assertTrue(this.emitted.isEmpty());
+
+        this.clock.addAndGet(10000);
+        receive(4);
+        assertEquals(1, this.emitted.size());
+        assertEquals(3.0, (Double) this.emitted.get(0).getProperties().get("value_sum").getValue(), DELTA);
+        assertEquals(1000000L, this.emitted.get(0).getProperties().get("window_start").getValue());
+        assertEquals(1005000L, this.emitted.get(0).getProperties().get("window_end").getValue());
+
+        // the windows ending at 1020 and 1030 seconds contain all the records
+        this.clock.addAndGet(20000);
+        receive(8);
+        assertEquals(3, this.emitted.size());
+        assertEquals(7.0, (Double) this.emitted.get(1).getProperties().get("value_sum").getValue(), DELTA);
+        assertEquals(7.0, (Double) this.emitted.get(2).getProperties().get("value_sum").getValue(), DELTA);
+
+        // after a long pause the windows still containing records are emitted, the following empty ones are not
+        this.clock.addAndGet(3600000);
+        receive(16);
+        assertEquals(6, this.emitted.size());
+        assertEquals(12.0, (Double) this.emitted.get(3).getProperties().get("value_sum").getValue(), DELTA);
+        assertEquals(8.0, (Double) this.emitted.get(5).getProperties().get("value_sum").getValue(), DELTA);
+        assertEquals(1L, this.emitted.get(5).getProperties().get("value_count").getValue());
+    }
+
+    private static Map<String, Object> properties(String type, String mode, int size, int slide, String functions) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("kura.service.pid", "aggregator");
+        properties.put("window.type", type);
+        properties.put("window.mode", mode);
+        properties.put("window.size", size);
+        properties.put("window.slide", slide);
+        properties.put("aggregate.functions", functions);
+        return properties;
+    }
+
+    private void receive(int... values) {
+        for (int value : values) {
+            Map<String, TypedValue<?>> properties = new HashMap<>();
+            properties.put("value", TypedValues.newIntegerValue(value));
+            properties.put("name", TypedValues.newStringValue("sensor"));
+            this.aggregator.onWireReceive(
+                    new WireEnvelope("emitter", Collections.singletonList(new WireRecord(properties))));
+        }
+    }
+}
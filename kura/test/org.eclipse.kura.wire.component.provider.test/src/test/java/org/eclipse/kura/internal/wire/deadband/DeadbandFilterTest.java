@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.deadband;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class DeadbandFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(1000000);
+
+    private DeadbandFilter filter;
+    private WireSupport wireSupportMock;
+
+    @Before
+    public void setUp() {
+        this.filter = new DeadbandFilter(this.clock::get);
+        this.wireSupportMock = mock(WireSupport.class);
+        WireHelperService wireHelperServiceMock = mock(WireHelperService.class);
+        when(wireHelperServiceMock.newWireSupport(this.filter)).thenReturn(this.wireSupportMock);
+        this.filter.bindWireHelperService(wireHelperServiceMock);
+    }
+
+    @Test
+    public void testAbsoluteDeadband() {
+        this.filter.activate(properties("absolute", 1.0, 0));
+
+        WireRecord first = record(10.0, "on");
+        receive("asset", first);
+        assertSame(first, verifyEmitted(1));
+
+        // within the deadband and unchanged string, the record is dropped
+        receive("asset", record(10.5, "on"));
+        receive("asset", record(9.1, "on"));
+        verify(this.wireSupportMock, times(1)).emit(anyListOf(WireRecord.class));
+
+        // the difference is computed from the last forwarded value, not the last received one
+        receive("asset", record(11.2, "on"));
+        Map<String, TypedValue<?>> properties = verifyEmitted(2).getProperties();
+        assertEquals(11.2, properties.get("temperature").getValue());
+        assertTrue(properties.containsKey("temperature_timestamp"));
+        assertFalse(properties.containsKey("state"));
+        assertFalse(properties.containsKey("state_timestamp"));
+        assertEquals("asset", properties.get("assetName").getValue());
+
+        // the timestamp follows its channel
+        receive("asset", record(11.2, "off"));
+        properties = verifyEmitted(3).getProperties();
+        assertEquals("off", properties.get("state").getValue());
+        assertTrue(properties.containsKey("state_timestamp"));
+        assertFalse(properties.containsKey("temperature"));
+        assertFalse(properties.containsKey("temperature_timestamp"));
+        assertEquals("asset", properties.get("assetName").getValue());
+
+        // the values are kept for each emitter
+        receive("otherAsset", record(11.2, "off"));
+        verifyEmitted(4);
+    }
+
+    @Test
+    public void testPercentDeadbandAndHeartbeat() {
+        this.filter.activate(properties("percent", 10.0, 60));
+
+        receive("asset", record(200.0, "on"));
+        receive("asset", record(219.0, "on"));
+        verify(this.wireSupportMock, times(1)).emit(anyListOf(WireRecord.class));
+
+        receive("asset", record(178.0, "on"));
+        assertEquals(178.0, verifyEmitted(2).getProperties().get("temperature").getValue());
+
+        // nothing changes, but the heartbeat interval has elapsed for both properties
+        this.clock.addAndGet(60000);
+        receive("asset", record(178.0, "on"));
+        assertEquals(5, verifyEmitted(3).getProperties().size());
+    }
+
+    @Test
+    public void testLongValues() {
+        this.filter.activate(properties("absolute", 0.0, 0));
+
+        long counter = 1L << 53;
+        receive("asset", counterRecord(counter));
+        verifyEmitted(1);
+        receive("asset", counterRecord(counter));
+        verify(this.wireSupportMock, times(1)).emit(anyListOf(WireRecord.class));
+
+        // 2^53 + 1 is not representable as a double
+        receive("asset", counterRecord(counter + 1));
+        assertEquals(counter + 1, verifyEmitted(2).getProperties().get("counter").getValue());
+
+        // a difference overflowing a long
+        receive("asset", counterRecord(Long.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE, verifyEmitted(3).getProperties().get("counter").getValue());
+    }
+
+    private static Map<String, Object> properties(String type, double deadband, int heartbeat) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("kura.service.pid", "deadband");
+        properties.put("deadband.type", type);
+        properties.put("deadband.value", deadband);
+        properties.put("heartbeat.interval", heartbeat);
+        return properties;
+    }
+
+    private WireRecord record(double temperature, String state) {
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("assetName", TypedValues.newStringValue("asset"));
+        properties.put("temperature", TypedValues.newDoubleValue(temperature));
+        properties.put("temperature_timestamp", TypedValues.newLongValue(this.clock.get()));
+        properties.put("state", TypedValues.newStringValue(state));
+        properties.put("state_timestamp", TypedValues.newLongValue(this.clock.get()));
+        return new WireRecord(properties);
+    }
+
+    private static WireRecord counterRecord(long counter) {
+        return new WireRecord(Collections.singletonMap("counter", TypedValues.newLongValue(counter)));
+    }
+
+    private void receive(String emitterPid, WireRecord wireRecord) {
+        this.filter.onWireReceive(new WireEnvelope(emitterPid, Collections.singletonList(wireRecord)));
+    }
+
+    /**
+     * Verifies the number of emitted envelopes and returns the single record of the last one.
+     */
+    @SuppressWarnings("unchecked")
+    private WireRecord verifyEmitted(int count) {
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.wireSupportMock, times(count)).emit(captor.capture());
+        List<WireRecord> records = captor.getValue();
+        assertEquals(1, records.size());
+        return records.get(0);
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.fifo;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.internal.wire.fifo.FifoRingBuffer.WaitStrategy;
+import org.junit.Test;
+
+public class FifoRingBufferTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int COUNT = 10000;
+
+    @Test
+    public void testOfferAndDrain() {
+        FifoRingBuffer<Integer> buffer = new FifoRingBuffer<>(3, WaitStrategy.BLOCK);
+        List<Integer> drained = new ArrayList<>();
+
+        assertEquals(0, buffer.drainTo(drained));
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertFalse(buffer.offer(4));
+
+        assertEquals(3, buffer.drainTo(drained));
+        assertEquals(Arrays.asList(1, 2, 3), drained);
+
+        // the slots are reused
+        assertTrue(buffer.offer(5));
+        assertTrue(buffer.offer(6));
+        drained.clear();
+        assertEquals(2, buffer.drainTo(drained));
+        assertEquals(Arrays.asList(5, 6), drained);
+    }
+
+    @Test
+    public void testShutdown() throws InterruptedException {
+        FifoRingBuffer<Integer> buffer = new FifoRingBuffer<>(1, WaitStrategy.BLOCK);
+        CountDownLatch woken = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                buffer.awaitNotEmpty();
+                woken.countDown();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        buffer.shutdown();
+
+        assertTrue(woken.await(1, TimeUnit.SECONDS));
+        assertFalse(buffer.isRunning());
+        assertFalse(buffer.offer(1));
+    }
+
+    @Test
+    public void testConcurrentBlock() throws InterruptedException {
+        testConcurrent(WaitStrategy.BLOCK);
+    }
+
+    @Test
+    public void testConcurrentSpin() throws InterruptedException {
+        testConcurrent(WaitStrategy.SPIN);
+    }
+
+    @Test
+    public void testConcurrentPark() throws InterruptedException {
+        testConcurrent(WaitStrategy.PARK);
+    }
+
+    private void testConcurrent(WaitStrategy waitStrategy) throws InterruptedException {
+        FifoRingBuffer<int[]> buffer = new FifoRingBuffer<>(5, waitStrategy);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < COUNT; i++) {
+                        int[] element = { producer, i };
+                        while (!buffer.offer(element)) {
+                            buffer.awaitNotFull();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+
+        // every producer must be seen in order, nothing lost or duplicated
+        int[] next = new int[PRODUCERS];
+        List<int[]> drained = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 10000;
+        int received = 0;
+        while (received < PRODUCERS * COUNT && System.currentTimeMillis() < deadline) {
+            assertTrue(buffer.awaitNotEmpty());
+            drained.clear();
+            received += buffer.drainTo(drained);
+            for (int[] element : drained) {
+                assertEquals(next[element[0]]++, element[1]);
+            }
+        }
+
+        assertEquals(PRODUCERS * COUNT, received);
+        for (Thread thread : producers) {
+            thread.join(1000);
+        }
+        buffer.shutdown();
+    }
+}
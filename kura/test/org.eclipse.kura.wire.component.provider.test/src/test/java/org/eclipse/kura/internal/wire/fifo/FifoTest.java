@@ -11,6 +11,8 @@ package org.eclipse.kura.internal.wire.fifo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -20,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import org.eclipse.kura.type.LongValue;
 import org.eclipse.kura.type.StringValue;
@@ -74,6 +77,11 @@ public class FifoTest {
                 logger.info("consumersConnected called");
             }
 
+            @Override
+            public void registerMetric(String name, LongSupplier value) {
+                logger.info("registerMetric called");
+            }
+
             @Override
             public void emit(List<WireRecord> wireRecords) {
                 WireRecord wireRecord = wireRecords.get(0);
@@ -147,6 +155,11 @@ public class FifoTest {
                 logger.info("consumersConnected called");
             }
 
+            @Override
+            public void registerMetric(String name, LongSupplier value) {
+                logger.info("registerMetric called");
+            }
+
             @Override
             public void emit(List<WireRecord> wireRecords) {
                 WireRecord wireRecord = wireRecords.get(0);
@@ -183,6 +196,58 @@ public class FifoTest {
         assertEquals(1, wiresLatch.getCount());
     }
 
+    @Test
+    public void testMerge() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<List<WireRecord>> emitted = new ArrayList<>();
+
+        Fifo fifo = new Fifo();
+
+        WireHelperService wireHelperServiceMock = mock(WireHelperService.class);
+        fifo.bindWireHelperService(wireHelperServiceMock);
+
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        doAnswer(invocation -> {
+            emitted.add((List<WireRecord>) invocation.getArguments()[0]);
+            entered.countDown();
+            release.await();
+            done.countDown();
+            return null;
+        }).when(wireSupportMock).emit(anyListOf(WireRecord.class));
+        when(wireHelperServiceMock.newWireSupport(fifo)).thenReturn(wireSupportMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("discard.envelopes", false);
+        properties.put("queue.capacity", 5);
+        properties.put("wait.strategy", "park");
+        properties.put("merge.envelopes", true);
+
+        fifo.activate(properties);
+
+        List<WireRecord> records = new ArrayList<>();
+        WireEnvelope wireEnvelope = createWireEnvelope();
+        records.addAll(wireEnvelope.getRecords());
+        fifo.onWireReceive(wireEnvelope);
+        assertTrue(entered.await(1, TimeUnit.SECONDS));
+
+        // the envelopes queued while the first one is being emitted are merged
+        for (int i = 0; i < 4; i++) {
+            wireEnvelope = createWireEnvelope();
+            records.addAll(wireEnvelope.getRecords());
+            fifo.onWireReceive(wireEnvelope);
+        }
+        release.countDown();
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(2, emitted.size());
+        assertEquals(records.subList(0, 1), emitted.get(0));
+        assertEquals(records.subList(1, 5), emitted.get(1));
+
+        fifo.deactivate();
+    }
+
     private WireEnvelope createWireEnvelope() {
         String emitterPid = "emitter";
         List<WireRecord> wireRecords = new ArrayList<WireRecord>();
@@ -12,10 +12,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -24,11 +27,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.cloud.CloudClient;
 import org.eclipse.kura.cloud.CloudService;
 import org.eclipse.kura.core.testutil.TestUtil;
+import org.eclipse.kura.data.PublishResult;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.type.StringValue;
 import org.eclipse.kura.type.TypedValue;
@@ -114,7 +119,7 @@ public class CloudPublisherTest {
 
         CloudClient cloudClientMock = mock(CloudClient.class);
 
-        when(cloudClientMock.publish(eq(topic), (KuraPayload) anyObject(), eq(qos), eq(retain), eq(prio)))
+        when(cloudClientMock.publishAsync(eq(topic), (KuraPayload) anyObject(), eq(qos), eq(retain), eq(prio)))
                 .thenAnswer(invocation -> {
                     KuraPayload payload = invocation.getArgumentAt(1, KuraPayload.class);
 
@@ -125,7 +130,7 @@ public class CloudPublisherTest {
                     assertEquals("val", payload.getMetric("key"));
                     assertEquals(topic, payload.getMetric("topic"));
 
-                    return 1234;
+                    return new PublishResult(CompletableFuture.completedFuture(1234), new CompletableFuture<>());
                 });
 
         TestUtil.setFieldValue(cp, "cloudService", cloudServiceMock);
@@ -144,7 +149,10 @@ public class CloudPublisherTest {
 
         cp.onWireReceive(wireEnvelope);
 
-        verify(cloudClientMock, times(1)).publish(eq(topic), (KuraPayload) anyObject(), eq(qos), eq(retain), eq(prio));
+        verify(cloudClientMock, times(1)).publishAsync(eq(topic), (KuraPayload) anyObject(), eq(qos), eq(retain),
+                eq(prio));
+        verify(cloudClientMock, never()).publish(anyString(), (KuraPayload) anyObject(), anyInt(), anyBoolean(),
+                anyInt());
     }
 
     @Test
@@ -10,18 +10,23 @@ package org.eclipse.kura.internal.wire.h2db.filter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,6 +35,7 @@ import org.eclipse.kura.db.H2DbService;
 import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
 import org.eclipse.kura.wire.WireSupport;
 import org.junit.Test;
 import org.osgi.service.wireadmin.Wire;
@@ -193,6 +199,134 @@ public class H2DbWireRecordFilterTest {
         verify(mockWireSupport).emit(any());
     }
 
+    @Test
+    public void testIncrementalQuery() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:filterdb", "SA", "");
+        connection.createStatement().execute("CREATE TABLE \"WR_data\" (ID BIGINT PRIMARY KEY, \"value\" INTEGER)");
+        insertRows(connection, 1, 2);
+
+        H2DbService mockDbService = mock(H2DbService.class);
+        when(mockDbService.getConnection()).thenReturn(connection);
+
+        // the envelopes are emitted while reading, the emitter fails once on demand
+        List<List<WireRecord>> emitted = new ArrayList<>();
+        AtomicInteger failingEmit = new AtomicInteger(-1);
+        WireSupport mockWireSupport = mock(WireSupport.class);
+        doAnswer(invocation -> {
+            if (failingEmit.getAndDecrement() == 0) {
+                throw new IllegalStateException("emit failed");
+            }
+            return emitted.add(invocation.getArgumentAt(0, List.class));
+        }).when(mockWireSupport).emit(any());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("cache.expiration.interval", 0);
+        properties.put("query.mode", "incremental");
+        properties.put("table.name", "WR_data");
+        properties.put("fetch.size", 2);
+        properties.put("maximum.records", 3);
+
+        H2DbWireRecordFilter filter = activateIncrementalFilter(mockDbService, mockWireSupport, properties);
+
+        // the rows already present are not emitted
+        WireEnvelope mockWireEnvelope = mock(WireEnvelope.class);
+        filter.onWireReceive(mockWireEnvelope);
+        assertTrue(emitted.isEmpty());
+
+        // at most maximum.records rows per read, in envelopes of at most fetch.size records
+        insertRows(connection, 3, 7);
+        filter.onWireReceive(mockWireEnvelope);
+        assertEquals(2, emitted.size());
+        assertEquals(2, emitted.get(0).size());
+        assertEquals(30, emitted.get(0).get(0).getProperties().get("value").getValue());
+        assertEquals(1, emitted.get(1).size());
+        assertEquals(50, emitted.get(1).get(0).getProperties().get("value").getValue());
+
+        // the next read starts after the last read row
+        emitted.clear();
+        filter.onWireReceive(mockWireEnvelope);
+        assertEquals(1, emitted.size());
+        assertEquals(60, emitted.get(0).get(0).getProperties().get("value").getValue());
+        assertEquals(70, emitted.get(0).get(1).getProperties().get("value").getValue());
+
+        // nothing is emitted without new rows
+        emitted.clear();
+        filter.onWireReceive(mockWireEnvelope);
+        assertTrue(emitted.isEmpty());
+
+        // the cursor is kept when the table and the cursor column do not change
+        properties.put("fetch.size", 10);
+        filter.updated(properties);
+        filter.onWireReceive(mockWireEnvelope);
+        assertTrue(emitted.isEmpty());
+
+        // a new activation does not emit the rows again
+        H2DbWireRecordFilter newFilter = activateIncrementalFilter(mockDbService, mockWireSupport, properties);
+        newFilter.onWireReceive(mockWireEnvelope);
+        assertTrue(emitted.isEmpty());
+
+        insertRows(connection, 8, 8);
+        newFilter.onWireReceive(mockWireEnvelope);
+        assertEquals(1, emitted.size());
+        assertEquals(1, emitted.get(0).size());
+        assertEquals(80, emitted.get(0).get(0).getProperties().get("value").getValue());
+
+        // the cursor is advanced after each emitted envelope, a failed one is read again
+        emitted.clear();
+        insertRows(connection, 9, 12);
+        properties.put("fetch.size", 2);
+        properties.put("maximum.records", 10);
+        newFilter.updated(properties);
+        failingEmit.set(1);
+        try {
+            newFilter.onWireReceive(mockWireEnvelope);
+            fail("The emit failure is not propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, emitted.size());
+        assertEquals(90, emitted.get(0).get(0).getProperties().get("value").getValue());
+        newFilter.onWireReceive(mockWireEnvelope);
+        assertEquals(2, emitted.size());
+        assertEquals(110, emitted.get(1).get(0).getProperties().get("value").getValue());
+
+        // maximum.records cannot be 0, at least one row is read at a time
+        emitted.clear();
+        insertRows(connection, 13, 14);
+        properties.put("maximum.records", 0);
+        newFilter.updated(properties);
+        newFilter.onWireReceive(mockWireEnvelope);
+        assertEquals(1, emitted.size());
+        assertEquals(1, emitted.get(0).size());
+        assertEquals(130, emitted.get(0).get(0).getProperties().get("value").getValue());
+
+        connection.createStatement().execute("SHUTDOWN");
+    }
+
+    private static void insertRows(Connection connection, int first, int last) throws SQLException {
+        for (int i = first; i <= last; i++) {
+            connection.createStatement().execute("INSERT INTO \"WR_data\" VALUES (" + i + ", " + i * 10 + ")");
+        }
+    }
+
+    private static H2DbWireRecordFilter activateIncrementalFilter(H2DbService mockDbService,
+            WireSupport mockWireSupport, Map<String, Object> properties) {
+        WireHelperService mockWireHelperService = mock(WireHelperService.class);
+
+        H2DbWireRecordFilter filter = new H2DbWireRecordFilter() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(mockDbService);
+            }
+        };
+        filter.bindWireHelperService(mockWireHelperService);
+        when(mockWireHelperService.newWireSupport(filter)).thenReturn(mockWireSupport);
+
+        filter.activate(null, properties);
+        return filter;
+    }
+
     @Test
     public void testPolled() {
         H2DbService mockDbService = mock(H2DbService.class);
@@ -9,6 +9,9 @@
 package org.eclipse.kura.internal.wire.h2db.store;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -19,12 +22,14 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.db.H2DbService;
+import org.eclipse.kura.internal.wire.h2db.common.H2DbServiceHelper;
 import org.eclipse.kura.type.BooleanValue;
 import org.eclipse.kura.type.ByteArrayValue;
 import org.eclipse.kura.type.DoubleValue;
@@ -193,6 +198,350 @@ public class H2DbWireRecordStoreTest {
         connection.prepareStatement("SHUTDOWN").execute();
     }
 
+    @Test
+    public void testBatchSequence() throws SQLException {
+        // store an envelope mixing records with different properties, check they are stored in order
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        H2DbWireRecordStore store = new H2DbWireRecordStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        when(whsMock.newWireSupport(store)).thenReturn(wireSupportMock);
+
+        store.bindWireHelperService(whsMock);
+
+        ComponentContext ctx = mock(ComponentContext.class);
+        Map<String, Object> props = new HashMap<String, Object>();
+        String tableName = "H2_STORE_BATCH_TEST";
+        props.put("table.name", tableName);
+        props.put("cleanup.records.keep", 0);
+        props.put("maximum.table.size", 10);
+
+        // init
+        store.activate(ctx, props);
+
+        List<WireRecord> wireRecords = new ArrayList<WireRecord>();
+        for (int i = 0; i < 6; i++) {
+            Map<String, TypedValue<?>> recordProps = new HashMap<String, TypedValue<?>>();
+            recordProps.put(i % 3 == 2 ? "other" : "key", new IntegerValue(i));
+            wireRecords.add(new WireRecord(recordProps));
+        }
+        WireEnvelope wireEvelope = new WireEnvelope("emitter", wireRecords);
+
+        store.onWireReceive(wireEvelope);
+
+        ResultSet resultSet = connection
+                .prepareStatement("SELECT \"key\", \"other\" FROM " + tableName + " ORDER BY ID").executeQuery();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(resultSet.next());
+            int value = resultSet.getInt(i % 3 == 2 ? "other" : "key");
+            assertEquals(i, value);
+        }
+        assertTrue(resultSet.isLast());
+
+        // the row counter triggers the truncation
+        store.onWireReceive(wireEvelope);
+        store.onWireReceive(wireEvelope);
+
+        resultSet = connection.prepareStatement("SELECT count(*) FROM " + tableName).executeQuery();
+        resultSet.next();
+        assertEquals("Unexpected number of records", 6, resultSet.getInt(1));
+
+        // deinit
+        store.deactivate(null);
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    @Test
+    public void testPartitionSequence() throws SQLException {
+        // store records in partitions, check the oldest partitions are dropped and the view covers the others
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        H2DbWireRecordStore store = new H2DbWireRecordStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        when(whsMock.newWireSupport(store)).thenReturn(wireSupportMock);
+
+        store.bindWireHelperService(whsMock);
+
+        ComponentContext ctx = mock(ComponentContext.class);
+        Map<String, Object> props = new HashMap<String, Object>();
+        String tableName = "H2_STORE_PARTITION_TEST";
+        props.put("table.name", tableName);
+        props.put("cleanup.records.keep", 3);
+        props.put("maximum.table.size", 5);
+
+        // init with the delete retention mode, store a record in the plain table
+        store.activate(ctx, props);
+
+        Map<String, TypedValue<?>> recordProps = new HashMap<String, TypedValue<?>>();
+        recordProps.put("key", new StringValue("val"));
+        WireEnvelope wireEvelope = new WireEnvelope("emitter",
+                Collections.singletonList(new WireRecord(recordProps)));
+        store.onWireReceive(wireEvelope);
+
+        // the plain table becomes the oldest partition
+        props.put("retention.mode", "partitions");
+        props.put("partition.interval", 0);
+        store.updated(props);
+
+        assertEquals(2, getPartitions(connection, tableName).size());
+        assertEquals(1, count(connection, tableName));
+
+        // partitions hold maximum.table.size - cleanup.records.keep records
+        for (int i = 0; i < 3; i++) {
+            store.onWireReceive(wireEvelope);
+        }
+        assertEquals(4, count(connection, tableName));
+        assertEquals(3, getPartitions(connection, tableName).size());
+
+        // the oldest partitions are dropped when the table is full
+        for (int i = 0; i < 3; i++) {
+            store.onWireReceive(wireEvelope);
+        }
+        assertEquals(4, count(connection, tableName));
+        assertEquals(2, getPartitions(connection, tableName).size());
+
+        // the IDs are unique across the partitions
+        ResultSet resultSet = connection.prepareStatement("SELECT count(DISTINCT ID) FROM " + tableName)
+                .executeQuery();
+        resultSet.next();
+        assertEquals(4, resultSet.getInt(1));
+
+        // change the column type in the current partition only
+        recordProps = new HashMap<String, TypedValue<?>>();
+        recordProps.put("key", new IntegerValue(1));
+        recordProps.put("other", new LongValue(2L));
+        store.onWireReceive(new WireEnvelope("emitter", Collections.singletonList(new WireRecord(recordProps))));
+
+        resultSet = connection.prepareStatement("SELECT \"other\" FROM " + tableName + " ORDER BY ID DESC")
+                .executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(2L, resultSet.getLong(1));
+        assertTrue(resultSet.next());
+        assertNull(resultSet.getObject(1));
+
+        // back to the delete retention mode, the records of the partitions are moved to a table
+        int records = count(connection, tableName);
+        props.put("retention.mode", "delete");
+        store.updated(props);
+
+        assertEquals(records, count(connection, tableName));
+        assertTrue(getPartitions(connection, tableName).isEmpty());
+        resultSet = connection.prepareStatement("SELECT \"other\" FROM " + tableName + " ORDER BY ID DESC")
+                .executeQuery();
+        assertTrue(resultSet.next());
+        assertEquals(2L, resultSet.getLong(1));
+
+        // the IDs go on from the ones of the partitions
+        store.onWireReceive(wireEvelope);
+        resultSet = connection.prepareStatement("SELECT count(DISTINCT ID) FROM " + tableName).executeQuery();
+        resultSet.next();
+        assertEquals(count(connection, tableName), resultSet.getInt(1));
+
+        // deinit
+        store.deactivate(null);
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    @Test
+    public void testPartitionAge() throws SQLException {
+        // start partitions by time and drop them by age
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        Map<String, Object> props = new HashMap<String, Object>();
+        String tableName = "H2_STORE_AGE_TEST";
+        props.put("table.name", tableName);
+        props.put("retention.mode", "partitions");
+        props.put("partition.interval", 60);
+        props.put("maximum.record.age", 600);
+        H2DbWireRecordStoreOptions options = new H2DbWireRecordStoreOptions(props);
+
+        H2DbWireRecordPartitions partitions = new H2DbWireRecordPartitions(H2DbServiceHelper.of(dbServiceMock),
+                tableName);
+        long now = 1000000;
+        partitions.reconcile(now);
+        String first = partitions.getCurrentPartition();
+        partitions.recordsInserted(1, now);
+
+        // a new partition every minute
+        partitions.applyRetention(options, now + 59999);
+        assertEquals(first, partitions.getCurrentPartition());
+        partitions.applyRetention(options, now + 60000);
+        assertNotEquals(first, partitions.getCurrentPartition());
+        assertEquals(2, getPartitions(connection, tableName).size());
+
+        // the first partition is dropped when its last record is too old
+        partitions.applyRetention(options, now + 600000);
+        assertEquals(3, getPartitions(connection, tableName).size());
+        partitions.applyRetention(options, now + 600001);
+        assertEquals(2, getPartitions(connection, tableName).size());
+        assertFalse(getPartitions(connection, tableName).contains(first));
+
+        // the partitions are found again
+        partitions = new H2DbWireRecordPartitions(H2DbServiceHelper.of(dbServiceMock), tableName);
+        partitions.reconcile(now + 600002);
+        assertEquals(2, getPartitions(connection, tableName).size());
+
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    @Test
+    public void testPartitionRetentionWithoutRecords() throws Exception {
+        // the partitions are dropped by age even if no records are received
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        H2DbWireRecordStore store = new H2DbWireRecordStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        when(whsMock.newWireSupport(store)).thenReturn(mock(WireSupport.class));
+        store.bindWireHelperService(whsMock);
+
+        Map<String, Object> props = new HashMap<String, Object>();
+        String tableName = "H2_STORE_RETENTION_TEST";
+        props.put("table.name", tableName);
+        props.put("retention.mode", "partitions");
+        props.put("partition.interval", 1);
+        props.put("maximum.record.age", 1);
+        store.activate(mock(ComponentContext.class), props);
+
+        Map<String, TypedValue<?>> recordProps = new HashMap<String, TypedValue<?>>();
+        recordProps.put("key", new StringValue("val"));
+        store.onWireReceive(new WireEnvelope("emitter", Collections.singletonList(new WireRecord(recordProps))));
+        String first = getPartitions(connection, tableName).get(0);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (getPartitions(connection, tableName).contains(first) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(getPartitions(connection, tableName).contains(first));
+        assertEquals(0, count(connection, tableName));
+
+        store.deactivate(null);
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    @Test
+    public void testPartitionTableNameWildcards() throws SQLException {
+        // the underscores of the table name do not match other tables
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        String tableName = "H2_STORE_LIKE_TEST";
+        connection.prepareStatement("CREATE TABLE H2XSTORE_LIKE_TEST (ID BIGINT, TIMESTAMP BIGINT, OTHER INT)")
+                .execute();
+        connection.prepareStatement("CREATE TABLE H2_STORE_LIKE_TESTX (ID BIGINT, TIMESTAMP BIGINT, OTHER INT)")
+                .execute();
+
+        H2DbServiceHelper dbHelper = H2DbServiceHelper.of(dbServiceMock);
+        H2DbWireRecordPartitions partitions = new H2DbWireRecordPartitions(dbHelper, tableName);
+        partitions.reconcile(1000000);
+        partitions.applyRetention(new H2DbWireRecordStoreOptions(Collections.emptyMap()), 1000000);
+        assertEquals(1, getPartitions(connection, tableName).size());
+
+        ResultSet resultSet = connection.prepareStatement("SELECT * FROM " + tableName).executeQuery();
+        assertEquals(2, resultSet.getMetaData().getColumnCount());
+
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    @Test
+    public void testTableNameWildcards() throws SQLException {
+        // the underscores of the table name do not match the tables and columns of other tables
+
+        Connection connection = getConnection();
+
+        H2DbService dbServiceMock = mock(H2DbService.class);
+        when(dbServiceMock.getConnection()).thenReturn(connection);
+
+        connection.prepareStatement("CREATE TABLE H2XSTORE_WILDCARD_TEST (ID BIGINT, TIMESTAMP BIGINT, OTHER INT)")
+                .execute();
+
+        H2DbWireRecordStore store = new H2DbWireRecordStore() {
+
+            @Override
+            protected void restartDbServiceTracker() {
+                bindDbService(dbServiceMock);
+            }
+        };
+
+        WireHelperService whsMock = mock(WireHelperService.class);
+        when(whsMock.newWireSupport(store)).thenReturn(mock(WireSupport.class));
+        store.bindWireHelperService(whsMock);
+
+        String tableName = "H2_STORE_WILDCARD_TEST";
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put("table.name", tableName);
+        store.activate(mock(ComponentContext.class), props);
+
+        Map<String, TypedValue<?>> recordProps = new HashMap<String, TypedValue<?>>();
+        recordProps.put("key", new StringValue("val"));
+        store.onWireReceive(new WireEnvelope("emitter",
+                Collections.singletonList(new WireRecord(recordProps))));
+
+        assertEquals(1, count(connection, tableName));
+        ResultSet resultSet = connection.prepareStatement("SELECT * FROM " + tableName).executeQuery();
+        assertEquals(3, resultSet.getMetaData().getColumnCount());
+        assertEquals(0, count(connection, "H2XSTORE_WILDCARD_TEST"));
+
+        store.deactivate(null);
+        connection.prepareStatement("SHUTDOWN").execute();
+    }
+
+    private static int count(Connection connection, String tableName) throws SQLException {
+        ResultSet resultSet = connection.prepareStatement("SELECT count(*) FROM " + tableName).executeQuery();
+        resultSet.next();
+        return resultSet.getInt(1);
+    }
+
+    private static List<String> getPartitions(Connection connection, String tableName) throws SQLException {
+        List<String> partitions = new ArrayList<String>();
+        ResultSet tables = connection.getMetaData().getTables(null, null, tableName + "_P%", new String[] { "TABLE" });
+        while (tables.next()) {
+            partitions.add(tables.getString("TABLE_NAME"));
+        }
+        return partitions;
+    }
+
     @Test
     public void testCleanupSequence() throws SQLException {
         // create DB, insert a few wire records, check they are actually in there and clean the DB
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireRecord;
+import org.junit.Test;
+import org.osgi.service.wireadmin.Wire;
+
+public class AsynchronousWireDispatcherTest {
+
+    private static final long TIMEOUT = 5;
+
+    @Test
+    public void testOrderPerWire() throws InterruptedException {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(4, 1000, false);
+        RecordingWire first = new RecordingWire(500);
+        RecordingWire second = new RecordingWire(500);
+
+        List<WireEnvelope> envelopes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                WireEnvelope envelope = envelope(i);
+                envelopes.add(envelope);
+                dispatcher.dispatch(Arrays.asList(first.wire, second.wire), envelope);
+            }
+
+            assertTrue(first.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(second.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(envelopes, first.received);
+            assertEquals(envelopes, second.received);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void testSlowWire() throws InterruptedException {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(2, 10, false);
+        RecordingWire slow = new RecordingWire(1);
+        RecordingWire fast = new RecordingWire(1);
+        CountDownLatch release = slow.block();
+
+        try {
+            dispatcher.dispatch(Arrays.asList(slow.wire, fast.wire), envelope(0));
+
+            // the emitter and the other wire are not stalled by the slow one
+            assertTrue(fast.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(slow.entered.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(1, slow.delivered.getCount());
+
+            release.countDown();
+            assertTrue(slow.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void testDiscardEnvelopes() throws InterruptedException {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(1, 1, true);
+        RecordingWire wire = new RecordingWire(2);
+        CountDownLatch release = wire.block();
+
+        try {
+            WireEnvelope first = envelope(1);
+            WireEnvelope second = envelope(2);
+            dispatcher.dispatch(Collections.singletonList(wire.wire), first);
+            assertTrue(wire.entered.await(TIMEOUT, TimeUnit.SECONDS));
+
+            // the second envelope fills the queue, the third one is discarded
+            dispatcher.dispatch(Collections.singletonList(wire.wire), second);
+            dispatcher.dispatch(Collections.singletonList(wire.wire), envelope(3));
+
+            release.countDown();
+            assertTrue(wire.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(Arrays.asList(first, second), wire.received);
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void testBlockedEmitterDelivers() throws InterruptedException {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(1, 1, false);
+        RecordingWire slow = new RecordingWire(1);
+        RecordingWire other = new RecordingWire(2);
+        CountDownLatch release = slow.block();
+
+        try {
+            dispatcher.dispatch(Collections.singletonList(slow.wire), envelope(0));
+            assertTrue(slow.entered.await(TIMEOUT, TimeUnit.SECONDS));
+
+            // the only dispatcher thread is busy, the emitter delivers the queued envelope itself
+            WireEnvelope first = envelope(1);
+            dispatcher.dispatch(Collections.singletonList(other.wire), first);
+            dispatcher.dispatch(Collections.singletonList(other.wire), envelope(2));
+            assertEquals(Collections.singletonList(first), other.received);
+
+            release.countDown();
+            assertTrue(other.delivered.await(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(1, 10, false);
+        RecordingWire wire = new RecordingWire(1);
+        dispatcher.close();
+
+        WireEnvelope envelope = envelope(0);
+        dispatcher.dispatch(Collections.singletonList(wire.wire), envelope);
+
+        assertEquals(Collections.singletonList(envelope), wire.received);
+    }
+
+    @Test
+    public void testCloseDelivers() throws InterruptedException {
+        AsynchronousWireDispatcher dispatcher = new AsynchronousWireDispatcher(1, 10, false);
+        RecordingWire wire = new RecordingWire(3);
+        CountDownLatch release = wire.block();
+
+        dispatcher.dispatch(Collections.singletonList(wire.wire), envelope(0));
+        assertTrue(wire.entered.await(TIMEOUT, TimeUnit.SECONDS));
+        dispatcher.dispatch(Collections.singletonList(wire.wire), envelope(1));
+        dispatcher.dispatch(Collections.singletonList(wire.wire), envelope(2));
+
+        // close returns once the queued envelopes are delivered
+        Thread closer = new Thread(dispatcher::close);
+        closer.start();
+        closer.join(200);
+        assertTrue(closer.isAlive());
+
+        release.countDown();
+        closer.join(TIMEOUT * 1000);
+        assertFalse(closer.isAlive());
+        assertEquals(3, wire.received.size());
+    }
+
+    private static WireEnvelope envelope(int index) {
+        return new WireEnvelope("emitter" + index, Collections.<WireRecord> emptyList());
+    }
+
+    private static final class RecordingWire {
+
+        private final Wire wire = mock(Wire.class);
+        private final List<WireEnvelope> received = Collections.synchronizedList(new ArrayList<WireEnvelope>());
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch delivered;
+        private CountDownLatch release;
+
+        RecordingWire(int expected) {
+            this.delivered = new CountDownLatch(expected);
+            doAnswer(invocation -> {
+                this.entered.countDown();
+                if (this.release != null) {
+                    this.release.await();
+                }
+                this.received.add((WireEnvelope) invocation.getArguments()[0]);
+                this.delivered.countDown();
+                return null;
+            }).when(this.wire).update(any());
+        }
+
+        CountDownLatch block() {
+            this.release = new CountDownLatch(1);
+            return this.release;
+        }
+    }
+}
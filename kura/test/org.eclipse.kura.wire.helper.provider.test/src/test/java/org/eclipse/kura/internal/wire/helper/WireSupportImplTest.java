@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.wire.WireComponent;
+import org.eclipse.kura.wire.WireComponentMetrics;
+import org.eclipse.kura.wire.WireEmitter;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.wireadmin.Wire;
+
+public class WireSupportImplTest {
+
+    private final ScheduledExecutorService emitEventScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        this.emitEventScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testAllEvents() {
+        EventAdmin eventAdmin = mock(EventAdmin.class);
+        WireSupport wireSupport = newWireSupport(eventAdmin, "all", 1000);
+
+        for (int i = 0; i < 3; i++) {
+            wireSupport.emit(Collections.<WireRecord> emptyList());
+        }
+
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(eventAdmin, times(3)).postEvent(captor.capture());
+        Event event = captor.getValue();
+        assertEquals(WireSupport.EMIT_EVENT_TOPIC, event.getTopic());
+        assertEquals("emitter", event.getProperty("emitter"));
+    }
+
+    @Test
+    public void testNoEvents() {
+        EventAdmin eventAdmin = mock(EventAdmin.class);
+        WireSupport wireSupport = newWireSupport(eventAdmin, "none", 1000);
+
+        wireSupport.emit(Collections.<WireRecord> emptyList());
+
+        verify(eventAdmin, never()).postEvent(any(Event.class));
+    }
+
+    @Test
+    public void testAggregatedEvents() throws InterruptedException {
+        EventAdmin eventAdmin = mock(EventAdmin.class);
+        WireSupport wireSupport = newWireSupport(eventAdmin, "aggregated", 100);
+
+        // the first emit is notified immediately, the following ones within the interval are counted
+        for (int i = 0; i < 5; i++) {
+            wireSupport.emit(Collections.<WireRecord> emptyList());
+        }
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(eventAdmin, times(1)).postEvent(captor.capture());
+        assertEquals(1L, captor.getValue().getProperty("count"));
+
+        // the emits counted within the interval are posted when it ends, without waiting for another emit
+        verify(eventAdmin, timeout(1000).times(2)).postEvent(captor.capture());
+        List<Event> events = captor.getAllValues();
+        assertEquals(4L, events.get(events.size() - 1).getProperty("count"));
+        assertEquals("emitter", events.get(events.size() - 1).getProperty("emitter"));
+
+        // nothing is pending, the next emit after the interval is notified immediately
+        Thread.sleep(150);
+        verify(eventAdmin, times(2)).postEvent(any(Event.class));
+        wireSupport.emit(Collections.<WireRecord> emptyList());
+        verify(eventAdmin, times(3)).postEvent(captor.capture());
+        assertEquals(1L, captor.getValue().getProperty("count"));
+    }
+
+    @Test
+    public void testConcurrentEmit() throws InterruptedException {
+        WireSupportImpl wireSupport = newWireSupport(mock(WireEmitter.class), mock(EventAdmin.class), "all", 0);
+
+        // each emitter waits in the wire for the other one to enter it
+        CountDownLatch entered = new CountDownLatch(2);
+        Wire wire = mock(Wire.class);
+        doAnswer(invocation -> {
+            entered.countDown();
+            return entered.await(5, TimeUnit.SECONDS);
+        }).when(wire).update(any());
+        wireSupport.consumersConnected(new Wire[] { wire });
+
+        Thread other = new Thread(() -> wireSupport.emit(Collections.<WireRecord> emptyList()));
+        other.start();
+        wireSupport.emit(Collections.<WireRecord> emptyList());
+        other.join(5000);
+
+        assertEquals(0, entered.getCount());
+        assertEquals(2, wireSupport.getMetrics().snapshot().getEmittedEnvelopes());
+    }
+
+    @Test
+    public void testMetrics() {
+        WireComponent component = mock(WireEmitter.class, withSettings().extraInterfaces(WireReceiver.class));
+        WireSupportImpl wireSupport = newWireSupport(component, mock(EventAdmin.class), "none", 0);
+
+        Wire slowWire = mock(Wire.class);
+        doAnswer(invocation -> {
+            Thread.sleep(100);
+            return null;
+        }).when(slowWire).update(any());
+        wireSupport.consumersConnected(new Wire[] { slowWire });
+
+        WireRecord record = new WireRecord(Collections.emptyMap());
+        doAnswer(invocation -> {
+            Thread.sleep(10);
+            wireSupport.emit(Collections.singletonList(record));
+            return null;
+        }).when((WireReceiver) component).onWireReceive(any());
+
+        wireSupport.registerMetric("queue.depth", () -> 3L);
+        wireSupport.updated(slowWire, new WireEnvelope("upstream", Collections.nCopies(2, record)));
+
+        WireComponentMetrics metrics = wireSupport.getMetrics().snapshot();
+        assertEquals("emitter", metrics.getWireComponentPid());
+        assertEquals(1, metrics.getReceivedEnvelopes());
+        assertEquals(2, metrics.getReceivedRecords());
+        assertEquals(1, metrics.getEmittedEnvelopes());
+        assertEquals(1, metrics.getEmittedRecords());
+        assertEquals(Collections.singletonMap("queue.depth", 3L), metrics.getComponentMetrics());
+
+        // the time spent by the downstream wire is not accounted to the component
+        long processingTime = TimeUnit.NANOSECONDS.toMillis(metrics.getTotalProcessingTime());
+        assertTrue(processingTime >= 10);
+        assertTrue(processingTime < 100);
+        assertEquals(metrics.getTotalProcessingTime(), metrics.getMaxProcessingTime());
+
+        long[] histogram = metrics.getProcessingTimeHistogram();
+        assertEquals(WireComponentMetrics.PROCESSING_TIME_BUCKETS, histogram.length);
+        assertEquals(1, histogram[WireComponentMetricsRecorder.bucket(metrics.getTotalProcessingTime())]);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, WireComponentMetricsRecorder.bucket(999));
+        assertEquals(1, WireComponentMetricsRecorder.bucket(1000));
+        assertEquals(1, WireComponentMetricsRecorder.bucket(1999));
+        assertEquals(2, WireComponentMetricsRecorder.bucket(2000));
+        assertEquals(10, WireComponentMetricsRecorder.bucket(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertEquals(WireComponentMetrics.PROCESSING_TIME_BUCKETS - 1,
+                WireComponentMetricsRecorder.bucket(TimeUnit.HOURS.toNanos(1)));
+    }
+
+    private WireSupport newWireSupport(EventAdmin eventAdmin, String emitEvents, int interval) {
+        return newWireSupport(mock(WireEmitter.class), eventAdmin, emitEvents, interval);
+    }
+
+    private WireSupportImpl newWireSupport(WireComponent emitter, EventAdmin eventAdmin, String emitEvents,
+            int interval) {
+        WireHelperService wireHelperService = mock(WireHelperService.class);
+        when(wireHelperService.getPid(emitter)).thenReturn("emitter");
+        when(wireHelperService.getServicePid(emitter)).thenReturn("emitter");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("emit.events", emitEvents);
+        properties.put("emit.events.interval", interval);
+        WireHelperServiceOptions options = new WireHelperServiceOptions(properties);
+
+        return new WireSupportImpl(emitter, wireHelperService, eventAdmin, () -> SynchronousWireDispatcher.INSTANCE,
+                () -> options, this.emitEventScheduler);
+    }
+}
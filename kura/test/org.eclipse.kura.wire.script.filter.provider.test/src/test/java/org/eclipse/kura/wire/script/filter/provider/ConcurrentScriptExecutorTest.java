@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.wire.script.filter.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireRecord;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ConcurrentScriptExecutorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentScriptExecutorTest.class);
+
+    // busy waits for the delay of the record, then emits its index
+    private static final String SCRIPT = "var record = input.records[0]\n"
+            + "var end = Date.now() + record.delay.getValue()\n" //
+            + "while (Date.now() < end) {}\n" //
+            + "var out = newWireRecord()\n" //
+            + "out.index = record.index\n" //
+            + "output.add(out)";
+
+    private final List<Integer> emitted = Collections.synchronizedList(new ArrayList<>());
+
+    private ConcurrentScriptExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (this.executor != null) {
+            this.executor.close();
+        }
+    }
+
+    @Test
+    public void testEmitOrder() throws InterruptedException {
+        // the results are emitted in the submission order, even if the envelopes complete out of order
+        CountDownLatch done = new CountDownLatch(20);
+        this.executor = new ConcurrentScriptExecutor(4, logger, records -> {
+            this.emitted.add(index(records));
+            done.countDown();
+        });
+        this.executor.update(SCRIPT, false);
+
+        for (int i = 0; i < 20; i++) {
+            this.executor.submit(envelope(i, (20 - i) % 4 * 10));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, (int) this.emitted.get(i));
+        }
+    }
+
+    @Test
+    public void testPendingEnvelopesBound() throws InterruptedException {
+        // at most 2 envelopes per thread wait to be processed or emitted
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        this.executor = new ConcurrentScriptExecutor(2, logger, records -> {
+            emitting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.emitted.add(index(records));
+        });
+        this.executor.update(SCRIPT, false);
+
+        AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 10; i++) {
+                    this.executor.submit(envelope(i, 0));
+                    submitted.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        // the first result is being emitted, the producer is blocked after 4 envelopes
+        assertTrue(emitting.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(4, submitted.get());
+
+        release.countDown();
+        producer.join(10000);
+        assertEquals(10, submitted.get());
+        this.executor.close();
+        assertEquals(10, this.emitted.size());
+    }
+
+    @Test
+    public void testClose() throws InterruptedException {
+        // the pending envelopes are processed and emitted before the threads are stopped
+        this.executor = new ConcurrentScriptExecutor(2, logger, records -> this.emitted.add(index(records)));
+        this.executor.update(SCRIPT, false);
+
+        for (int i = 0; i < 4; i++) {
+            this.executor.submit(envelope(i, 50));
+        }
+        this.executor.close();
+        assertEquals(4, this.emitted.size());
+
+        // the envelopes submitted after closing are processed on the calling thread
+        this.executor.submit(envelope(4, 0));
+        assertEquals(5, this.emitted.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) this.emitted.get(i));
+        }
+    }
+
+    @Test
+    public void testCloseWakesSubmitters() throws InterruptedException {
+        // a submitter waiting for the pending envelopes does not wait for them after closing
+        this.executor = new ConcurrentScriptExecutor(2, logger, records -> this.emitted.add(index(records)));
+        this.executor.update(SCRIPT, false);
+
+        // the first envelope is slow, the following ones are processed and wait for it to be emitted
+        for (int i = 0; i < 4; i++) {
+            this.executor.submit(envelope(i, i == 0 ? 1000 : 0));
+        }
+        Thread producer = new Thread(() -> {
+            try {
+                this.executor.submit(envelope(4, 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        Thread closer = new Thread(this.executor::close);
+        closer.start();
+        producer.join(500);
+        assertFalse(producer.isAlive());
+        assertTrue(this.emitted.isEmpty());
+
+        closer.join(10000);
+        assertEquals(5, this.emitted.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) this.emitted.get(i));
+        }
+    }
+
+    @Test
+    public void testCloseDropsQueuedEnvelopes() throws InterruptedException {
+        // the envelopes dropped when closing do not prevent the following results from being emitted
+        this.executor = new ConcurrentScriptExecutor(2, logger, records -> this.emitted.add(index(records)));
+        this.executor.update(SCRIPT, false);
+
+        for (int i = 0; i < 4; i++) {
+            this.executor.submit(envelope(i, 300));
+        }
+
+        // an interrupted close does not wait for the queued envelopes
+        Thread.currentThread().interrupt();
+        this.executor.close();
+        assertTrue(Thread.interrupted());
+
+        this.executor.submit(envelope(4, 0));
+        long end = System.currentTimeMillis() + 5000;
+        while (!this.emitted.contains(4) && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, (int) this.emitted.get(this.emitted.size() - 1));
+        assertFalse(this.emitted.contains(2));
+        assertFalse(this.emitted.contains(3));
+    }
+
+    private static WireEnvelope envelope(int index, int delay) {
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("index", TypedValues.newIntegerValue(index));
+        properties.put("delay", TypedValues.newIntegerValue(delay));
+        return new WireEnvelope("emitter", Collections.singletonList(new WireRecord(properties)));
+    }
+
+    private static int index(List<WireRecord> records) {
+        return (Integer) records.get(0).getProperties().get("index").getValue();
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.kura.wire.script.filter.provider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.eclipse.kura.wire.WireSupport;
+import org.junit.Test;
+
+public class ScriptFilterTest {
+
+    @Test
+    public void testUpdateWhileWaitingForPendingEnvelopes() throws InterruptedException {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        WireSupport wireSupport = mock(WireSupport.class);
+        doAnswer(invocation -> {
+            emitting.countDown();
+            release.await();
+            return null;
+        }).when(wireSupport).emit(anyListOf(WireRecord.class));
+
+        ScriptFilter filter = new ScriptFilter();
+        WireHelperService wireHelperService = mock(WireHelperService.class);
+        when(wireHelperService.newWireSupport(filter)).thenReturn(wireSupport);
+        filter.bindWireHelperService(wireHelperService);
+        filter.activate(properties("output.add(newWireRecord())"));
+
+        // the receiver blocks after the pending envelopes, while the first result is being emitted
+        Thread receiver = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                filter.onWireReceive(envelope());
+            }
+        });
+        receiver.start();
+        assertTrue(emitting.await(10, TimeUnit.SECONDS));
+
+        // the configuration can be updated in the meantime
+        Thread updater = new Thread(() -> filter.updated(properties("output.add(newWireRecord());")));
+        updater.start();
+        updater.join(5000);
+        assertFalse(updater.isAlive());
+
+        release.countDown();
+        receiver.join(10000);
+        assertFalse(receiver.isAlive());
+        filter.deactivate();
+    }
+
+    private static Map<String, Object> properties(String script) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("script", script);
+        properties.put("script.concurrency", 2);
+        return properties;
+    }
+
+    private static WireEnvelope envelope() {
+        Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("value", TypedValues.newIntegerValue(1));
+        return new WireEnvelope("emitter", Collections.singletonList(new WireRecord(properties)));
+    }
+}
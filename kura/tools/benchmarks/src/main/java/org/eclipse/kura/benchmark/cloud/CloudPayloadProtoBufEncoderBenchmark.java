@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.benchmark.cloud;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.core.cloud.CloudPayloadProtoBufEncoderImpl;
+import org.eclipse.kura.core.cloud.CloudPayloadProtoBufStreamingEncoderImpl;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the Kura Protobuf encoder based on the generated message builders with the streaming encoder.
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CloudPayloadProtoBufEncoderBenchmark {
+
+    @Param({ "1", "10", "100", "1000" })
+    private int metricCount;
+
+    private KuraPayload payload;
+
+    @Setup
+    public void setup() {
+        this.payload = new KuraPayload();
+        this.payload.setTimestamp(new Date());
+
+        KuraPosition position = new KuraPosition();
+        position.setLatitude(45.0);
+        position.setLongitude(13.0);
+        position.setTimestamp(new Date());
+        this.payload.setPosition(position);
+
+        for (int i = 0; i < this.metricCount; i++) {
+            switch (i % 4) {
+            case 0:
+                this.payload.addMetric("metric" + i, (double) i);
+                break;
+            case 1:
+                this.payload.addMetric("metric" + i, (long) i);
+                break;
+            case 2:
+                this.payload.addMetric("metric" + i, i % 3 == 0);
+                break;
+            default:
+                this.payload.addMetric("metric" + i, "value" + i);
+                break;
+            }
+        }
+        this.payload.setBody(new byte[64]);
+    }
+
+    @Benchmark
+    public byte[] builderEncoder() throws IOException {
+        return new CloudPayloadProtoBufEncoderImpl(this.payload).getBytes();
+    }
+
+    @Benchmark
+    public byte[] streamingEncoder() throws IOException {
+        return new CloudPayloadProtoBufStreamingEncoderImpl(this.payload).getBytes();
+    }
+}
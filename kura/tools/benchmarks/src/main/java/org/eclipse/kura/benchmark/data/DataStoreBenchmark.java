@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.benchmark.data;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.core.data.DataStore;
+import org.eclipse.kura.core.data.store.ConcurrentDbDataStore;
+import org.eclipse.kura.core.data.store.DbDataStore;
+import org.eclipse.kura.db.H2DbService;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.h2.tools.DeleteDbFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link DbDataStore} and the {@link ConcurrentDbDataStore} with several producers storing messages
+ * in the same file based store, while a publisher marks them as published and the housekeeper of the store purges
+ * them. Run with {@code -t <threads>} to change the number of producers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class DataStoreBenchmark {
+
+    private static final String DB_DIR = System.getProperty("java.io.tmpdir") + File.separator + "datastorebenchmark";
+    private static final String DB_NAME = "db";
+    private static final byte[] PAYLOAD = new byte[256];
+
+    @Param({ "DbDataStore", "ConcurrentDbDataStore" })
+    private String storeType;
+
+    private PooledH2DbService dbService;
+    private DataStore store;
+    private Thread publisher;
+
+    @Setup
+    public void setup() throws KuraStoreException {
+        DeleteDbFiles.execute(DB_DIR, DB_NAME, true);
+        this.dbService = new PooledH2DbService("jdbc:h2:file:" + DB_DIR + File.separator + DB_NAME);
+
+        this.store = "DbDataStore".equals(this.storeType) ? new DbDataStore("ds_benchmark")
+                : new ConcurrentDbDataStore("ds_benchmark");
+        this.store.start(this.dbService, 1, 1, Integer.MAX_VALUE);
+
+        this.publisher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    DataMessage message = this.store.getNextMessage();
+                    if (message != null) {
+                        this.store.published(message.getId());
+                    } else {
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (KuraStoreException e) {
+                    // the store is being stopped
+                }
+            }
+        }, "DataStoreBenchmark:Publisher");
+        this.publisher.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.publisher.interrupt();
+        this.publisher.join();
+        this.store.stop();
+        this.dbService.dispose();
+        DeleteDbFiles.execute(DB_DIR, DB_NAME, true);
+    }
+
+    @Benchmark
+    public DataMessage store() throws KuraStoreException {
+        return this.store.store("benchmark/topic", PAYLOAD, 0, false, 5);
+    }
+
+    /**
+     * A minimal {@link H2DbService} backed by a connection pool, as the one of the H2DbServiceImpl.
+     */
+    private static final class PooledH2DbService implements H2DbService {
+
+        private final JdbcConnectionPool connectionPool;
+
+        PooledH2DbService(String url) {
+            this.connectionPool = JdbcConnectionPool.create(url, "SA", "");
+            this.connectionPool.setMaxConnections(32);
+        }
+
+        void dispose() {
+            this.connectionPool.dispose();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return this.connectionPool.getConnection();
+        }
+
+        @Override
+        public void close(Connection conn) {
+            try {
+                if (conn != null) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void rollback(Connection conn) {
+            try {
+                if (conn != null) {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void close(ResultSet... rss) {
+            for (ResultSet rs : rss) {
+                try {
+                    if (rs != null) {
+                        rs.close();
+                    }
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+        }
+
+        @Override
+        public void close(Statement... stmts) {
+            for (Statement stmt : stmts) {
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
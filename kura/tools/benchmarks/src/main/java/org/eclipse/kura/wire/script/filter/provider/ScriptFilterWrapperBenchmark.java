@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.kura.wire.script.filter.provider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.type.TypedValues;
+import org.eclipse.kura.wire.WireRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the wrappers exposing the wire envelopes to the scripts of the ScriptFilter: reading every property of
+ * every received record, as a script iterating over {@code input.records} does, and building the output records.
+ * The benchmark is in the package of the wrappers, that are not public. Run with {@code -prof gc} to compare the
+ * allocations per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptFilterWrapperBenchmark {
+
+    private static final int PROPERTY_COUNT = 8;
+
+    @Param({ "1", "10", "100", "1000" })
+    private int recordCount;
+
+    private List<WireRecord> records;
+
+    @Setup
+    public void setup() {
+        this.records = new ArrayList<>(this.recordCount);
+        for (int i = 0; i < this.recordCount; i++) {
+            final Map<String, TypedValue<?>> properties = new HashMap<>();
+            for (int j = 0; j < PROPERTY_COUNT; j++) {
+                properties.put("property" + j, TypedValues.newDoubleValue(i * j));
+            }
+            this.records.add(new WireRecord(properties));
+        }
+    }
+
+    @Benchmark
+    public void readInput(final Blackhole blackhole) {
+        final WireEnvelopeWrapper input = new WireEnvelopeWrapper(new WireRecordListWrapper(this.records),
+                "emitter");
+        final WireRecordListWrapper inputRecords = (WireRecordListWrapper) input.getMember("records");
+        final int length = (Integer) inputRecords.getMember("length");
+        for (int i = 0; i < length; i++) {
+            final WireRecordWrapper record = (WireRecordWrapper) inputRecords.getSlot(i);
+            for (final String name : record.keySet()) {
+                blackhole.consume(record.getMember(name));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<WireRecord> writeOutput() {
+        final OutputWireRecordListWrapper output = new OutputWireRecordListWrapper();
+        for (final WireRecord record : this.records) {
+            final WireRecordWrapper outRecord = new WireRecordWrapper();
+            for (final Map.Entry<String, TypedValue<?>> property : record.getProperties().entrySet()) {
+                outRecord.setMember(property.getKey(), property.getValue());
+            }
+            output.add(outRecord);
+        }
+        return output.getRecords();
+    }
+}
@@ -55,6 +55,8 @@ public class S7Client
     public static final int errS7BufferTooSmall    = 0x000C;
     public static final int errS7FunctionError     = 0x000D;
     public static final int errS7InvalidParams     = 0x000E;           
+    // Max number of variables of a multi variables read or write request
+    public static final int MaxVars = 20;
     
     // Public fields
     public boolean Connected = false;
@@ -154,6 +156,9 @@ public class S7Client
     };
     private static final int Size_RD = 31;
     private static final int Size_WR = 35;
+    // Multi variables request header and item specification sizes
+    private static final int Size_MH = 19;
+    private static final int Size_MI = 12;
 
     // S7 Get Block Info Request Header (contains also ISO Header and COTP Header)
     private static final byte S7_BI[] = {
@@ -799,6 +804,210 @@ public class S7Client
         }
         return LastError;
     }
+
+    // Checks the items of a multi variables request, only byte addressed areas are supported
+    private boolean CheckMultiVarsItems(S7DataItem[] Items, int ItemsCount)
+    {
+        if ((Items==null) || (ItemsCount<1) || (ItemsCount>MaxVars) || (ItemsCount>Items.length))
+            return false;
+        for (int c = 0; c < ItemsCount; c++)
+        {
+            S7DataItem Item = Items[c];
+            if ((Item==null) || (Item.Area==S7.S7AreaCT) || (Item.Area==S7.S7AreaTM))
+                return false;
+            if ((Item.Amount<1) || (Item.Data==null) || (Item.Data.length<Item.Amount))
+                return false;
+        }
+        return true;
+    }
+
+    // Fills the header and the items specification of a multi variables request
+    private int SetupMultiVarsRequest(byte Function, S7DataItem[] Items, int ItemsCount)
+    {
+        int Address;
+        int Offset = Size_MH;
+
+        System.arraycopy(S7_RW, 0, PDU, 0, Size_MH);
+        // Parameters Length
+        S7.SetWordAt(PDU,13,ItemsCount*Size_MI+2);
+        // Function
+        PDU[17]=Function;
+        // Items count
+        PDU[18]=(byte)ItemsCount;
+        for (int c = 0; c < ItemsCount; c++)
+        {
+            System.arraycopy(S7_RW, Size_MH, PDU, Offset, Size_MI);
+            // Num elements
+            S7.SetWordAt(PDU,Offset+4,Items[c].Amount);
+            // Set DB Number
+            if (Items[c].Area==S7.S7AreaDB)
+                S7.SetWordAt(PDU,Offset+6,Items[c].DBNumber);
+            // Set Area
+            PDU[Offset+8]=(byte)Items[c].Area;
+            // Address into the PLC (only 3 bytes)
+            Address = Items[c].Start<<3;
+            PDU[Offset+11] = (byte) (Address & 0x0FF);
+            Address = Address >> 8;
+            PDU[Offset+10] = (byte) (Address & 0x0FF);
+            Address = Address >> 8;
+            PDU[Offset+9] = (byte) (Address & 0x0FF);
+            Offset+=Size_MI;
+        }
+        return Offset;
+    }
+
+    /**
+     * Reads up to MaxVars byte addressed variables, possibly from different areas or DBs, with a single
+     * request. The request and the reply must fit in the negotiated PDU length.
+     * The outcome of each variable is stored in its Result field (0 or errS7DataRead), the method returns
+     * a non zero error code if the whole request fails.
+     */
+    public int ReadMultiVars(S7DataItem[] Items, int ItemsCount)
+    {
+        int Length;
+        int Offset;
+        int ItemSize;
+        int ReplySize;
+
+        LastError=0;
+
+        if (!CheckMultiVarsItems(Items, ItemsCount))
+        {
+            LastError = errS7InvalidParams;
+            return LastError;
+        }
+        // Reply header + for each item 4 bytes header, data and fill byte
+        ReplySize = 14;
+        for (int c = 0; c < ItemsCount; c++)
+            ReplySize += 4 + Items[c].Amount + (Items[c].Amount % 2);
+        if ((12 + ItemsCount*Size_MI > _PDULength) || (ReplySize > _PDULength))
+        {
+            LastError = errS7InvalidParams;
+            return LastError;
+        }
+
+        Offset = SetupMultiVarsRequest((byte)0x04, Items, ItemsCount);
+        // Whole telegram Size
+        S7.SetWordAt(PDU,2,Offset);
+
+        SendPacket(PDU, Offset);
+        if (LastError==0)
+        {
+            Length=RecvIsoPacket();
+            if (LastError==0)
+            {
+                if ((Length>=21) && (S7.GetWordAt(PDU,17)==0) && (PDU[20]==(byte)ItemsCount))
+                {
+                    Offset = 21;
+                    for (int c = 0; c < ItemsCount; c++)
+                    {
+                        if (Offset+4>Length)
+                        {
+                            LastError = errS7InvalidPDU;
+                            break;
+                        }
+                        ItemSize = 0;
+                        if (PDU[Offset]==(byte)0xFF)
+                        {
+                            ItemSize = S7.GetWordAt(PDU,Offset+2);
+                            // Length in bits unless the transport size is octet, real or bit
+                            if ((PDU[Offset+1]!=0x07) && (PDU[Offset+1]!=0x09) && (PDU[Offset+1]!=0x03))
+                                ItemSize = ItemSize >> 3;
+                            if ((ItemSize==Items[c].Amount) && (Offset+4+ItemSize<=Length))
+                            {
+                                System.arraycopy(PDU, Offset+4, Items[c].Data, 0, ItemSize);
+                                Items[c].Result = 0;
+                            }
+                            else
+                                Items[c].Result = errS7DataRead;
+                        }
+                        else
+                            Items[c].Result = errS7DataRead;
+                        // Every item but the last one is padded to an even length
+                        Offset += 4 + ItemSize + (ItemSize % 2);
+                    }
+                }
+                else
+                    LastError = errS7InvalidPDU;
+            }
+        }
+        if (LastError!=0)
+            for (int c = 0; c < ItemsCount; c++)
+                Items[c].Result = LastError;
+        return LastError;
+    }
+
+    /**
+     * Writes up to MaxVars byte addressed variables, possibly into different areas or DBs, with a single
+     * request. The request must fit in the negotiated PDU length.
+     * The outcome of each variable is stored in its Result field (0 or errS7DataWrite), the method returns
+     * a non zero error code if the whole request fails.
+     */
+    public int WriteMultiVars(S7DataItem[] Items, int ItemsCount)
+    {
+        int Length;
+        int Offset;
+        int DataOffset;
+        int DataSize;
+
+        LastError=0;
+
+        if (!CheckMultiVarsItems(Items, ItemsCount))
+        {
+            LastError = errS7InvalidParams;
+            return LastError;
+        }
+        // Request header + items specification + for each item 4 bytes header, data and fill byte
+        DataSize = 0;
+        for (int c = 0; c < ItemsCount; c++)
+            DataSize += 4 + Items[c].Amount + (Items[c].Amount % 2);
+        if ((12 + ItemsCount*Size_MI + DataSize > _PDULength) || (14 + ItemsCount > _PDULength))
+        {
+            LastError = errS7InvalidParams;
+            return LastError;
+        }
+
+        DataOffset = SetupMultiVarsRequest((byte)0x05, Items, ItemsCount);
+        Offset = DataOffset;
+        for (int c = 0; c < ItemsCount; c++)
+        {
+            PDU[Offset]   = (byte)0x00; // Reserved
+            PDU[Offset+1] = (byte)0x04; // Transport size
+            S7.SetWordAt(PDU,Offset+2,Items[c].Amount<<3);
+            System.arraycopy(Items[c].Data, 0, PDU, Offset+4, Items[c].Amount);
+            Offset += 4 + Items[c].Amount;
+            // Every item but the last one is padded to an even length
+            if ((Items[c].Amount % 2 != 0) && (c<ItemsCount-1))
+                PDU[Offset++] = (byte)0x00;
+        }
+        // Data Length
+        S7.SetWordAt(PDU,15,Offset-DataOffset);
+        // Whole telegram Size
+        S7.SetWordAt(PDU,2,Offset);
+
+        SendPacket(PDU, Offset);
+        if (LastError==0)
+        {
+            Length=RecvIsoPacket();
+            if (LastError==0)
+            {
+                if ((Length==21+ItemsCount) && (S7.GetWordAt(PDU,17)==0) && (PDU[20]==(byte)ItemsCount))
+                {
+                    for (int c = 0; c < ItemsCount; c++)
+                        if (PDU[21+c]==(byte)0xFF)
+                            Items[c].Result = 0;
+                        else
+                            Items[c].Result = errS7DataWrite;
+                }
+                else
+                    LastError = errS7InvalidPDU;
+            }
+        }
+        if (LastError!=0)
+            for (int c = 0; c < ItemsCount; c++)
+                Items[c].Result = LastError;
+        return LastError;
+    }
    
     public int GetAgBlockInfo(int BlockType, int BlockNumber, S7BlockInfo Block)
     {
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ *   All rights reserved. This program and the accompanying materials
+ *   are made available under the terms of the Eclipse Public License v1.0
+ *   which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package Moka7;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class S7ClientMultiVarsTest {
+
+    private S7Client client;
+    private ByteArrayOutputStream sent;
+
+    @Before
+    public void setUp() throws Exception {
+        this.client = new S7Client();
+        this.client.RecvTimeout = 50;
+        this.sent = new ByteArrayOutputStream();
+        setField("OutStream", new DataOutputStream(this.sent));
+        setField("_PDULength", 240);
+    }
+
+    @Test
+    public void testReadRequest() throws Exception {
+        reply(0x04, 0);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 10, 3, new byte[3]),
+                new S7DataItem(S7.S7AreaDB, 300, 0, 2, new byte[2]),
+                new S7DataItem(S7.S7AreaMK, 0, 5, 1, new byte[1]) };
+
+        this.client.ReadMultiVars(items, items.length);
+
+        assertArrayEquals(bytes( //
+                0x03, 0x00, 0x00, 0x37, 0x02, 0xf0, 0x80, // TPKT and COTP
+                0x32, 0x01, 0x00, 0x00, 0x05, 0x00, 0x00, 0x26, 0x00, 0x00, // header, 38 bytes of parameters
+                0x04, 0x03, // read, 3 items
+                0x12, 0x0a, 0x10, 0x02, 0x00, 0x03, 0x00, 0x01, 0x84, 0x00, 0x00, 0x50, // DB1.DBB10, 3 bytes
+                0x12, 0x0a, 0x10, 0x02, 0x00, 0x02, 0x01, 0x2c, 0x84, 0x00, 0x00, 0x00, // DB300.DBB0, 2 bytes
+                0x12, 0x0a, 0x10, 0x02, 0x00, 0x01, 0x00, 0x00, 0x83, 0x00, 0x00, 0x28), // MB5, 1 byte
+                this.sent.toByteArray());
+    }
+
+    @Test
+    public void testReadReply() throws Exception {
+        reply(0x04, 4, //
+                0xff, 0x04, 0x00, 0x18, 0x01, 0x02, 0x03, 0x00, // 24 bits, padded to an even length
+                0x0a, 0x00, 0x00, 0x00, // object does not exist
+                0xff, 0x09, 0x00, 0x02, 0x04, 0x05, // octet string, the length is in bytes
+                0xff, 0x04, 0x00, 0x08, 0x06); // the last item is not padded
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 3, new byte[3]),
+                new S7DataItem(S7.S7AreaDB, 2, 0, 2, new byte[2]), new S7DataItem(S7.S7AreaDB, 3, 0, 2, new byte[2]),
+                new S7DataItem(S7.S7AreaDB, 4, 0, 1, new byte[1]) };
+
+        assertEquals(0, this.client.ReadMultiVars(items, items.length));
+
+        assertEquals(0, items[0].Result);
+        assertArrayEquals(bytes(0x01, 0x02, 0x03), items[0].Data);
+        assertEquals(S7Client.errS7DataRead, items[1].Result);
+        assertEquals(0, items[2].Result);
+        assertArrayEquals(bytes(0x04, 0x05), items[2].Data);
+        assertEquals(0, items[3].Result);
+        assertArrayEquals(bytes(0x06), items[3].Data);
+    }
+
+    @Test
+    public void testReadReplyLengthMismatch() throws Exception {
+        // the first item is shorter than requested, the following one is still decoded
+        reply(0x04, 2, //
+                0xff, 0x04, 0x00, 0x08, 0x01, 0x00, //
+                0xff, 0x04, 0x00, 0x10, 0x02, 0x03);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 2, new byte[2]),
+                new S7DataItem(S7.S7AreaDB, 1, 2, 2, new byte[2]) };
+
+        assertEquals(0, this.client.ReadMultiVars(items, items.length));
+
+        assertEquals(S7Client.errS7DataRead, items[0].Result);
+        assertEquals(0, items[1].Result);
+        assertArrayEquals(bytes(0x02, 0x03), items[1].Data);
+    }
+
+    @Test
+    public void testReadReplyBadItemCount() throws Exception {
+        reply(0x04, 1, 0xff, 0x04, 0x00, 0x08, 0x01);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 1, new byte[1]),
+                new S7DataItem(S7.S7AreaDB, 2, 0, 1, new byte[1]) };
+
+        assertEquals(S7Client.errS7InvalidPDU, this.client.ReadMultiVars(items, items.length));
+
+        assertEquals(S7Client.errS7InvalidPDU, items[0].Result);
+        assertEquals(S7Client.errS7InvalidPDU, items[1].Result);
+    }
+
+    @Test
+    public void testReadTooLarge() throws Exception {
+        // the reply would not fit in the PDU, nothing is sent
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 200, new byte[200]),
+                new S7DataItem(S7.S7AreaDB, 2, 0, 30, new byte[30]) };
+
+        assertEquals(S7Client.errS7InvalidParams, this.client.ReadMultiVars(items, items.length));
+        assertEquals(0, this.sent.size());
+
+        S7DataItem[] tooMany = new S7DataItem[S7Client.MaxVars + 1];
+        for (int i = 0; i < tooMany.length; i++) {
+            tooMany[i] = new S7DataItem(S7.S7AreaDB, 1, i, 1, new byte[1]);
+        }
+        assertEquals(S7Client.errS7InvalidParams, this.client.ReadMultiVars(tooMany, tooMany.length));
+        assertEquals(0, this.sent.size());
+    }
+
+    @Test
+    public void testWriteRequest() throws Exception {
+        reply(0x05, 0);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 3, bytes(0x01, 0x02, 0x03)),
+                new S7DataItem(S7.S7AreaDB, 2, 4, 2, bytes(0x04, 0x05)) };
+
+        this.client.WriteMultiVars(items, items.length);
+
+        assertArrayEquals(bytes( //
+                0x03, 0x00, 0x00, 0x39, 0x02, 0xf0, 0x80, // TPKT and COTP
+                0x32, 0x01, 0x00, 0x00, 0x05, 0x00, 0x00, 0x1a, 0x00, 0x0e, // 26 bytes of parameters, 14 of data
+                0x05, 0x02, // write, 2 items
+                0x12, 0x0a, 0x10, 0x02, 0x00, 0x03, 0x00, 0x01, 0x84, 0x00, 0x00, 0x00, // DB1.DBB0, 3 bytes
+                0x12, 0x0a, 0x10, 0x02, 0x00, 0x02, 0x00, 0x02, 0x84, 0x00, 0x00, 0x20, // DB2.DBB4, 2 bytes
+                0x00, 0x04, 0x00, 0x18, 0x01, 0x02, 0x03, 0x00, // 24 bits, padded to an even length
+                0x00, 0x04, 0x00, 0x10, 0x04, 0x05), // the last item is not padded
+                this.sent.toByteArray());
+    }
+
+    @Test
+    public void testWriteReply() throws Exception {
+        reply(0x05, 3, 0xff, 0x0a, 0xff);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 1, bytes(0x01)),
+                new S7DataItem(S7.S7AreaDB, 2, 0, 1, bytes(0x02)), new S7DataItem(S7.S7AreaDB, 3, 0, 1, bytes(0x03)) };
+
+        assertEquals(0, this.client.WriteMultiVars(items, items.length));
+
+        assertEquals(0, items[0].Result);
+        assertEquals(S7Client.errS7DataWrite, items[1].Result);
+        assertEquals(0, items[2].Result);
+    }
+
+    @Test
+    public void testWriteReplyBadItemCount() throws Exception {
+        reply(0x05, 2, 0xff, 0xff);
+        S7DataItem[] items = { new S7DataItem(S7.S7AreaDB, 1, 0, 1, bytes(0x01)),
+                new S7DataItem(S7.S7AreaDB, 2, 0, 1, bytes(0x02)), new S7DataItem(S7.S7AreaDB, 3, 0, 1, bytes(0x03)) };
+
+        assertEquals(S7Client.errS7InvalidPDU, this.client.WriteMultiVars(items, items.length));
+
+        for (S7DataItem item : items) {
+            assertEquals(S7Client.errS7InvalidPDU, item.Result);
+        }
+    }
+
+    /**
+     * Queues the reply of the PLC, with the provided item count and items.
+     */
+    private void reply(int function, int itemCount, int... items) throws Exception {
+        int length = 21 + items.length;
+        byte[] reply = new byte[length];
+        System.arraycopy(bytes( //
+                0x03, 0x00, length >> 8, length & 0xff, 0x02, 0xf0, 0x80, // TPKT and COTP
+                0x32, 0x03, 0x00, 0x00, 0x05, 0x00, 0x00, 0x02, (items.length >> 8), items.length & 0xff, //
+                0x00, 0x00, // no error
+                function, itemCount), 0, reply, 0, 21);
+        System.arraycopy(bytes(items), 0, reply, 21, items.length);
+        setField("InStream", new DataInputStream(new ByteArrayInputStream(reply)));
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = S7Client.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(this.client, value);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}